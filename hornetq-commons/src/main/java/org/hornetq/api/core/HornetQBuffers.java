@@ -90,6 +90,39 @@ public final class HornetQBuffers
       return new ChannelBufferWrapper(ChannelBuffers.buffer(size));
    }
 
+   /**
+    * Creates a HornetQBuffer made of the readable bytes of the given buffers, without copying them
+    *
+    * Changes on the content of the given buffers are visible on the created buffer
+    *
+    * @param buffers the buffers to wrap, in order
+    * @return a HornetQBuffer wrapping the given buffers
+    */
+   public static HornetQBuffer wrappedBuffer(final HornetQBuffer... buffers)
+   {
+      ChannelBuffer[] components = new ChannelBuffer[buffers.length];
+
+      for (int i = 0; i < buffers.length; i++)
+      {
+         components[i] = buffers[i].channelBuffer();
+      }
+
+      return new ChannelBufferWrapper(ChannelBuffers.wrappedBuffer(components));
+   }
+
+   /**
+    * Creates a read-only view of the given HornetQBuffer
+    *
+    * Any attempt to write on the created buffer throws an {@link UnsupportedOperationException}
+    *
+    * @param underlying the buffer to view
+    * @return a read-only HornetQBuffer sharing the content of the given buffer
+    */
+   public static HornetQBuffer unmodifiableBuffer(final HornetQBuffer underlying)
+   {
+      return new ChannelBufferWrapper(ChannelBuffers.unmodifiableBuffer(underlying.channelBuffer()));
+   }
+
    private HornetQBuffers()
    {
       // Utility class
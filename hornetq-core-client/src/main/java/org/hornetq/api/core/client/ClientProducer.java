@@ -100,6 +100,31 @@ public interface ClientProducer extends AutoCloseable
     */
    void send(SimpleString address, Message message, SendAcknowledgementHandler handler) throws HornetQException;
 
+   /**
+    * Sends a message to an address. specified in {@link ClientSession#createProducer(String)} or
+    * similar methods, without waiting for the server. <br>
+    * <br>
+    * The handler is called once the server has received the message, and stored it if durable,
+    * with the same guarantees as a blocking send. Many such sends can be in flight on the session.
+    * @param message the message to send
+    * @param handler handler called once the send completes
+    * @throws HornetQException if an exception occurs while sending the message
+    */
+   void sendAsync(Message message, CompletionHandler handler) throws HornetQException;
+
+   /**
+    * Sends a message to the specified address instead of the ClientProducer's address, without
+    * waiting for the server. <br>
+    * <br>
+    * The handler is called once the server has received the message, and stored it if durable,
+    * with the same guarantees as a blocking send. Many such sends can be in flight on the session.
+    * @param address the address where the message will be sent
+    * @param message the message to send
+    * @param handler handler called once the send completes
+    * @throws HornetQException if an exception occurs while sending the message
+    */
+   void sendAsync(SimpleString address, Message message, CompletionHandler handler) throws HornetQException;
+
    /**
     * Sends a message to the specified address instead of the ClientProducer's address. <br>
     * <br>
@@ -567,6 +567,20 @@ public interface ClientSession extends XAResource, AutoCloseable
     */
    void commit() throws HornetQException;
 
+   /**
+    * Commits the current transaction without waiting for the server.
+    * <p>
+    * The handler is called once the transaction is committed, with the same guarantees as
+    * {@link #commit()}. Many commits can be in flight on the session, and a blocking call waits
+    * until they are all completed. If the session fails over while the commit is in flight, the
+    * handler gets a {@link org.hornetq.api.core.HornetQTransactionOutcomeUnknownException} and the
+    * next commit rolls the session back.
+    *
+    * @param handler the handler called once the commit completes
+    * @throws HornetQException if an exception occurs while sending the commit
+    */
+   void commitAsync(CompletionHandler handler) throws HornetQException;
+
    /**
     * Rolls back the current transaction.
     *
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.api.core.client;
+
+import org.hornetq.api.core.HornetQException;
+
+/**
+ * A CompletionHandler is notified when an operation sent without waiting for the server, such as
+ * {@link ClientSession#commitAsync(CompletionHandler)}, completes.
+ * <p>
+ * The operation has then the same guarantees as its blocking version once it returns, e.g. a
+ * committed transaction or a durable message is stored on the server. Many such operations can be
+ * in flight on a session, and their handlers are called in the order they were sent, on the
+ * session's executor.
+ */
+public interface CompletionHandler
+{
+   /**
+    * Notifies that the operation completed successfully.
+    */
+   void onCompletion();
+
+   /**
+    * Notifies that the operation failed, or that its outcome is unknown.
+    * <p>
+    * If the connection failed over while a commit was in flight, the exception is a
+    * {@link org.hornetq.api.core.HornetQTransactionOutcomeUnknownException} and the session must
+    * be rolled back.
+    *
+    * @param exception the cause of the failure
+    */
+   void onException(HornetQException exception);
+}
@@ -60,6 +60,42 @@ public interface AddressControl
     */
    long getNumberOfBytesPerPage() throws Exception;
 
+   /**
+    * Returns the number of lookups on the page cache of this address which found the page in memory.
+    */
+   long getPageCacheHits() throws Exception;
+
+   /**
+    * Returns the number of lookups on the page cache of this address which had to read the page.
+    */
+   long getPageCacheMisses() throws Exception;
+
+   /**
+    * Returns the number of pages dropped from the page cache of this address to keep it within its bounds.
+    */
+   long getPageCacheEvictions() throws Exception;
+
+   /**
+    * Returns the estimated number of bytes of the messages on the page cache of this address.
+    */
+   long getNumberOfBytesInPageCache() throws Exception;
+
+   /**
+    * Returns the ratio of the size of the messages paged on this address to their compressed size
+    * on the page files, or 0 if no message was compressed.
+    */
+   double getPageCompressionRatio() throws Exception;
+
+   /**
+    * Returns the time spent compressing the messages paged on this address, in milliseconds.
+    */
+   long getPageCompressionTime() throws Exception;
+
+   /**
+    * Returns the time spent decompressing the page files of this address, in milliseconds.
+    */
+   long getPageDecompressionTime() throws Exception;
+
    /**
     * Returns the names of all bindings (both queues and diverts) bound to this address
     */
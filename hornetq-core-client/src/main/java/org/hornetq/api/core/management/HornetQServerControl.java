@@ -83,6 +83,17 @@ public interface HornetQServerControl
     */
    long getSecurityInvalidationInterval();
 
+   /**
+    * Returns the number of authentications found in the authentication cache.
+    */
+   long getAuthenticationCacheHits();
+
+   /**
+    * Returns the number of authentications validated by the security manager while the
+    * authentication cache is enabled.
+    */
+   long getAuthenticationCacheMisses();
+
    /**
     * Returns whether security is enabled for this server.
     */
@@ -138,6 +149,28 @@ public interface HornetQServerControl
     */
    int getJournalBufferTimeout();
 
+   /**
+    * Returns whether the internal buffer on the journal adapts the time a sync waits for other records.
+    */
+   boolean isJournalBufferAdaptive();
+
+   /**
+    * Returns the time (in nanoseconds) the last sync on the journal waited for other records before being flushed.
+    */
+   long getJournalBufferCurrentTimeout();
+
+   /**
+    * Returns the average time (in nanoseconds) taken by the syncs on the journal.
+    * It is only measured when the internal buffer on the journal is adaptive.
+    */
+   long getJournalSyncLatency();
+
+   /**
+    * Returns the number of flushes of the internal buffer on the journal by the number of records they wrote, as a JSON array.
+    * Element {@code n} counts the flushes of {@code 2^n} to {@code 2^(n+1) - 1} records.
+    */
+   String getJournalBatchSizeHistogramAsJSON() throws Exception;
+
    /**
     * do any clients failover on a server shutdown
     */
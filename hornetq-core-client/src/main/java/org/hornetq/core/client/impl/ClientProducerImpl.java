@@ -23,11 +23,14 @@ import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQInterruptedException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.CompletionHandler;
 import org.hornetq.api.core.client.SendAcknowledgementHandler;
 import org.hornetq.core.client.HornetQClientMessageBundle;
 import org.hornetq.core.message.BodyEncoder;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.protocol.core.Channel;
+import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.ResponseHandler;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendContinuationMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendLargeMessage;
@@ -125,14 +128,14 @@ public class ClientProducerImpl implements ClientProducerInternal
    {
       checkClosed();
 
-      doSend(null, msg, null, false);
+      doSend(null, msg, null, null);
    }
 
    public void send(final SimpleString address1, final Message msg) throws HornetQException
    {
       checkClosed();
 
-      doSend(address1, msg, null, false);
+      doSend(address1, msg, null, null);
    }
 
    public void send(final String address1, final Message message) throws HornetQException
@@ -146,11 +149,11 @@ public class ClientProducerImpl implements ClientProducerInternal
       checkClosed();
       boolean confirmationWindowEnabled = session.isConfirmationWindowEnabled();
       if (confirmationWindowEnabled) {
-         doSend(address1, message, handler, true);
+         doSend(address1, message, handler, null);
       }
       else
       {
-         doSend(address1, message, null, true);
+         doSend(address1, message, null, null);
          if (handler != null)
          {
             session.scheduleConfirmation(handler, message);
@@ -164,6 +167,23 @@ public class ClientProducerImpl implements ClientProducerInternal
       send(null, message, handler);
    }
 
+   public void sendAsync(final Message message, final CompletionHandler handler) throws HornetQException
+   {
+      sendAsync(null, message, handler);
+   }
+
+   public void sendAsync(final SimpleString address1, final Message message, final CompletionHandler handler) throws HornetQException
+   {
+      checkClosed();
+
+      if (handler == null)
+      {
+         throw new IllegalArgumentException("handler cannot be null");
+      }
+
+      doSend(address1, message, null, handler);
+   }
+
    public synchronized void close() throws HornetQException
    {
       if (closed)
@@ -224,7 +244,7 @@ public class ClientProducerImpl implements ClientProducerInternal
    }
 
    private void doSend(final SimpleString address1, final Message msg, final SendAcknowledgementHandler handler,
-                       final boolean forceAsync) throws HornetQException
+                       final CompletionHandler completionHandler) throws HornetQException
    {
       session.startCall();
 
@@ -296,11 +316,17 @@ public class ClientProducerImpl implements ClientProducerInternal
 
          if (isLarge)
          {
-            largeMessageSend(sendBlocking, msgI, theCredits, handler);
+            // A large message goes in many packets, it's completed once sent blocking
+            largeMessageSend(sendBlocking || completionHandler != null, msgI, theCredits, handler);
+
+            if (completionHandler != null)
+            {
+               session.scheduleCompletion(completionHandler, null);
+            }
          }
          else
          {
-            sendRegularMessage(msgI, sendBlocking, theCredits, handler);
+            sendRegularMessage(msgI, sendBlocking, theCredits, handler, completionHandler);
          }
       }
       finally
@@ -309,7 +335,8 @@ public class ClientProducerImpl implements ClientProducerInternal
       }
    }
 
-   private void sendRegularMessage(final MessageInternal msgI,final boolean sendBlocking, final ClientProducerCredits theCredits,                                  final SendAcknowledgementHandler handler) throws HornetQException
+   private void sendRegularMessage(final MessageInternal msgI,final boolean sendBlocking, final ClientProducerCredits theCredits,
+                                   final SendAcknowledgementHandler handler, final CompletionHandler completionHandler) throws HornetQException
    {
       try
       {
@@ -326,6 +353,24 @@ public class ClientProducerImpl implements ClientProducerInternal
          throw new HornetQInterruptedException(e);
       }
 
+      if (completionHandler != null)
+      {
+         channel.sendAsync(new SessionSendMessage(msgI, true, handler), PacketImpl.NULL_RESPONSE, new ResponseHandler()
+         {
+            public void handleResponse(final Packet response)
+            {
+               session.scheduleCompletion(completionHandler, null);
+            }
+
+            public void handleException(final HornetQException e)
+            {
+               session.scheduleCompletion(completionHandler, e);
+            }
+         });
+
+         return;
+      }
+
       SessionSendMessage packet = new SessionSendMessage(msgI, sendBlocking, handler);
 
       if (sendBlocking)
@@ -582,7 +627,7 @@ public class ClientProducerImpl implements ClientProducerInternal
                msgI.putLongProperty(Message.HDR_LARGE_BODY_SIZE, deflaterReader.getTotalSize());
 
                msgI.getBodyBuffer().writeBytes(buff, 0, pos);
-               sendRegularMessage(msgI, sendBlocking, credits, handler);
+               sendRegularMessage(msgI, sendBlocking, credits, handler, null);
                return;
             }
 
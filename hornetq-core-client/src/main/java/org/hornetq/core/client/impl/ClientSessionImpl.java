@@ -37,6 +37,7 @@ import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.CompletionHandler;
 import org.hornetq.api.core.client.FailoverEventListener;
 import org.hornetq.api.core.client.SendAcknowledgementHandler;
 import org.hornetq.api.core.client.SessionFailureListener;
@@ -46,6 +47,7 @@ import org.hornetq.core.protocol.core.Channel;
 import org.hornetq.core.protocol.core.CommandConfirmationHandler;
 import org.hornetq.core.protocol.core.CoreRemotingConnection;
 import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.ResponseHandler;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.CreateQueueMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.CreateSessionMessage;
@@ -632,6 +634,55 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
       workDone = false;
    }
 
+   public void commitAsync(final CompletionHandler handler) throws HornetQException
+   {
+      checkClosed();
+
+      if (HornetQClientLogger.LOGGER.isTraceEnabled())
+      {
+         HornetQClientLogger.LOGGER.trace("Sending commit asynchronously");
+      }
+
+      // same as commit, the outcome is known until the commit is sent
+      if (rollbackOnly)
+      {
+         rollbackOnFailover(true);
+      }
+
+      flushAcks();
+
+      if (rollbackOnly)
+      {
+         rollbackOnFailover(true);
+      }
+
+      channel.sendAsync(new PacketImpl(PacketImpl.SESS_COMMIT), PacketImpl.NULL_RESPONSE, new ResponseHandler()
+      {
+         public void handleResponse(final Packet response)
+         {
+            scheduleCompletion(handler, null);
+         }
+
+         public void handleException(final HornetQException e)
+         {
+            if (e.getType() == HornetQExceptionType.UNBLOCKED || rollbackOnly)
+            {
+               // The commit was unblocked on failover, and we can't roll back from the remoting thread:
+               // the next commit will do it
+               rollbackOnly = true;
+
+               scheduleCompletion(handler, HornetQClientMessageBundle.BUNDLE.txOutcomeUnknown());
+            }
+            else
+            {
+               scheduleCompletion(handler, e);
+            }
+         }
+      });
+
+      workDone = false;
+   }
+
    public boolean isRollbackOnly()
    {
       return rollbackOnly;
@@ -2336,4 +2387,23 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
             }
          });
    }
+
+   public void scheduleCompletion(final CompletionHandler handler, final HornetQException exception)
+   {
+      executor.execute(new Runnable()
+      {
+         @Override
+         public void run()
+         {
+            if (exception == null)
+            {
+               handler.onCompletion();
+            }
+            else
+            {
+               handler.onException(exception);
+            }
+         }
+      });
+   }
 }
@@ -17,6 +17,7 @@ import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.CompletionHandler;
 import org.hornetq.api.core.client.SendAcknowledgementHandler;
 import org.hornetq.core.protocol.core.Channel;
 import org.hornetq.core.protocol.core.CoreRemotingConnection;
@@ -123,4 +124,10 @@ public interface ClientSessionInternal extends ClientSession
     * @param handler
     */
    void scheduleConfirmation(SendAcknowledgementHandler handler, Message message);
+
+   /**
+    * Calls the handler on the session executor, after the handlers scheduled before it.
+    * @param exception the failure of the operation, or null if it completed
+    */
+   void scheduleCompletion(CompletionHandler handler, HornetQException exception);
 }
@@ -25,6 +25,7 @@ import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.CompletionHandler;
 import org.hornetq.api.core.client.FailoverEventListener;
 import org.hornetq.api.core.client.SendAcknowledgementHandler;
 import org.hornetq.api.core.client.SessionFailureListener;
@@ -159,6 +160,11 @@ public class DelegatingSession implements ClientSessionInternal
       session.commit();
    }
 
+   public void commitAsync(final CompletionHandler handler) throws HornetQException
+   {
+      session.commitAsync(handler);
+   }
+
    public void commit(final Xid xid, final boolean onePhase) throws XAException
    {
       session.commit(xid, onePhase);
@@ -647,4 +653,10 @@ public class DelegatingSession implements ClientSessionInternal
    {
       session.scheduleConfirmation(handler, msg);
    }
+
+   @Override
+   public void scheduleCompletion(CompletionHandler handler, HornetQException exception)
+   {
+      session.scheduleCompletion(handler, exception);
+   }
 }
@@ -525,6 +525,20 @@ public abstract class MessageImpl implements MessageInternal
       }
    }
 
+   /**
+    * Unlike {@link #getEncodedBuffer()} this never copies the message. The buffer is marked as used, so
+    * a change on the message copies it before encoding again and the views handed out stay unchanged.
+    */
+   public synchronized HornetQBuffer getSharedEncodedBuffer()
+   {
+      HornetQBuffer buff = encodeToBuffer();
+
+      bufferUsed = true;
+
+      return HornetQBuffers.unmodifiableBuffer(buff.slice(BUFFER_HEADER_SPACE,
+                                                          endOfMessagePosition - BUFFER_HEADER_SPACE));
+   }
+
    public void setAddressTransient(final SimpleString address)
    {
       this.address = address;
@@ -49,6 +49,12 @@ public interface MessageInternal extends Message
 
    HornetQBuffer getEncodedBuffer();
 
+   /**
+    * @return a read-only view of the encoded message, without the packet headers, shared by every
+    *         caller until the message changes
+    */
+   HornetQBuffer getSharedEncodedBuffer();
+
    int getHeadersAndPropertiesEncodeSize();
 
    HornetQBuffer getWholeBuffer();
@@ -73,6 +73,19 @@ public interface Channel
     */
    Packet sendBlocking(Packet packet, byte expectedPacket) throws HornetQException;
 
+   /**
+    * Sends a packet on this channel without waiting for its response, which is given to the
+    * handler once received.
+    * <p>
+    * Many such requests can be in flight, the server answering them in the order they were sent. A
+    * {@link #sendBlocking(Packet, byte)} sent after them waits until they are all answered.
+    * @param packet the packet to send
+    * @param expectedPacket the packet being expected.
+    * @param responseHandler the handler of the response
+    * @throws HornetQException if the packet couldn't be sent
+    */
+   void sendAsync(Packet packet, byte expectedPacket, ResponseHandler responseHandler) throws HornetQException;
+
    /**
     * Sets the {@link org.hornetq.core.protocol.core.ChannelHandler} that this channel should
     * forward received packets to.
@@ -131,7 +144,8 @@ public interface Channel
    void unlock();
 
    /**
-    * forces any {@link org.hornetq.core.protocol.core.Channel#sendBlocking(Packet, byte)} request to return with an exception.
+    * forces any {@link org.hornetq.core.protocol.core.Channel#sendBlocking(Packet, byte)} request to return with an exception,
+    * and fails any request in flight sent through {@link #sendAsync(Packet, byte, ResponseHandler)}.
     */
    void returnBlocking();
 
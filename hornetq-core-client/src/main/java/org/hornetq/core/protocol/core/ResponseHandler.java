@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core;
+
+import org.hornetq.api.core.HornetQException;
+
+/**
+ * A ResponseHandler is called by the channel with the response to a packet sent through
+ * {@link Channel#sendAsync(Packet, byte, ResponseHandler)}.
+ * <p>
+ * It's called on the thread the response was received on, so it must not block.
+ */
+public interface ResponseHandler
+{
+   /**
+    * @param response the response, of the type expected by the request
+    */
+   void handleResponse(Packet response);
+
+   /**
+    * @param exception the exception the server answered with, or the one unblocking the request
+    *           on failover or once the channel is closed
+    */
+   void handleException(HornetQException exception);
+}
@@ -13,10 +13,13 @@
 
 package org.hornetq.core.protocol.core.impl;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -33,6 +36,7 @@ import org.hornetq.core.protocol.core.ChannelHandler;
 import org.hornetq.core.protocol.core.CommandConfirmationHandler;
 import org.hornetq.core.protocol.core.CoreRemotingConnection;
 import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.ResponseHandler;
 import org.hornetq.core.protocol.core.impl.wireformat.HornetQExceptionMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.PacketsConfirmedMessage;
 import org.hornetq.spi.core.protocol.RemotingConnection;
@@ -83,7 +87,21 @@ public final class ChannelImpl implements Channel
 
    private Packet response;
 
-   private final java.util.Queue<Packet> resendCache;
+   // The requests sent through sendAsync waiting for their response, in the order they were sent.
+   // Guarded by lock
+   private final java.util.Queue<PendingResponse> pendingResponses = new ArrayDeque<PendingResponse>();
+
+   // The responses still owed to blocking calls that timed out, which come before the responses to
+   // the requests sent through sendAsync after them. Guarded by lock
+   private int lateResponses;
+
+   private final ResendCache resendCache;
+
+   // The packets to write on a channel with a resend cache, queued by the sending threads
+   private final java.util.Queue<PendingWrite> writeQueue;
+
+   // Held by the thread writing the queued packets, or replaying the resend cache
+   private final AtomicBoolean writing = new AtomicBoolean(false);
 
    private volatile int firstStoredCommandID;
 
@@ -99,11 +117,9 @@ public final class ChannelImpl implements Channel
 
    private final Condition failoverCondition = lock.newCondition();
 
-   private final Object sendLock = new Object();
-
    private final Object sendBlockingLock = new Object();
 
-   private boolean failingOver;
+   private volatile boolean failingOver;
 
    private final int confWindowSize;
 
@@ -125,11 +141,15 @@ public final class ChannelImpl implements Channel
 
       if (confWindowSize != -1)
       {
-         resendCache = new ConcurrentLinkedQueue<Packet>();
+         resendCache = new ResendCache();
+
+         writeQueue = new ConcurrentLinkedQueue<PendingWrite>();
       }
       else
       {
          resendCache = null;
+
+         writeQueue = null;
       }
 
       this.interceptors = interceptors;
@@ -182,6 +202,8 @@ public final class ChannelImpl implements Channel
       {
          lock.unlock();
       }
+
+      failPendingResponses(HornetQClientMessageBundle.BUNDLE.unblockingACall());
    }
 
    public boolean sendAndFlush(final Packet packet)
@@ -204,7 +226,7 @@ public final class ChannelImpl implements Channel
       this.transferring = transferring;
    }
 
-   // This must never called by more than one thread concurrently
+   // This can be called by many threads concurrently, the packets are only ordered on a channel with a resend cache
    public boolean send(final Packet packet, final boolean flush, final boolean batch)
    {
       if (invokeInterceptors(packet, interceptors, connection) != null)
@@ -212,17 +234,17 @@ public final class ChannelImpl implements Channel
          return false;
       }
 
-      synchronized (sendLock)
-      {
-         packet.setChannelID(id);
+      packet.setChannelID(id);
 
-         if (isTrace)
-         {
-            HornetQClientLogger.LOGGER.trace("Sending packet nonblocking " + packet + " on channeID=" + id);
-         }
+      if (isTrace)
+      {
+         HornetQClientLogger.LOGGER.trace("Sending packet nonblocking " + packet + " on channeID=" + id);
+      }
 
-         HornetQBuffer buffer = packet.encode(connection);
+      HornetQBuffer buffer = packet.encode(connection);
 
+      if (failingOver)
+      {
          lock.lock();
 
          try
@@ -239,35 +261,27 @@ public final class ChannelImpl implements Channel
                   throw new HornetQInterruptedException(e);
                }
             }
-
-            // Sanity check
-            if (transferring)
-            {
-               throw new IllegalStateException("Cannot send a packet while channel is doing failover");
-            }
-
-            if (resendCache != null && packet.isRequiresConfirmations())
-            {
-               resendCache.add(packet);
-            }
          }
          finally
          {
             lock.unlock();
          }
+      }
 
-         if (isTrace)
-         {
-            HornetQClientLogger.LOGGER.trace("Writing buffer for channelID=" + id);
-         }
+      // Sanity check
+      if (transferring)
+      {
+         throw new IllegalStateException("Cannot send a packet while channel is doing failover");
+      }
 
+      if (isTrace)
+      {
+         HornetQClientLogger.LOGGER.trace("Writing buffer for channelID=" + id);
+      }
 
-         // The actual send must be outside the lock, or with OIO transport, the write can block if the tcp
-         // buffer is full, preventing any incoming buffers being handled and blocking failover
-         connection.getTransportConnection().write(buffer, flush, batch);
+      write(packet, buffer, flush, batch);
 
-         return true;
-      }
+      return true;
    }
 
    /**
@@ -307,43 +321,52 @@ public final class ChannelImpl implements Channel
 
          try
          {
-            if (failingOver)
+            waitForFailover();
+
+            long toWait = connection.getBlockingCallTimeout();
+
+            long start = System.currentTimeMillis();
+
+            // The responses to the requests in flight come first
+            while (!closed && !pendingResponses.isEmpty() && toWait > 0)
             {
                try
                {
-                  if(connection.getBlockingCallFailoverTimeout() < 0)
-                  {
-                     while (failingOver)
-                     {
-                        failoverCondition.await();
-                     }
-                  }
-                  else
-                  {
-                     if (!failoverCondition.await(connection.getBlockingCallFailoverTimeout(), TimeUnit.MILLISECONDS))
-                     {
-                        HornetQClientLogger.LOGGER.debug("timed-out waiting for failover condition");
-                     }
-                  }
+                  sendCondition.await(toWait, TimeUnit.MILLISECONDS);
                }
                catch (InterruptedException e)
                {
                   throw new HornetQInterruptedException(e);
                }
-            }
 
-            response = null;
+               final long now = System.currentTimeMillis();
 
-            if (resendCache != null && packet.isRequiresConfirmations())
+               toWait -= now - start;
+
+               start = now;
+            }
+
+            if (!pendingResponses.isEmpty() && !closed)
             {
-               resendCache.add(packet);
+               throw HornetQClientMessageBundle.BUNDLE.timedOutSendingPacket(packet.getType());
             }
 
-            connection.getTransportConnection().write(buffer, false, false);
+            response = null;
 
-            long toWait = connection.getBlockingCallTimeout();
+            // No request is in flight, a blocking call tells a late response apart by its type only
+            lateResponses = 0;
 
-            long start = System.currentTimeMillis();
+            // Written outside the lock, as this thread could be writing the packets queued by other threads too
+            lock.unlock();
+
+            try
+            {
+               write(packet, buffer, false, false);
+            }
+            finally
+            {
+               lock.lock();
+            }
 
             while (!closed && (response == null || (response.getType() != PacketImpl.EXCEPTION &&
                response.getType() != expectedPacket)) && toWait > 0)
@@ -376,6 +399,13 @@ public final class ChannelImpl implements Channel
 
             if (response == null)
             {
+               if (!closed)
+               {
+                  // The server still owes the response, so it isn't taken for the response to a
+                  // request sent through sendAsync later
+                  lateResponses++;
+               }
+
                throw HornetQClientMessageBundle.BUNDLE.timedOutSendingPacket(packet.getType());
             }
 
@@ -399,6 +429,54 @@ public final class ChannelImpl implements Channel
       }
    }
 
+   public void sendAsync(final Packet packet, final byte expectedPacket, final ResponseHandler responseHandler) throws HornetQException
+   {
+      String interceptionResult = invokeInterceptors(packet, interceptors, connection);
+
+      if (interceptionResult != null)
+      {
+         throw HornetQClientMessageBundle.BUNDLE.interceptorRejectedPacket(interceptionResult);
+      }
+
+      if (closed)
+      {
+         throw HornetQClientMessageBundle.BUNDLE.connectionDestroyed();
+      }
+
+      if (connection.getBlockingCallTimeout() == -1)
+      {
+         throw new IllegalStateException("Cannot wait for a response on a server side connection");
+      }
+
+      // Ordered with the blocking calls, so the responses come back in the order of the requests
+      synchronized (sendBlockingLock)
+      {
+         packet.setChannelID(id);
+
+         final HornetQBuffer buffer = packet.encode(connection);
+
+         lock.lock();
+
+         try
+         {
+            waitForFailover();
+
+            if (closed)
+            {
+               throw HornetQClientMessageBundle.BUNDLE.connectionDestroyed();
+            }
+
+            pendingResponses.add(new PendingResponse(expectedPacket, responseHandler));
+         }
+         finally
+         {
+            lock.unlock();
+         }
+
+         write(packet, buffer, false, false);
+      }
+   }
+
    /**
     *
     * @param packet the packet to intercept
@@ -478,6 +556,8 @@ public final class ChannelImpl implements Channel
          unlock();
       }
       closed = true;
+
+      failPendingResponses(HornetQClientMessageBundle.BUNDLE.connectionDestroyed());
    }
 
    public void transferConnection(final CoreRemotingConnection newConnection)
@@ -508,12 +588,27 @@ public final class ChannelImpl implements Channel
          {
             HornetQClientLogger.LOGGER.trace("Replaying commands on channelID=" + id);
          }
-         clearUpTo(otherLastConfirmedCommandID);
+         // No queued packet can be written until the cache is replayed
+         while (!writing.compareAndSet(false, true))
+         {
+            Thread.yield();
+         }
 
-         for (final Packet packet : resendCache)
+         try
          {
-            doWrite(packet);
+            clearUpTo(otherLastConfirmedCommandID);
+
+            for (final Packet packet : resendCache.toArray())
+            {
+               doWrite(packet);
+            }
          }
+         finally
+         {
+            writing.set(false);
+         }
+
+         drainWrites();
       }
    }
 
@@ -535,6 +630,11 @@ public final class ChannelImpl implements Channel
       failoverCondition.signalAll();
 
       lock.unlock();
+
+      if (writeQueue != null)
+      {
+         drainWrites();
+      }
    }
 
    public CoreRemotingConnection getConnection()
@@ -614,17 +714,58 @@ public final class ChannelImpl implements Channel
          {
             confirm(packet);
 
+            PendingResponse pending = null;
+
             lock.lock();
 
             try
             {
-               response = packet;
-               sendCondition.signal();
+               pending = pendingResponses.peek();
+
+               if (lateResponses > 0)
+               {
+                  lateResponses--;
+
+                  if (pending != null)
+                  {
+                     // The response to a blocking call that timed out, not to the requests in flight
+                     return;
+                  }
+               }
+
+               if (pending != null)
+               {
+                  if (packet.getType() != PacketImpl.EXCEPTION && packet.getType() != pending.expectedPacket)
+                  {
+                     // Same as a blocking call, a response of another type is ignored
+                     HornetQClientLogger.LOGGER.packetOutOfOrder(packet, new Exception("trace"));
+
+                     return;
+                  }
+
+                  pendingResponses.poll();
+
+                  if (pendingResponses.isEmpty())
+                  {
+                     sendCondition.signal();
+                  }
+               }
+               else
+               {
+                  response = packet;
+                  sendCondition.signal();
+               }
             }
             finally
             {
                lock.unlock();
             }
+
+            // The handler is called outside the lock, as it could send on this channel
+            if (pending != null)
+            {
+               pending.complete(packet);
+            }
          }
          else if (handler != null)
          {
@@ -633,6 +774,118 @@ public final class ChannelImpl implements Channel
       }
    }
 
+   private void waitForFailover()
+   {
+      if (failingOver)
+      {
+         try
+         {
+            if(connection.getBlockingCallFailoverTimeout() < 0)
+            {
+               while (failingOver)
+               {
+                  failoverCondition.await();
+               }
+            }
+            else
+            {
+               if (!failoverCondition.await(connection.getBlockingCallFailoverTimeout(), TimeUnit.MILLISECONDS))
+               {
+                  HornetQClientLogger.LOGGER.debug("timed-out waiting for failover condition");
+               }
+            }
+         }
+         catch (InterruptedException e)
+         {
+            throw new HornetQInterruptedException(e);
+         }
+      }
+   }
+
+   private void write(final Packet packet, final HornetQBuffer buffer, final boolean flush, final boolean batch)
+   {
+      if (writeQueue == null)
+      {
+         // Without confirmations the packets sent by different threads don't need to be ordered
+         connection.getTransportConnection().write(buffer, flush, batch);
+      }
+      else
+      {
+         writeQueue.add(new PendingWrite(packet, buffer, flush, batch));
+
+         drainWrites();
+      }
+   }
+
+   /**
+    * The thread getting hold of the writing flag writes the packets queued by all the threads, so the
+    * packets are written in the order of the resend cache without any lock. A thread finding the flag
+    * taken leaves its packet to the writing thread, which checks the queue again once it's released
+    * the flag.
+    */
+   private void drainWrites()
+   {
+      while (!writeQueue.isEmpty() && writing.compareAndSet(false, true))
+      {
+         try
+         {
+            PendingWrite write;
+
+            // While failing over the packets are kept queued, to be written after the cache is replayed
+            while (!failingOver && (write = writeQueue.poll()) != null)
+            {
+               if (write.packet.isRequiresConfirmations())
+               {
+                  resendCache.add(write.packet);
+               }
+
+               connection.getTransportConnection().write(write.buffer, write.flush, write.batch);
+            }
+         }
+         finally
+         {
+            writing.set(false);
+         }
+
+         if (failingOver)
+         {
+            return;
+         }
+      }
+   }
+
+   private void failPendingResponses(final HornetQException exception)
+   {
+      List<PendingResponse> failed;
+
+      lock.lock();
+
+      try
+      {
+         lateResponses = 0;
+
+         if (pendingResponses.isEmpty())
+         {
+            return;
+         }
+
+         failed = new ArrayList<PendingResponse>(pendingResponses);
+
+         pendingResponses.clear();
+
+         sendCondition.signal();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+
+      for (PendingResponse pending : failed)
+      {
+         pending.handler.handleException(exception);
+      }
+   }
+
    private void doWrite(final Packet packet)
    {
       final HornetQBuffer buffer = packet.encode(connection);
@@ -681,4 +934,52 @@ public final class ChannelImpl implements Channel
    {
       return "Channel[id=" + CHANNEL_ID.idToString(id) + ", handler=" + handler + "]";
    }
+
+   private static final class PendingWrite
+   {
+      final Packet packet;
+
+      final HornetQBuffer buffer;
+
+      final boolean flush;
+
+      final boolean batch;
+
+      PendingWrite(final Packet packet, final HornetQBuffer buffer, final boolean flush, final boolean batch)
+      {
+         this.packet = packet;
+         this.buffer = buffer;
+         this.flush = flush;
+         this.batch = batch;
+      }
+   }
+
+   private static final class PendingResponse
+   {
+      final byte expectedPacket;
+
+      final ResponseHandler handler;
+
+      PendingResponse(final byte expectedPacket, final ResponseHandler handler)
+      {
+         this.expectedPacket = expectedPacket;
+         this.handler = handler;
+      }
+
+      void complete(final Packet response)
+      {
+         if (response.getType() == PacketImpl.EXCEPTION)
+         {
+            HornetQException e = ((HornetQExceptionMessage)response).getException();
+
+            e.fillInStackTrace();
+
+            handler.handleException(e);
+         }
+         else
+         {
+            handler.handleResponse(response);
+         }
+      }
+   }
 }
@@ -215,6 +215,9 @@ public class PacketImpl implements Packet
    public static final byte REPLICATION_START_FINISH_SYNC = 120;
    public static final byte REPLICATION_SCHEDULED_FAILOVER = 121;
 
+   public static final byte REPLICATION_BATCH = 122;
+   public static final byte REPLICATION_BATCH_RESPONSE = 123;
+
    // Static --------------------------------------------------------
 
    public PacketImpl(final byte type)
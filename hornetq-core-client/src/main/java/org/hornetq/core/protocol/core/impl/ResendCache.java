@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl;
+
+import org.hornetq.core.protocol.core.Packet;
+
+/**
+ * The packets sent on a channel and not yet confirmed by the other side, kept on a ring buffer in
+ * the order they were written.
+ * <p>
+ * There's a single thread adding at a time, which doesn't take any lock, while the confirmations
+ * remove the packets from the head. The ring grows when full: the other side only confirms once it
+ * has received a window of bytes, which can be any number of packets.
+ */
+final class ResendCache
+{
+   private static final int INITIAL_CAPACITY = 64;
+
+   private volatile Packet[] packets = new Packet[INITIAL_CAPACITY];
+
+   // The command ID of the first packet, only moved by the confirmations
+   private volatile long head;
+
+   // The command ID of the next packet, only moved by the thread adding
+   private volatile long tail;
+
+   /**
+    * Must not be called by more than one thread concurrently
+    */
+   void add(final Packet packet)
+   {
+      long t = tail;
+
+      Packet[] current = packets;
+
+      if (t - head == current.length)
+      {
+         current = grow(current, t);
+      }
+
+      current[index(t, current)] = packet;
+
+      tail = t + 1;
+   }
+
+   /**
+    * @return the oldest packet, or null if empty
+    */
+   synchronized Packet poll()
+   {
+      long h = head;
+
+      if (h == tail)
+      {
+         return null;
+      }
+
+      Packet[] current = packets;
+
+      int index = index(h, current);
+
+      Packet packet = current[index];
+
+      current[index] = null;
+
+      // don't keep the packet on a ring grown meanwhile
+      Packet[] grown = packets;
+
+      if (grown != current)
+      {
+         grown[index(h, grown)] = null;
+      }
+
+      head = h + 1;
+
+      return packet;
+   }
+
+   synchronized void clear()
+   {
+      while (poll() != null)
+      {
+         // loop
+      }
+   }
+
+   /**
+    * @return the packets from the oldest, which must not be added to concurrently
+    */
+   synchronized Packet[] toArray()
+   {
+      Packet[] current = packets;
+
+      long h = head;
+
+      Packet[] result = new Packet[(int)(tail - h)];
+
+      for (int i = 0; i < result.length; i++)
+      {
+         result[i] = current[index(h + i, current)];
+      }
+
+      return result;
+   }
+
+   int size()
+   {
+      return (int)(tail - head);
+   }
+
+   int capacity()
+   {
+      return packets.length;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ResendCache(size=" + size() + ", capacity=" + capacity() + ")";
+   }
+
+   // Private -------------------------------------------------------
+
+   private Packet[] grow(final Packet[] current, final long t)
+   {
+      Packet[] grown = new Packet[current.length * 2];
+
+      for (long i = head; i < t; i++)
+      {
+         grown[index(i, grown)] = current[index(i, current)];
+      }
+
+      packets = grown;
+
+      return grown;
+   }
+
+   private static int index(final long commandID, final Packet[] ring)
+   {
+      return (int)commandID & (ring.length - 1);
+   }
+}
@@ -14,6 +14,7 @@
 package org.hornetq.core.protocol.core.impl.wireformat;
 
 import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.spi.core.protocol.RemotingConnection;
 import org.hornetq.utils.DataConstants;
@@ -61,30 +62,26 @@ public class SessionReceiveMessage extends MessagePacket
    @Override
    public HornetQBuffer encode(final RemotingConnection connection)
    {
-      HornetQBuffer buffer = message.getEncodedBuffer();
+      // The encoded message is shared by all the deliveries of the message (e.g. to every subscription
+      // of a topic), only the packet headers and the consumer fields are written for each one
+      HornetQBuffer body = message.getSharedEncodedBuffer();
 
-      // Sanity check
-      if (buffer.writerIndex() != message.getEndOfMessagePosition())
-      {
-         throw new IllegalStateException("Wrong encode position");
-      }
+      HornetQBuffer trailer = HornetQBuffers.fixedBuffer(DataConstants.SIZE_LONG + DataConstants.SIZE_INT);
 
-      buffer.writeLong(consumerID);
-      buffer.writeInt(deliveryCount);
+      trailer.writeLong(consumerID);
+      trailer.writeInt(deliveryCount);
 
-      size = buffer.writerIndex();
+      size = PACKET_HEADERS_SIZE + body.readableBytes() + trailer.readableBytes();
 
       // Write standard headers
 
-      int len = size - DataConstants.SIZE_INT;
-      buffer.setInt(0, len);
-      buffer.setByte(DataConstants.SIZE_INT, getType());
-      buffer.setLong(DataConstants.SIZE_INT + DataConstants.SIZE_BYTE, channelID);
+      HornetQBuffer headers = HornetQBuffers.fixedBuffer(PACKET_HEADERS_SIZE);
 
-      // Position reader for reading by Netty
-      buffer.setIndex(0, size);
+      headers.writeInt(size - DataConstants.SIZE_INT);
+      headers.writeByte(getType());
+      headers.writeLong(channelID);
 
-      return buffer;
+      return HornetQBuffers.wrappedBuffer(headers, body, trailer);
    }
 
    @Override
@@ -13,24 +13,32 @@
 
 package org.hornetq.core.remoting.impl.netty;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hornetq.api.core.HornetQBuffer;
-import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQInterruptedException;
 import org.hornetq.api.core.TransportConfiguration;
 import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
 import org.hornetq.core.security.HornetQPrincipal;
 import org.hornetq.core.client.HornetQClientLogger;
+import org.hornetq.core.remoting.impl.netty.PooledBufferAllocator.PooledBuffer;
 import org.hornetq.spi.core.remoting.Connection;
 import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
 import org.hornetq.spi.core.remoting.ReadyListener;
 import org.hornetq.utils.ConcurrentHashSet;
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.CompositeChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.handler.ssl.SslHandler;
 
 /**
@@ -44,6 +52,12 @@ public class NettyConnection implements Connection
    // Constants -----------------------------------------------------
    private static final int BATCHING_BUFFER_SIZE = 8192;
 
+   // Packets smaller than this are copied on a batch buffer, the others are written from their own
+   // buffers
+   private static final int BATCHING_COPY_THRESHOLD = 512;
+
+   private static final int MAX_POOLED_BATCH_BUFFERS = 4;
+
    // Attributes ----------------------------------------------------
 
    private final Channel channel;
@@ -56,7 +70,28 @@ public class NettyConnection implements Connection
 
    private final boolean directDeliver;
 
-   private volatile HornetQBuffer batchBuffer;
+   // null if the buffers are not pooled
+   private final PooledBufferAllocator bufferAllocator;
+
+   // The buffers of the current batch, written with one gathering write. Guarded by writeLock
+   private final List<ChannelBuffer> batch = new ArrayList<ChannelBuffer>();
+
+   // The batch buffers used by the current batch, given back to the pool once it's written. Guarded
+   // by writeLock
+   private final List<ChannelBuffer> batchBuffers = new ArrayList<ChannelBuffer>();
+
+   // The batch buffer the small packets are copied on. Guarded by writeLock
+   private ChannelBuffer batchBuffer;
+
+   // The pooled packet buffers the current batch is written from, released once it's written.
+   // Guarded by writeLock
+   private final List<PooledBuffer> batchPackets = new ArrayList<PooledBuffer>();
+
+   private int batchSize;
+
+   private final Queue<ChannelBuffer> batchBufferPool = new ConcurrentLinkedQueue<ChannelBuffer>();
+
+   private final AtomicInteger batchBufferPoolSize = new AtomicInteger(0);
 
    private final Map<String, Object> configuration;
 
@@ -73,6 +108,20 @@ public class NettyConnection implements Connection
                            final ConnectionLifeCycleListener listener,
                            boolean batchingEnabled,
                            boolean directDeliver)
+   {
+      this(configuration, channel, listener, batchingEnabled, directDeliver, null);
+   }
+
+   /**
+    * @param bufferAllocator the pool the packets are encoded on, null to allocate a heap buffer for
+    *           each one
+    */
+   public NettyConnection(final Map<String, Object> configuration,
+                           final Channel channel,
+                           final ConnectionLifeCycleListener listener,
+                           boolean batchingEnabled,
+                           boolean directDeliver,
+                           final PooledBufferAllocator bufferAllocator)
    {
       this.configuration = configuration;
 
@@ -83,6 +132,8 @@ public class NettyConnection implements Connection
       this.batchingEnabled = batchingEnabled;
 
       this.directDeliver = directDeliver;
+
+      this.bufferAllocator = bufferAllocator;
    }
 
    // Public --------------------------------------------------------
@@ -128,6 +179,11 @@ public class NettyConnection implements Connection
 
    public HornetQBuffer createBuffer(final int size)
    {
+      if (bufferAllocator != null)
+      {
+         return bufferAllocator.allocate(size);
+      }
+
       return new ChannelBufferWrapper(ChannelBuffers.dynamicBuffer(size));
    }
 
@@ -148,11 +204,9 @@ public class NettyConnection implements Connection
       {
          try
          {
-            if (batchBuffer != null && batchBuffer.readable())
+            if (batchSize > 0)
             {
-               channel.write(batchBuffer.channelBuffer());
-
-               batchBuffer = HornetQBuffers.dynamicBuffer(BATCHING_BUFFER_SIZE);
+               writeBatch();
             }
          }
          finally
@@ -176,41 +230,30 @@ public class NettyConnection implements Connection
 
          try
          {
-            if (batchBuffer == null && batchingEnabled && batched && !flush)
-            {
-               // Lazily create batch buffer
-
-               batchBuffer = HornetQBuffers.dynamicBuffer(BATCHING_BUFFER_SIZE);
-            }
+            ChannelFuture future;
 
-            if (batchBuffer != null)
+            if (batchSize > 0 || batchingEnabled && batched && !flush)
             {
-               batchBuffer.writeBytes(buffer, 0, buffer.writerIndex());
+               addToBatch(buffer);
 
-               if (batchBuffer.writerIndex() >= BATCHING_BUFFER_SIZE || !batched || flush)
-               {
-                  // If the batch buffer is full or it's flush param or not batched then flush the buffer
-
-                  buffer = batchBuffer;
-               }
-               else
+               if (batchSize < BATCHING_BUFFER_SIZE && batched && !flush)
                {
                   return;
                }
 
-               if (!batched || flush)
-               {
-                  batchBuffer = null;
-               }
-               else
-               {
-                  // Create a new buffer
+               // If the batch is full or it's flush param or not batched then write the batch
 
-                  batchBuffer = HornetQBuffers.dynamicBuffer(BATCHING_BUFFER_SIZE);
-               }
+               future = writeBatch();
             }
+            else
+            {
+               future = channel.write(buffer.channelBuffer());
 
-            ChannelFuture future = channel.write(buffer.channelBuffer());
+               if (buffer instanceof PooledBuffer)
+               {
+                  future.addListener((PooledBuffer)buffer);
+               }
+            }
 
             if (flush)
             {
@@ -308,6 +351,144 @@ public class NettyConnection implements Connection
 
    // Private -------------------------------------------------------
 
+   /**
+    * Must be called holding the writeLock
+    */
+   private void addToBatch(final HornetQBuffer buffer)
+   {
+      ChannelBuffer packet = buffer.channelBuffer();
+
+      int size = packet.writerIndex();
+
+      if (size < BATCHING_COPY_THRESHOLD)
+      {
+         if (batchBuffer == null || batchBuffer.writableBytes() < size)
+         {
+            closeBatchBuffer();
+
+            batchBuffer = borrowBatchBuffer();
+         }
+
+         batchBuffer.writeBytes(packet, 0, size);
+
+         if (buffer instanceof PooledBuffer)
+         {
+            ((PooledBuffer)buffer).release();
+         }
+      }
+      else
+      {
+         closeBatchBuffer();
+
+         if (packet instanceof CompositeChannelBuffer)
+         {
+            // e.g. a delivery sharing the message's encoding, its parts are written as they are
+            batch.addAll(((CompositeChannelBuffer)packet).decompose(0, size));
+         }
+         else
+         {
+            batch.add(packet.slice(0, size));
+         }
+
+         if (buffer instanceof PooledBuffer)
+         {
+            batchPackets.add((PooledBuffer)buffer);
+         }
+      }
+
+      batchSize += size;
+   }
+
+   /**
+    * Must be called holding the writeLock
+    */
+   private void closeBatchBuffer()
+   {
+      if (batchBuffer != null)
+      {
+         batch.add(batchBuffer);
+         batchBuffers.add(batchBuffer);
+         batchBuffer = null;
+      }
+   }
+
+   /**
+    * Must be called holding the writeLock
+    */
+   private ChannelFuture writeBatch()
+   {
+      closeBatchBuffer();
+
+      ChannelFuture future;
+
+      if (batch.size() == 1)
+      {
+         future = channel.write(batch.get(0));
+      }
+      else
+      {
+         future = channel.write(ChannelBuffers.wrappedBuffer(true, batch.toArray(new ChannelBuffer[batch.size()])));
+      }
+
+      if (!batchBuffers.isEmpty() || !batchPackets.isEmpty())
+      {
+         final ChannelBuffer[] written = batchBuffers.toArray(new ChannelBuffer[batchBuffers.size()]);
+
+         final PooledBuffer[] writtenPackets = batchPackets.toArray(new PooledBuffer[batchPackets.size()]);
+
+         // Netty is done with the buffers once the write is complete, either way
+         future.addListener(new ChannelFutureListener()
+         {
+            public void operationComplete(final ChannelFuture future) throws Exception
+            {
+               for (ChannelBuffer buffer : written)
+               {
+                  releaseBatchBuffer(buffer);
+               }
+
+               for (PooledBuffer packet : writtenPackets)
+               {
+                  packet.release();
+               }
+            }
+         });
+      }
+
+      batch.clear();
+      batchBuffers.clear();
+      batchPackets.clear();
+      batchSize = 0;
+
+      return future;
+   }
+
+   private ChannelBuffer borrowBatchBuffer()
+   {
+      ChannelBuffer buffer = batchBufferPool.poll();
+
+      if (buffer == null)
+      {
+         return ChannelBuffers.buffer(BATCHING_BUFFER_SIZE);
+      }
+
+      batchBufferPoolSize.decrementAndGet();
+
+      return buffer;
+   }
+
+   private void releaseBatchBuffer(final ChannelBuffer buffer)
+   {
+      if (batchBufferPoolSize.incrementAndGet() <= MAX_POOLED_BATCH_BUFFERS)
+      {
+         buffer.clear();
+         batchBufferPool.offer(buffer);
+      }
+      else
+      {
+         batchBufferPoolSize.decrementAndGet();
+      }
+   }
+
    // Inner classes -------------------------------------------------
 
 }
@@ -152,6 +152,9 @@ public class NettyConnector extends AbstractConnector
 
    private final long batchDelay;
 
+   // null if the buffers are not pooled
+   private final PooledBufferAllocator bufferAllocator;
+
    private final ConcurrentMap<Object, Connection> connections = new ConcurrentHashMap<Object, Connection>();
 
    private final String servletPath;
@@ -308,6 +311,13 @@ public class NettyConnector extends AbstractConnector
          TransportConstants.DEFAULT_BATCH_DELAY,
          configuration);
 
+      int pooledBuffers = ConfigurationHelper.getIntProperty(TransportConstants.POOLED_BUFFERS,
+         TransportConstants.DEFAULT_POOLED_BUFFERS,
+         configuration);
+
+      // HTTP channels may still hold the buffers once their writes are complete
+      bufferAllocator = pooledBuffers > 0 && !httpEnabled && !useServlet ? new PooledBufferAllocator(pooledBuffers) : null;
+
       connectTimeoutMillis = ConfigurationHelper.getIntProperty(TransportConstants.NETTY_CONNECT_TIMEOUT,
          TransportConstants.DEFAULT_NETTY_CONNECT_TIMEOUT,
          configuration);
@@ -661,7 +671,7 @@ public class NettyConnector extends AbstractConnector
 
          // No acceptor on a client connection
          Listener connectionListener = new Listener();
-         NettyConnection conn = new NettyConnection(configuration, ch, connectionListener, !httpEnabled && batchDelay > 0, false);
+         NettyConnection conn = new NettyConnection(configuration, ch, connectionListener, !httpEnabled && batchDelay > 0, false, bufferAllocator);
          connectionListener.connectionCreated(null, conn, ProtocolType.CORE);
 
          return conn;
@@ -982,5 +992,14 @@ public class NettyConnector extends AbstractConnector
       return bootstrap;
    }
 
+   /**
+    * @return the pool the packets of the connections are encoded on, with its hit and miss counts,
+    *         or null if the buffers are not pooled
+    */
+   public PooledBufferAllocator getBufferAllocator()
+   {
+      return bufferAllocator;
+   }
+
 }
 
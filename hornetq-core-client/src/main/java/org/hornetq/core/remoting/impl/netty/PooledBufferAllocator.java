@@ -0,0 +1,206 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.remoting.impl.netty;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.core.buffers.impl.ChannelBufferWrapper;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+
+/**
+ * A pool of the direct buffers the packets are encoded on, shared by the connections of an acceptor
+ * or a connector.
+ * <p>
+ * The buffers are handed out as {@link PooledBuffer}s, which go back to the pool once released by
+ * their last holder: the {@link NettyConnection} releases the buffers it's given to write once Netty
+ * is done writing them. A buffer which is never released is simply left to the GC.
+ */
+public final class PooledBufferAllocator
+{
+   // Buffers grown bigger than this (e.g. for big messages) are not kept on the pool
+   public static final int MAX_POOLED_CAPACITY = 64 * 1024;
+
+   private final Queue<ChannelBuffer> pool = new ConcurrentLinkedQueue<ChannelBuffer>();
+
+   private final AtomicInteger poolSize = new AtomicInteger(0);
+
+   private final int maxPooledBuffers;
+
+   private final AtomicLong hits = new AtomicLong(0);
+
+   private final AtomicLong misses = new AtomicLong(0);
+
+   /**
+    * @param maxPooledBuffers the maximum number of buffers kept on the pool
+    */
+   public PooledBufferAllocator(final int maxPooledBuffers)
+   {
+      this.maxPooledBuffers = maxPooledBuffers;
+   }
+
+   /**
+    * @param size the initial capacity of the buffer, which grows as it's written
+    * @return a buffer with a reference count of 1
+    */
+   public PooledBuffer allocate(final int size)
+   {
+      ChannelBuffer buffer = pool.poll();
+
+      if (buffer == null)
+      {
+         misses.incrementAndGet();
+
+         buffer = ChannelBuffers.dynamicBuffer(size, DirectChannelBufferFactory.getInstance());
+      }
+      else
+      {
+         poolSize.decrementAndGet();
+
+         hits.incrementAndGet();
+      }
+
+      return new PooledBuffer(this, buffer);
+   }
+
+   /**
+    * @return the number of buffers taken from the pool
+    */
+   public long getHits()
+   {
+      return hits.get();
+   }
+
+   /**
+    * @return the number of buffers allocated as the pool was empty
+    */
+   public long getMisses()
+   {
+      return misses.get();
+   }
+
+   /**
+    * @return the number of buffers on the pool
+    */
+   public int getPoolSize()
+   {
+      return poolSize.get();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PooledBufferAllocator(poolSize=" + poolSize + ", hits=" + hits + ", misses=" + misses + ")";
+   }
+
+   // Private -------------------------------------------------------
+
+   private void recycle(final ChannelBuffer buffer)
+   {
+      if (buffer.capacity() > MAX_POOLED_CAPACITY)
+      {
+         return;
+      }
+
+      if (poolSize.incrementAndGet() <= maxPooledBuffers)
+      {
+         buffer.clear();
+         pool.offer(buffer);
+      }
+      else
+      {
+         poolSize.decrementAndGet();
+      }
+   }
+
+   // Inner classes -------------------------------------------------
+
+   /**
+    * A reference counted buffer of the pool. It must not be used once released by its last holder.
+    * <p>
+    * As a {@link ChannelFutureListener} it releases itself once the write it's added to completes.
+    */
+   public static final class PooledBuffer extends ChannelBufferWrapper implements ChannelFutureListener
+   {
+      private static final AtomicIntegerFieldUpdater<PooledBuffer> REF_COUNT_UPDATER =
+         AtomicIntegerFieldUpdater.newUpdater(PooledBuffer.class, "refCount");
+
+      private final PooledBufferAllocator allocator;
+
+      private volatile int refCount = 1;
+
+      PooledBuffer(final PooledBufferAllocator allocator, final ChannelBuffer buffer)
+      {
+         super(buffer);
+
+         this.allocator = allocator;
+      }
+
+      public void retain()
+      {
+         while (true)
+         {
+            int count = refCount;
+
+            if (count <= 0)
+            {
+               throw new IllegalStateException("Buffer already released");
+            }
+
+            if (REF_COUNT_UPDATER.compareAndSet(this, count, count + 1))
+            {
+               return;
+            }
+         }
+      }
+
+      /**
+       * @return true if this was the last reference, and the buffer went back to the pool
+       */
+      public boolean release()
+      {
+         int count = REF_COUNT_UPDATER.decrementAndGet(this);
+
+         if (count == 0)
+         {
+            allocator.recycle(buffer);
+
+            return true;
+         }
+         else if (count < 0)
+         {
+            throw new IllegalStateException("Buffer already released");
+         }
+
+         return false;
+      }
+
+      public int refCount()
+      {
+         return refCount;
+      }
+
+      public void operationComplete(final ChannelFuture future) throws Exception
+      {
+         release();
+      }
+   }
+}
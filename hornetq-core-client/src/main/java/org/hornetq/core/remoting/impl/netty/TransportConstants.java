@@ -94,6 +94,8 @@ public class TransportConstants
 
    public static final String DIRECT_DELIVER = "direct-deliver";
 
+   public static final String POOLED_BUFFERS = "pooled-buffers";
+
    public static final String CLUSTER_CONNECTION = "cluster-connection";
 
    public static final String STOMP_CONSUMERS_CREDIT = "stomp-consumer-credits";
@@ -159,6 +161,8 @@ public class TransportConstants
 
    public static final boolean DEFAULT_DIRECT_DELIVER = true;
 
+   public static final int DEFAULT_POOLED_BUFFERS = 256;
+
    public static final Set<String> ALLOWABLE_CONNECTOR_KEYS;
 
    public static final Set<String> ALLOWABLE_ACCEPTOR_KEYS;
@@ -196,6 +200,7 @@ public class TransportConstants
       allowableAcceptorKeys.add(TransportConstants.NIO_REMOTING_THREADS_PROPNAME);
       allowableAcceptorKeys.add(TransportConstants.BATCH_DELAY);
       allowableAcceptorKeys.add(TransportConstants.DIRECT_DELIVER);
+      allowableAcceptorKeys.add(TransportConstants.POOLED_BUFFERS);
       allowableAcceptorKeys.add(TransportConstants.CLUSTER_CONNECTION);
       allowableAcceptorKeys.add(TransportConstants.STOMP_CONSUMERS_CREDIT);
       allowableAcceptorKeys.add(TransportConstants.STOMP_MIN_LARGE_MESSAGE_SIZE);
@@ -229,6 +234,7 @@ public class TransportConstants
       allowableConnectorKeys.add(TransportConstants.TCP_RECEIVEBUFFER_SIZE_PROPNAME);
       allowableConnectorKeys.add(TransportConstants.NIO_REMOTING_THREADS_PROPNAME);
       allowableConnectorKeys.add(TransportConstants.BATCH_DELAY);
+      allowableConnectorKeys.add(TransportConstants.POOLED_BUFFERS);
       allowableConnectorKeys.add(HornetQDefaultConfiguration.getPropMaskPassword());
       allowableConnectorKeys.add(HornetQDefaultConfiguration.getPropPasswordCodec());
       allowableConnectorKeys.add(TransportConstants.NETTY_CONNECT_TIMEOUT);
@@ -28,8 +28,17 @@ public interface LinkedList<E>
 
    E poll();
 
+   /**
+    * @return the element at the tail, or {@code null} if the list is empty
+    */
+   E peekLast();
+
    LinkedListIterator<E> iterator();
 
+   E removeWithID(long id);
+
+   E getWithID(long id);
+
    void clear();
 
    int size();
@@ -14,6 +14,8 @@
 package org.hornetq.utils;
 
 import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 
@@ -44,14 +46,34 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
    private int nextIndex;
 
+   private final IDSupplier<E> idSupplier;
+
+   // Only created when the list is indexed, otherwise elements are looked up by walking the list
+   private final Map<Long, Node<E>> nodesByID;
+
    public LinkedListImpl()
+   {
+      this(null, false);
+   }
+
+   /**
+    * @param idSupplier used by {@link #removeWithID(long)} and {@link #getWithID(long)}
+    * @param indexed if true every node is kept on a map by its id, so lookups don't need to walk
+    *           the list
+    */
+   public LinkedListImpl(final IDSupplier<E> idSupplier, final boolean indexed)
    {
       iters = createIteratorArray(INITIAL_ITERATOR_ARRAY_SIZE);
+
+      this.idSupplier = idSupplier;
+
+      // the index needs the ids of the elements
+      nodesByID = indexed && idSupplier != null ? new HashMap<Long, Node<E>>() : null;
    }
 
    public void addHead(E e)
    {
-      Node<E> node = new Node<E>(e);
+      Node<E> node = newNode(e);
 
       node.next = head.next;
 
@@ -80,7 +102,7 @@ public class LinkedListImpl<E> implements LinkedList<E>
       }
       else
       {
-         Node<E> node = new Node<E>(e);
+         Node<E> node = newNode(e);
 
          node.prev = tail;
 
@@ -108,11 +130,42 @@ public class LinkedListImpl<E> implements LinkedList<E>
       }
    }
 
+   public E peekLast()
+   {
+      return tail == null ? null : tail.val;
+   }
+
+   public E removeWithID(final long id)
+   {
+      Node<E> node = findNode(id);
+
+      if (node == null)
+      {
+         return null;
+      }
+
+      removeAfter(node.prev);
+
+      return node.val;
+   }
+
+   public E getWithID(final long id)
+   {
+      Node<E> node = findNode(id);
+
+      return node == null ? null : node.val;
+   }
+
    public void clear()
    {
       tail = head.next = null;
 
       size = 0;
+
+      if (nodesByID != null)
+      {
+         nodesByID.clear();
+      }
    }
 
    public int size()
@@ -151,6 +204,41 @@ public class LinkedListImpl<E> implements LinkedList<E>
       return numIters;
    }
 
+   private Node<E> newNode(final E e)
+   {
+      Node<E> node = new Node<E>(e);
+
+      if (nodesByID != null)
+      {
+         nodesByID.put(idSupplier.getID(e), node);
+      }
+
+      return node;
+   }
+
+   private Node<E> findNode(final long id)
+   {
+      if (idSupplier == null)
+      {
+         throw new UnsupportedOperationException("The list was created without an IDSupplier");
+      }
+
+      if (nodesByID != null)
+      {
+         return nodesByID.get(id);
+      }
+
+      for (Node<E> node = head.next; node != null; node = node.next)
+      {
+         if (idSupplier.getID(node.val) == id)
+         {
+            return node;
+         }
+      }
+
+      return null;
+   }
+
    private Iterator[] createIteratorArray(int size)
    {
       return (Iterator[])Array.newInstance(Iterator.class, size);
@@ -174,6 +262,17 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
       size--;
 
+      if (nodesByID != null)
+      {
+         Long id = idSupplier.getID(toRemove.val);
+
+         // The same id may have been added again after this node
+         if (nodesByID.get(id) == toRemove)
+         {
+            nodesByID.remove(id);
+         }
+      }
+
       if (toRemove.iterCount != 0)
       {
          LinkedListImpl.this.nudgeIterators(toRemove);
@@ -30,11 +30,30 @@ public interface PriorityLinkedList<T>
 
    T poll();
 
+   /**
+    * @return the last element the iterator would return, at the tail of the lowest priority with
+    *         elements, or {@code null} if the list is empty
+    */
+   T peekLast();
+
    void clear();
 
    int size();
 
    LinkedListIterator<T> iterator();
 
+   /**
+    * Removes the element with the given id, looking at the highest priorities first.
+    * @return the removed element, or {@code null} if there is none with this id
+    * @throws UnsupportedOperationException if the list was created without an {@link IDSupplier}
+    */
+   T removeWithID(long id);
+
+   /**
+    * @return the element with the given id, or {@code null} if there is none
+    * @throws UnsupportedOperationException if the list was created without an {@link IDSupplier}
+    */
+   T getWithID(long id);
+
    boolean isEmpty();
 }
@@ -39,12 +39,22 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
    private int lastPriority = -1;
 
    public PriorityLinkedListImpl(final int priorities)
+   {
+      this(priorities, null, false);
+   }
+
+   /**
+    * @param idSupplier used by {@link #removeWithID(long)} and {@link #getWithID(long)}
+    * @param indexed if true elements are kept on a map by their ids, so looking them up doesn't
+    *           need to walk the list
+    */
+   public PriorityLinkedListImpl(final int priorities, final IDSupplier<T> idSupplier, final boolean indexed)
    {
       levels = (LinkedListImpl<T>[])Array.newInstance(LinkedListImpl.class, priorities);
 
       for (int i = 0; i < priorities; i++)
       {
-         levels[i] = new LinkedListImpl<T>();
+         levels[i] = new LinkedListImpl<T>(idSupplier, indexed);
       }
    }
 
@@ -125,6 +135,58 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
       return t;
    }
 
+   public T removeWithID(final long id)
+   {
+      for (int i = levels.length - 1; i >= 0; i--)
+      {
+         LinkedListImpl<T> ll = levels[i];
+
+         T t = ll.removeWithID(id);
+
+         if (t != null)
+         {
+            size--;
+
+            if (ll.size() == 0 && highestPriority == i)
+            {
+               highestPriority--;
+            }
+
+            return t;
+         }
+      }
+
+      return null;
+   }
+
+   public T peekLast()
+   {
+      for (LinkedListImpl<T> ll : levels)
+      {
+         if (ll.size() > 0)
+         {
+            return ll.peekLast();
+         }
+      }
+
+      return null;
+   }
+
+   public T getWithID(final long id)
+   {
+      for (int i = levels.length - 1; i >= 0; i--)
+      {
+         T t = levels[i].getWithID(id);
+
+         if (t != null)
+         {
+            return t;
+         }
+      }
+
+      return null;
+   }
+
    public void clear()
    {
       for (LinkedListImpl<T> list : levels)
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core.impl;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.tests.CoreUnitTestCase;
+import org.junit.Test;
+
+public class ResendCacheTest extends CoreUnitTestCase
+{
+   @Test
+   public void testAddPoll() throws Exception
+   {
+      ResendCache cache = new ResendCache();
+
+      Packet[] packets = createPackets(1000);
+
+      for (int i = 0; i < 10; i++)
+      {
+         cache.add(packets[i]);
+      }
+
+      for (int i = 0; i < 5; i++)
+      {
+         assertSame(packets[i], cache.poll());
+      }
+
+      // wraps around and grows, keeping the order
+      for (int i = 10; i < packets.length; i++)
+      {
+         cache.add(packets[i]);
+      }
+
+      assertEquals(packets.length - 5, cache.size());
+      assertTrue(cache.capacity() >= cache.size());
+
+      Packet[] replayed = cache.toArray();
+
+      assertEquals(cache.size(), replayed.length);
+
+      for (int i = 0; i < replayed.length; i++)
+      {
+         assertSame(packets[i + 5], replayed[i]);
+      }
+
+      for (int i = 5; i < packets.length; i++)
+      {
+         assertSame(packets[i], cache.poll());
+      }
+
+      assertNull(cache.poll());
+      assertEquals(0, cache.size());
+   }
+
+   @Test
+   public void testClear() throws Exception
+   {
+      ResendCache cache = new ResendCache();
+
+      for (Packet packet : createPackets(100))
+      {
+         cache.add(packet);
+      }
+
+      cache.clear();
+
+      assertEquals(0, cache.size());
+      assertNull(cache.poll());
+      assertEquals(0, cache.toArray().length);
+   }
+
+   @Test
+   public void testConcurrentPoll() throws Exception
+   {
+      final ResendCache cache = new ResendCache();
+
+      final Packet[] packets = createPackets(100000);
+
+      final AtomicReference<String> error = new AtomicReference<String>();
+
+      Thread confirmer = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            int polled = 0;
+
+            while (polled < packets.length)
+            {
+               Packet packet = cache.poll();
+
+               if (packet != null)
+               {
+                  if (packet != packets[polled])
+                  {
+                     error.set("packet " + polled + " out of order");
+                     return;
+                  }
+
+                  polled++;
+               }
+            }
+         }
+      };
+
+      confirmer.start();
+
+      for (Packet packet : packets)
+      {
+         cache.add(packet);
+      }
+
+      confirmer.join(60000);
+
+      assertFalse(confirmer.isAlive());
+      assertNull(error.get(), error.get());
+      assertEquals(0, cache.size());
+   }
+
+   private static Packet[] createPackets(final int count)
+   {
+      Packet[] packets = new Packet[count];
+
+      for (int i = 0; i < count; i++)
+      {
+         packets[i] = new PacketImpl(PacketImpl.NULL_RESPONSE);
+      }
+
+      return packets;
+   }
+}
@@ -65,6 +65,28 @@ public interface SequentialFile
 
    void write(EncodingSupport bytes, boolean sync) throws Exception;
 
+   /**
+    * Reserves the space for {@code size} bytes on the file's write buffer, placing the callback on
+    * the order of the reservation. The bytes are supplied later through
+    * {@link #writeReserved(int, EncodingSupport)}, which doesn't need to hold any lock.
+    * @return the position of the reservation, or -1 if the file doesn't write through a buffer (use
+    *         {@link #write(EncodingSupport, boolean, IOAsyncTask)} on that case)
+    */
+   int reserve(int size, boolean sync, IOAsyncTask callback);
+
+   /**
+    * Like {@link #reserve(int, boolean, IOAsyncTask)}, but without any lock, which is only possible
+    * while the file's buffer is taking the writes for this file and has room for the record.
+    * {@link #fits(int)} doesn't need to be called first.
+    * @return the position of the reservation, or -1 if nothing was reserved
+    */
+   int tryReserve(int size, boolean sync, IOAsyncTask callback);
+
+   /**
+    * Writes the bytes on the space claimed by {@link #reserve(int, boolean, IOAsyncTask)}.
+    */
+   void writeReserved(int position, EncodingSupport bytes);
+
    /**
     * Write directly to the file without using any buffer
     * @param bytes the ByteBuffer must be compatible with the SequentialFile implementation (AIO or
@@ -16,6 +16,8 @@ package org.hornetq.core.journal;
 import java.nio.ByteBuffer;
 import java.util.List;
 
+import org.hornetq.core.journal.impl.TimedBuffer;
+
 /**
  *
  * A SequentialFileFactory
@@ -86,4 +88,10 @@ public interface SequentialFileFactory
    void createDirs() throws Exception;
 
    void flush();
+
+   /**
+    * @return the buffer batching the writes on the files of this factory, or null if they are not
+    *         buffered
+    */
+   TimedBuffer getTimedBuffer();
 }
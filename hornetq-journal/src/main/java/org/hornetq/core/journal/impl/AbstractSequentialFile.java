@@ -287,6 +287,40 @@ public abstract class AbstractSequentialFile implements SequentialFile
       }
    }
 
+   public int reserve(final int size, final boolean sync, final IOAsyncTask callback)
+   {
+      if (timedBuffer == null)
+      {
+         return -1;
+      }
+      else
+      {
+         return timedBuffer.reserve(size, sync, callback);
+      }
+   }
+
+   public int tryReserve(final int size, final boolean sync, final IOAsyncTask callback)
+   {
+      if (timedBuffer == null)
+      {
+         return -1;
+      }
+      else
+      {
+         return timedBuffer.tryReserve(timedBufferObserver, size, sync, callback);
+      }
+   }
+
+   public void writeReserved(final int position, final EncodingSupport bytes)
+   {
+      if (timedBuffer == null)
+      {
+         throw new IllegalStateException("There is no buffer on " + getFileName());
+      }
+
+      timedBuffer.writeReserved(position, bytes);
+   }
+
    public void write(final EncodingSupport bytes, final boolean sync) throws InterruptedException, HornetQException
    {
       if (sync)
@@ -138,7 +138,7 @@ public class ImportJournal
 
       long lineNumber = 0;
 
-      Map<Long, JournalRecord> journalRecords = journal.getRecords();
+      JournalRecordIndex journalRecords = journal.getRecords();
 
       while ((line = buffReader.readLine()) != null)
       {
@@ -196,7 +196,7 @@ public class ImportJournal
                long id = ImportJournal.parseLong("id", lineProperties);
 
                // If not found it means the append/update records were reclaimed already
-               if (journalRecords.get(id) != null)
+               if (journalRecords.containsRecord(id))
                {
                   journal.appendDeleteRecord(id, false);
                }
@@ -209,7 +209,7 @@ public class ImportJournal
                counter.incrementAndGet();
 
                // If not found it means the append/update records were reclaimed already
-               if (journalRecords.get(id) != null)
+               if (journalRecords.containsRecord(id))
                {
                   journal.appendDeleteRecordTransactional(txID, id);
                }
@@ -18,7 +18,6 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.hornetq.api.core.HornetQBuffer;
@@ -54,7 +53,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    // Snapshot of transactions that were pending when the compactor started
    private final Map<Long, PendingTransaction> pendingTransactions = new ConcurrentHashMap<Long, PendingTransaction>();
 
-   private final Map<Long, JournalRecord> newRecords = new HashMap<Long, JournalRecord>();
+   private final JournalRecordIndex newRecords;
 
    private final Map<Long, JournalTransaction> newTransactions = new HashMap<Long, JournalTransaction>();
 
@@ -130,7 +129,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       return newDataFiles;
    }
 
-   public Map<Long, JournalRecord> getNewRecords()
+   public JournalRecordIndex getNewRecords()
    {
       return newRecords;
    }
@@ -143,10 +142,11 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    public JournalCompactor(final SequentialFileFactory fileFactory,
                            final JournalImpl journal,
                            final JournalFilesRepository filesRepository,
-                           final Set<Long> recordsSnapshot,
+                           final long[] recordsSnapshot,
                            final long firstFileID)
    {
       super(fileFactory, journal, filesRepository, recordsSnapshot, firstFileID);
+      newRecords = journal.createRecordIndex();
    }
 
    /** This methods informs the Compactor about the existence of a pending (non committed) transaction */
@@ -308,7 +308,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
 
          writeEncoder(addRecord);
 
-         newRecords.put(info.id, new JournalRecord(currentFile, addRecord.getEncodeSize()));
+         newRecords.addRecord(info.id, currentFile, addRecord.getEncodeSize());
       }
    }
 
@@ -361,7 +361,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
 
    public void onReadDeleteRecord(final long recordID) throws Exception
    {
-      if (newRecords.get(recordID) != null)
+      if (newRecords.containsRecord(recordID))
       {
          // Sanity check, it should never happen
          HornetQJournalLogger.LOGGER.inconsistencyDuringCompactingDelete(recordID);
@@ -451,16 +451,10 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
 
          checkSize(updateRecord.getEncodeSize(), info.compactCount);
 
-         JournalRecord newRecord = newRecords.get(info.id);
-
-         if (newRecord == null)
+         if (!newRecords.updateRecord(info.id, currentFile, updateRecord.getEncodeSize()))
          {
             HornetQJournalLogger.LOGGER.compactingWithNoAddRecord(info.id);
          }
-         else
-         {
-            newRecord.addUpdateFile(currentFile, updateRecord.getEncodeSize());
-         }
 
          writeEncoder(updateRecord);
       }
@@ -527,15 +521,10 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       @Override
       void execute() throws Exception
       {
-         JournalRecord deleteRecord = journal.getRecords().remove(id);
-         if (deleteRecord == null)
+         if (!journal.getRecords().deleteRecord(id, usedFile))
          {
             HornetQJournalLogger.LOGGER.noRecordDuringCompactReplay(id);
          }
-         else
-         {
-            deleteRecord.delete(usedFile);
-         }
       }
    }
 
@@ -568,8 +557,10 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       @Override
       void execute() throws Exception
       {
-         JournalRecord updateRecord = journal.getRecords().get(id);
-         updateRecord.addUpdateFile(usedFile, size);
+         if (!journal.getRecords().updateRecord(id, usedFile, size))
+         {
+            HornetQJournalLogger.LOGGER.noRecordDuringCompactReplay(id);
+         }
       }
    }
 
@@ -632,7 +623,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    }
 
    @Override
-   public Map<Long, JournalRecord> getRecords()
+   public JournalRecordIndex getRecords()
    {
       return newRecords;
    }
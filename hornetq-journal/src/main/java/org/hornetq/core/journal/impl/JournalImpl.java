@@ -179,8 +179,13 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    private final JournalFilesRepository filesRepository;
 
+   private final boolean packedRecordIndex;
+
+   // If true records are encoded outside of lockAppend, on space reserved on the file buffer
+   private volatile boolean parallelAppend;
+
    // Compacting may replace this structure
-   private final ConcurrentMap<Long, JournalRecord> records = new ConcurrentHashMap<Long, JournalRecord>();
+   private final JournalRecordIndex records;
 
    // Compacting may replace this structure
    private final ConcurrentMap<Long, JournalTransaction> transactions = new ConcurrentHashMap<Long, JournalTransaction>();
@@ -231,6 +236,27 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       this(fileSize, minFiles, compactMinFiles, compactPercentage, fileFactory, filePrefix, fileExtension, maxAIO, 0);
    }
 
+   public JournalImpl(final int fileSize,
+                      final int minFiles,
+                      final int compactMinFiles,
+                      final int compactPercentage,
+                      final SequentialFileFactory fileFactory,
+                      final String filePrefix,
+                      final String fileExtension,
+                      final int maxAIO, final int userVersion)
+   {
+      this(fileSize,
+           minFiles,
+           compactMinFiles,
+           compactPercentage,
+           fileFactory,
+           filePrefix,
+           fileExtension,
+           maxAIO,
+           userVersion,
+           false);
+   }
+
 
       public JournalImpl(final int fileSize,
                       final int minFiles,
@@ -239,7 +265,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                       final SequentialFileFactory fileFactory,
                       final String filePrefix,
                       final String fileExtension,
-                      final int maxAIO, final int userVersion)
+                      final int maxAIO, final int userVersion,
+                      final boolean packedRecordIndex)
    {
       super(fileFactory.isSupportsCallbacks(), fileSize);
       if (fileSize % fileFactory.getAlignment() != 0)
@@ -280,6 +307,10 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                                                    minFiles);
 
       this.userVersion = userVersion;
+
+      this.packedRecordIndex = packedRecordIndex;
+
+      records = createRecordIndex();
    }
 
    @Override
@@ -349,11 +380,27 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       latch.await();
    }
 
-   public Map<Long, JournalRecord> getRecords()
+   public JournalRecordIndex getRecords()
    {
       return records;
    }
 
+   /**
+    * Creates an empty index of the type used by this journal. The compactor will use it to
+    * calculate the records after compacting.
+    */
+   JournalRecordIndex createRecordIndex()
+   {
+      if (packedRecordIndex)
+      {
+         return new PackedJournalRecordIndex();
+      }
+      else
+      {
+         return new MapJournalRecordIndex();
+      }
+   }
+
    public JournalFile getCurrentFile()
    {
       return currentFile;
@@ -790,10 +837,20 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
+         JournalFile usedFile = tryReserveRecord(addRecord, sync, callback);
+
+         final boolean locked = usedFile == null;
+
+         if (locked)
+         {
+            lockAppend.lock();
+         }
          try
          {
-            JournalFile usedFile = appendRecord(addRecord, false, sync, null, callback);
+            if (locked)
+            {
+               usedFile = appendRecord(addRecord, false, sync, null, callback, parallelAppend);
+            }
 
             if (JournalImpl.TRACE_RECORDS)
             {
@@ -804,11 +861,16 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                                        usedFile);
             }
 
-            records.put(id, new JournalRecord(usedFile, addRecord.getEncodeSize()));
+            records.addRecord(id, usedFile, addRecord.getEncodeSize());
          }
          finally
          {
-            lockAppend.unlock();
+            if (locked)
+            {
+               lockAppend.unlock();
+            }
+
+            addRecord.writeReserved();
          }
       }
       finally
@@ -830,9 +892,9 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       try
       {
-         JournalRecord jrnRecord = records.get(id);
+         boolean found = records.containsRecord(id);
 
-         if (jrnRecord == null)
+         if (!found)
          {
             if (!(compactor != null && compactor.lookupRecord(id)))
             {
@@ -847,10 +909,21 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
+         // the commands for the compactor are kept in order by lockAppend
+         JournalFile usedFile = found ? tryReserveRecord(updateRecord, sync, callback) : null;
+
+         final boolean locked = usedFile == null;
+
+         if (locked)
+         {
+            lockAppend.lock();
+         }
          try
          {
-            JournalFile usedFile = appendRecord(updateRecord, false, sync, null, callback);
+            if (locked)
+            {
+               usedFile = appendRecord(updateRecord, false, sync, null, callback, parallelAppend);
+            }
 
             if (JournalImpl.TRACE_RECORDS)
             {
@@ -861,20 +934,25 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                                        usedFile);
             }
 
-            // record== null here could only mean there is a compactor, and computing the delete should be done after
+            // !found here could only mean there is a compactor, and computing the update should be done after
             // compacting is done
-            if (jrnRecord == null)
+            if (!found)
             {
                compactor.addCommandUpdate(id, usedFile, updateRecord.getEncodeSize());
             }
             else
             {
-               jrnRecord.addUpdateFile(usedFile, updateRecord.getEncodeSize());
+               records.updateRecord(id, usedFile, updateRecord.getEncodeSize());
             }
          }
          finally
          {
-            lockAppend.unlock();
+            if (locked)
+            {
+               lockAppend.unlock();
+            }
+
+            updateRecord.writeReserved();
          }
       }
       finally
@@ -893,20 +971,18 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       try
       {
 
-         JournalRecord record = null;
+         final boolean compacting = compactor != null;
 
-         if (compactor == null)
+         if (!compacting)
          {
-            record = records.remove(id);
-
-            if (record == null)
+            if (!records.containsRecord(id))
             {
                throw new IllegalStateException("Cannot find add info " + id);
             }
          }
          else
          {
-            if (!records.containsKey(id) && !compactor.lookupRecord(id))
+            if (!records.containsRecord(id) && !compactor.lookupRecord(id))
             {
                throw new IllegalStateException("Cannot find add info " + id + " on compactor or current records");
             }
@@ -919,31 +995,45 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
+         JournalFile usedFile = compacting ? null : tryReserveRecord(deleteRecord, sync, callback);
+
+         final boolean locked = usedFile == null;
+
+         if (locked)
+         {
+            lockAppend.lock();
+         }
          try
          {
-            JournalFile usedFile = appendRecord(deleteRecord, false, sync, null, callback);
+            if (locked)
+            {
+               usedFile = appendRecord(deleteRecord, false, sync, null, callback, parallelAppend);
+            }
 
             if (JournalImpl.TRACE_RECORDS)
             {
                JournalImpl.traceRecord("appendDeleteRecord::id=" + id + ", usedFile = " + usedFile);
             }
 
-            // record== null here could only mean there is a compactor, and computing the delete should be done after
-            // compacting is done
-            if (record == null)
+            // computing the delete should be done after compacting is done
+            if (compacting)
             {
                compactor.addCommandDelete(id, usedFile);
             }
             else
             {
-               record.delete(usedFile);
+               records.deleteRecord(id, usedFile);
             }
 
          }
          finally
          {
-            lockAppend.unlock();
+            if (locked)
+            {
+               lockAppend.unlock();
+            }
+
+            deleteRecord.writeReserved();
          }
       }
       finally
@@ -971,7 +1061,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          lockAppend.lock();
          try
          {
-            JournalFile usedFile = appendRecord(addRecord, false, false, tx, null);
+            JournalFile usedFile = appendRecord(addRecord, false, false, tx, null, parallelAppend);
 
             if (JournalImpl.TRACE_RECORDS)
             {
@@ -989,6 +1079,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          finally
          {
             lockAppend.unlock();
+
+            addRecord.writeReserved();
          }
       }
       finally
@@ -1029,7 +1121,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          lockAppend.lock();
          try
          {
-            JournalFile usedFile = appendRecord(updateRecordTX, false, false, tx, null);
+            JournalFile usedFile = appendRecord(updateRecordTX, false, false, tx, null, parallelAppend);
 
             if (JournalImpl.TRACE_RECORDS)
             {
@@ -1047,6 +1139,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          finally
          {
             lockAppend.unlock();
+
+            updateRecordTX.writeReserved();
          }
       }
       finally
@@ -1072,7 +1166,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          lockAppend.lock();
          try
          {
-            JournalFile usedFile = appendRecord(deleteRecordTX, false, false, tx, null);
+            JournalFile usedFile = appendRecord(deleteRecordTX, false, false, tx, null, parallelAppend);
 
             if (JournalImpl.TRACE_RECORDS)
             {
@@ -1088,6 +1182,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          finally
          {
             lockAppend.unlock();
+
+            deleteRecordTX.writeReserved();
          }
       }
       finally
@@ -1502,7 +1598,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             compactor = new JournalCompactor(fileFactory,
                                              this,
                                              filesRepository,
-                                             records.keySet(),
+                                             records.getRecordIDs(),
                                              dataFilesToProcess.get(0).getFileID());
 
             for (Map.Entry<Long, JournalTransaction> entry : transactions.entrySet())
@@ -1564,10 +1660,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             newDatafiles = localCompactor.getNewDataFiles();
 
             // Restore newRecords created during compacting
-            for (Map.Entry<Long, JournalRecord> newRecordEntry : localCompactor.getNewRecords().entrySet())
-            {
-               records.put(newRecordEntry.getKey(), newRecordEntry.getValue());
-            }
+            localCompactor.getNewRecords().transferTo(records);
 
             // Restore compacted dataFiles
             for (int i = newDatafiles.size() - 1; i >= 0; i--)
@@ -1759,7 +1852,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
                loadManager.addRecord(info);
 
-               records.put(info.id, new JournalRecord(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1));
+               records.addRecord(info.id, file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1);
             }
 
             public void onReadUpdateRecord(final RecordInfo info) throws Exception
@@ -1770,17 +1863,12 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
                loadManager.updateRecord(info);
 
-               JournalRecord posFiles = records.get(info.id);
-
-               if (posFiles != null)
-               {
-                  // It's legal for this to be null. The file(s) with the may
-                  // have been deleted
-                  // just leaving some updates in this file
+               // It's legal for the record not to be found. The file(s) with the may
+               // have been deleted
+               // just leaving some updates in this file
 
-                  posFiles.addUpdateFile(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1); // +1 = compact
-                  // count
-               }
+               records.updateRecord(info.id, file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1); // +1 = compact
+               // count
             }
 
             public void onReadDeleteRecord(final long recordID) throws Exception
@@ -1789,12 +1877,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
                loadManager.deleteRecord(recordID);
 
-               JournalRecord posFiles = records.remove(recordID);
-
-               if (posFiles != null)
-               {
-                  posFiles.delete(file);
-               }
+               records.deleteRecord(recordID, file);
             }
 
             public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
@@ -2187,6 +2270,22 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       return autoReclaim;
    }
 
+   /**
+    * When set, add, update and delete records (transactional or not) only reserve their space on
+    * the file buffer while holding the append lock, and are encoded after the lock is released. This
+    * lets concurrent producers encode their records in parallel. It has no effect on files that
+    * don't use a {@link TimedBuffer}.
+    */
+   public void setParallelAppend(final boolean parallelAppend)
+   {
+      this.parallelAppend = parallelAppend;
+   }
+
+   public boolean isParallelAppend()
+   {
+      return parallelAppend;
+   }
+
    /* Only meant to be used in tests. */
    @Override
    public String debug() throws Exception
@@ -2751,6 +2850,59 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                                     final boolean sync,
                                     final JournalTransaction tx,
  final IOAsyncTask parameterCallback) throws Exception
+   {
+      return appendRecord(encoder, completeTransaction, sync, tx, parameterCallback, false);
+   }
+
+   /**
+    * Reserves the space of a non-transactional record on the current file without lockAppend, which
+    * is only possible while the buffer of the file has room for the record. Switching files is left to
+    * {@link #appendRecord(JournalInternalRecord, boolean, boolean, JournalTransaction, IOAsyncTask, boolean)}.
+    * The caller must hold the read lock of journalLock.
+    * @return the file the space was reserved on, or null if the record has to be appended holding
+    *         lockAppend
+    */
+   private JournalFile tryReserveRecord(final JournalInternalRecord encoder,
+                                        final boolean sync,
+                                        final IOAsyncTask callback)
+   {
+      JournalFile file = currentFile;
+
+      if (!parallelAppend || file == null || (callback == null && sync))
+      {
+         return null;
+      }
+
+      SequentialFile sequentialFile = file.getFile();
+
+      int position = sequentialFile.tryReserve(encoder.getEncodeSize(),
+                                               sync,
+                                               callback == null ? DummyCallback.getInstance() : callback);
+
+      if (position < 0)
+      {
+         return null;
+      }
+
+      // the buffer was still writing to this file, so the file can't have been switched yet
+      encoder.setFileID(file.getRecordID());
+
+      encoder.setReservation(sequentialFile, position);
+
+      return file;
+   }
+
+   /**
+    * @param reserve If the record should only have its space reserved on the file, leaving the
+    *           encoding to {@link JournalInternalRecord#writeReserved()} once lockAppend is released.
+    *           Only done when the caller won't have to wait for the write
+    */
+   private JournalFile appendRecord(final JournalInternalRecord encoder,
+                                    final boolean completeTransaction,
+                                    final boolean sync,
+                                    final JournalTransaction tx,
+                                    final IOAsyncTask parameterCallback,
+                                    final boolean reserve) throws Exception
    {
       checkJournalIsLoaded();
 
@@ -2795,6 +2947,20 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       // Adding fileID
       encoder.setFileID(currentFile.getRecordID());
 
+      if (reserve && (callback != null || !sync))
+      {
+         SequentialFile file = currentFile.getFile();
+
+         int position = file.reserve(size, sync, callback == null ? DummyCallback.getInstance() : callback);
+
+         if (position >= 0)
+         {
+            encoder.setReservation(file, position);
+
+            return currentFile;
+         }
+      }
+
       if (callback != null)
       {
          currentFile.getFile().write(encoder, sync, callback);
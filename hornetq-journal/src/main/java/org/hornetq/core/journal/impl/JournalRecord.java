@@ -35,17 +35,34 @@ public class JournalRecord
    private List<Pair<JournalFile, Integer>> updateFiles;
 
    public JournalRecord(final JournalFile addFile, final int size)
+   {
+      this(addFile, size, true);
+   }
+
+   /**
+    * @param count if {@code false} the file counters are not touched, as they were already taken
+    *           into account (e.g. a record being moved between {@link JournalRecordIndex}es)
+    */
+   JournalRecord(final JournalFile addFile, final int size, final boolean count)
    {
       this.addFile = addFile;
 
       this.size = size;
 
-      addFile.incPosCount();
+      if (count)
+      {
+         addFile.incPosCount();
 
-      addFile.addSize(size);
+         addFile.addSize(size);
+      }
    }
 
    void addUpdateFile(final JournalFile updateFile, final int size)
+   {
+      addUpdateFile(updateFile, size, true);
+   }
+
+   void addUpdateFile(final JournalFile updateFile, final int size, final boolean count)
    {
       if (updateFiles == null)
       {
@@ -54,9 +71,28 @@ public class JournalRecord
 
       updateFiles.add(new Pair<JournalFile, Integer>(updateFile, size));
 
-      updateFile.incPosCount();
+      if (count)
+      {
+         updateFile.incPosCount();
+
+         updateFile.addSize(size);
+      }
+   }
 
-      updateFile.addSize(size);
+   /**
+    * Copies this record into another index, without changing any file counters.
+    */
+   void restoreTo(final long id, final JournalRecordIndex target)
+   {
+      target.restoreRecord(id, addFile, size);
+
+      if (updateFiles != null)
+      {
+         for (Pair<JournalFile, Integer> updFile : updateFiles)
+         {
+            target.restoreUpdate(id, updFile.getA(), 1, updFile.getB());
+         }
+      }
    }
 
    void delete(final JournalFile file)
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+/**
+ * The index of live records on a journal.
+ * <p>
+ * For each record it keeps the file holding the add record and the files holding its updates, so
+ * the positive and negative counts used by the {@link Reclaimer} can be maintained as records are
+ * added, updated and deleted.
+ * <p>
+ * Implementations must be thread safe.
+ *
+ * @see MapJournalRecordIndex
+ * @see PackedJournalRecordIndex
+ */
+public interface JournalRecordIndex
+{
+   /**
+    * Adds a record, incrementing the positive count and live size of {@code addFile}.
+    */
+   void addRecord(long id, JournalFile addFile, int size);
+
+   /**
+    * Registers an update on an existing record, incrementing the positive count and live size of
+    * {@code updateFile}.
+    * @return {@code false} if the record is not on the index
+    */
+   boolean updateRecord(long id, JournalFile updateFile, int size);
+
+   /**
+    * Removes a record, adding negative counts on {@code deleteFile} for the add and every update of
+    * the record.
+    * @return {@code false} if the record is not on the index
+    */
+   boolean deleteRecord(long id, JournalFile deleteFile);
+
+   boolean containsRecord(long id);
+
+   int size();
+
+   void clear();
+
+   /**
+    * @return a snapshot of the ids currently on the index
+    */
+   long[] getRecordIDs();
+
+   /**
+    * Moves every record into {@code target} without changing any file counters, leaving this index
+    * empty. Used to restore the records calculated by the compactor.
+    */
+   void transferTo(JournalRecordIndex target);
+
+   /**
+    * Places a record on the index without changing the counters of {@code addFile}. If a record
+    * with the same id exists it is replaced.
+    */
+   void restoreRecord(long id, JournalFile addFile, int size);
+
+   /**
+    * Places {@code updates} updates totalling {@code size} bytes on an existing record without
+    * changing the counters of {@code updateFile}.
+    */
+   void restoreUpdate(long id, JournalFile updateFile, int updates, int size);
+}
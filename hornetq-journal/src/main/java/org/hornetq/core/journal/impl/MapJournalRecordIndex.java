@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The default {@link JournalRecordIndex}, holding one {@link JournalRecord} per live record.
+ */
+public class MapJournalRecordIndex implements JournalRecordIndex
+{
+   private final ConcurrentMap<Long, JournalRecord> records = new ConcurrentHashMap<Long, JournalRecord>();
+
+   public void addRecord(final long id, final JournalFile addFile, final int size)
+   {
+      records.put(id, new JournalRecord(addFile, size));
+   }
+
+   public boolean updateRecord(final long id, final JournalFile updateFile, final int size)
+   {
+      JournalRecord record = records.get(id);
+
+      if (record == null)
+      {
+         return false;
+      }
+
+      record.addUpdateFile(updateFile, size);
+
+      return true;
+   }
+
+   public boolean deleteRecord(final long id, final JournalFile deleteFile)
+   {
+      JournalRecord record = records.remove(id);
+
+      if (record == null)
+      {
+         return false;
+      }
+
+      record.delete(deleteFile);
+
+      return true;
+   }
+
+   public boolean containsRecord(final long id)
+   {
+      return records.containsKey(id);
+   }
+
+   public int size()
+   {
+      return records.size();
+   }
+
+   public void clear()
+   {
+      records.clear();
+   }
+
+   public long[] getRecordIDs()
+   {
+      // The map may change while we copy it
+      Long[] ids = records.keySet().toArray(new Long[0]);
+
+      long[] result = new long[ids.length];
+
+      for (int i = 0; i < ids.length; i++)
+      {
+         result[i] = ids[i];
+      }
+
+      return result;
+   }
+
+   public void transferTo(final JournalRecordIndex target)
+   {
+      for (Map.Entry<Long, JournalRecord> entry : records.entrySet())
+      {
+         entry.getValue().restoreTo(entry.getKey(), target);
+      }
+
+      records.clear();
+   }
+
+   public void restoreRecord(final long id, final JournalFile addFile, final int size)
+   {
+      records.put(id, new JournalRecord(addFile, size, false));
+   }
+
+   public void restoreUpdate(final long id, final JournalFile updateFile, final int updates, final int size)
+   {
+      JournalRecord record = records.get(id);
+
+      if (record == null)
+      {
+         return;
+      }
+
+      // One entry per update, as the delete will need one negative per update
+      for (int i = 0; i < updates; i++)
+      {
+         record.addUpdateFile(updateFile, i == 0 ? size : 0, false);
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MapJournalRecordIndex(size=" + records.size() + ")";
+   }
+}
@@ -0,0 +1,573 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.HornetQExceptionType;
+import org.hornetq.api.core.HornetQIOErrorException;
+import org.hornetq.api.core.HornetQIllegalStateException;
+import org.hornetq.core.journal.IOAsyncTask;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.journal.HornetQJournalBundle;
+import org.hornetq.journal.HornetQJournalLogger;
+
+/**
+ * A SequentialFile accessing its contents through memory mapped regions.
+ * <p>
+ * The file is mapped lazily, in regions of a fixed size, and only up to its size on disk. Writes
+ * and reads inside the file are copied straight from and to the mapped pages, and a sync forces
+ * the regions written since the previous one. Writes past the end of the file (as on page files,
+ * which grow as they are written) go through the channel, and the regions are mapped again once
+ * the file covers them.
+ * <p>
+ * There is no way to unmap a region, the mappings are released by GC after the file is closed.
+ *
+ * @see NIOSequentialFile
+ */
+public final class MappedSequentialFile extends AbstractSequentialFile
+{
+   private final int regionSize;
+
+   private FileChannel channel;
+
+   private RandomAccessFile rfile;
+
+   /** The write semaphore here is only used when writing asynchronously */
+   private Semaphore maxIOSemaphore;
+
+   private final int defaultMaxIO;
+
+   private int maxIO;
+
+   /** Guards the mapped regions and the fields below, reads and writes may happen on different threads */
+   private final Object ioLock = new Object();
+
+   private final List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+
+   private final BitSet dirtyRegions = new BitSet();
+
+   /** Whether there were writes through the channel since the last sync */
+   private boolean channelDirty;
+
+   /** Where the next read or write happens, the equivalent of the channel position on NIO */
+   private long ioPosition;
+
+   /** The size of the file on disk, which bounds the mapped regions */
+   private long length;
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final String directory,
+                               final String fileName,
+                               final int maxIO,
+                               final int regionSize,
+                               final Executor writerExecutor)
+   {
+      super(directory, new File(directory + "/" + fileName), factory, writerExecutor);
+      defaultMaxIO = maxIO;
+      this.regionSize = regionSize;
+   }
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final File file,
+                               final int maxIO,
+                               final int regionSize,
+                               final Executor writerExecutor)
+   {
+      super(file.getParent(), new File(file.getPath()), factory, writerExecutor);
+      defaultMaxIO = maxIO;
+      this.regionSize = regionSize;
+   }
+
+   public int getAlignment()
+   {
+      return 1;
+   }
+
+   public int calculateBlockStart(final int position)
+   {
+      return position;
+   }
+
+   public synchronized boolean isOpen()
+   {
+      return channel != null;
+   }
+
+   public synchronized void open() throws IOException
+   {
+      open(defaultMaxIO, true);
+   }
+
+   public void open(final int maxIO, final boolean useExecutor) throws IOException
+   {
+      try
+      {
+         rfile = new RandomAccessFile(getFile(), "rw");
+
+         channel = rfile.getChannel();
+
+         fileSize = channel.size();
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      synchronized (ioLock)
+      {
+         length = fileSize;
+         ioPosition = 0;
+      }
+
+      if (writerExecutor != null && useExecutor)
+      {
+         maxIOSemaphore = new Semaphore(maxIO);
+         this.maxIO = maxIO;
+      }
+   }
+
+   public void fill(final int position, final int size, final byte fillCharacter) throws IOException
+   {
+      ByteBuffer bb = ByteBuffer.allocate(size);
+
+      for (int i = 0; i < size; i++)
+      {
+         bb.put(fillCharacter);
+      }
+
+      bb.flip();
+
+      try
+      {
+         synchronized (ioLock)
+         {
+            while (bb.hasRemaining())
+            {
+               channel.write(bb, position + bb.position());
+            }
+
+            channel.force(false);
+
+            length = Math.max(length, channel.size());
+            ioPosition = 0;
+         }
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      fileSize = channel.size();
+   }
+
+   public synchronized void waitForClose() throws InterruptedException
+   {
+      while (isOpen())
+      {
+         wait();
+      }
+   }
+
+   @Override
+   public synchronized void close() throws IOException, InterruptedException, HornetQException
+   {
+      super.close();
+
+      if (maxIOSemaphore != null)
+      {
+         while (!maxIOSemaphore.tryAcquire(maxIO, 60, TimeUnit.SECONDS))
+         {
+            HornetQJournalLogger.LOGGER.errorClosingFile(getFileName());
+         }
+      }
+
+      maxIOSemaphore = null;
+
+      synchronized (ioLock)
+      {
+         regions.clear();
+         dirtyRegions.clear();
+         channelDirty = false;
+      }
+
+      try
+      {
+         if (channel != null)
+         {
+            channel.close();
+         }
+
+         if (rfile != null)
+         {
+            rfile.close();
+         }
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+      channel = null;
+
+      rfile = null;
+
+      notifyAll();
+   }
+
+   public int read(final ByteBuffer bytes) throws Exception
+   {
+      return read(bytes, null);
+   }
+
+   public synchronized int read(final ByteBuffer bytes, final IOAsyncTask callback) throws IOException,
+                                                                                   HornetQIllegalStateException
+   {
+      try
+      {
+         if (channel == null)
+         {
+            throw new HornetQIllegalStateException("File " + this.getFileName() + " has a null channel");
+         }
+
+         int bytesRead;
+
+         synchronized (ioLock)
+         {
+            bytesRead = (int)Math.min(bytes.remaining(), length - ioPosition);
+
+            if (bytesRead <= 0)
+            {
+               bytesRead = bytes.hasRemaining() ? -1 : 0;
+            }
+            else
+            {
+               copy(bytes, ioPosition, bytesRead, false);
+               ioPosition += bytesRead;
+            }
+         }
+
+         if (callback != null)
+         {
+            callback.done();
+         }
+
+         bytes.flip();
+
+         return bytesRead;
+      }
+      catch (IOException e)
+      {
+         if (callback != null)
+         {
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getLocalizedMessage());
+         }
+
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+
+         throw e;
+      }
+   }
+
+   public void sync() throws IOException
+   {
+      if (channel != null)
+      {
+         try
+         {
+            synchronized (ioLock)
+            {
+               for (int i = dirtyRegions.nextSetBit(0); i >= 0; i = dirtyRegions.nextSetBit(i + 1))
+               {
+                  regions.get(i).force();
+               }
+
+               dirtyRegions.clear();
+
+               if (channelDirty)
+               {
+                  channel.force(false);
+                  channelDirty = false;
+               }
+            }
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+            throw e;
+         }
+      }
+   }
+
+   public long size() throws IOException
+   {
+      if (channel == null)
+      {
+         return getFile().length();
+      }
+
+      try
+      {
+         return channel.size();
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+   }
+
+   @Override
+   public void position(final long pos) throws IOException
+   {
+      super.position(pos);
+
+      synchronized (ioLock)
+      {
+         ioPosition = pos;
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MappedSequentialFile " + getFile();
+   }
+
+   public SequentialFile cloneFile()
+   {
+      return new MappedSequentialFile(factory, getFile(), maxIO, regionSize, writerExecutor);
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback)
+   {
+      if (callback == null)
+      {
+         throw new NullPointerException("callback parameter need to be set");
+      }
+
+      try
+      {
+         internalWrite(bytes, sync, callback);
+      }
+      catch (Exception e)
+      {
+         callback.onError(HornetQExceptionType.GENERIC_EXCEPTION.getCode(), e.getMessage());
+      }
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync) throws Exception
+   {
+      internalWrite(bytes, sync, null);
+   }
+
+   public void writeInternal(final ByteBuffer bytes) throws Exception
+   {
+      internalWrite(bytes, true, null);
+   }
+
+   @Override
+   protected ByteBuffer newBuffer(int size, final int limit)
+   {
+      // Same as NIO, the buffer is copied to the mapped pages so it doesn't need the whole size
+
+      size = limit;
+
+      return super.newBuffer(size, limit);
+   }
+
+   private void internalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback) throws IOException,
+                                                                                                          HornetQIOErrorException,
+                                                                                                          InterruptedException
+   {
+      if (!isOpen())
+      {
+         if (callback != null)
+         {
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), "File not opened");
+         }
+         else
+         {
+            throw HornetQJournalBundle.BUNDLE.fileNotOpened();
+         }
+         return;
+      }
+
+      position.addAndGet(bytes.limit());
+
+      if (maxIOSemaphore == null || callback == null)
+      {
+         // if maxIOSemaphore == null, that means we are not using executors and the writes are synchronous
+         try
+         {
+            doInternalWrite(bytes, sync, callback);
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         }
+      }
+      else
+      {
+         // This is a flow control on writing, just like maxAIO on libaio
+         maxIOSemaphore.acquire();
+
+         writerExecutor.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  try
+                  {
+                     doInternalWrite(bytes, sync, callback);
+                  }
+                  catch (IOException e)
+                  {
+                     HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                     factory.onIOError(new HornetQIOErrorException(e.getMessage(), e),
+                                       e.getMessage(),
+                                       MappedSequentialFile.this);
+                     callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+                  }
+                  catch (Throwable e)
+                  {
+                     HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                     callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+                  }
+               }
+               finally
+               {
+                  maxIOSemaphore.release();
+               }
+            }
+         });
+      }
+   }
+
+   private void doInternalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback) throws IOException
+   {
+      synchronized (ioLock)
+      {
+         int size = bytes.remaining();
+
+         // the part inside the file goes to the mapped pages, the rest extends the file
+         int mapped = (int)Math.max(0, Math.min(size, length - ioPosition));
+
+         if (mapped > 0)
+         {
+            copy(bytes, ioPosition, mapped, true);
+         }
+
+         long offset = ioPosition + mapped;
+
+         while (bytes.hasRemaining())
+         {
+            offset += channel.write(bytes, offset);
+            channelDirty = true;
+         }
+
+         ioPosition += size;
+         length = Math.max(length, ioPosition);
+      }
+
+      if (sync)
+      {
+         sync();
+      }
+
+      if (callback != null)
+      {
+         callback.done();
+      }
+   }
+
+   /**
+    * Copies between the buffer and the mapped regions, advancing the buffer position.
+    * Must be called holding ioLock, with the whole range inside the file.
+    */
+   private void copy(final ByteBuffer bytes, final long offset, final int size, final boolean write) throws IOException
+   {
+      long current = offset;
+      long end = offset + size;
+
+      while (current < end)
+      {
+         int index = (int)(current / regionSize);
+         int regionOffset = (int)(current % regionSize);
+         int chunk = (int)Math.min(end - current, regionSize - regionOffset);
+
+         ByteBuffer region = region(index, regionOffset + chunk).duplicate();
+         region.position(regionOffset);
+         region.limit(regionOffset + chunk);
+
+         if (write)
+         {
+            int limit = bytes.limit();
+            bytes.limit(bytes.position() + chunk);
+            region.put(bytes);
+            bytes.limit(limit);
+
+            dirtyRegions.set(index);
+         }
+         else
+         {
+            bytes.put(region);
+         }
+
+         current += chunk;
+      }
+   }
+
+   /**
+    * @return the region mapped at least up to the given offset inside it, mapping it again if the
+    *         file has grown since it was mapped
+    */
+   private MappedByteBuffer region(final int index, final int minSize) throws IOException
+   {
+      while (regions.size() <= index)
+      {
+         regions.add(null);
+      }
+
+      MappedByteBuffer region = regions.get(index);
+
+      if (region == null || region.capacity() < minSize)
+      {
+         long start = (long)index * regionSize;
+
+         // the pages written through the old mapping are still dirty on the file, a force on the new one covers them
+         region = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(regionSize, length - start));
+
+         regions.set(index, region);
+      }
+
+      return region;
+   }
+}
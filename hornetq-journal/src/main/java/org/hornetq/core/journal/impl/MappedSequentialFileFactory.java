@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import org.hornetq.core.journal.IOCriticalErrorListener;
+import org.hornetq.core.journal.SequentialFile;
+
+/**
+ * A factory of {@link MappedSequentialFile}s.
+ * <p>
+ * Buffers, alignment and the timed buffer are the same as on NIO, only the files are accessed
+ * through memory mapped regions instead of the channel.
+ */
+public class MappedSequentialFileFactory extends NIOSequentialFileFactory
+{
+   public static final int DEFAULT_REGION_SIZE = 4 * 1024 * 1024;
+
+   private final int regionSize;
+
+   public MappedSequentialFileFactory(final String journalDir)
+   {
+      this(journalDir, null);
+   }
+
+   public MappedSequentialFileFactory(final String journalDir, final IOCriticalErrorListener listener)
+   {
+      this(journalDir, false, listener);
+   }
+
+   public MappedSequentialFileFactory(final String journalDir, final boolean buffered)
+   {
+      this(journalDir, buffered, null);
+   }
+
+   public MappedSequentialFileFactory(final String journalDir,
+                                      final boolean buffered,
+                                      final IOCriticalErrorListener listener)
+   {
+      this(journalDir,
+           buffered,
+           JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_NIO,
+           JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO,
+           false,
+           listener);
+   }
+
+   public MappedSequentialFileFactory(final String journalDir,
+                                      final boolean buffered,
+                                      final int bufferSize,
+                                      final int bufferTimeout,
+                                      final boolean logRates,
+                                      final IOCriticalErrorListener listener)
+   {
+      this(journalDir, buffered, bufferSize, bufferTimeout, logRates, listener, DEFAULT_REGION_SIZE);
+   }
+
+   /**
+    * @param regionSize the size of each mapped region of the files
+    */
+   public MappedSequentialFileFactory(final String journalDir,
+                                      final boolean buffered,
+                                      final int bufferSize,
+                                      final int bufferTimeout,
+                                      final boolean logRates,
+                                      final IOCriticalErrorListener listener,
+                                      final int regionSize)
+   {
+      super(journalDir, buffered, bufferSize, bufferTimeout, logRates, listener);
+
+      if (regionSize <= 0)
+      {
+         throw new IllegalArgumentException("regionSize must be positive: " + regionSize);
+      }
+
+      this.regionSize = regionSize;
+   }
+
+   @Override
+   public SequentialFile createSequentialFile(final String fileName, int maxIO)
+   {
+      if (maxIO < 1)
+      {
+         // A single threaded IO
+         maxIO = 1;
+      }
+
+      return new MappedSequentialFile(this, journalDir, fileName, maxIO, regionSize, writeExecutor);
+   }
+}
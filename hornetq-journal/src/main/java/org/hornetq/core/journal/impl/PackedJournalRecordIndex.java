@@ -0,0 +1,506 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A {@link JournalRecordIndex} that keeps its records on primitive arrays.
+ * <p>
+ * Records are stored on an open addressing table keyed by the record id, holding a reference to
+ * the add file, the add size and the first update entry. Consecutive updates on the same file are
+ * coalesced on a single entry (file, number of updates, total size), so a record costs around 20
+ * bytes, plus 16 bytes for every file holding its updates, instead of a {@link JournalRecord}, a
+ * boxed {@link Long} and a map node. Files are referenced through a small table of the files
+ * holding live records.
+ * <p>
+ * All the operations are synchronized on the index.
+ *
+ * @see MapJournalRecordIndex
+ */
+public class PackedJournalRecordIndex implements JournalRecordIndex
+{
+   private static final int INITIAL_CAPACITY = 1024;
+
+   private static final int INITIAL_UPDATES = 256;
+
+   private static final int INITIAL_FILES = 16;
+
+   private static final int NONE = -1;
+
+   // Records table
+
+   private long[] keys;
+
+   // file slot + 1, zero means an empty bucket
+   private int[] addFiles;
+
+   private int[] addSizes;
+
+   private int[] firstUpdates;
+
+   private int mask;
+
+   private int size;
+
+   private int resizeThreshold;
+
+   // Update entries, linked from firstUpdates
+
+   private int[] updateFiles;
+
+   private int[] updateCounts;
+
+   private int[] updateSizes;
+
+   // next update of the same record, or the next free entry
+   private int[] nextUpdates;
+
+   private int freeUpdate;
+
+   private int usedUpdates;
+
+   // Files referenced by live records
+
+   private JournalFile[] files;
+
+   private int[] fileReferences;
+
+   private final Map<JournalFile, Integer> fileSlots = new IdentityHashMap<JournalFile, Integer>();
+
+   // Almost every record goes to the current file
+   private JournalFile lastFile;
+
+   private int lastFileSlot;
+
+   // Constructors --------------------------------------------------
+
+   public PackedJournalRecordIndex()
+   {
+      init();
+   }
+
+   // JournalRecordIndex implementation -----------------------------
+
+   public synchronized void addRecord(final long id, final JournalFile addFile, final int size)
+   {
+      addFile.incPosCount();
+
+      addFile.addSize(size);
+
+      restoreRecord(id, addFile, size);
+   }
+
+   public synchronized boolean updateRecord(final long id, final JournalFile updateFile, final int size)
+   {
+      int slot = find(id);
+
+      if (slot < 0)
+      {
+         return false;
+      }
+
+      updateFile.incPosCount();
+
+      updateFile.addSize(size);
+
+      addUpdate(slot, updateFile, 1, size);
+
+      return true;
+   }
+
+   public synchronized boolean deleteRecord(final long id, final JournalFile deleteFile)
+   {
+      int slot = find(id);
+
+      if (slot < 0)
+      {
+         return false;
+      }
+
+      JournalFile addFile = files[addFiles[slot] - 1];
+
+      deleteFile.incNegCount(addFile);
+      addFile.decSize(addSizes[slot]);
+
+      for (int upd = firstUpdates[slot]; upd != NONE; upd = nextUpdates[upd])
+      {
+         JournalFile updateFile = files[updateFiles[upd]];
+
+         for (int i = 0; i < updateCounts[upd]; i++)
+         {
+            deleteFile.incNegCount(updateFile);
+         }
+
+         updateFile.decSize(updateSizes[upd]);
+      }
+
+      releaseRecord(slot);
+
+      removeSlot(slot);
+
+      return true;
+   }
+
+   public synchronized boolean containsRecord(final long id)
+   {
+      return find(id) >= 0;
+   }
+
+   public synchronized int size()
+   {
+      return size;
+   }
+
+   public synchronized void clear()
+   {
+      init();
+   }
+
+   public synchronized long[] getRecordIDs()
+   {
+      long[] ids = new long[size];
+
+      int pos = 0;
+
+      for (int i = 0; i < keys.length; i++)
+      {
+         if (addFiles[i] != 0)
+         {
+            ids[pos++] = keys[i];
+         }
+      }
+
+      return ids;
+   }
+
+   public synchronized void transferTo(final JournalRecordIndex target)
+   {
+      for (int i = 0; i < keys.length; i++)
+      {
+         if (addFiles[i] != 0)
+         {
+            target.restoreRecord(keys[i], files[addFiles[i] - 1], addSizes[i]);
+
+            for (int upd = firstUpdates[i]; upd != NONE; upd = nextUpdates[upd])
+            {
+               target.restoreUpdate(keys[i], files[updateFiles[upd]], updateCounts[upd], updateSizes[upd]);
+            }
+         }
+      }
+
+      init();
+   }
+
+   public synchronized void restoreRecord(final long id, final JournalFile addFile, final int size)
+   {
+      int slot = find(id);
+
+      if (slot >= 0)
+      {
+         releaseRecord(slot);
+      }
+      else
+      {
+         slot = freeBucket(id);
+         keys[slot] = id;
+         this.size++;
+      }
+
+      addFiles[slot] = acquireFile(addFile) + 1;
+      addSizes[slot] = size;
+      firstUpdates[slot] = NONE;
+
+      if (this.size > resizeThreshold)
+      {
+         rehash(keys.length << 1);
+      }
+   }
+
+   public synchronized void restoreUpdate(final long id, final JournalFile updateFile, final int updates, final int size)
+   {
+      int slot = find(id);
+
+      if (slot >= 0)
+      {
+         addUpdate(slot, updateFile, updates, size);
+      }
+   }
+
+   @Override
+   public synchronized String toString()
+   {
+      return "PackedJournalRecordIndex(size=" + size +
+             ", capacity=" +
+             keys.length +
+             ", updateEntries=" +
+             usedUpdates +
+             ", files=" +
+             fileSlots.size() +
+             ")";
+   }
+
+   // Private -------------------------------------------------------
+
+   private void init()
+   {
+      keys = new long[INITIAL_CAPACITY];
+      addFiles = new int[INITIAL_CAPACITY];
+      addSizes = new int[INITIAL_CAPACITY];
+      firstUpdates = new int[INITIAL_CAPACITY];
+      mask = INITIAL_CAPACITY - 1;
+      resizeThreshold = INITIAL_CAPACITY * 3 / 4;
+      size = 0;
+
+      updateFiles = new int[INITIAL_UPDATES];
+      updateCounts = new int[INITIAL_UPDATES];
+      updateSizes = new int[INITIAL_UPDATES];
+      nextUpdates = new int[INITIAL_UPDATES];
+      freeUpdate = NONE;
+      usedUpdates = 0;
+
+      files = new JournalFile[INITIAL_FILES];
+      fileReferences = new int[INITIAL_FILES];
+      fileSlots.clear();
+      lastFile = null;
+   }
+
+   private static int hash(final long id)
+   {
+      // ids are usually sequential, spread them over the table
+      long h = id * 0x9E3779B97F4A7C15L;
+      return (int)(h ^ (h >>> 32));
+   }
+
+   private int find(final long id)
+   {
+      int i = hash(id) & mask;
+
+      while (addFiles[i] != 0)
+      {
+         if (keys[i] == id)
+         {
+            return i;
+         }
+         i = (i + 1) & mask;
+      }
+
+      return NONE;
+   }
+
+   private int freeBucket(final long id)
+   {
+      int i = hash(id) & mask;
+
+      while (addFiles[i] != 0)
+      {
+         i = (i + 1) & mask;
+      }
+
+      return i;
+   }
+
+   /**
+    * Backward shift deletion, so lookups never need tombstones
+    */
+   private void removeSlot(final int slot)
+   {
+      int gap = slot;
+      int i = slot;
+
+      while (true)
+      {
+         i = (i + 1) & mask;
+
+         if (addFiles[i] == 0)
+         {
+            break;
+         }
+
+         int ideal = hash(keys[i]) & mask;
+
+         boolean stays = gap < i ? ideal > gap && ideal <= i : ideal > gap || ideal <= i;
+
+         if (!stays)
+         {
+            keys[gap] = keys[i];
+            addFiles[gap] = addFiles[i];
+            addSizes[gap] = addSizes[i];
+            firstUpdates[gap] = firstUpdates[i];
+            gap = i;
+         }
+      }
+
+      addFiles[gap] = 0;
+      firstUpdates[gap] = NONE;
+      size--;
+   }
+
+   private void rehash(final int newCapacity)
+   {
+      long[] oldKeys = keys;
+      int[] oldAddFiles = addFiles;
+      int[] oldAddSizes = addSizes;
+      int[] oldFirstUpdates = firstUpdates;
+
+      keys = new long[newCapacity];
+      addFiles = new int[newCapacity];
+      addSizes = new int[newCapacity];
+      firstUpdates = new int[newCapacity];
+      mask = newCapacity - 1;
+      resizeThreshold = newCapacity / 4 * 3;
+
+      for (int i = 0; i < oldKeys.length; i++)
+      {
+         if (oldAddFiles[i] != 0)
+         {
+            int slot = freeBucket(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            addFiles[slot] = oldAddFiles[i];
+            addSizes[slot] = oldAddSizes[i];
+            firstUpdates[slot] = oldFirstUpdates[i];
+         }
+      }
+   }
+
+   private void addUpdate(final int slot, final JournalFile updateFile, final int updates, final int size)
+   {
+      int fileSlot = lookupFile(updateFile);
+
+      int first = firstUpdates[slot];
+
+      if (fileSlot >= 0 && first != NONE && updateFiles[first] == fileSlot)
+      {
+         updateCounts[first] += updates;
+         updateSizes[first] += size;
+         return;
+      }
+
+      int upd = allocateUpdate();
+
+      updateFiles[upd] = acquireFile(updateFile);
+      updateCounts[upd] = updates;
+      updateSizes[upd] = size;
+      nextUpdates[upd] = first;
+
+      firstUpdates[slot] = upd;
+   }
+
+   private int allocateUpdate()
+   {
+      if (freeUpdate != NONE)
+      {
+         int upd = freeUpdate;
+         freeUpdate = nextUpdates[upd];
+         return upd;
+      }
+
+      if (usedUpdates == updateFiles.length)
+      {
+         int newLength = updateFiles.length << 1;
+         updateFiles = Arrays.copyOf(updateFiles, newLength);
+         updateCounts = Arrays.copyOf(updateCounts, newLength);
+         updateSizes = Arrays.copyOf(updateSizes, newLength);
+         nextUpdates = Arrays.copyOf(nextUpdates, newLength);
+      }
+
+      return usedUpdates++;
+   }
+
+   /**
+    * Releases the file references and the update entries of a record, keeping it on the table
+    */
+   private void releaseRecord(final int slot)
+   {
+      releaseFile(addFiles[slot] - 1);
+
+      int upd = firstUpdates[slot];
+
+      while (upd != NONE)
+      {
+         int next = nextUpdates[upd];
+
+         releaseFile(updateFiles[upd]);
+
+         nextUpdates[upd] = freeUpdate;
+         freeUpdate = upd;
+
+         upd = next;
+      }
+
+      firstUpdates[slot] = NONE;
+   }
+
+   private int lookupFile(final JournalFile file)
+   {
+      if (file == lastFile)
+      {
+         return lastFileSlot;
+      }
+
+      Integer slot = fileSlots.get(file);
+
+      return slot == null ? NONE : slot;
+   }
+
+   private int acquireFile(final JournalFile file)
+   {
+      int slot = lookupFile(file);
+
+      if (slot == NONE)
+      {
+         slot = 0;
+
+         while (slot < files.length && files[slot] != null)
+         {
+            slot++;
+         }
+
+         if (slot == files.length)
+         {
+            files = Arrays.copyOf(files, files.length << 1);
+            fileReferences = Arrays.copyOf(fileReferences, fileReferences.length << 1);
+         }
+
+         files[slot] = file;
+         fileSlots.put(file, slot);
+      }
+
+      fileReferences[slot]++;
+
+      lastFile = file;
+      lastFileSlot = slot;
+
+      return slot;
+   }
+
+   private void releaseFile(final int slot)
+   {
+      if (--fileReferences[slot] == 0)
+      {
+         JournalFile file = files[slot];
+
+         fileSlots.remove(file);
+
+         if (lastFile == file)
+         {
+            lastFile = null;
+         }
+
+         files[slot] = null;
+      }
+   }
+}
@@ -15,12 +15,16 @@ package org.hornetq.core.journal.impl;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
@@ -43,6 +47,9 @@ public class TimedBuffer
    // The number of tries on sleep before switching to spin
    public static final int MAX_CHECKS_ON_SLEEP = 20;
 
+   // Buckets of the batch size histogram, bucket n counts the flushes of 2^n to 2^(n+1) - 1 records
+   public static final int BATCH_SIZE_BUCKETS = 16;
+
    // Attributes ----------------------------------------------------
 
    private TimedBufferObserver bufferObserver;
@@ -60,7 +67,8 @@ public class TimedBuffer
 
    private int bufferLimit = 0;
 
-   private List<IOAsyncTask> callbacks;
+   // The callbacks of the records on the buffer, ordered by their position when flushed
+   private final Queue<ReservedCallback> callbacks = new ConcurrentLinkedQueue<ReservedCallback>();
 
    private volatile int timeout;
 
@@ -93,6 +101,37 @@ public class TimedBuffer
    // no need to be volatile as every access is synchronized
    private boolean spinning = false;
 
+   // The bytes encoded on the buffer. The buffer can't be flushed before the space of every reservation
+   // is encoded, that is before it reaches the writerIndex
+   private final AtomicInteger encodedBytes = new AtomicInteger(0);
+
+   // Flushes waiting for reservations to be encoded, only changed holding the lock
+   private volatile int waitingFlushes = 0;
+
+   // While open, the space is reserved through a CAS on the window's position, without the lock.
+   // The writerIndex of the buffer is only updated when the window is closed
+   private volatile Window window;
+
+   private final AtomicLongArray batchSizes = new AtomicLongArray(BATCH_SIZE_BUCKETS);
+
+   // When adaptive, timeout is only the longest a sync waits for other records. A sync waits for about
+   // the time the previous syncs took, unless records arrive slower than that, when it's flushed right away
+   private volatile boolean adaptive;
+
+   // the wait chosen for the pending sync, in nanoseconds
+   private volatile long currentTimeout;
+
+   // when the first sync since the last flush was requested
+   private volatile long pendingSyncTime;
+
+   // moving average of the time taken by the syncs, in nanoseconds
+   private volatile long syncLatency;
+
+   // moving average of the time between records, in nanoseconds
+   private long arrivalInterval;
+
+   private long lastArrivalTime;
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
@@ -117,9 +156,56 @@ public class TimedBuffer
 
       bufferLimit = 0;
 
-      callbacks = new ArrayList<IOAsyncTask>();
-
       this.timeout = timeout;
+
+      this.currentTimeout = timeout;
+   }
+
+   public boolean isAdaptive()
+   {
+      return adaptive;
+   }
+
+   public void setAdaptive(final boolean adaptive)
+   {
+      this.adaptive = adaptive;
+
+      if (!adaptive)
+      {
+         currentTimeout = timeout;
+      }
+   }
+
+   /**
+    * @return the time, in nanoseconds, the last sync waited for other records before being flushed
+    */
+   public long getCurrentTimeout()
+   {
+      return currentTimeout;
+   }
+
+   /**
+    * @return the moving average of the time taken by the syncs, in nanoseconds. Only measured when
+    *         adaptive
+    */
+   public long getSyncLatency()
+   {
+      return syncLatency;
+   }
+
+   /**
+    * @return the number of flushes by the number of records on them, see {@link #BATCH_SIZE_BUCKETS}
+    */
+   public long[] getBatchSizeHistogram()
+   {
+      long[] histogram = new long[BATCH_SIZE_BUCKETS];
+
+      for (int i = 0; i < BATCH_SIZE_BUCKETS; i++)
+      {
+         histogram[i] = batchSizes.get(i);
+      }
+
+      return histogram;
    }
 
    // for Debug purposes
@@ -173,9 +259,14 @@ public class TimedBuffer
          return;
       }
 
-      flush();
+      synchronized (this)
+      {
+         closeWindow();
+
+         flushBuffer(false);
 
-      bufferObserver = null;
+         bufferObserver = null;
+      }
 
       timerRunnable.close();
 
@@ -205,10 +296,20 @@ public class TimedBuffer
    {
       if (bufferObserver != null)
       {
-         flush();
+         if (!started)
+         {
+            throw new IllegalStateException("TimedBuffer is not started");
+         }
+
+         closeWindow();
+
+         flushBuffer(false);
       }
 
       bufferObserver = observer;
+
+      // the limit was taken from the previous file
+      bufferLimit = 0;
    }
 
    /**
@@ -229,12 +330,14 @@ public class TimedBuffer
             ") on the journal");
       }
 
+      closeWindow();
+
       if (bufferLimit == 0 || buffer.writerIndex() + sizeChecked > bufferLimit)
       {
          // Either there is not enough space left in the buffer for the sized record
          // Or a flush has just been performed and we need to re-calcualate bufferLimit
 
-         flush();
+         flushBuffer(false);
 
          delayFlush = true;
 
@@ -275,19 +378,144 @@ public class TimedBuffer
          throw new IllegalStateException("TimedBuffer is not started");
       }
 
+      closeWindow();
+
       delayFlush = false;
 
+      int position = buffer.writerIndex();
+
       bytes.encode(buffer);
 
-      callbacks.add(callback);
+      encodedBytes.addAndGet(buffer.writerIndex() - position);
 
-      if (sync)
+      callbacks.add(new ReservedCallback(position, callback));
+
+      recordAdded(sync);
+
+      openWindow();
+   }
+
+   /**
+    * Claims the space for {@code size} bytes at the current position of the buffer, registering the
+    * callback on the order of the reservation. {@link #checkSize(int)} has to be called first, as
+    * done for {@link #addBytes(EncodingSupport, boolean, IOAsyncTask)}.
+    * <p>
+    * The bytes must be supplied later through {@link #writeReserved(int, EncodingSupport)}. The
+    * buffer will not be flushed before that.
+    * @return the position of the reserved space on the buffer
+    */
+   public synchronized int reserve(final int size, final boolean sync, final IOAsyncTask callback)
+   {
+      if (!started)
       {
-         pendingSync = true;
+         throw new IllegalStateException("TimedBuffer is not started");
+      }
 
-         startSpin();
+      closeWindow();
+
+      delayFlush = false;
+
+      int position = buffer.writerIndex();
+
+      buffer.writerIndex(position + size);
+
+      callbacks.add(new ReservedCallback(position, callback));
+
+      recordAdded(sync);
+
+      openWindow();
+
+      return position;
+   }
+
+   /**
+    * Claims the space for {@code size} bytes with a CAS on the position of the buffer, without
+    * taking its lock. Unlike {@link #reserve(int, boolean, IOAsyncTask)}, {@link #checkSize(int)}
+    * is not needed: a full buffer is flushed here, and -1 is returned when the record doesn't fit
+    * on the rest of the file, when the buffer is writing to another observer or while a
+    * {@link #checkSize(int)} waits for its record.
+    * <p>
+    * The bytes must be supplied later through {@link #writeReserved(int, EncodingSupport)}.
+    * @return the position of the reserved space on the buffer, or -1 if nothing was reserved
+    */
+   public int tryReserve(final TimedBufferObserver observer,
+                         final int size,
+                         final boolean sync,
+                         final IOAsyncTask callback)
+   {
+      while (true)
+      {
+         Window current = window;
+
+         if (current == null || current.observer != observer)
+         {
+            return -1;
+         }
+
+         int position = current.position.get();
+
+         if (position < 0)
+         {
+            // being closed, the window is read again
+            continue;
+         }
+
+         if (position + size > current.limit)
+         {
+            if (!refill(current, size))
+            {
+               return -1;
+            }
+         }
+         else if (current.position.compareAndSet(position, position + size))
+         {
+            // the flush waits for the bytes, which are only written after this
+            callbacks.add(new ReservedCallback(position, callback));
+
+            if (sync || adaptive)
+            {
+               synchronized (this)
+               {
+                  recordAdded(sync);
+               }
+            }
+
+            return position;
+         }
+      }
+   }
+
+   /**
+    * Encodes the bytes on the space claimed by {@link #reserve(int, boolean, IOAsyncTask)}.
+    * <p>
+    * The buffer is not locked while encoding, so records on different reservations may be encoded
+    * in parallel.
+    */
+   public void writeReserved(final int position, final EncodingSupport bytes)
+   {
+      final int size = bytes.getEncodeSize();
+
+      try
+      {
+         HornetQBuffer reserved = buffer.slice(position, size);
+
+         reserved.writerIndex(0);
+
+         bytes.encode(reserved);
       }
+      finally
+      {
+         encodedBytes.addAndGet(size);
 
+         // read after the bytes are counted, so either the flush sees them or it is notified
+         if (waitingFlushes > 0)
+         {
+            synchronized (this)
+            {
+               notifyAll();
+            }
+         }
+      }
    }
 
    public void flush()
@@ -308,49 +536,288 @@ public class TimedBuffer
             throw new IllegalStateException("TimedBuffer is not started");
          }
 
-         if ((force || !delayFlush) && buffer.writerIndex() > 0)
+         closeWindow();
+
+         flushBuffer(force);
+
+         openWindow();
+      }
+   }
+
+   // Package protected ---------------------------------------------
+
+   // Protected -----------------------------------------------------
+
+   // Private -------------------------------------------------------
+
+   /**
+    * The caller must hold the lock on this buffer
+    */
+   private void recordAdded(final boolean sync)
+   {
+      if (adaptive)
+      {
+         long now = System.nanoTime();
+
+         if (lastArrivalTime != 0)
+         {
+            // an idle period counts as one timeout, so the average recovers quickly when the load is back
+            long interval = Math.min(now - lastArrivalTime, timeout);
+
+            arrivalInterval += (interval - arrivalInterval) >> 3;
+         }
+
+         lastArrivalTime = now;
+
+         if (sync && !pendingSync)
          {
-            int pos = buffer.writerIndex();
+            long wait = Math.min(timeout, syncLatency);
 
-            if (logRates)
-            {
-               bytesFlushed.addAndGet(pos);
-            }
+            // no other record is expected before the sync is done, waiting would only add latency
+            currentTimeout = arrivalInterval >= wait ? 0 : wait;
+
+            pendingSyncTime = now;
+         }
+      }
 
-            ByteBuffer bufferToFlush = bufferObserver.newBuffer(bufferSize, pos);
+      if (sync)
+      {
+         pendingSync = true;
 
-            // Putting a byteArray on a native buffer is much faster, since it will do in a single native call.
-            // Using bufferToFlush.put(buffer) would make several append calls for each byte
-            // We also transfer the content of this buffer to the native file's buffer
+         startSpin();
+      }
+   }
 
-            bufferToFlush.put(buffer.toByteBuffer().array(), 0, pos);
+   /**
+    * The caller must hold the lock on this buffer, with the window closed
+    */
+   private void flushBuffer(final boolean force)
+   {
+      // the lock is released while waiting, so the state has to be checked afterwards
+      waitReservations();
 
-            bufferObserver.flushBuffer(bufferToFlush, pendingSync, callbacks);
+      if ((force || !delayFlush) && buffer.writerIndex() > 0)
+      {
+         int pos = buffer.writerIndex();
 
-            stopSpin();
+         if (logRates)
+         {
+            bytesFlushed.addAndGet(pos);
+         }
 
-            pendingSync = false;
+         ByteBuffer bufferToFlush = bufferObserver.newBuffer(bufferSize, pos);
 
-            // swap the instance as the previous callback list is being used asynchronously
-            callbacks = new LinkedList<IOAsyncTask>();
+         // Putting a byteArray on a native buffer is much faster, since it will do in a single native call.
+         // Using bufferToFlush.put(buffer) would make several append calls for each byte
+         // We also transfer the content of this buffer to the native file's buffer
 
-            buffer.clear();
+         bufferToFlush.put(buffer.toByteBuffer().array(), 0, pos);
 
-            bufferLimit = 0;
+         List<IOAsyncTask> flushedCallbacks = takeCallbacks();
 
-            flushesDone.incrementAndGet();
+         batchSizes.incrementAndGet(Math.min(BATCH_SIZE_BUCKETS - 1,
+                                             31 - Integer.numberOfLeadingZeros(Math.max(1, flushedCallbacks.size()))));
+
+         if (adaptive && pendingSync)
+         {
+            flushedCallbacks.add(new SyncLatencyProbe());
          }
+
+         bufferObserver.flushBuffer(bufferToFlush, pendingSync, flushedCallbacks);
+
+         stopSpin();
+
+         pendingSync = false;
+
+         buffer.clear();
+
+         encodedBytes.set(0);
+
+         bufferLimit = 0;
+
+         flushesDone.incrementAndGet();
       }
    }
 
-   // Package protected ---------------------------------------------
+   /**
+    * The caller must hold the lock on this buffer
+    * @return the callbacks on the order of the reservations
+    */
+   private List<IOAsyncTask> takeCallbacks()
+   {
+      List<ReservedCallback> reserved = new ArrayList<ReservedCallback>();
 
-   // Protected -----------------------------------------------------
+      ReservedCallback next;
 
-   // Private -------------------------------------------------------
+      while ((next = callbacks.poll()) != null)
+      {
+         reserved.add(next);
+      }
+
+      // the reservations of the window are added out of order by the threads racing for them
+      Collections.sort(reserved);
+
+      List<IOAsyncTask> result = new ArrayList<IOAsyncTask>(reserved.size() + 1);
+
+      for (ReservedCallback callback : reserved)
+      {
+         result.add(callback.callback);
+      }
+
+      return result;
+   }
+
+   /**
+    * Flushes a window that is full, opening a new one. The caller can't hold the lock on this buffer
+    * @return false if the record doesn't fit on the new window
+    */
+   private synchronized boolean refill(final Window full, final int size)
+   {
+      if (window != full)
+      {
+         // someone else got to it first
+         return true;
+      }
+
+      closeWindow();
+
+      flushBuffer(false);
+
+      openWindow();
+
+      return window != null && size <= window.limit - window.position.get();
+   }
+
+   /**
+    * The caller must hold the lock on this buffer. Takes the reservations made since the window was
+    * opened into the writerIndex
+    */
+   private void closeWindow()
+   {
+      Window current = window;
+
+      if (current != null)
+      {
+         window = null;
+
+         buffer.writerIndex(current.position.getAndSet(Window.CLOSED));
+      }
+   }
+
+   /**
+    * The caller must hold the lock on this buffer. Nothing is reserved on the window while a record
+    * checked by {@link #checkSize(int)} is not added or while a flush waits for the reservations
+    */
+   private void openWindow()
+   {
+      if (!started || delayFlush || waitingFlushes > 0 || bufferObserver == null || window != null)
+      {
+         return;
+      }
+
+      if (bufferLimit == 0)
+      {
+         bufferLimit = Math.min(bufferObserver.getRemainingBytes(), bufferSize);
+      }
+
+      window = new Window(bufferObserver, bufferLimit, buffer.writerIndex());
+   }
+
+   /**
+    * The caller must hold the lock on this buffer
+    */
+   private void waitReservations()
+   {
+      // counted before reading the encoded bytes, so writeReserved either notifies or is seen here
+      waitingFlushes++;
+
+      try
+      {
+         closeWindow();
+
+         while (encodedBytes.get() != buffer.writerIndex())
+         {
+            try
+            {
+               wait();
+            }
+            catch (InterruptedException e)
+            {
+               throw new HornetQInterruptedException(e);
+            }
+
+            // a window may have been opened while the lock was released
+            closeWindow();
+         }
+      }
+      finally
+      {
+         waitingFlushes--;
+      }
+   }
 
    // Inner classes -------------------------------------------------
 
+   /**
+    * The space of the buffer that can be reserved without the lock, from the writerIndex when opened
+    * up to the limit. A new instance is used every time, so a closed window is never reused
+    */
+   private static final class Window
+   {
+      static final int CLOSED = -1;
+
+      final TimedBufferObserver observer;
+
+      final int limit;
+
+      final AtomicInteger position;
+
+      Window(final TimedBufferObserver observer, final int limit, final int position)
+      {
+         this.observer = observer;
+         this.limit = limit;
+         this.position = new AtomicInteger(position);
+      }
+   }
+
+   private static final class ReservedCallback implements Comparable<ReservedCallback>
+   {
+      final int position;
+
+      final IOAsyncTask callback;
+
+      ReservedCallback(final int position, final IOAsyncTask callback)
+      {
+         this.position = position;
+         this.callback = callback;
+      }
+
+      public int compareTo(final ReservedCallback other)
+      {
+         return position < other.position ? -1 : position == other.position ? 0 : 1;
+      }
+   }
+
+   /**
+    * Completed with the records of a sync flush, measuring how long the sync took
+    */
+   private class SyncLatencyProbe implements IOAsyncTask
+   {
+      private final long flushTime = System.nanoTime();
+
+      public void done()
+      {
+         long latency = System.nanoTime() - flushTime;
+
+         // only the IO thread of the file updates it
+         syncLatency += (latency - syncLatency) >> 3;
+      }
+
+      public void onError(final int errorCode, final String errorMessage)
+      {
+      }
+   }
+
    private class LogRatesTimerTask extends TimerTask
    {
       private boolean closed;
@@ -419,7 +886,20 @@ public class TimedBuffer
             // Effectively flushing "resets" the timer
             // On the timeout verification, notice that we ignore the timeout check if we are using sleep
 
-            if (pendingSync)
+            if (pendingSync && adaptive)
+            {
+               long remaining = pendingSyncTime + currentTimeout - System.nanoTime();
+
+               if (remaining <= 0)
+               {
+                  flush();
+               }
+               else if (isUseSleep())
+               {
+                  sleepUntilDeadline(remaining);
+               }
+            }
+            else if (pendingSync)
             {
                if (isUseSleep())
                {
@@ -437,7 +917,10 @@ public class TimedBuffer
 
             }
 
-            sleepIfPossible();
+            if (!adaptive)
+            {
+               sleepIfPossible();
+            }
 
             try
             {
@@ -504,6 +987,18 @@ public class TimedBuffer
          }
       }
 
+      private void sleepUntilDeadline(final long remaining)
+      {
+         try
+         {
+            sleep((int)(remaining / 1000000), (int)(remaining % 1000000));
+         }
+         catch (InterruptedException e)
+         {
+            throw new HornetQInterruptedException(e);
+         }
+      }
+
       public void close()
       {
          closed = true;
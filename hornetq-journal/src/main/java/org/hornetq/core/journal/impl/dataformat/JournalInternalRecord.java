@@ -15,6 +15,7 @@ package org.hornetq.core.journal.impl.dataformat;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.core.journal.EncodingSupport;
+import org.hornetq.core.journal.SequentialFile;
 
 /**
  * A InternalEncoder
@@ -30,6 +31,11 @@ public abstract class JournalInternalRecord implements EncodingSupport
 
    protected byte compactCount;
 
+   // Set when the space for this record was reserved on the file, but the record wasn't written yet
+   private SequentialFile reservedFile;
+
+   private int reservedPosition;
+
    public int getFileID()
    {
       return fileID;
@@ -40,6 +46,28 @@ public abstract class JournalInternalRecord implements EncodingSupport
       this.fileID = fileID;
    }
 
+   public void setReservation(final SequentialFile file, final int position)
+   {
+      reservedFile = file;
+      reservedPosition = position;
+   }
+
+   /**
+    * Encodes this record on the space reserved through {@link SequentialFile#reserve(int, boolean, org.hornetq.core.journal.IOAsyncTask)},
+    * if there is one.
+    */
+   public void writeReserved()
+   {
+      if (reservedFile != null)
+      {
+         SequentialFile file = reservedFile;
+
+         reservedFile = null;
+
+         file.writeReserved(reservedPosition, this);
+      }
+   }
+
    public void decode(final HornetQBuffer buffer)
    {
    }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the {@link PackedJournalRecordIndex} keeps the same file counters as the
+ * {@link MapJournalRecordIndex}.
+ */
+public class PackedJournalRecordIndexTest extends Assert
+{
+   private static final int NUMBER_OF_FILES = 5;
+
+   @Test
+   public void testSameCountersAsMapIndex() throws Exception
+   {
+      JournalFile[] mapFiles = createFiles();
+      JournalFile[] packedFiles = createFiles();
+
+      JournalRecordIndex mapIndex = new MapJournalRecordIndex();
+      JournalRecordIndex packedIndex = new PackedJournalRecordIndex();
+
+      Random random = new Random(1234);
+
+      for (int i = 0; i < 50000; i++)
+      {
+         long id = random.nextInt(5000);
+         int file = random.nextInt(NUMBER_OF_FILES);
+         int size = 10 + random.nextInt(100);
+
+         switch (random.nextInt(3))
+         {
+            case 0:
+               if (!mapIndex.containsRecord(id))
+               {
+                  mapIndex.addRecord(id, mapFiles[file], size);
+                  packedIndex.addRecord(id, packedFiles[file], size);
+               }
+               break;
+            case 1:
+               assertEquals(mapIndex.updateRecord(id, mapFiles[file], size),
+                            packedIndex.updateRecord(id, packedFiles[file], size));
+               break;
+            default:
+               assertEquals(mapIndex.deleteRecord(id, mapFiles[file]), packedIndex.deleteRecord(id, packedFiles[file]));
+         }
+      }
+
+      assertEquals(mapIndex.size(), packedIndex.size());
+      assertSameIDs(mapIndex, packedIndex);
+      assertSameCounters(mapFiles, packedFiles);
+
+      for (long id : packedIndex.getRecordIDs())
+      {
+         assertTrue(packedIndex.deleteRecord(id, packedFiles[0]));
+         assertTrue(mapIndex.deleteRecord(id, mapFiles[0]));
+      }
+
+      assertEquals(0, packedIndex.size());
+      assertSameCounters(mapFiles, packedFiles);
+
+      for (int i = 0; i < NUMBER_OF_FILES; i++)
+      {
+         assertEquals(0, packedFiles[i].getLiveSize());
+      }
+   }
+
+   @Test
+   public void testTransferKeepsCounters() throws Exception
+   {
+      JournalFile[] files = createFiles();
+
+      JournalRecordIndex compacted = new PackedJournalRecordIndex();
+
+      for (long id = 0; id < 3000; id++)
+      {
+         compacted.addRecord(id, files[0], 100);
+         compacted.updateRecord(id, files[1], 10);
+         compacted.updateRecord(id, files[1], 10);
+         compacted.updateRecord(id, files[2], 5);
+      }
+
+      JournalRecordIndex records = new PackedJournalRecordIndex();
+
+      compacted.transferTo(records);
+
+      assertEquals(0, compacted.size());
+      assertEquals(3000, records.size());
+      assertEquals(3000, files[0].getPosCount());
+      assertEquals(6000, files[1].getPosCount());
+      assertEquals(3000 * 100, files[0].getLiveSize());
+
+      JournalRecordIndex mapRecords = new MapJournalRecordIndex();
+
+      records.transferTo(mapRecords);
+
+      for (long id = 0; id < 3000; id++)
+      {
+         assertTrue(mapRecords.deleteRecord(id, files[3]));
+      }
+
+      assertEquals(3000, files[3].getNegCount(files[0]));
+      assertEquals(6000, files[3].getNegCount(files[1]));
+      assertEquals(3000, files[3].getNegCount(files[2]));
+
+      for (int i = 0; i < 3; i++)
+      {
+         assertEquals(0, files[i].getLiveSize());
+      }
+   }
+
+   @Test
+   public void testDeleteMissingRecord() throws Exception
+   {
+      JournalFile[] files = createFiles();
+
+      JournalRecordIndex index = new PackedJournalRecordIndex();
+
+      assertFalse(index.deleteRecord(1, files[0]));
+      assertFalse(index.updateRecord(1, files[0], 10));
+
+      index.addRecord(1, files[0], 10);
+      assertTrue(index.deleteRecord(1, files[1]));
+      assertFalse(index.containsRecord(1));
+      assertFalse(index.deleteRecord(1, files[1]));
+
+      assertEquals(1, files[1].getNegCount(files[0]));
+   }
+
+   private static JournalFile[] createFiles()
+   {
+      JournalFile[] files = new JournalFile[NUMBER_OF_FILES];
+
+      for (int i = 0; i < NUMBER_OF_FILES; i++)
+      {
+         files[i] = new JournalFileImpl(null, i, JournalImpl.FORMAT_VERSION);
+      }
+
+      return files;
+   }
+
+   private static void assertSameIDs(final JournalRecordIndex expected, final JournalRecordIndex actual)
+   {
+      long[] expectedIDs = expected.getRecordIDs();
+      long[] actualIDs = actual.getRecordIDs();
+
+      Arrays.sort(expectedIDs);
+      Arrays.sort(actualIDs);
+
+      assertArrayEquals(expectedIDs, actualIDs);
+   }
+
+   private static void assertSameCounters(final JournalFile[] expected, final JournalFile[] actual)
+   {
+      for (int i = 0; i < NUMBER_OF_FILES; i++)
+      {
+         assertEquals(expected[i].getPosCount(), actual[i].getPosCount());
+         assertEquals(expected[i].getLiveSize(), actual[i].getLiveSize());
+         assertEquals(expected[i].getTotalNegativeToOthers(), actual[i].getTotalNegativeToOthers());
+
+         for (int j = 0; j < NUMBER_OF_FILES; j++)
+         {
+            assertEquals(expected[i].getNegCount(expected[j]), actual[i].getNegCount(actual[j]));
+         }
+      }
+   }
+}
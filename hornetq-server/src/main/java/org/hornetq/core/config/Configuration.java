@@ -176,6 +176,29 @@ public interface Configuration extends Serializable
     */
    void setSecurityInvalidationInterval(long interval);
 
+   /**
+    * Returns the maximum number of successful authentications cached by the server, or {@code 0} if
+    * every authentication is validated by the security manager. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_AUTHENTICATION_CACHE_SIZE}.
+    */
+   int getAuthenticationCacheSize();
+
+   /**
+    * Sets the maximum number of successful authentications cached by the server.
+    */
+   void setAuthenticationCacheSize(int size);
+
+   /**
+    * Returns how long (in milliseconds) a successful authentication is cached. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_AUTHENTICATION_CACHE_TIMEOUT}.
+    */
+   long getAuthenticationCacheTimeout();
+
+   /**
+    * Sets how long (in milliseconds) a successful authentication is cached.
+    */
+   void setAuthenticationCacheTimeout(long timeout);
+
    /**
     * Returns whether security is enabled for this server. <br>
     * Default value is {@value HornetQDefaultConfiguration#DEFAULT_SECURITY_ENABLED}.
@@ -573,6 +596,28 @@ public interface Configuration extends Serializable
     */
    void setJournalCompactPercentage(int percentage);
 
+   /**
+    * Returns whether the journal keeps its record index on primitive arrays. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_PACKED_RECORD_INDEX}.
+    */
+   boolean isJournalPackedRecordIndex();
+
+   /**
+    * Sets whether the journal keeps its record index on primitive arrays.
+    */
+   void setJournalPackedRecordIndex(boolean packed);
+
+   /**
+    * Returns whether journal records are encoded outside of the journal append lock. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_PARALLEL_APPEND}.
+    */
+   boolean isJournalParallelAppend();
+
+   /**
+    * Sets whether journal records are encoded outside of the journal append lock.
+    */
+   void setJournalParallelAppend(boolean parallel);
+
    /**
     * Returns the number of journal files to pre-create. <br>
     * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_MIN_FILES}.
@@ -644,6 +689,18 @@ public interface Configuration extends Serializable
     */
    void setJournalBufferTimeout_NIO(int journalBufferTimeout);
 
+   /**
+    * Returns whether the journal buffer adapts the time a sync waits for other records to the
+    * measured sync latency and arrival rate. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_BUFFER_ADAPTIVE}.
+    */
+   boolean isJournalBufferAdaptive();
+
+   /**
+    * Sets whether the journal buffer adapts the time a sync waits for other records.
+    */
+   void setJournalBufferAdaptive(boolean adaptive);
+
    /**
     * Returns the buffer size (in bytes) for NIO.
     * <br>
@@ -926,4 +983,16 @@ public interface Configuration extends Serializable
     * @return name of the cluster configuration to use
     */
    String getReplicationClustername();
+
+   /**
+    * Returns the maximum size (in bytes) of a batch of journal records a live server replicates to
+    * its backup with a single response, or {@code 0} if each record is replicated on its own. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_REPLICATION_BATCH_SIZE}.
+    */
+   int getReplicationBatchSize();
+
+   /**
+    * Sets the maximum size (in bytes) of a batch of replicated journal records.
+    */
+   void setReplicationBatchSize(int size);
 }
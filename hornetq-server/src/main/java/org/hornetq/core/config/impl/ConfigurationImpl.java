@@ -76,6 +76,10 @@ public class ConfigurationImpl implements Configuration
 
    private long securityInvalidationInterval = HornetQDefaultConfiguration.getDefaultSecurityInvalidationInterval();
 
+   private int authenticationCacheSize = HornetQDefaultConfiguration.getDefaultAuthenticationCacheSize();
+
+   private long authenticationCacheTimeout = HornetQDefaultConfiguration.getDefaultAuthenticationCacheTimeout();
+
    private boolean securityEnabled = HornetQDefaultConfiguration.isDefaultSecurityEnabled();
 
    protected boolean jmxManagementEnabled = HornetQDefaultConfiguration.isDefaultJmxManagementEnabled();
@@ -142,6 +146,10 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalCompactPercentage = HornetQDefaultConfiguration.getDefaultJournalCompactPercentage();
 
+   protected boolean journalPackedRecordIndex = HornetQDefaultConfiguration.isDefaultJournalPackedRecordIndex();
+
+   protected boolean journalParallelAppend = HornetQDefaultConfiguration.isDefaultJournalParallelAppend();
+
    protected int journalFileSize = HornetQDefaultConfiguration.getDefaultJournalFileSize();
 
    protected int journalMinFiles = HornetQDefaultConfiguration.getDefaultJournalMinFiles();
@@ -158,6 +166,8 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalBufferTimeout_NIO = HornetQDefaultConfiguration.getDefaultJournalBufferTimeoutNio();
 
+   protected boolean journalBufferAdaptive = HornetQDefaultConfiguration.isDefaultJournalBufferAdaptive();
+
    protected int journalBufferSize_NIO = HornetQDefaultConfiguration.getDefaultJournalBufferSizeNio();
 
    protected boolean logJournalWriteRate = HornetQDefaultConfiguration.isDefaultJournalLogWriteRate();
@@ -213,6 +223,8 @@ public class ConfigurationImpl implements Configuration
 
    private String replicationClusterName;
 
+   private int replicationBatchSize = HornetQDefaultConfiguration.getDefaultReplicationBatchSize();
+
    // Public -------------------------------------------------------------------------
 
    public boolean isClustered()
@@ -323,6 +335,26 @@ public class ConfigurationImpl implements Configuration
       securityInvalidationInterval = interval;
    }
 
+   public int getAuthenticationCacheSize()
+   {
+      return authenticationCacheSize;
+   }
+
+   public void setAuthenticationCacheSize(final int size)
+   {
+      authenticationCacheSize = size;
+   }
+
+   public long getAuthenticationCacheTimeout()
+   {
+      return authenticationCacheTimeout;
+   }
+
+   public void setAuthenticationCacheTimeout(final long timeout)
+   {
+      authenticationCacheTimeout = timeout;
+   }
+
    public long getConnectionTTLOverride()
    {
       return connectionTTLOverride;
@@ -821,6 +853,26 @@ public class ConfigurationImpl implements Configuration
       journalCompactPercentage = percentage;
    }
 
+   public boolean isJournalPackedRecordIndex()
+   {
+      return journalPackedRecordIndex;
+   }
+
+   public void setJournalPackedRecordIndex(final boolean packed)
+   {
+      journalPackedRecordIndex = packed;
+   }
+
+   public boolean isJournalParallelAppend()
+   {
+      return journalParallelAppend;
+   }
+
+   public void setJournalParallelAppend(final boolean parallel)
+   {
+      journalParallelAppend = parallel;
+   }
+
    public long getServerDumpInterval()
    {
       return serverDumpInterval;
@@ -901,6 +953,16 @@ public class ConfigurationImpl implements Configuration
       journalBufferTimeout_NIO = journalBufferTimeout;
    }
 
+   public boolean isJournalBufferAdaptive()
+   {
+      return journalBufferAdaptive;
+   }
+
+   public void setJournalBufferAdaptive(final boolean adaptive)
+   {
+      journalBufferAdaptive = adaptive;
+   }
+
    public int getJournalBufferSize_NIO()
    {
       return journalBufferSize_NIO;
@@ -1034,6 +1096,18 @@ public class ConfigurationImpl implements Configuration
       return replicationClusterName;
    }
 
+   @Override
+   public int getReplicationBatchSize()
+   {
+      return replicationBatchSize;
+   }
+
+   @Override
+   public void setReplicationBatchSize(final int size)
+   {
+      replicationBatchSize = size;
+   }
+
    @Override
    public int hashCode()
    {
@@ -1075,6 +1149,7 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + journalBufferSize_NIO;
       result = prime * result + journalBufferTimeout_AIO;
       result = prime * result + journalBufferTimeout_NIO;
+      result = prime * result + (journalBufferAdaptive ? 1231 : 1237);
       result = prime * result + journalCompactMinFiles;
       result = prime * result + journalCompactPercentage;
       result = prime * result + ((journalDirectory == null) ? 0 : journalDirectory.hashCode());
@@ -1082,6 +1157,8 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + journalMaxIO_AIO;
       result = prime * result + journalMaxIO_NIO;
       result = prime * result + journalMinFiles;
+      result = prime * result + (journalPackedRecordIndex ? 1231 : 1237);
+      result = prime * result + (journalParallelAppend ? 1231 : 1237);
       result = prime * result + journalPerfBlastPages;
       result = prime * result + (journalSyncNonTransactional ? 1231 : 1237);
       result = prime * result + (journalSyncTransactional ? 1231 : 1237);
@@ -1112,10 +1189,13 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + (persistenceEnabled ? 1231 : 1237);
       result = prime * result + ((queueConfigurations == null) ? 0 : queueConfigurations.hashCode());
       result = prime * result + ((replicationClusterName == null) ? 0 : replicationClusterName.hashCode());
+      result = prime * result + replicationBatchSize;
       result = prime * result + (runSyncSpeedTest ? 1231 : 1237);
       result = prime * result + scheduledThreadPoolMaxSize;
       result = prime * result + (securityEnabled ? 1231 : 1237);
       result = prime * result + (int)(securityInvalidationInterval ^ (securityInvalidationInterval >>> 32));
+      result = prime * result + authenticationCacheSize;
+      result = prime * result + (int)(authenticationCacheTimeout ^ (authenticationCacheTimeout >>> 32));
       result = prime * result + ((securitySettings == null) ? 0 : securitySettings.hashCode());
       result = prime * result + (int)(serverDumpInterval ^ (serverDumpInterval >>> 32));
       result = prime * result + (sharedStore ? 1231 : 1237);
@@ -1275,6 +1355,8 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (journalBufferTimeout_NIO != other.journalBufferTimeout_NIO)
          return false;
+      if (journalBufferAdaptive != other.journalBufferAdaptive)
+         return false;
       if (journalCompactMinFiles != other.journalCompactMinFiles)
          return false;
       if (journalCompactPercentage != other.journalCompactPercentage)
@@ -1294,6 +1376,10 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (journalMinFiles != other.journalMinFiles)
          return false;
+      if (journalPackedRecordIndex != other.journalPackedRecordIndex)
+         return false;
+      if (journalParallelAppend != other.journalParallelAppend)
+         return false;
       if (journalPerfBlastPages != other.journalPerfBlastPages)
          return false;
       if (journalSyncNonTransactional != other.journalSyncNonTransactional)
@@ -1391,6 +1477,8 @@ public class ConfigurationImpl implements Configuration
       }
       else if (!replicationClusterName.equals(other.replicationClusterName))
          return false;
+      if (replicationBatchSize != other.replicationBatchSize)
+         return false;
       if (runSyncSpeedTest != other.runSyncSpeedTest)
          return false;
       if (scheduledThreadPoolMaxSize != other.scheduledThreadPoolMaxSize)
@@ -1399,6 +1487,10 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (securityInvalidationInterval != other.securityInvalidationInterval)
          return false;
+      if (authenticationCacheSize != other.authenticationCacheSize)
+         return false;
+      if (authenticationCacheTimeout != other.authenticationCacheTimeout)
+         return false;
       if (securitySettings == null)
       {
          if (other.securitySettings != null)
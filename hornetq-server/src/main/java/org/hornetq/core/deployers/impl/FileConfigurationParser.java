@@ -133,6 +133,24 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
    private static final String SEND_TO_DLA_ON_NO_ROUTE = "send-to-dla-on-no-route";
 
+   private static final String MESSAGE_ID_INDEX_NODE_NAME = "message-id-index";
+
+   private static final String BULK_OPERATION_BATCH_SIZE_NODE_NAME = "bulk-operation-batch-size";
+
+   private static final String STRIPED_DUPLICATE_ID_CACHE_NODE_NAME = "striped-duplicate-id-cache";
+
+   private static final String SELECTOR_DELIVERY_QUEUES_NODE_NAME = "selector-delivery-queues";
+
+   private static final String PAGE_MAX_CACHE_BYTES_NODE_NAME = "page-max-cache-bytes";
+
+   private static final String PAGE_READ_AHEAD_NODE_NAME = "page-read-ahead";
+
+   private static final String PAGE_READ_AHEAD_MAX_BYTES_NODE_NAME = "page-read-ahead-max-bytes";
+
+   private static final String PAGE_WRITE_BUFFER_SIZE_NODE_NAME = "page-write-buffer-size";
+
+   private static final String PAGE_COMPRESSION_NODE_NAME = "page-compression";
+
    // Attributes ----------------------------------------------------
 
    private boolean validateAIO = false;
@@ -193,6 +211,8 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       config.setFailoverOnServerShutdown(getBoolean(e, "failover-on-shutdown",
                                                                          config.isFailoverOnServerShutdown()));
       config.setReplicationClustername(getString(e, "replication-clustername", null, Validators.NO_CHECK));
+      config.setReplicationBatchSize(getInteger(e, "replication-batch-size", config.getReplicationBatchSize(),
+                                                Validators.GE_ZERO));
       config.setBackup(getBoolean(e, "backup", config.isBackup()));
 
       config.setSharedStore(getBoolean(e, "shared-store", config.isSharedStore()));
@@ -222,6 +242,14 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
                                                                           config.getSecurityInvalidationInterval(),
                                                                           Validators.GT_ZERO));
 
+      config.setAuthenticationCacheSize(getInteger(e, "authentication-cache-size",
+                                                   config.getAuthenticationCacheSize(),
+                                                   Validators.GE_ZERO));
+
+      config.setAuthenticationCacheTimeout(getLong(e, "authentication-cache-timeout",
+                                                   config.getAuthenticationCacheTimeout(),
+                                                   Validators.GT_ZERO));
+
       config.setConnectionTTLOverride(getLong(e,
                                                                    "connection-ttl-override",
                                                                    config.getConnectionTTLOverride(),
@@ -488,6 +516,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       {
          config.setJournalType(JournalType.NIO);
       }
+      else if (s.equals(JournalType.MAPPED.toString()))
+      {
+         config.setJournalType(JournalType.MAPPED);
+      }
       else if (s.equals(JournalType.ASYNCIO.toString()))
       {
          // https://jira.jboss.org/jira/browse/HORNETQ-295
@@ -555,6 +587,8 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
          config.setJournalMaxIO_NIO(journalMaxIO);
       }
 
+      config.setJournalBufferAdaptive(getBoolean(e, "journal-buffer-adaptive", config.isJournalBufferAdaptive()));
+
       config.setJournalMinFiles(getInteger(e, "journal-min-files", config.getJournalMinFiles(), Validators.GT_ZERO));
 
       config.setJournalCompactMinFiles(getInteger(e, "journal-compact-min-files", config.getJournalCompactMinFiles(),
@@ -565,6 +599,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
                                                                          config.getJournalCompactPercentage(),
                                                                          Validators.PERCENTAGE));
 
+      config.setJournalPackedRecordIndex(getBoolean(e, "journal-packed-record-index", config.isJournalPackedRecordIndex()));
+
+      config.setJournalParallelAppend(getBoolean(e, "journal-parallel-append", config.isJournalParallelAppend()));
+
       config.setLogJournalWriteRate(getBoolean(e,
                                                                     "log-journal-write-rate",
                                                                     HornetQDefaultConfiguration.isDefaultJournalLogWriteRate()));
@@ -858,6 +896,42 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
          {
             addressSettings.setSendToDLAOnNoRoute(XMLUtil.parseBoolean(child));
          }
+         else if (MESSAGE_ID_INDEX_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setMessageIDIndex(XMLUtil.parseBoolean(child));
+         }
+         else if (BULK_OPERATION_BATCH_SIZE_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setBulkOperationBatchSize(XMLUtil.parseInt(child));
+         }
+         else if (STRIPED_DUPLICATE_ID_CACHE_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setStripedDuplicateIDCache(XMLUtil.parseBoolean(child));
+         }
+         else if (SELECTOR_DELIVERY_QUEUES_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setSelectorDeliveryQueues(XMLUtil.parseBoolean(child));
+         }
+         else if (PAGE_MAX_CACHE_BYTES_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageCacheMaxBytes(XMLUtil.parseLong(child));
+         }
+         else if (PAGE_READ_AHEAD_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageReadAhead(XMLUtil.parseInt(child));
+         }
+         else if (PAGE_READ_AHEAD_MAX_BYTES_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageReadAheadMaxBytes(XMLUtil.parseLong(child));
+         }
+         else if (PAGE_WRITE_BUFFER_SIZE_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageWriteBufferSize(XMLUtil.parseInt(child));
+         }
+         else if (PAGE_COMPRESSION_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageCompression(XMLUtil.parseBoolean(child));
+         }
       }
       return setting;
    }
@@ -1165,12 +1239,18 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       String type = getString(node, "type", null, Validators.NOT_NULL_OR_EMPTY);
       String address = getString(node, "address", null, Validators.NOT_NULL_OR_EMPTY);
       Integer timeout = getInteger(node, "timeout", GroupingHandlerConfiguration.DEFAULT_TIMEOUT, Validators.GT_ZERO);
+      Integer cacheSize = getInteger(node, "cache-size", GroupingHandlerConfiguration.DEFAULT_CACHE_SIZE,
+                                     Validators.MINUS_ONE_OR_GT_ZERO);
+      Long cacheTimeout = getLong(node, "cache-timeout", GroupingHandlerConfiguration.DEFAULT_CACHE_TIMEOUT,
+                                  Validators.MINUS_ONE_OR_GT_ZERO);
       mainConfiguration.setGroupingHandlerConfiguration(new GroupingHandlerConfiguration(new SimpleString(name),
                                                                                          type.equals(GroupingHandlerConfiguration.TYPE.LOCAL.getType())
                                                                                                                                                        ? GroupingHandlerConfiguration.TYPE.LOCAL
                                                                                                                                                        : GroupingHandlerConfiguration.TYPE.REMOTE,
                                                                                          new SimpleString(address),
-                                                                                         timeout));
+                                                                                         timeout,
+                                                                                         cacheSize,
+                                                                                         cacheTimeout));
    }
 
    private void parseBridgeConfiguration(final Element brNode, final Configuration mainConfig) throws Exception
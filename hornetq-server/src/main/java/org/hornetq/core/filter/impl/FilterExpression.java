@@ -0,0 +1,891 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.filter.impl;
+
+import java.util.Set;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.ServerMessage;
+
+/**
+ * A filter expression compiled from the tree of {@link Operator}s and {@link Identifier}s built by
+ * the parser.
+ * <p>
+ * The {@link Operator}s keep the values of the identifiers and of their arguments on their fields,
+ * so a filter could only be matched by one thread at a time. The compiled expressions have no
+ * state: the identifiers are looked up on the message as they're needed, the numbers are compared
+ * as primitives and the conditions evaluate to {@link #TRUE}, {@link #FALSE} or {@link #UNKNOWN}
+ * rather than to {@link Boolean}s.
+ * <p>
+ * The results are the same as the {@link Operator}s', including the cases where they throw an
+ * exception.
+ */
+abstract class FilterExpression
+{
+   static final int FALSE = 0;
+
+   static final int TRUE = 1;
+
+   static final int UNKNOWN = 2;
+
+   // The class of a null value, the other ones are the Operator's
+   private static final int NULL = 0;
+
+   private static final int USERID = 0;
+
+   private static final int PRIORITY = 1;
+
+   private static final int TIMESTAMP = 2;
+
+   private static final int DURABLE = 3;
+
+   private static final int EXPIRATION = 4;
+
+   private static final int SIZE = 5;
+
+   // Static --------------------------------------------------------
+
+   /**
+    * @param node an {@link Operator}, an {@link Identifier} or a literal, as returned by the parser
+    */
+   static FilterExpression compile(final Object node)
+   {
+      if (node instanceof Operator)
+      {
+         return compileOperator((Operator)node);
+      }
+      else if (node instanceof Identifier)
+      {
+         return compileIdentifier(((Identifier)node).getName());
+      }
+      else
+      {
+         return new Literal(node);
+      }
+   }
+
+   // Package protected ---------------------------------------------
+
+   /**
+    * @return the value, which can be of any class of the message properties
+    */
+   abstract Object evaluate(ServerMessage message) throws Exception;
+
+   /**
+    * @param operation the operation this is an argument of, for the error messages
+    * @throws Exception if the value is not a boolean
+    */
+   int test(final ServerMessage message, final Operator operation) throws Exception
+   {
+      Object value = evaluate(message);
+
+      int type = typeOf(value, operation);
+
+      if (type == NULL)
+      {
+         return UNKNOWN;
+      }
+
+      if (type != Operator.BOOLEAN)
+      {
+         operation.throwBadObjectException(type);
+      }
+
+      return ((Boolean)value).booleanValue() ? TRUE : FALSE;
+   }
+
+   // Private -------------------------------------------------------
+
+   private static FilterExpression compileOperator(final Operator operator)
+   {
+      switch (operator.operation)
+      {
+         case Operator.NOT:
+            return new Not(operator, compile(operator.oper1));
+         case Operator.AND:
+         case Operator.OR:
+            return new Logical(operator, compile(operator.oper1), compile(operator.oper2));
+         case Operator.EQUAL:
+         case Operator.DIFFERENT:
+         case Operator.GT:
+         case Operator.GE:
+         case Operator.LT:
+         case Operator.LE:
+            return new Comparison(operator,
+                                  operator.operation,
+                                  compile(operator.oper1),
+                                  compile(operator.oper2));
+         case Operator.BETWEEN:
+         case Operator.NOT_BETWEEN:
+            return new Between(operator, compile(operator.oper1), compile(operator.oper2), compile(operator.oper3));
+         case Operator.ADD:
+         case Operator.SUB:
+         case Operator.MUL:
+         case Operator.DIV:
+            return new Arithmetic(operator, compile(operator.oper1), compile(operator.oper2));
+         case Operator.NEG:
+            return new Negation(operator, compile(operator.oper1));
+         case Operator.LIKE:
+         case Operator.NOT_LIKE:
+         case Operator.LIKE_ESCAPE:
+         case Operator.NOT_LIKE_ESCAPE:
+            return new Like(operator, compile(operator.oper1));
+         case Operator.IS_NULL:
+         case Operator.IS_NOT_NULL:
+            return new IsNull(operator, compile(operator.oper1));
+         case Operator.IN:
+         case Operator.NOT_IN:
+            return new In(operator, compile(operator.oper1));
+         default:
+            return new Unsupported(operator);
+      }
+   }
+
+   private static FilterExpression compileIdentifier(final SimpleString name)
+   {
+      if (name.startsWith(FilterConstants.HORNETQ_PREFIX))
+      {
+         if (FilterConstants.HORNETQ_USERID.equals(name))
+         {
+            return new HeaderField(USERID);
+         }
+         else if (FilterConstants.HORNETQ_PRIORITY.equals(name))
+         {
+            return new HeaderField(PRIORITY);
+         }
+         else if (FilterConstants.HORNETQ_TIMESTAMP.equals(name))
+         {
+            return new HeaderField(TIMESTAMP);
+         }
+         else if (FilterConstants.HORNETQ_DURABLE.equals(name))
+         {
+            return new HeaderField(DURABLE);
+         }
+         else if (FilterConstants.HORNETQ_EXPIRATION.equals(name))
+         {
+            return new HeaderField(EXPIRATION);
+         }
+         else if (FilterConstants.HORNETQ_SIZE.equals(name))
+         {
+            return new HeaderField(SIZE);
+         }
+      }
+
+      return new Property(name);
+   }
+
+   /**
+    * The class the value is handled as by the operations, see Operator#computeArgument1()
+    */
+   private static int typeOf(final Object value, final Operator operation) throws Exception
+   {
+      if (value == null)
+      {
+         return NULL;
+      }
+
+      Class<?> type = value.getClass();
+
+      if (type == SimpleString.class)
+      {
+         return Operator.SIMPLE_STRING;
+      }
+      else if (type == Long.class || type == Integer.class || type == Short.class || type == Byte.class)
+      {
+         return Operator.LONG;
+      }
+      else if (type == Double.class || type == Float.class)
+      {
+         return Operator.DOUBLE;
+      }
+      else if (type == Boolean.class)
+      {
+         return Operator.BOOLEAN;
+      }
+
+      operation.throwBadObjectException(type);
+
+      return NULL;
+   }
+
+   private static boolean isNumber(final int type)
+   {
+      return type == Operator.LONG || type == Operator.DOUBLE;
+   }
+
+   private static boolean compare(final int comparison,
+                                  final Number value1,
+                                  final int type1,
+                                  final Number value2,
+                                  final int type2)
+   {
+      if (type1 == Operator.LONG && type2 == Operator.LONG)
+      {
+         long long1 = value1.longValue();
+         long long2 = value2.longValue();
+
+         switch (comparison)
+         {
+            case Operator.EQUAL:
+               return long1 == long2;
+            case Operator.DIFFERENT:
+               return long1 != long2;
+            case Operator.GT:
+               return long1 > long2;
+            case Operator.GE:
+               return long1 >= long2;
+            case Operator.LT:
+               return long1 < long2;
+            default:
+               return long1 <= long2;
+         }
+      }
+
+      if (comparison == Operator.GE && type1 == Operator.DOUBLE && type2 == Operator.LONG)
+      {
+         // Operator#ge() compares a double to a long as two longs
+         return value1.longValue() >= value2.longValue();
+      }
+
+      double double1 = type1 == Operator.LONG ? value1.longValue() : value1.doubleValue();
+      double double2 = type2 == Operator.LONG ? value2.longValue() : value2.doubleValue();
+
+      switch (comparison)
+      {
+         case Operator.EQUAL:
+            return double1 == double2;
+         case Operator.DIFFERENT:
+            return double1 != double2;
+         case Operator.GT:
+            return double1 > double2;
+         case Operator.GE:
+            return double1 >= double2;
+         case Operator.LT:
+            return double1 < double2;
+         default:
+            return double1 <= double2;
+      }
+   }
+
+   private static int valueOf(final boolean condition)
+   {
+      return condition ? TRUE : FALSE;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static final class Literal extends FilterExpression
+   {
+      private final Object value;
+
+      Literal(final Object value)
+      {
+         this.value = value;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message)
+      {
+         return value;
+      }
+   }
+
+   private static final class Property extends FilterExpression
+   {
+      private final SimpleString name;
+
+      Property(final SimpleString name)
+      {
+         this.name = name;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message)
+      {
+         return message.getObjectProperty(name);
+      }
+   }
+
+   private static final class HeaderField extends FilterExpression
+   {
+      private final int field;
+
+      HeaderField(final int field)
+      {
+         this.field = field;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message)
+      {
+         switch (field)
+         {
+            case USERID:
+               // It's the stringified (hex) representation of a user id that can be used in a selector expression
+               return new SimpleString("ID:" + message.getUserID());
+            case PRIORITY:
+               return Integer.valueOf(message.getPriority());
+            case TIMESTAMP:
+               return message.getTimestamp();
+            case DURABLE:
+               return message.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
+            case EXPIRATION:
+               return message.getExpiration();
+            default:
+               return message.getEncodeSize();
+         }
+      }
+   }
+
+   /**
+    * An operation evaluating to true, false or unknown
+    */
+   private abstract static class Condition extends FilterExpression
+   {
+      final Operator operation;
+
+      Condition(final Operator operation)
+      {
+         this.operation = operation;
+      }
+
+      abstract int test(ServerMessage message) throws Exception;
+
+      @Override
+      final int test(final ServerMessage message, final Operator parent) throws Exception
+      {
+         return test(message);
+      }
+
+      @Override
+      final Object evaluate(final ServerMessage message) throws Exception
+      {
+         switch (test(message))
+         {
+            case TRUE:
+               return Boolean.TRUE;
+            case FALSE:
+               return Boolean.FALSE;
+            default:
+               return null;
+         }
+      }
+   }
+
+   private static final class Not extends Condition
+   {
+      private final FilterExpression condition;
+
+      Not(final Operator operation, final FilterExpression condition)
+      {
+         super(operation);
+
+         this.condition = condition;
+      }
+
+      @Override
+      int test(final ServerMessage message) throws Exception
+      {
+         int result = condition.test(message, operation);
+
+         if (result == UNKNOWN)
+         {
+            return UNKNOWN;
+         }
+
+         return result == TRUE ? FALSE : TRUE;
+      }
+   }
+
+   private static final class Logical extends Condition
+   {
+      private final boolean and;
+
+      private final FilterExpression condition1;
+
+      private final FilterExpression condition2;
+
+      Logical(final Operator operation, final FilterExpression condition1, final FilterExpression condition2)
+      {
+         super(operation);
+
+         and = operation.operation == Operator.AND;
+         this.condition1 = condition1;
+         this.condition2 = condition2;
+      }
+
+      @Override
+      int test(final ServerMessage message) throws Exception
+      {
+         int result1 = condition1.test(message, operation);
+
+         if (and)
+         {
+            if (result1 == FALSE)
+            {
+               return FALSE;
+            }
+
+            int result2 = condition2.test(message, operation);
+
+            if (result1 == UNKNOWN)
+            {
+               return result2 == FALSE ? FALSE : UNKNOWN;
+            }
+
+            return result2;
+         }
+         else
+         {
+            if (result1 == TRUE)
+            {
+               return TRUE;
+            }
+
+            int result2 = condition2.test(message, operation);
+
+            if (result2 == TRUE)
+            {
+               return TRUE;
+            }
+
+            return result1 == FALSE && result2 == FALSE ? FALSE : UNKNOWN;
+         }
+      }
+   }
+
+   private static final class Comparison extends Condition
+   {
+      private final int comparison;
+
+      private final FilterExpression expression1;
+
+      private final FilterExpression expression2;
+
+      /**
+       * @param comparison the operation of the comparison, which can differ from the operation it's
+       *           part of for a BETWEEN
+       */
+      Comparison(final Operator operation,
+                 final int comparison,
+                 final FilterExpression expression1,
+                 final FilterExpression expression2)
+      {
+         super(operation);
+
+         this.comparison = comparison;
+         this.expression1 = expression1;
+         this.expression2 = expression2;
+      }
+
+      @Override
+      int test(final ServerMessage message) throws Exception
+      {
+         Object value1 = expression1.evaluate(message);
+
+         int type1 = typeOf(value1, operation);
+
+         switch (comparison)
+         {
+            case Operator.EQUAL:
+               if (type1 == NULL)
+               {
+                  return FALSE;
+               }
+               return testEquality(message, value1, type1, FALSE);
+            case Operator.DIFFERENT:
+               if (type1 == NULL)
+               {
+                  return typeOf(expression2.evaluate(message), operation) == NULL ? FALSE : TRUE;
+               }
+               return testEquality(message, value1, type1, UNKNOWN);
+            default:
+               if (type1 == NULL)
+               {
+                  return UNKNOWN;
+               }
+
+               if (!isNumber(type1))
+               {
+                  return FALSE;
+               }
+
+               Object value2 = expression2.evaluate(message);
+
+               int type2 = typeOf(value2, operation);
+
+               if (type2 == NULL)
+               {
+                  return UNKNOWN;
+               }
+
+               if (!isNumber(type2))
+               {
+                  return FALSE;
+               }
+
+               return valueOf(compare(comparison, (Number)value1, type1, (Number)value2, type2));
+         }
+      }
+
+      /**
+       * @param nullString the result when comparing a string or a boolean to null
+       */
+      private int testEquality(final ServerMessage message,
+                               final Object value1,
+                               final int type1,
+                               final int nullString) throws Exception
+      {
+         Object value2 = expression2.evaluate(message);
+
+         int type2 = typeOf(value2, operation);
+
+         if (isNumber(type1))
+         {
+            if (type2 == NULL)
+            {
+               return UNKNOWN;
+            }
+
+            if (!isNumber(type2))
+            {
+               return FALSE;
+            }
+
+            return valueOf(compare(comparison, (Number)value1, type1, (Number)value2, type2));
+         }
+
+         if (type2 == NULL)
+         {
+            return nullString;
+         }
+
+         if (type2 != type1)
+         {
+            operation.throwBadObjectException(type1, type2);
+         }
+
+         return valueOf(value1.equals(value2) == (comparison == Operator.EQUAL));
+      }
+   }
+
+   private static final class Between extends Condition
+   {
+      private final boolean not;
+
+      private final Comparison lower;
+
+      private final Comparison upper;
+
+      Between(final Operator operation,
+              final FilterExpression expression,
+              final FilterExpression lowerBound,
+              final FilterExpression upperBound)
+      {
+         super(operation);
+
+         not = operation.operation == Operator.NOT_BETWEEN;
+
+         if (not)
+         {
+            lower = new Comparison(operation, Operator.LT, expression, lowerBound);
+            upper = new Comparison(operation, Operator.GT, expression, upperBound);
+         }
+         else
+         {
+            lower = new Comparison(operation, Operator.GE, expression, lowerBound);
+            upper = new Comparison(operation, Operator.LE, expression, upperBound);
+         }
+      }
+
+      @Override
+      int test(final ServerMessage message) throws Exception
+      {
+         int result = lower.test(message);
+
+         if (result == UNKNOWN || result == (not ? TRUE : FALSE))
+         {
+            return result;
+         }
+
+         return upper.test(message);
+      }
+   }
+
+   private static final class Like extends Condition
+   {
+      private final boolean not;
+
+      private final FilterExpression expression;
+
+      private final RegExp regExp;
+
+      // The pattern is a literal, but the Operator would only fail on it once it has a string to match
+      private final Exception invalidPattern;
+
+      Like(final Operator operation, final FilterExpression expression)
+      {
+         super(operation);
+
+         not = operation.operation == Operator.NOT_LIKE || operation.operation == Operator.NOT_LIKE_ESCAPE;
+         this.expression = expression;
+
+         boolean useEscape = operation.operation == Operator.LIKE_ESCAPE ||
+                             operation.operation == Operator.NOT_LIKE_ESCAPE;
+
+         RegExp compiled = null;
+         Exception invalid = null;
+
+         try
+         {
+            Character escapeChar = null;
+
+            if (useEscape)
+            {
+               SimpleString escapeString = (SimpleString)operation.oper3;
+
+               if (escapeString.length() != 1)
+               {
+                  throw new Exception("LIKE ESCAPE: Bad escape character " + escapeString.toString());
+               }
+
+               escapeChar = Character.valueOf(escapeString.charAt(0));
+            }
+
+            compiled = new RegExp(operation.oper2.toString(), escapeChar);
+         }
+         catch (Exception e)
+         {
+            invalid = e;
+         }
+
+         regExp = compiled;
+         invalidPattern = invalid;
+      }
+
+      @Override
+      int test(final ServerMessage message) throws Exception
+      {
+         Object value = expression.evaluate(message);
+
+         int type = typeOf(value, operation);
+
+         if (type == NULL)
+         {
+            return UNKNOWN;
+         }
+
+         if (type != Operator.SIMPLE_STRING)
+         {
+            operation.throwBadObjectException(type);
+         }
+
+         if (invalidPattern != null)
+         {
+            throw invalidPattern;
+         }
+
+         return valueOf(regExp.isMatch(value) != not);
+      }
+   }
+
+   private static final class IsNull extends Condition
+   {
+      private final boolean not;
+
+      private final FilterExpression expression;
+
+      IsNull(final Operator operation, final FilterExpression expression)
+      {
+         super(operation);
+
+         not = operation.operation == Operator.IS_NOT_NULL;
+         this.expression = expression;
+      }
+
+      @Override
+      int test(final ServerMessage message) throws Exception
+      {
+         return valueOf((typeOf(expression.evaluate(message), operation) == NULL) != not);
+      }
+   }
+
+   private static final class In extends Condition
+   {
+      private final boolean not;
+
+      private final FilterExpression expression;
+
+      private final Set<?> values;
+
+      In(final Operator operation, final FilterExpression expression)
+      {
+         super(operation);
+
+         not = operation.operation == Operator.NOT_IN;
+         this.expression = expression;
+         values = (Set<?>)operation.oper2;
+      }
+
+      @Override
+      int test(final ServerMessage message) throws Exception
+      {
+         Object value = expression.evaluate(message);
+
+         int type = typeOf(value, operation);
+
+         if (type == NULL)
+         {
+            return not ? UNKNOWN : FALSE;
+         }
+
+         if (type != Operator.SIMPLE_STRING)
+         {
+            operation.throwBadObjectException(type);
+         }
+
+         return valueOf(values.contains(value) != not);
+      }
+   }
+
+   private static final class Arithmetic extends FilterExpression
+   {
+      private final Operator operation;
+
+      private final FilterExpression expression1;
+
+      private final FilterExpression expression2;
+
+      Arithmetic(final Operator operation, final FilterExpression expression1, final FilterExpression expression2)
+      {
+         this.operation = operation;
+         this.expression1 = expression1;
+         this.expression2 = expression2;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value1 = expression1.evaluate(message);
+
+         int type1 = typeOf(value1, operation);
+
+         Object value2 = expression2.evaluate(message);
+
+         int type2 = typeOf(value2, operation);
+
+         if (type1 == NULL || type2 == NULL)
+         {
+            return null;
+         }
+
+         if (!isNumber(type1))
+         {
+            operation.throwBadObjectException(type1);
+         }
+
+         if (!isNumber(type2))
+         {
+            operation.throwBadObjectException(type2);
+         }
+
+         if (type1 == Operator.LONG && type2 == Operator.LONG)
+         {
+            long long1 = ((Number)value1).longValue();
+            long long2 = ((Number)value2).longValue();
+
+            switch (operation.operation)
+            {
+               case Operator.ADD:
+                  return Long.valueOf(long1 + long2);
+               case Operator.SUB:
+                  return Long.valueOf(long1 - long2);
+               case Operator.MUL:
+                  return Long.valueOf(long1 * long2);
+               default:
+                  return Long.valueOf(long1 / long2);
+            }
+         }
+
+         double double1 = ((Number)value1).doubleValue();
+         double double2 = ((Number)value2).doubleValue();
+
+         switch (operation.operation)
+         {
+            case Operator.ADD:
+               return Double.valueOf(double1 + double2);
+            case Operator.SUB:
+               return Double.valueOf(double1 - double2);
+            case Operator.MUL:
+               return Double.valueOf(double1 * double2);
+            default:
+               return Double.valueOf(double1 / double2);
+         }
+      }
+   }
+
+   private static final class Negation extends FilterExpression
+   {
+      private final Operator operation;
+
+      private final FilterExpression expression;
+
+      Negation(final Operator operation, final FilterExpression expression)
+      {
+         this.operation = operation;
+         this.expression = expression;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         Object value = expression.evaluate(message);
+
+         int type = typeOf(value, operation);
+
+         if (type == Operator.LONG)
+         {
+            return Long.valueOf(-((Number)value).longValue());
+         }
+         else if (type == Operator.DOUBLE)
+         {
+            return Double.valueOf(-((Number)value).doubleValue());
+         }
+         else if (type != NULL)
+         {
+            operation.throwBadObjectException(type);
+         }
+
+         return null;
+      }
+   }
+
+   private static final class Unsupported extends FilterExpression
+   {
+      private final Operator operation;
+
+      Unsupported(final Operator operation)
+      {
+         this.operation = operation;
+      }
+
+      @Override
+      Object evaluate(final ServerMessage message) throws Exception
+      {
+         // let the operator report it
+         return operation.apply();
+      }
+   }
+}
@@ -13,8 +13,10 @@
 
 package org.hornetq.core.filter.impl;
 
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.hornetq.api.core.FilterConstants;
 import org.hornetq.api.core.HornetQException;
@@ -62,12 +64,16 @@ public class FilterImpl implements Filter
 
    private final SimpleString sfilterString;
 
-   private final Map<SimpleString, Identifier> identifiers;
-
    private final Object result;
 
    private final Class<? extends Object> resultType;
 
+   private final FilterExpression expression;
+
+   private final SimpleString equalityProperty;
+
+   private final Set<SimpleString> equalityValues;
+
    // Static ---------------------------------------------------------
 
    /**
@@ -101,18 +107,21 @@ public class FilterImpl implements Filter
          HornetQServerLogger.LOGGER.invalidFilter(e, filterStr);
          throw HornetQMessageBundle.BUNDLE.invalidFilter(e, filterStr);
       }
-      return new FilterImpl(filterStr, identifierMap, result0);
+      return new FilterImpl(filterStr, result0);
    }
 
    // Constructors ---------------------------------------------------
 
-   private FilterImpl(final SimpleString str, final HashMap<SimpleString, Identifier> identifierMap,
-                      final Object result0)
+   private FilterImpl(final SimpleString str, final Object result0)
    {
       sfilterString = str;
-      identifiers = identifierMap;
       this.result = result0;
       resultType = result.getClass();
+      expression = FilterExpression.compile(result);
+
+      Set<SimpleString> values = new HashSet<SimpleString>();
+      equalityProperty = getEqualityProperty(result, values);
+      equalityValues = equalityProperty == null ? null : Collections.unmodifiableSet(values);
    }
 
    // Filter implementation ---------------------------------------------------------------------
@@ -122,39 +131,39 @@ public class FilterImpl implements Filter
       return sfilterString;
    }
 
-   public synchronized boolean match(final ServerMessage message)
+   /**
+    * @return the property compared by this filter if it is just <code>property = 'value'</code> or
+    *         <code>property IN ('value1', 'value2')</code>, null otherwise. Such a filter matches a
+    *         message if and only if the property is one of {@link #getEqualityValues()}.
+    */
+   public SimpleString getEqualityProperty()
    {
-      try
-      {
-         // Set the identifiers values
-
-         for (Identifier id : identifiers.values())
-         {
-            Object val = null;
-
-            if (id.getName().startsWith(FilterConstants.HORNETQ_PREFIX))
-            {
-               // Look it up as header fields
-               val = getHeaderFieldValue(message, id.getName());
-            }
-
-            if (val == null)
-            {
-               val = message.getObjectProperty(id.getName());
-            }
-
-            id.setValue(val);
+      return equalityProperty;
+   }
 
-         }
+   /**
+    * @return the values of {@link #getEqualityProperty()} matched by this filter
+    */
+   public Set<SimpleString> getEqualityValues()
+   {
+      return equalityValues;
+   }
 
+   /**
+    * Filters are compiled into a {@link FilterExpression} which has no state, so they can be matched
+    * by several threads at the same time.
+    */
+   public boolean match(final ServerMessage message)
+   {
+      try
+      {
          if (resultType.equals(Identifier.class))
          {
-            return (Boolean)((Identifier)result).getValue();
+            return (Boolean)expression.evaluate(message);
          }
          else if (resultType.equals(Operator.class))
          {
-            Operator op = (Operator)result;
-            Object result = op.apply();
+            Object result = expression.evaluate(message);
             if (result == null)
             {
                // https://issues.jboss.org/browse/HORNETQ-1188 -
@@ -217,36 +226,45 @@ public class FilterImpl implements Filter
 
    // Private --------------------------------------------------------------------------
 
-   private Object getHeaderFieldValue(final ServerMessage msg, final SimpleString fieldName)
+   private static SimpleString getEqualityProperty(final Object result, final Set<SimpleString> values)
    {
-      if (FilterConstants.HORNETQ_USERID.equals(fieldName))
-      {
-         // It's the stringified (hex) representation of a user id that can be used in a selector expression
-         return new SimpleString("ID:" + msg.getUserID());
-      }
-      else if (FilterConstants.HORNETQ_PRIORITY.equals(fieldName))
-      {
-         return Integer.valueOf(msg.getPriority());
-      }
-      else if (FilterConstants.HORNETQ_TIMESTAMP.equals(fieldName))
+      if (!(result instanceof Operator))
       {
-         return msg.getTimestamp();
-      }
-      else if (FilterConstants.HORNETQ_DURABLE.equals(fieldName))
-      {
-         return msg.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
+         return null;
       }
-      else if (FilterConstants.HORNETQ_EXPIRATION.equals(fieldName))
+
+      Operator op = (Operator)result;
+
+      Identifier id = null;
+
+      if (op.operation == Operator.EQUAL)
       {
-         return msg.getExpiration();
+         if (op.oper1 instanceof Identifier && op.oper2 instanceof SimpleString)
+         {
+            id = (Identifier)op.oper1;
+            values.add((SimpleString)op.oper2);
+         }
+         else if (op.oper2 instanceof Identifier && op.oper1 instanceof SimpleString)
+         {
+            id = (Identifier)op.oper2;
+            values.add((SimpleString)op.oper1);
+         }
       }
-      else if (FilterConstants.HORNETQ_SIZE.equals(fieldName))
+      else if (op.operation == Operator.IN && op.oper1 instanceof Identifier)
       {
-         return msg.getEncodeSize();
+         id = (Identifier)op.oper1;
+         for (Object value : (Set<?>)op.oper2)
+         {
+            values.add((SimpleString)value);
+         }
       }
-      else
+
+      // header fields are not looked up as properties
+      if (id == null || id.getName().startsWith(FilterConstants.HORNETQ_PREFIX))
       {
          return null;
       }
+
+      return id.getName();
    }
 }
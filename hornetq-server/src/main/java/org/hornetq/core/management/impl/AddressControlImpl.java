@@ -16,6 +16,7 @@ package org.hornetq.core.management.impl;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.MBeanOperationInfo;
 
@@ -23,6 +24,7 @@ import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.management.AddressControl;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.impl.PageCompressor;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.Bindings;
@@ -192,6 +194,101 @@ public class AddressControlImpl extends AbstractControl implements AddressContro
       }
    }
 
+   public long getPageCacheHits() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getCacheHits();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageCacheMisses() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getCacheMisses();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageCacheEvictions() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getCacheEvictions();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getNumberOfBytesInPageCache() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getCacheBytes();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public double getPageCompressionRatio() throws Exception
+   {
+      clearIO();
+      try
+      {
+         PageCompressor compressor = pagingManager.getPageStore(address).getPageCompressor();
+
+         long compressedBytes = compressor.getCompressedBytes();
+
+         return compressedBytes == 0 ? 0 : (double)compressor.getUncompressedBytes() / compressedBytes;
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageCompressionTime() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return TimeUnit.NANOSECONDS.toMillis(pagingManager.getPageStore(address).getPageCompressor().getCompressionTime());
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageDecompressionTime() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return TimeUnit.NANOSECONDS.toMillis(pagingManager.getPageStore(address).getPageCompressor().getDecompressionTime());
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public boolean isPaging() throws Exception
    {
       clearIO();
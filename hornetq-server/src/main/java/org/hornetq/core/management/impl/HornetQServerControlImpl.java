@@ -48,6 +48,7 @@ import org.hornetq.api.core.management.QueueControl;
 import org.hornetq.core.config.BridgeConfiguration;
 import org.hornetq.core.config.Configuration;
 import org.hornetq.core.config.DivertConfiguration;
+import org.hornetq.core.journal.impl.TimedBuffer;
 import org.hornetq.core.messagecounter.MessageCounterManager;
 import org.hornetq.core.messagecounter.impl.MessageCounterManagerImpl;
 import org.hornetq.core.persistence.StorageManager;
@@ -57,6 +58,7 @@ import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.remoting.server.RemotingService;
 import org.hornetq.core.security.CheckType;
 import org.hornetq.core.security.Role;
+import org.hornetq.core.security.SecurityStore;
 import org.hornetq.core.server.HornetQMessageBundle;
 import org.hornetq.core.server.HornetQServer;
 import org.hornetq.core.server.JournalType;
@@ -276,6 +278,72 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public boolean isJournalBufferAdaptive()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return configuration.isJournalBufferAdaptive();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalBufferCurrentTimeout()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         TimedBuffer buffer = storageManager.getMessageJournalBuffer();
+
+         return buffer == null ? 0 : buffer.getCurrentTimeout();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalSyncLatency()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         TimedBuffer buffer = storageManager.getMessageJournalBuffer();
+
+         return buffer == null ? 0 : buffer.getSyncLatency();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public String getJournalBatchSizeHistogramAsJSON() throws Exception
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         TimedBuffer buffer = storageManager.getMessageJournalBuffer();
+
+         return new JSONArray(buffer == null ? new long[0] : buffer.getBatchSizeHistogram()).toString();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public void setFailoverOnServerShutdown(boolean failoverOnServerShutdown)
    {
       checkStarted();
@@ -488,6 +556,38 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public long getAuthenticationCacheHits()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         SecurityStore securityStore = server.getSecurityStore();
+         return securityStore == null ? 0 : securityStore.getAuthenticationCacheHits();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getAuthenticationCacheMisses()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         SecurityStore securityStore = server.getSecurityStore();
+         return securityStore == null ? 0 : securityStore.getAuthenticationCacheMisses();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public boolean isClustered()
    {
       checkStarted();
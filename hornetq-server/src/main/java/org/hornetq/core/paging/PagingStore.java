@@ -20,6 +20,7 @@ import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.paging.cursor.PageCursorProvider;
 import org.hornetq.core.paging.impl.Page;
+import org.hornetq.core.paging.impl.PageCompressor;
 import org.hornetq.core.replication.ReplicationManager;
 import org.hornetq.core.server.HornetQComponent;
 import org.hornetq.core.server.RouteContextList;
@@ -90,6 +91,11 @@ public interface PagingStore extends HornetQComponent
 
    PageCursorProvider getCursorProvider();
 
+   /**
+    * @return the compressor of the page files, with the compression statistics of this address
+    */
+   PageCompressor getPageCompressor();
+
    void processReload() throws Exception;
 
    /**
@@ -66,6 +66,38 @@ public interface PageCursorProvider
 
    void setCacheMaxSize(int size);
 
+   /**
+    * @param bytes the maximum memory estimate of the cached pages, -1 for no limit
+    */
+   void setCacheMaxBytes(long bytes);
+
+   /**
+    * @return the memory estimate of the cached pages
+    */
+   long getCacheBytes();
+
+   long getCacheHits();
+
+   long getCacheMisses();
+
+   long getCacheEvictions();
+
+   /**
+    * @param pages the number of pages read in the background ahead of the subscriptions, 0 to
+    *           disable the read-ahead
+    */
+   void setReadAhead(int pages);
+
+   /**
+    * @param bytes no page is read ahead while the cached pages use more than this, -1 for no limit
+    */
+   void setReadAheadMaxBytes(long bytes);
+
+   /**
+    * @return the number of pages read ahead of the subscriptions
+    */
+   long getReadAheadPages();
+
    /**
     * @param pageCursorImpl
     */
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A growable set of non negative ints, used to keep the messages acknowledged on a page with one
+ * bit per message.
+ * <p>
+ * The bits are kept on chunks of 4096, allocated as they are needed. Setting and reading a bit
+ * doesn't take any lock, only allocating a chunk does.
+ */
+public final class ConcurrentBitSet
+{
+   private static final int CHUNK_SHIFT = 12;
+
+   private static final int WORDS_PER_CHUNK = (1 << CHUNK_SHIFT) / Long.SIZE;
+
+   private volatile AtomicReferenceArray<AtomicLongArray> chunks;
+
+   private final AtomicInteger cardinality = new AtomicInteger(0);
+
+   public ConcurrentBitSet()
+   {
+      this(0);
+   }
+
+   /**
+    * @param expectedSize the number of bits the set should hold without growing
+    */
+   public ConcurrentBitSet(final int expectedSize)
+   {
+      chunks = new AtomicReferenceArray<AtomicLongArray>(expectedSize > 0 ? chunkIndex(expectedSize - 1) + 1 : 1);
+   }
+
+   /**
+    * @return false if the bit was already set
+    */
+   public boolean set(final int index)
+   {
+      AtomicLongArray chunk = chunk(index, true);
+
+      int word = wordIndex(index);
+
+      long mask = 1L << index;
+
+      while (true)
+      {
+         long value = chunk.get(word);
+
+         if ((value & mask) != 0)
+         {
+            return false;
+         }
+
+         if (chunk.compareAndSet(word, value, value | mask))
+         {
+            cardinality.incrementAndGet();
+            return true;
+         }
+      }
+   }
+
+   public boolean get(final int index)
+   {
+      AtomicLongArray chunk = chunk(index, false);
+
+      return chunk != null && (chunk.get(wordIndex(index)) & 1L << index) != 0;
+   }
+
+   /**
+    * @return the number of bits set
+    */
+   public int cardinality()
+   {
+      return cardinality.get();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ConcurrentBitSet(cardinality=" + cardinality + ")";
+   }
+
+   // Private -------------------------------------------------------
+
+   private AtomicLongArray chunk(final int index, final boolean create)
+   {
+      if (index < 0)
+      {
+         throw new IndexOutOfBoundsException("index < 0: " + index);
+      }
+
+      int chunkIndex = chunkIndex(index);
+
+      AtomicReferenceArray<AtomicLongArray> current = chunks;
+
+      AtomicLongArray chunk = chunkIndex < current.length() ? current.get(chunkIndex) : null;
+
+      if (chunk == null && create)
+      {
+         chunk = createChunk(chunkIndex);
+      }
+
+      return chunk;
+   }
+
+   /**
+    * The chunks are only added holding the lock, so growing the array can't lose any of them
+    */
+   private synchronized AtomicLongArray createChunk(final int chunkIndex)
+   {
+      AtomicReferenceArray<AtomicLongArray> current = chunks;
+
+      if (chunkIndex >= current.length())
+      {
+         AtomicReferenceArray<AtomicLongArray> grown =
+            new AtomicReferenceArray<AtomicLongArray>(Math.max(chunkIndex + 1, current.length() * 2));
+
+         for (int i = 0; i < current.length(); i++)
+         {
+            grown.set(i, current.get(i));
+         }
+
+         chunks = grown;
+         current = grown;
+      }
+
+      AtomicLongArray chunk = current.get(chunkIndex);
+
+      if (chunk == null)
+      {
+         chunk = new AtomicLongArray(WORDS_PER_CHUNK);
+         current.set(chunkIndex, chunk);
+      }
+
+      return chunk;
+   }
+
+   private static int chunkIndex(final int index)
+   {
+      return index >>> CHUNK_SHIFT;
+   }
+
+   private static int wordIndex(final int index)
+   {
+      return (index >>> 6) & (WORDS_PER_CHUNK - 1);
+   }
+}
@@ -36,6 +36,8 @@ public class LivePageCacheImpl implements LivePageCache
 
    private boolean isLive = true;
 
+   private long memoryEstimate;
+
    public LivePageCacheImpl(final Page page)
    {
       this.page = page;
@@ -102,6 +104,13 @@ public class LivePageCacheImpl implements LivePageCache
          ((LargeServerMessage)message.getMessage()).incrementDelayDeletionCount();
       }
       this.messages.add(message);
+      this.memoryEstimate += message.getMessage().getMemoryEstimate();
+   }
+
+   @Override
+   public synchronized long getMemoryEstimate()
+   {
+      return memoryEstimate;
    }
 
    @Override
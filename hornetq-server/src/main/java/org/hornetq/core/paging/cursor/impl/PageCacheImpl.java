@@ -38,6 +38,8 @@ class PageCacheImpl implements PageCache
 
    private PagedMessage[] messages;
 
+   private volatile long memoryEstimate;
+
    private final Page page;
 
    // Static --------------------------------------------------------
@@ -89,7 +91,20 @@ class PageCacheImpl implements PageCache
 
    public void setMessages(final PagedMessage[] messages)
    {
+      long estimate = 0;
+
+      for (PagedMessage message : messages)
+      {
+         estimate += message.getMessage().getMemoryEstimate();
+      }
+
       this.messages = messages;
+      this.memoryEstimate = estimate;
+   }
+
+   public long getMemoryEstimate()
+   {
+      return memoryEstimate;
    }
 
    public int getNumberOfMessages()
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.server.HornetQServerLogger;
+
+/**
+ * The page caches of an address, bounded by their number and by the memory estimate of their
+ * messages.
+ * <p>
+ * Lookups don't take any lock. Changes are serialized on this map, and when it goes over one of the
+ * bounds the caches are evicted on a clock: a cache used since the clock last went through it gets
+ * a second chance, so the least recently used ones go first. Live caches are never evicted.
+ * <p>
+ * This replaces the soft references previously used, the caches are evicted explicitly instead of
+ * waiting for the GC to clear them.
+ */
+public class PageCacheMap
+{
+   private final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
+
+   private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<Long, Entry>();
+
+   /** The clock of the entries, guarded by this */
+   private final Deque<Entry> clock = new ArrayDeque<Entry>();
+
+   private volatile int maxElements;
+
+   private volatile long maxBytes;
+
+   private volatile long bytes;
+
+   private final AtomicLong hits = new AtomicLong(0);
+
+   private final AtomicLong misses = new AtomicLong(0);
+
+   private final AtomicLong evictions = new AtomicLong(0);
+
+   /**
+    * @param maxElements the maximum number of caches, non positive means no limit
+    * @param maxBytes the maximum memory estimate of the caches, non positive means no limit
+    */
+   public PageCacheMap(final int maxElements, final long maxBytes)
+   {
+      this.maxElements = maxElements;
+      this.maxBytes = maxBytes;
+   }
+
+   /**
+    * Looks up a cache, counting a hit or a miss
+    */
+   public PageCache get(final long pageId)
+   {
+      Entry entry = entries.get(pageId);
+
+      if (entry == null)
+      {
+         misses.incrementAndGet();
+         return null;
+      }
+
+      hits.incrementAndGet();
+      entry.referenced = true;
+      return entry.cache;
+   }
+
+   /**
+    * Looks up a cache without counting it as a use
+    */
+   public PageCache peek(final long pageId)
+   {
+      Entry entry = entries.get(pageId);
+
+      return entry == null ? null : entry.cache;
+   }
+
+   public synchronized void put(final PageCache cache)
+   {
+      Entry entry = new Entry(cache);
+
+      Entry old = entries.put(cache.getPageId(), entry);
+
+      if (old != null)
+      {
+         clock.remove(old);
+         bytes -= old.bytes;
+      }
+
+      clock.addLast(entry);
+
+      checkSize();
+   }
+
+   public synchronized PageCache remove(final long pageId)
+   {
+      Entry entry = entries.remove(pageId);
+
+      if (entry == null)
+      {
+         return null;
+      }
+
+      clock.remove(entry);
+      bytes -= entry.bytes;
+
+      return entry.cache;
+   }
+
+   /**
+    * To be called when the messages of a cache have changed (e.g. once it was read), so the memory
+    * estimate is taken again
+    */
+   public synchronized void updated()
+   {
+      checkSize();
+   }
+
+   public synchronized void clear()
+   {
+      entries.clear();
+      clock.clear();
+      bytes = 0;
+   }
+
+   public synchronized void setMaxElements(final int maxElements)
+   {
+      this.maxElements = maxElements;
+      checkSize();
+   }
+
+   public synchronized void setMaxBytes(final long maxBytes)
+   {
+      this.maxBytes = maxBytes;
+      checkSize();
+   }
+
+   public int getMaxElements()
+   {
+      return maxElements;
+   }
+
+   public int size()
+   {
+      return entries.size();
+   }
+
+   public Collection<PageCache> values()
+   {
+      List<PageCache> values = new ArrayList<PageCache>(entries.size());
+
+      for (Entry entry : entries.values())
+      {
+         values.add(entry.cache);
+      }
+
+      return values;
+   }
+
+   /**
+    * @return the memory estimate of the cached messages, as of the last change on the map
+    */
+   public long getBytes()
+   {
+      return bytes;
+   }
+
+   public long getHits()
+   {
+      return hits.get();
+   }
+
+   public long getMisses()
+   {
+      return misses.get();
+   }
+
+   public long getEvictions()
+   {
+      return evictions.get();
+   }
+
+   // Private -------------------------------------------------------
+
+   private boolean isOverBounds()
+   {
+      return maxElements > 0 && entries.size() > maxElements || maxBytes > 0 && bytes > maxBytes;
+   }
+
+   /**
+    * Must be called holding the lock on this
+    */
+   private void checkSize()
+   {
+      // live caches grow, and the others are sized only once they are read
+      long total = 0;
+
+      for (Entry entry : clock)
+      {
+         entry.bytes = entry.cache.getMemoryEstimate();
+         total += entry.bytes;
+      }
+
+      bytes = total;
+
+      // twice around the clock, so every entry can lose its second chance
+      int steps = clock.size() * 2;
+
+      while (isOverBounds() && steps-- > 0)
+      {
+         Entry entry = clock.pollFirst();
+
+         if (entry.referenced || entry.cache.isLive())
+         {
+            entry.referenced = false;
+            clock.addLast(entry);
+         }
+         else
+         {
+            entries.remove(entry.cache.getPageId(), entry);
+            bytes -= entry.bytes;
+            evictions.incrementAndGet();
+
+            if (isTrace)
+            {
+               HornetQServerLogger.LOGGER.trace("Evicting page " + entry.cache.getPageId() + " from the page cache");
+            }
+         }
+      }
+   }
+
+   private static final class Entry
+   {
+      private final PageCache cache;
+
+      private volatile boolean referenced;
+
+      /** the memory estimate of the cache when the map was last changed */
+      private long bytes;
+
+      Entry(final PageCache cache)
+      {
+         this.cache = cache;
+         // adding a cache is a use, or it could be evicted before being read
+         this.referenced = true;
+      }
+   }
+}
@@ -19,7 +19,9 @@ import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.paging.PagedMessage;
@@ -36,7 +38,6 @@ import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.FutureLatch;
-import org.hornetq.utils.SoftValueHashMap;
 /**
  * A PageProviderIMpl
  *
@@ -69,7 +70,18 @@ public class PageCursorProviderImpl implements PageCursorProvider
    // This is the same executor used at the PageStoreImpl. One Executor per pageStore
    private final Executor executor;
 
-   private final SoftValueHashMap<Long, PageCache> softCache;
+   private final PageCacheMap pageCache;
+
+   /** The number of pages read ahead of the subscriptions, 0 to disable it */
+   private volatile int readAhead;
+
+   /** No page is read ahead while the cached pages use more than this, non positive means no limit */
+   private volatile long readAheadMaxBytes;
+
+   /** Only one read-ahead is scheduled at a time */
+   private final AtomicBoolean readingAhead = new AtomicBoolean(false);
+
+   private final AtomicLong readAheadPages = new AtomicLong(0);
 
    private final ConcurrentMap<Long, PageSubscription> activeCursors = new ConcurrentHashMap<Long, PageSubscription>();
 
@@ -81,11 +93,38 @@ public class PageCursorProviderImpl implements PageCursorProvider
                                  final StorageManager storageManager,
                                  final Executor executor,
                                  final int maxCacheSize)
+   {
+      this(pagingStore, storageManager, executor, maxCacheSize, -1);
+   }
+
+   public PageCursorProviderImpl(final PagingStore pagingStore,
+                                 final StorageManager storageManager,
+                                 final Executor executor,
+                                 final int maxCacheSize,
+                                 final long maxCacheBytes)
+   {
+      this(pagingStore, storageManager, executor, maxCacheSize, maxCacheBytes, 0, -1);
+   }
+
+   /**
+    * @param readAhead the number of pages read ahead of the subscriptions on the executor, 0 to
+    *           disable it
+    * @param readAheadMaxBytes the memory budget of the read-ahead, -1 for no limit
+    */
+   public PageCursorProviderImpl(final PagingStore pagingStore,
+                                 final StorageManager storageManager,
+                                 final Executor executor,
+                                 final int maxCacheSize,
+                                 final long maxCacheBytes,
+                                 final int readAhead,
+                                 final long readAheadMaxBytes)
    {
       this.pagingStore = pagingStore;
       this.storageManager = storageManager;
       this.executor = executor;
-      this.softCache = new SoftValueHashMap<Long, PageCache>(maxCacheSize);
+      this.pageCache = new PageCacheMap(maxCacheSize, maxCacheBytes);
+      this.readAhead = readAhead;
+      this.readAheadMaxBytes = readAheadMaxBytes;
    }
 
    // Public --------------------------------------------------------
@@ -134,19 +173,37 @@ public class PageCursorProviderImpl implements PageCursorProvider
    }
 
    public PageCache getPageCache(final long pageId)
+   {
+      if (pageId > pagingStore.getCurrentWritingPage())
+      {
+         return null;
+      }
+
+      // A cache being read is still locked, the readers will wait for it
+      PageCache cache = pageCache.get(pageId);
+
+      if (cache == null)
+      {
+         cache = readPageCache(pageId);
+      }
+
+      if (cache != null && readAhead > 0)
+      {
+         scheduleReadAhead(pageId);
+      }
+
+      return cache;
+   }
+
+   private PageCache readPageCache(final long pageId)
    {
       try
       {
+         PageCache cache;
          boolean needToRead = false;
-         PageCache cache = null;
-         synchronized (softCache)
+         synchronized (pageCache)
          {
-            if (pageId > pagingStore.getCurrentWritingPage())
-            {
-               return null;
-            }
-
-            cache = softCache.get(pageId);
+            cache = pageCache.peek(pageId);
             if (cache == null)
             {
                if (!pagingStore.checkPageFileExists((int)pageId))
@@ -163,7 +220,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
                {
                   HornetQServerLogger.LOGGER.trace("adding " + pageId +  " into cursor = " + this.pagingStore.getAddress());
                }
-               softCache.put(pageId, cache);
+               pageCache.put(cache);
             }
          }
 
@@ -197,6 +254,9 @@ public class PageCursorProviderImpl implements PageCursorProvider
                storageManager.afterPageRead();
                cache.unlock();
             }
+
+            // the cache is sized now that it was read
+            pageCache.updated();
          }
 
          return cache;
@@ -209,31 +269,62 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    public void addPageCache(PageCache cache)
    {
-      synchronized (softCache)
-      {
-         softCache.put(cache.getPageId(), cache);
-      }
+      pageCache.put(cache);
    }
 
    public void setCacheMaxSize(final int size)
    {
-      softCache.setMaxElements(size);
+      pageCache.setMaxElements(size);
+   }
+
+   public void setCacheMaxBytes(final long bytes)
+   {
+      pageCache.setMaxBytes(bytes);
+   }
+
+   public void setReadAhead(final int pages)
+   {
+      readAhead = pages;
+   }
+
+   public void setReadAheadMaxBytes(final long bytes)
+   {
+      readAheadMaxBytes = bytes;
+   }
+
+   public long getReadAheadPages()
+   {
+      return readAheadPages.get();
    }
 
    public int getCacheSize()
    {
-      synchronized (softCache)
-      {
-         return softCache.size();
-      }
+      return pageCache.size();
+   }
+
+   public long getCacheBytes()
+   {
+      return pageCache.getBytes();
+   }
+
+   public long getCacheHits()
+   {
+      return pageCache.getHits();
+   }
+
+   public long getCacheMisses()
+   {
+      return pageCache.getMisses();
+   }
+
+   public long getCacheEvictions()
+   {
+      return pageCache.getEvictions();
    }
 
    public void clearCache()
    {
-      synchronized (softCache)
-      {
-         softCache.clear();
-      }
+      pageCache.clear();
    }
 
    public void processReload() throws Exception
@@ -514,10 +605,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
          {
             PageCache cache;
             PagedMessage[] pgdMessages;
-            synchronized (softCache)
-            {
-               cache = softCache.get((long)depagedPage.getPageId());
-            }
+            cache = pageCache.peek(depagedPage.getPageId());
 
             if (isTrace)
             {
@@ -560,10 +648,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
             depagedPage.delete(pgdMessages);
             onDeletePage(depagedPage);
 
-            synchronized (softCache)
-            {
-               softCache.remove((long)depagedPage.getPageId());
-            }
+            pageCache.remove(depagedPage.getPageId());
          }
       }
       catch (Exception ex)
@@ -625,7 +710,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
    public void printDebug()
    {
       System.out.println("Debug information for PageCursorProviderImpl:");
-      for (PageCache cache : softCache.values())
+      for (PageCache cache : pageCache.values())
       {
          System.out.println("Cache " + cache);
       }
@@ -643,6 +728,103 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    // Private -------------------------------------------------------
 
+   /**
+    * Reads the pages following pageId on the executor, so the subscriptions find them on the cache
+    * when they get there instead of reading them on the delivery thread.
+    */
+   private void scheduleReadAhead(final long pageId)
+   {
+      int pages = readAhead;
+
+      // the caches read ahead shouldn't push out the one being used
+      int maxElements = pageCache.getMaxElements();
+      if (maxElements > 0)
+      {
+         pages = Math.min(pages, maxElements - 1);
+      }
+
+      // the page being written is on a live cache already
+      final long lastPage = Math.min(pageId + pages, pagingStore.getCurrentWritingPage() - 1);
+
+      long firstMissing = -1;
+
+      for (long page = pageId + 1; page <= lastPage; page++)
+      {
+         if (pageCache.peek(page) == null)
+         {
+            firstMissing = page;
+            break;
+         }
+      }
+
+      if (firstMissing < 0 || isOverReadAheadBudget() || !readingAhead.compareAndSet(false, true))
+      {
+         return;
+      }
+
+      final long firstPage = firstMissing;
+
+      executor.execute(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               for (long page = firstPage; page <= lastPage; page++)
+               {
+                  if (!pagingStore.isStarted() || isOverReadAheadBudget())
+                  {
+                     return;
+                  }
+
+                  readAhead(page);
+               }
+            }
+            finally
+            {
+               readingAhead.set(false);
+            }
+         }
+      });
+   }
+
+   private void readAhead(final long pageId)
+   {
+      try
+      {
+         if (pageCache.peek(pageId) != null || !pagingStore.checkPageFileExists((int)pageId))
+         {
+            return;
+         }
+
+         if (isTrace)
+         {
+            HornetQServerLogger.LOGGER.trace("Reading ahead page " + pageId + " on address " + pagingStore.getAddress());
+         }
+
+         readPageCache(pageId);
+
+         readAheadPages.incrementAndGet();
+      }
+      catch (Exception e)
+      {
+         // the subscription will read the page again when it gets there, and deal with the failure
+         pageCache.remove(pageId);
+
+         if (HornetQServerLogger.LOGGER.isDebugEnabled())
+         {
+            HornetQServerLogger.LOGGER.debug("Couldn't read ahead page " + pageId + " on address " + pagingStore.getAddress(), e);
+         }
+      }
+   }
+
+   private boolean isOverReadAheadBudget()
+   {
+      long maxBytes = readAheadMaxBytes;
+
+      return maxBytes > 0 && pageCache.getBytes() >= maxBytes;
+   }
+
    /**
     * This method is synchronized because we want it to be atomic with the cursors being used
     */
@@ -15,17 +15,17 @@ package org.hornetq.core.paging.cursor.impl;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -50,7 +50,6 @@ import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.TransactionOperationAbstract;
 import org.hornetq.core.transaction.TransactionPropertyIndexes;
 import org.hornetq.core.transaction.impl.TransactionImpl;
-import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.FutureLatch;
 import org.hornetq.utils.LinkedListIterator;
 
@@ -90,6 +89,10 @@ final class PageSubscriptionImpl implements PageSubscription
 
    private final SortedMap<Long, PageCursorInfo> consumedPages = new TreeMap<Long, PageCursorInfo>();
 
+   // The last page info looked up, so the ACKs on the same page don't take the consumedPages lock.
+   // It is only set and cleared holding the lock, so it's never one that was replaced or removed.
+   private volatile PageCursorInfo lastPageInfo;
+
    private final PageSubscriptionCounter counter;
 
    private final Executor executor;
@@ -206,6 +209,7 @@ final class PageSubscriptionImpl implements PageSubscription
       synchronized (consumedPages)
       {
          consumedPages.put(Long.valueOf(position.getPageNr()), info);
+         lastPageInfo = null;
       }
    }
 
@@ -321,21 +325,18 @@ final class PageSubscriptionImpl implements PageSubscription
          }
 
          // it will delete the page ack records
-         for (PagePosition pos : infoPG.acks)
+         for (long recordID : infoPG.getAckRecordIDs())
          {
-            if (pos.getRecordID() >= 0)
+            store.deleteCursorAcknowledgeTransactional(tx.getID(), recordID);
+            if (!persist)
             {
-               store.deleteCursorAcknowledgeTransactional(tx.getID(), pos.getRecordID());
-               if (!persist)
-               {
-                  // only need to set it once
-                  tx.setContainsPersistent();
-                  persist = true;
-               }
+               // only need to set it once
+               tx.setContainsPersistent();
+               persist = true;
             }
          }
 
-         infoPG.acks.clear();
+         infoPG.clearAckRecordIDs();
       }
 
       tx.addOperation(new TransactionOperationAbstract()
@@ -657,13 +658,10 @@ final class PageSubscriptionImpl implements PageSubscription
          {
             for (PageCursorInfo cursor : consumedPages.values())
             {
-               for (PagePosition info : cursor.acks)
+               for (long recordID : cursor.getAckRecordIDs())
                {
-                  if (info.getRecordID() >= 0)
-                  {
-                     isPersistent = true;
-                     store.deleteCursorAcknowledgeTransactional(tx, info.getRecordID());
-                  }
+                  isPersistent = true;
+                  store.deleteCursorAcknowledgeTransactional(tx, recordID);
                }
                PagePosition completeInfo = cursor.getCompleteInfo();
                if (completeInfo != null && completeInfo.getRecordID() >= 0)
@@ -783,6 +781,7 @@ final class PageSubscriptionImpl implements PageSubscription
       synchronized (consumedPages)
       {
          info = consumedPages.remove(Long.valueOf(deletedPage.getPageId()));
+         lastPageInfo = null;
       }
       if (info != null)
       {
@@ -799,21 +798,18 @@ final class PageSubscriptionImpl implements PageSubscription
             }
             info.setCompleteInfo(null);
          }
-         for (PagePosition deleteInfo : info.acks)
+         for (long recordID : info.getAckRecordIDs())
          {
-            if (deleteInfo.getRecordID() >= 0)
+            try
             {
-               try
-               {
-                  store.deleteCursorAcknowledge(deleteInfo.getRecordID());
-               }
-               catch (Exception e)
-               {
-                  HornetQServerLogger.LOGGER.warn("Error while deleting page-complete-record", e);
-               }
+               store.deleteCursorAcknowledge(recordID);
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.warn("Error while deleting page-complete-record", e);
             }
          }
-         info.acks.clear();
+         info.clearAckRecordIDs();
       }
    }
 
@@ -835,6 +831,13 @@ final class PageSubscriptionImpl implements PageSubscription
 
    private PageCursorInfo getPageInfo(final long pageNr, boolean create)
    {
+      PageCursorInfo last = lastPageInfo;
+
+      if (last != null && last.getPageId() == pageNr)
+      {
+         return last;
+      }
+
       synchronized (consumedPages)
       {
          PageCursorInfo pageInfo = consumedPages.get(pageNr);
@@ -849,6 +852,12 @@ final class PageSubscriptionImpl implements PageSubscription
             pageInfo = new PageCursorInfo(pageNr, cache.getNumberOfMessages(), cache);
             consumedPages.put(pageNr, pageInfo);
          }
+
+         if (pageInfo != null)
+         {
+            lastPageInfo = pageInfo;
+         }
+
          return pageInfo;
       }
 
@@ -971,12 +980,21 @@ final class PageSubscriptionImpl implements PageSubscription
 
       private final long pageId;
 
-      // Confirmed ACKs on this page
-      private final Set<PagePosition> acks = Collections.synchronizedSet(new LinkedHashSet<PagePosition>());
+      // Confirmed ACKs on this page, by message number
+      private final ConcurrentBitSet acks;
+
+      // ACKs on a negative position (a bookmark before the first message)
+      private final AtomicBoolean bookmarkACK = new AtomicBoolean(false);
+
+      // The journal records of the ACKs, to be deleted once the page is complete, guarded by this
+      private long[] ackRecordIDs = new long[0];
+
+      private int numberOfAckRecords;
 
       private WeakReference<PageCache> cache;
 
-      private final Set<PagePosition> removedReferences = new ConcurrentHashSet<PagePosition>();
+      // Delivered and acked messages, by message number
+      private final ConcurrentBitSet removedReferences;
 
       // The page was live at the time of the creation
       private final boolean wasLive;
@@ -1014,6 +1032,8 @@ final class PageSubscriptionImpl implements PageSubscription
       {
          this.pageId = pageId;
          this.numberOfMessages = numberOfMessages;
+         this.acks = new ConcurrentBitSet(numberOfMessages);
+         this.removedReferences = new ConcurrentBitSet(numberOfMessages);
          if (cache != null)
          {
             wasLive = cache.isLive();
@@ -1074,12 +1094,15 @@ final class PageSubscriptionImpl implements PageSubscription
 
       public boolean isRemoved(final PagePosition pos)
       {
-         return removedReferences.contains(pos);
+         return pos.getMessageNr() >= 0 && removedReferences.get(pos.getMessageNr());
       }
 
       public void remove(final PagePosition position)
       {
-         removedReferences.add(position);
+         if (position.getMessageNr() >= 0)
+         {
+            removedReferences.set(position.getMessageNr());
+         }
       }
 
       public void addACK(final PagePosition posACK)
@@ -1116,8 +1139,51 @@ final class PageSubscriptionImpl implements PageSubscription
 
       private boolean internalAddACK(final PagePosition posACK)
       {
-         removedReferences.add(posACK);
-         return acks.add(posACK);
+         boolean added;
+
+         if (posACK.getMessageNr() >= 0)
+         {
+            removedReferences.set(posACK.getMessageNr());
+            added = acks.set(posACK.getMessageNr());
+         }
+         else
+         {
+            added = bookmarkACK.compareAndSet(false, true);
+         }
+
+         if (added && posACK.getRecordID() >= 0)
+         {
+            addAckRecordID(posACK.getRecordID());
+         }
+
+         return added;
+      }
+
+      private synchronized void addAckRecordID(final long recordID)
+      {
+         if (numberOfAckRecords == ackRecordIDs.length)
+         {
+            ackRecordIDs = Arrays.copyOf(ackRecordIDs, Math.max(16, numberOfAckRecords * 2));
+         }
+
+         ackRecordIDs[numberOfAckRecords++] = recordID;
+      }
+
+      /**
+       * @return the journal records of the ACKs on this page
+       */
+      public synchronized long[] getAckRecordIDs()
+      {
+         return Arrays.copyOf(ackRecordIDs, numberOfAckRecords);
+      }
+
+      /**
+       * To be called once the ACK records were deleted
+       */
+      public synchronized void clearAckRecordIDs()
+      {
+         ackRecordIDs = new long[0];
+         numberOfAckRecords = 0;
       }
 
       /**
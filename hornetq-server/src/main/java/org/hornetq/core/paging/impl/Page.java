@@ -17,6 +17,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
@@ -48,6 +49,16 @@ public final class Page implements Comparable<Page>
 
    private static final byte END_BYTE = (byte)'}';
 
+   // A compressed block of records: START_BLOCK_BYTE, compressed size, uncompressed size, data, END_BLOCK_BYTE
+   private static final byte START_BLOCK_BYTE = (byte)'[';
+
+   private static final byte END_BLOCK_BYTE = (byte)']';
+
+   public static final int SIZE_BLOCK = DataConstants.SIZE_BYTE + 2 * DataConstants.SIZE_INT + DataConstants.SIZE_BYTE;
+
+   // Deflate can't expand the data more than this, so a larger uncompressed size is damaged
+   private static final int MAX_INFLATE_RATIO = 1032;
+
    // Attributes ----------------------------------------------------
 
    private final int pageId;
@@ -71,6 +82,19 @@ public final class Page implements Comparable<Page>
 
    private final SimpleString storeName;
 
+   // When positive, the records are written to the file in batches of at least this many bytes
+   private volatile int writeBufferSize;
+
+   // The records not written to the file yet, guarded by this
+   private HornetQBuffer pendingWrites;
+
+   // Held while writing the pending records, so the batches reach the file in order
+   private final Object flushLock = new Object();
+
+   private volatile PageCompressor compressor;
+
+   private volatile long pageSize;
+
    public Page(final SimpleString storeName,
                    final StorageManager storageManager,
                    final SequentialFileFactory factory,
@@ -94,6 +118,33 @@ public final class Page implements Comparable<Page>
       this.pageCache = pageCache;
    }
 
+   /**
+    * @param writeBufferSize when positive, the records are kept in memory and written to the file
+    *           in batches of at least this many bytes, or when the page is synced or closed
+    */
+   public void setWriteBufferSize(final int writeBufferSize)
+   {
+      this.writeBufferSize = writeBufferSize;
+   }
+
+   /**
+    * @param compressor compresses the records written while it's enabled, and keeps the statistics
+    *           of the compressed blocks read
+    */
+   public void setCompressor(final PageCompressor compressor)
+   {
+      this.compressor = compressor;
+   }
+
+   /**
+    * @param pageSize the page size of the address, no block read holds more records than that
+    *           unless a single record is larger
+    */
+   public void setPageSize(final long pageSize)
+   {
+      this.pageSize = pageSize;
+   }
+
    public synchronized List<PagedMessage> read(StorageManager storage) throws Exception
    {
       if (isDebug)
@@ -123,51 +174,7 @@ public final class Page implements Comparable<Page>
          HornetQBuffer fileBuffer = HornetQBuffers.wrappedBuffer(directBuffer);
          fileBuffer.writerIndex(fileBuffer.capacity());
 
-         while (fileBuffer.readable())
-         {
-            final int position = fileBuffer.readerIndex();
-
-            byte byteRead = fileBuffer.readByte();
-
-            if (byteRead == Page.START_BYTE)
-            {
-               if (fileBuffer.readerIndex() + DataConstants.SIZE_INT < fileBuffer.capacity())
-               {
-                  int messageSize = fileBuffer.readInt();
-                  int oldPos = fileBuffer.readerIndex();
-                  if (fileBuffer.readerIndex() + messageSize < fileBuffer.capacity() &&
-                           fileBuffer.getByte(oldPos + messageSize) == Page.END_BYTE)
-                  {
-                     PagedMessage msg = new PagedMessageImpl();
-                     msg.decode(fileBuffer);
-                     byte b = fileBuffer.readByte();
-                     if (b != Page.END_BYTE)
-                     {
-                        // Sanity Check: This would only happen if there is a bug on decode or any internal code, as
-                        // this
-                        // constraint was already checked
-                        throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE " + b);
-                     }
-                     msg.initMessage(storage);
-                     if (isTrace)
-                     {
-                        HornetQServerLogger.LOGGER.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
-                     }
-                     messages.add(msg);
-                  }
-                  else
-                  {
-                     markFileAsSuspect(file.getFileName(), position, messages.size());
-                     break;
-                  }
-               }
-            }
-            else
-            {
-               markFileAsSuspect(file.getFileName(), position, messages.size());
-               break;
-            }
-         }
+         readRecords(fileBuffer, storage, messages, 0, true);
       }
       finally
       {
@@ -179,30 +186,52 @@ public final class Page implements Comparable<Page>
       return messages;
    }
 
-   public synchronized void write(final PagedMessage message) throws Exception
+   /**
+    * @return true if there are enough records pending to be written, and {@link #flush()} should be
+    *         called (outside of any lock, preferably)
+    */
+   public synchronized boolean write(final PagedMessage message) throws Exception
    {
       if (!file.isOpen())
       {
 
-         return;
+         return false;
       }
 
-      ByteBuffer buffer = fileFactory.newBuffer(message.getEncodeSize() + Page.SIZE_RECORD);
+      int recordSize = message.getEncodeSize() + Page.SIZE_RECORD;
 
-      HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
-      wrap.clear();
+      int bufferSize = writeBufferSize;
 
-      wrap.writeByte(Page.START_BYTE);
-      wrap.writeInt(0);
-      int startIndex = wrap.writerIndex();
-      message.encode(wrap);
-      int endIndex = wrap.writerIndex();
-      wrap.setInt(1, endIndex - startIndex); // The encoded length
-      wrap.writeByte(Page.END_BYTE);
+      if (bufferSize > 0)
+      {
+         if (pendingWrites == null)
+         {
+            pendingWrites = HornetQBuffers.dynamicBuffer(Math.max(bufferSize, recordSize));
+         }
 
-      buffer.rewind();
+         encodeRecord(pendingWrites, message);
+      }
+      else if (isCompressing())
+      {
+         HornetQBuffer record = HornetQBuffers.fixedBuffer(recordSize);
 
-      file.writeDirect(buffer, false);
+         encodeRecord(record, message);
+
+         writeBlock(record);
+      }
+      else
+      {
+         ByteBuffer buffer = fileFactory.newBuffer(recordSize);
+
+         HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
+         wrap.clear();
+
+         encodeRecord(wrap, message);
+
+         buffer.rewind();
+
+         file.writeDirect(buffer, false);
+      }
 
       if (pageCache != null)
       {
@@ -210,13 +239,45 @@ public final class Page implements Comparable<Page>
       }
 
       numberOfMessages.incrementAndGet();
-      size.addAndGet(buffer.limit());
+      size.addAndGet(recordSize);
 
       storageManager.pageWrite(message, pageId);
+
+      return pendingWrites != null && pendingWrites.writerIndex() >= bufferSize;
+   }
+
+   /**
+    * Writes the pending records to the file.
+    */
+   public void flush() throws Exception
+   {
+      synchronized (flushLock)
+      {
+         HornetQBuffer records;
+
+         synchronized (this)
+         {
+            records = pendingWrites;
+            pendingWrites = null;
+         }
+
+         if (records != null && records.readable() && file.isOpen())
+         {
+            if (isCompressing())
+            {
+               writeBlock(records);
+            }
+            else
+            {
+               file.writeDirect(records.toByteBuffer(), false);
+            }
+         }
+      }
    }
 
    public void sync() throws Exception
    {
+      flush();
       file.sync();
    }
 
@@ -230,7 +291,20 @@ public final class Page implements Comparable<Page>
       file.position(0);
    }
 
-   public synchronized void close() throws Exception
+   public void close() throws Exception
+   {
+      synchronized (flushLock)
+      {
+         flush();
+
+         synchronized (this)
+         {
+            internalClose();
+         }
+      }
+   }
+
+   private void internalClose() throws Exception
    {
       if (storageManager != null)
       {
@@ -361,6 +435,175 @@ public final class Page implements Comparable<Page>
       return true;
    }
 
+   private boolean isCompressing()
+   {
+      PageCompressor localCompressor = compressor;
+
+      return localCompressor != null && localCompressor.isEnabled();
+   }
+
+   /**
+    * Writes the records as one compressed block
+    */
+   private void writeBlock(final HornetQBuffer records) throws Exception
+   {
+      byte[] data = new byte[records.readableBytes()];
+      records.readBytes(data);
+
+      byte[] compressed = compressor.compress(data);
+
+      ByteBuffer buffer = fileFactory.newBuffer(compressed.length + Page.SIZE_BLOCK);
+
+      buffer.put(Page.START_BLOCK_BYTE);
+      buffer.putInt(compressed.length);
+      buffer.putInt(data.length);
+      buffer.put(compressed);
+      buffer.put(Page.END_BLOCK_BYTE);
+
+      buffer.rewind();
+
+      file.writeDirect(buffer, false);
+   }
+
+   /**
+    * @param offset the position of the buffer on the file, added to the positions reported as suspect
+    * @param topLevel whether the records are the file's, which may be compressed blocks, or a block's
+    * @return false if the records were damaged, and the file was marked as suspect
+    */
+   private boolean readRecords(final HornetQBuffer buffer,
+                               final StorageManager storage,
+                               final List<PagedMessage> messages,
+                               final int offset,
+                               final boolean topLevel) throws Exception
+   {
+      while (buffer.readable())
+      {
+         final int position = buffer.readerIndex();
+
+         byte byteRead = buffer.readByte();
+
+         if (byteRead == Page.START_BYTE)
+         {
+            if (buffer.readerIndex() + DataConstants.SIZE_INT < buffer.capacity())
+            {
+               int messageSize = buffer.readInt();
+               int oldPos = buffer.readerIndex();
+               if (buffer.readerIndex() + messageSize < buffer.capacity() &&
+                        buffer.getByte(oldPos + messageSize) == Page.END_BYTE)
+               {
+                  PagedMessage msg = new PagedMessageImpl();
+                  msg.decode(buffer);
+                  byte b = buffer.readByte();
+                  if (b != Page.END_BYTE)
+                  {
+                     // Sanity Check: This would only happen if there is a bug on decode or any internal code, as
+                     // this
+                     // constraint was already checked
+                     throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE " + b);
+                  }
+                  msg.initMessage(storage);
+                  if (isTrace)
+                  {
+                     HornetQServerLogger.LOGGER.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
+                  }
+                  messages.add(msg);
+               }
+               else
+               {
+                  markFileAsSuspect(file.getFileName(), offset + position, messages.size());
+                  return false;
+               }
+            }
+         }
+         else if (byteRead == Page.START_BLOCK_BYTE && topLevel)
+         {
+            HornetQBuffer block = readBlock(buffer);
+
+            if (block == null)
+            {
+               markFileAsSuspect(file.getFileName(), offset + position, messages.size());
+               return false;
+            }
+
+            if (!readRecords(block, storage, messages, offset + position, false))
+            {
+               return false;
+            }
+         }
+         else
+         {
+            markFileAsSuspect(file.getFileName(), offset + position, messages.size());
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * @return the decompressed records of the block, or null if it is damaged
+    */
+   private HornetQBuffer readBlock(final HornetQBuffer buffer)
+   {
+      if (buffer.readerIndex() + 2 * DataConstants.SIZE_INT >= buffer.capacity())
+      {
+         return null;
+      }
+
+      int compressedSize = buffer.readInt();
+      int uncompressedSize = buffer.readInt();
+
+      if (compressedSize < 0 || uncompressedSize < 0 || uncompressedSize > maxBlockSize(compressedSize) ||
+          buffer.readerIndex() + compressedSize >= buffer.capacity() ||
+          buffer.getByte(buffer.readerIndex() + compressedSize) != Page.END_BLOCK_BYTE)
+      {
+         return null;
+      }
+
+      byte[] compressed = new byte[compressedSize];
+      buffer.readBytes(compressed);
+      buffer.readByte();
+
+      byte[] records = new byte[uncompressedSize];
+
+      try
+      {
+         PageCompressor localCompressor = compressor;
+         (localCompressor != null ? localCompressor : new PageCompressor()).decompress(compressed, records);
+      }
+      catch (DataFormatException e)
+      {
+         return null;
+      }
+
+      HornetQBuffer block = HornetQBuffers.wrappedBuffer(records);
+      block.readerIndex(0);
+      block.writerIndex(records.length);
+
+      return block;
+   }
+
+   /**
+    * A block holds at most a page of records, or a single record larger than the page, which Deflate
+    * can't have expanded more than its maximum ratio. A larger size is damaged, and is not allocated.
+    */
+   private long maxBlockSize(final int compressedSize)
+   {
+      return Math.max(pageSize, (long)compressedSize * Page.MAX_INFLATE_RATIO);
+   }
+
+   private static void encodeRecord(final HornetQBuffer buffer, final PagedMessage message)
+   {
+      buffer.writeByte(Page.START_BYTE);
+      int lengthIndex = buffer.writerIndex();
+      buffer.writeInt(0);
+      int startIndex = buffer.writerIndex();
+      message.encode(buffer);
+      int endIndex = buffer.writerIndex();
+      buffer.setInt(lengthIndex, endIndex - startIndex); // The encoded length
+      buffer.writeByte(Page.END_BYTE);
+   }
+
    /**
     * @param position
     * @param msgNumber
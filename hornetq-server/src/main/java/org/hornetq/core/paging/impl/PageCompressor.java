@@ -0,0 +1,157 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the blocks of records written to the page files of an address, and keeps the
+ * statistics of it.
+ * <p>
+ * Deflate is used at its fastest level, as the pages are written on the producers' path.
+ */
+public final class PageCompressor
+{
+   private volatile boolean enabled;
+
+   private final AtomicLong uncompressedBytes = new AtomicLong(0);
+
+   private final AtomicLong compressedBytes = new AtomicLong(0);
+
+   private final AtomicLong compressionTime = new AtomicLong(0);
+
+   private final AtomicLong decompressionTime = new AtomicLong(0);
+
+   public boolean isEnabled()
+   {
+      return enabled;
+   }
+
+   /**
+    * @param enabled whether the pages written from now on are compressed. Compressed pages are read
+    *           either way.
+    */
+   public void setEnabled(final boolean enabled)
+   {
+      this.enabled = enabled;
+   }
+
+   public byte[] compress(final byte[] data)
+   {
+      long start = System.nanoTime();
+
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+      try
+      {
+         deflater.setInput(data);
+         deflater.finish();
+
+         byte[] output = new byte[Math.max(64, data.length / 2)];
+         int length = 0;
+
+         while (!deflater.finished())
+         {
+            if (length == output.length)
+            {
+               output = Arrays.copyOf(output, output.length * 2);
+            }
+
+            length += deflater.deflate(output, length, output.length - length);
+         }
+
+         uncompressedBytes.addAndGet(data.length);
+         compressedBytes.addAndGet(length);
+
+         return Arrays.copyOf(output, length);
+      }
+      finally
+      {
+         deflater.end();
+
+         compressionTime.addAndGet(System.nanoTime() - start);
+      }
+   }
+
+   /**
+    * @param output sized to the exact length of the uncompressed data
+    * @throws DataFormatException if the data is corrupted, or doesn't fill the output
+    */
+   public void decompress(final byte[] data, final byte[] output) throws DataFormatException
+   {
+      long start = System.nanoTime();
+
+      Inflater inflater = new Inflater();
+
+      try
+      {
+         inflater.setInput(data);
+
+         int length = 0;
+
+         while (length < output.length && !inflater.finished())
+         {
+            int read = inflater.inflate(output, length, output.length - length);
+
+            if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+            {
+               break;
+            }
+
+            length += read;
+         }
+
+         if (length != output.length || !inflater.finished())
+         {
+            throw new DataFormatException("Compressed block doesn't have the expected size " + output.length);
+         }
+      }
+      finally
+      {
+         inflater.end();
+
+         decompressionTime.addAndGet(System.nanoTime() - start);
+      }
+   }
+
+   public long getUncompressedBytes()
+   {
+      return uncompressedBytes.get();
+   }
+
+   public long getCompressedBytes()
+   {
+      return compressedBytes.get();
+   }
+
+   /**
+    * @return the time spent compressing, in nanoseconds
+    */
+   public long getCompressionTime()
+   {
+      return compressionTime.get();
+   }
+
+   /**
+    * @return the time spent decompressing, in nanoseconds
+    */
+   public long getDecompressionTime()
+   {
+      return decompressionTime.get();
+   }
+}
@@ -28,6 +28,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.IOCriticalErrorListener;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
@@ -70,12 +71,35 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
 
    private final IOCriticalErrorListener critialErrorListener;
 
+   private final boolean mappedFiles;
+
    public PagingStoreFactoryNIO(final StorageManager storageManager, final String directory,
                                 final long syncTimeout,
                                 final ScheduledExecutorService scheduledExecutor,
                                 final ExecutorFactory executorFactory,
                                 final boolean syncNonTransactional,
                                 final IOCriticalErrorListener critialErrorListener)
+   {
+      this(storageManager,
+           directory,
+           syncTimeout,
+           scheduledExecutor,
+           executorFactory,
+           syncNonTransactional,
+           critialErrorListener,
+           false);
+   }
+
+   /**
+    * @param mappedFiles whether the page files are accessed through memory mapped regions
+    */
+   public PagingStoreFactoryNIO(final StorageManager storageManager, final String directory,
+                                final long syncTimeout,
+                                final ScheduledExecutorService scheduledExecutor,
+                                final ExecutorFactory executorFactory,
+                                final boolean syncNonTransactional,
+                                final IOCriticalErrorListener critialErrorListener,
+                                final boolean mappedFiles)
    {
       this.storageManager = storageManager;
       this.directory = directory;
@@ -84,6 +108,7 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
       this.scheduledExecutor = scheduledExecutor;
       this.syncTimeout = syncTimeout;
       this.critialErrorListener = critialErrorListener;
+      this.mappedFiles = mappedFiles;
    }
 
    // Public --------------------------------------------------------
@@ -209,6 +234,13 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
 
    private SequentialFileFactory newFileFactory(final String directoryName)
    {
+      if (mappedFiles)
+      {
+         return new MappedSequentialFileFactory(directory + File.separatorChar + directoryName,
+                                                false,
+                                                critialErrorListener);
+      }
+
       return new NIOSequentialFileFactory(directory + File.separatorChar + directoryName, false, critialErrorListener);
    }
 }
@@ -86,6 +86,10 @@ public class PagingStoreImpl implements PagingStore
 
    private long pageSize;
 
+   private volatile int pageWriteBufferSize;
+
+   private final PageCompressor pageCompressor = new PageCompressor();
+
    private volatile AddressFullMessagePolicy addressFullMessagePolicy;
 
    private boolean printedDropMessagesWarning;
@@ -174,7 +178,10 @@ public class PagingStoreImpl implements PagingStore
       this.cursorProvider = new PageCursorProviderImpl(this,
          this.storageManager,
          executor,
-         addressSettings.getPageCacheMaxSize());
+         addressSettings.getPageCacheMaxSize(),
+         addressSettings.getPageCacheMaxBytes(),
+         addressSettings.getPageReadAhead(),
+         addressSettings.getPageReadAheadMaxBytes());
 
    }
 
@@ -187,11 +194,18 @@ public class PagingStoreImpl implements PagingStore
 
       pageSize = addressSettings.getPageSizeBytes();
 
+      pageWriteBufferSize = addressSettings.getPageWriteBufferSize();
+
+      pageCompressor.setEnabled(addressSettings.isPageCompression());
+
       addressFullMessagePolicy = addressSettings.getAddressFullMessagePolicy();
 
       if (cursorProvider != null)
       {
          cursorProvider.setCacheMaxSize(addressSettings.getPageCacheMaxSize());
+         cursorProvider.setCacheMaxBytes(addressSettings.getPageCacheMaxBytes());
+         cursorProvider.setReadAhead(addressSettings.getPageReadAhead());
+         cursorProvider.setReadAheadMaxBytes(addressSettings.getPageReadAheadMaxBytes());
       }
    }
 
@@ -224,6 +238,11 @@ public class PagingStoreImpl implements PagingStore
       lock.writeLock().unlock();
    }
 
+   public PageCompressor getPageCompressor()
+   {
+      return pageCompressor;
+   }
+
    public PageCursorProvider getCursorProvider()
    {
       return cursorProvider;
@@ -587,6 +606,12 @@ public class PagingStoreImpl implements PagingStore
 
       Page page = new Page(storeName, storageManager, fileFactory, file, pageNumber);
 
+      page.setWriteBufferSize(pageWriteBufferSize);
+
+      page.setCompressor(pageCompressor);
+
+      page.setPageSize(pageSize);
+
       // To create the file
       file.open();
 
@@ -859,6 +884,9 @@ public class PagingStoreImpl implements PagingStore
       }
 
 
+      // The page to write its pending records to the file once the locks are released
+      Page pageToFlush = null;
+
       managerLock.lock();
       try
       {
@@ -895,7 +923,10 @@ public class PagingStoreImpl implements PagingStore
                currentPageSize.addAndGet(bytesToWrite);
             }
 
-            currentPage.write(pagedMessage);
+            if (currentPage.write(pagedMessage))
+            {
+               pageToFlush = currentPage;
+            }
 
             if (isTrace)
             {
@@ -923,6 +954,11 @@ public class PagingStoreImpl implements PagingStore
       finally
       {
          managerLock.unlock();
+
+         if (pageToFlush != null)
+         {
+            pageToFlush.flush();
+         }
       }
    }
 
@@ -1160,6 +1196,11 @@ public class PagingStoreImpl implements PagingStore
       lock.writeLock().lock();
       try
       {
+         if (currentPage != null)
+         {
+            currentPage.flush();
+         }
+
          for (Integer id : pageIds)
          {
             SequentialFile sFile = fileFactory.createSequentialFile(createFileName(id), 1);
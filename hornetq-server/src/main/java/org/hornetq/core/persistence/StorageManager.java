@@ -27,6 +27,7 @@ import org.hornetq.core.journal.IOAsyncTask;
 import org.hornetq.core.journal.Journal;
 import org.hornetq.core.journal.JournalLoadInformation;
 import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.impl.TimedBuffer;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagedMessage;
@@ -309,6 +310,11 @@ public interface StorageManager extends HornetQComponent
     */
    Journal getMessageJournal();
 
+   /**
+    * @return the buffer batching the writes on the message journal, or null if they are not buffered
+    */
+   TimedBuffer getMessageJournalBuffer();
+
    /**
     * @see JournalStorageManager#startReplication(ReplicationManager, PagingManager, String,
     *      boolean)
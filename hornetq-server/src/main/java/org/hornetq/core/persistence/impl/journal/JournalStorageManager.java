@@ -73,7 +73,9 @@ import org.hornetq.core.journal.TransactionFailureCallback;
 import org.hornetq.core.journal.impl.AIOSequentialFileFactory;
 import org.hornetq.core.journal.impl.JournalFile;
 import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.journal.impl.TimedBuffer;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagedMessage;
@@ -229,7 +231,8 @@ public class JournalStorageManager implements StorageManager
 
       executor = executorFactory.getExecutor();
 
-      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO)
+      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO &&
+          config.getJournalType() != JournalType.MAPPED)
       {
          throw HornetQMessageBundle.BUNDLE.invalidJournal();
       }
@@ -289,14 +292,29 @@ public class JournalStorageManager implements StorageManager
             config.isLogJournalWriteRate(),
             criticalErrorListener);
       }
+      else if (config.getJournalType() == JournalType.MAPPED)
+      {
+         HornetQServerLogger.LOGGER.journalUseMapped();
+         journalFF = new MappedSequentialFileFactory(journalDir,
+            true,
+            config.getJournalBufferSize_NIO(),
+            config.getJournalBufferTimeout_NIO(),
+            config.isLogJournalWriteRate(),
+            criticalErrorListener);
+      }
       else
       {
          throw HornetQMessageBundle.BUNDLE.invalidJournalType2(config.getJournalType());
       }
 
+      if (journalFF.getTimedBuffer() != null)
+      {
+         journalFF.getTimedBuffer().setAdaptive(config.isJournalBufferAdaptive());
+      }
+
       idGenerator = new BatchingIDGenerator(0, JournalStorageManager.CHECKPOINT_BATCH_SIZE, this);
 
-      Journal localMessage = new JournalImpl(config.getJournalFileSize(),
+      JournalImpl localMessage = new JournalImpl(config.getJournalFileSize(),
          config.getJournalMinFiles(),
          config.getJournalCompactMinFiles(),
          config.getJournalCompactPercentage(),
@@ -304,7 +322,11 @@ public class JournalStorageManager implements StorageManager
          "hornetq-data",
          "hq",
          config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
-            : config.getJournalMaxIO_NIO());
+            : config.getJournalMaxIO_NIO(),
+         0,
+         config.isJournalPackedRecordIndex());
+
+      localMessage.setParallelAppend(config.isJournalParallelAppend());
 
       messageJournal = localMessage;
       originalMessageJournal = localMessage;
@@ -2387,6 +2409,11 @@ public class JournalStorageManager implements StorageManager
       return messageJournal;
    }
 
+   public TimedBuffer getMessageJournalBuffer()
+   {
+      return journalFF.getTimedBuffer();
+   }
+
    public Journal getBindingsJournal()
    {
       return bindingsJournal;
@@ -12,8 +12,6 @@
  */
 package org.hornetq.core.postoffice;
 
-import java.util.List;
-
 import org.hornetq.api.core.SimpleString;
 
 /**
@@ -28,11 +26,5 @@ public interface Address
 
    boolean containsWildCard();
 
-   List<Address> getLinkedAddresses();
-
-   void addLinkedAddress(Address address);
-
-   void removeLinkedAddress(Address actualAddress);
-
    boolean matches(Address add);
 }
@@ -12,9 +12,6 @@
  */
 package org.hornetq.core.postoffice.impl;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.postoffice.Address;
 
@@ -31,8 +28,6 @@ public class AddressImpl implements Address
 
    private final boolean containsWildCard;
 
-   private final List<Address> linkedAddresses = new ArrayList<Address>();
-
    public AddressImpl(final SimpleString address)
    {
       this.address = address;
@@ -55,95 +50,50 @@ public class AddressImpl implements Address
       return containsWildCard;
    }
 
-   public List<Address> getLinkedAddresses()
-   {
-      return linkedAddresses;
-   }
-
-   public void addLinkedAddress(final Address address)
-   {
-      if(!linkedAddresses.contains(address))
-      {
-         linkedAddresses.add(address);
-      }
-   }
-
-   public void removeLinkedAddress(final Address actualAddress)
-   {
-      linkedAddresses.remove(actualAddress);
-   }
-
    public boolean matches(final Address add)
    {
       if (containsWildCard == add.containsWildCard())
       {
          return address.equals(add.getAddress());
       }
-      int pos = 0;
-      int matchPos = 0;
+      return matches(addressParts, 0, add.getAddressParts(), 0);
+   }
 
-      SimpleString nextToMatch;
-      for (; matchPos < add.getAddressParts().length;)
+   /**
+    * '*' matches exactly one word and '#' matches zero or more words, so a '#' followed by more
+    * words has to try every possible number of words until the rest of the address matches.
+    */
+   private static boolean matches(final SimpleString[] parts, int pos, final SimpleString[] match, int matchPos)
+   {
+      for (; matchPos < match.length; matchPos++)
       {
-         if (pos >= addressParts.length)
+         SimpleString currMatch = match[matchPos];
+         if (currMatch.equals(WildcardAddressManager.ANY_WORDS_SIMPLESTRING))
          {
-            // test for # as last address part
-            return pos + 1 == add.getAddressParts().length && add.getAddressParts()[pos].equals(WildcardAddressManager.ANY_WORDS_SIMPLESTRING);
-         }
-         SimpleString curr = addressParts[pos];
-         SimpleString next = addressParts.length > pos + 1 ? addressParts[pos + 1] : null;
-         SimpleString currMatch = add.getAddressParts()[matchPos];
-         if (currMatch.equals(WildcardAddressManager.SINGLE_WORD_SIMPLESTRING))
-         {
-            pos++;
-            matchPos++;
-         }
-         else if (currMatch.equals(WildcardAddressManager.ANY_WORDS_SIMPLESTRING))
-         {
-            if (matchPos == addressParts.length - 1)
-            {
-               pos++;
-               matchPos++;
-            }
-            else if (next == null)
-            {
-               return false;
-            }
-            else if (matchPos == add.getAddressParts().length - 1)
+            if (matchPos == match.length - 1)
             {
                return true;
             }
-            else
+            for (int next = pos; next <= parts.length; next++)
             {
-               nextToMatch = add.getAddressParts()[matchPos + 1];
-               while (curr != null)
-               {
-                  if (curr.equals(nextToMatch))
-                  {
-                     break;
-                  }
-                  pos++;
-                  curr = next;
-                  next = addressParts.length > pos + 1 ? addressParts[pos + 1] : null;
-               }
-               if (curr == null)
+               if (matches(parts, next, match, matchPos + 1))
                {
-                  return false;
+                  return true;
                }
-               matchPos++;
             }
+            return false;
          }
-         else
+         if (pos >= parts.length)
          {
-            if (!curr.equals(currMatch))
-            {
-               return false;
-            }
-            pos++;
-            matchPos++;
+            return false;
+         }
+         if (!currMatch.equals(WildcardAddressManager.SINGLE_WORD_SIMPLESTRING) && !currMatch.equals(parts[pos]))
+         {
+            return false;
          }
+         pos++;
       }
-      return pos == addressParts.length;
+      return pos == parts.length;
    }
 
    @Override
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.postoffice.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.postoffice.Address;
+
+/**
+ * Holds addresses on a tree keyed by their words, so the addresses matching a wildcard (or the
+ * wildcards matching an address) are found walking the words of the address instead of matching
+ * every address.
+ * <p>
+ * The walk follows the same rules as {@link Address#matches(Address)}: '*' is one word and '#' is
+ * zero or more words.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @see WildcardAddressManager
+ */
+public class AddressTrie
+{
+   private final Node root = new Node(null, null);
+
+   private int size;
+
+   public void add(final Address address)
+   {
+      Node node = root;
+
+      for (SimpleString word : address.getAddressParts())
+      {
+         Node child = node.children.get(word);
+
+         if (child == null)
+         {
+            child = new Node(node, word);
+            node.children.put(word, child);
+         }
+
+         node = child;
+      }
+
+      if (node.address == null)
+      {
+         size++;
+      }
+
+      node.address = address;
+   }
+
+   public Address get(final SimpleString[] words)
+   {
+      Node node = find(words);
+
+      return node == null ? null : node.address;
+   }
+
+   public boolean remove(final Address address)
+   {
+      Node node = find(address.getAddressParts());
+
+      if (node == null || node.address == null)
+      {
+         return false;
+      }
+
+      node.address = null;
+
+      size--;
+
+      // prune the branch of the address
+      while (node.parent != null && node.address == null && node.children.isEmpty())
+      {
+         node.parent.children.remove(node.word);
+         node = node.parent;
+      }
+
+      return true;
+   }
+
+   public int size()
+   {
+      return size;
+   }
+
+   public boolean isEmpty()
+   {
+      return size == 0;
+   }
+
+   public void clear()
+   {
+      root.children.clear();
+      root.address = null;
+      size = 0;
+   }
+
+   /**
+    * Used on a tree of wildcard addresses, to find the ones matching an address without
+    * wildcards.
+    */
+   public void getMatchingWildcards(final Address address, final Set<Address> result)
+   {
+      matchWildcards(root, address.getAddressParts(), 0, result);
+   }
+
+   /**
+    * Used on a tree of addresses without wildcards, to find the ones matched by a wildcard address.
+    */
+   public void getMatchedAddresses(final Address wildcard, final Set<Address> result)
+   {
+      matchAddresses(root, wildcard.getAddressParts(), 0, result);
+   }
+
+   // Private -------------------------------------------------------
+
+   private Node find(final SimpleString[] words)
+   {
+      Node node = root;
+
+      for (int i = 0; node != null && i < words.length; i++)
+      {
+         node = node.children.get(words[i]);
+      }
+
+      return node;
+   }
+
+   private static void matchWildcards(final Node node,
+                                      final SimpleString[] words,
+                                      final int pos,
+                                      final Set<Address> result)
+   {
+      if (pos == words.length)
+      {
+         if (node.address != null)
+         {
+            result.add(node.address);
+         }
+      }
+      else
+      {
+         Node child = node.children.get(words[pos]);
+
+         if (child != null)
+         {
+            matchWildcards(child, words, pos + 1, result);
+         }
+
+         child = node.children.get(WildcardAddressManager.SINGLE_WORD_SIMPLESTRING);
+
+         if (child != null)
+         {
+            matchWildcards(child, words, pos + 1, result);
+         }
+      }
+
+      Node anyWords = node.children.get(WildcardAddressManager.ANY_WORDS_SIMPLESTRING);
+
+      if (anyWords != null)
+      {
+         for (int next = pos; next <= words.length; next++)
+         {
+            matchWildcards(anyWords, words, next, result);
+         }
+      }
+   }
+
+   private static void matchAddresses(final Node node,
+                                      final SimpleString[] pattern,
+                                      final int pos,
+                                      final Set<Address> result)
+   {
+      if (pos == pattern.length)
+      {
+         if (node.address != null)
+         {
+            result.add(node.address);
+         }
+
+         return;
+      }
+
+      SimpleString word = pattern[pos];
+
+      if (word.equals(WildcardAddressManager.SINGLE_WORD_SIMPLESTRING))
+      {
+         for (Node child : node.children.values())
+         {
+            matchAddresses(child, pattern, pos + 1, result);
+         }
+      }
+      else if (word.equals(WildcardAddressManager.ANY_WORDS_SIMPLESTRING))
+      {
+         // no more words for the '#'
+         matchAddresses(node, pattern, pos + 1, result);
+
+         // or one more, and maybe others after it
+         for (Node child : node.children.values())
+         {
+            matchAddresses(child, pattern, pos, result);
+         }
+      }
+      else
+      {
+         Node child = node.children.get(word);
+
+         if (child != null)
+         {
+            matchAddresses(child, pattern, pos + 1, result);
+         }
+      }
+   }
+
+   private static final class Node
+   {
+      private final Node parent;
+
+      private final SimpleString word;
+
+      private final Map<SimpleString, Node> children = new HashMap<SimpleString, Node>(4);
+
+      private Address address;
+
+      Node(final Node parent, final SimpleString word)
+      {
+         this.parent = parent;
+         this.word = word;
+      }
+   }
+}
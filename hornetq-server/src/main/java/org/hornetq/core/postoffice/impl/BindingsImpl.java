@@ -16,9 +16,13 @@ package org.hornetq.core.postoffice.impl;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -26,6 +30,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
 import org.hornetq.core.message.impl.MessageImpl;
 import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.postoffice.Binding;
@@ -60,6 +65,11 @@ public final class BindingsImpl implements Bindings
 
    private final List<Binding> exclusiveBindings = new CopyOnWriteArrayList<Binding>();
 
+   // Don't index unless a few bindings can share the property lookup
+   private static final int MIN_INDEXED_BINDINGS = 2;
+
+   private volatile RoutingIndex routingIndex;
+
    private volatile boolean routeWhenNoConsumers;
 
    private final GroupingHandler groupingHandler;
@@ -114,6 +124,8 @@ public final class BindingsImpl implements Bindings
          }
 
          bindings.add(binding);
+
+         updateRoutingIndex();
       }
 
       bindingsMap.put(binding.getID(), binding);
@@ -146,6 +158,8 @@ public final class BindingsImpl implements Bindings
                routingNameBindingMap.remove(routingName);
             }
          }
+
+         updateRoutingIndex();
       }
 
       bindingsMap.remove(binding.getID());
@@ -283,10 +297,23 @@ public final class BindingsImpl implements Bindings
             {
                HornetQServerLogger.LOGGER.trace("Routing message " + message + " on binding=" + this);
             }
+
+            RoutingIndex index = routingIndex;
+
+            if (index != null)
+            {
+               index.route(message, context);
+            }
+
             for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
             {
                SimpleString routingName = entry.getKey();
 
+               if (index != null && index.routingNames.contains(routingName))
+               {
+                  continue;
+               }
+
                List<Binding> bindings = entry.getValue();
 
                if (bindings == null)
@@ -598,6 +625,102 @@ public final class BindingsImpl implements Bindings
       }
    }
 
+   /**
+    * Indexes the routing names with a single binding whose filter only compares a property with
+    * string values (e.g. many topic subscriptions with <code>region = 'EU'</code>), so route() finds
+    * the ones matching a message with one property lookup instead of running their filters. Only the
+    * property used by most of them is indexed, the others are routed as usual.
+    */
+   private synchronized void updateRoutingIndex()
+   {
+      Map<SimpleString, Integer> counts = new HashMap<SimpleString, Integer>();
+
+      SimpleString property = null;
+
+      int maxCount = 0;
+
+      for (List<Binding> bindings : routingNameBindingMap.values())
+      {
+         Binding binding = getIndexableBinding(bindings);
+
+         if (binding != null)
+         {
+            FilterImpl filter = (FilterImpl)binding.getFilter();
+
+            Integer count = counts.get(filter.getEqualityProperty());
+
+            count = count == null ? 1 : count + 1;
+
+            counts.put(filter.getEqualityProperty(), count);
+
+            if (count > maxCount)
+            {
+               maxCount = count;
+               property = filter.getEqualityProperty();
+            }
+         }
+      }
+
+      if (maxCount < MIN_INDEXED_BINDINGS)
+      {
+         routingIndex = null;
+
+         return;
+      }
+
+      RoutingIndex index = new RoutingIndex(property);
+
+      for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
+      {
+         Binding binding = getIndexableBinding(entry.getValue());
+
+         if (binding != null)
+         {
+            FilterImpl filter = (FilterImpl)binding.getFilter();
+
+            if (property.equals(filter.getEqualityProperty()))
+            {
+               index.addBinding(entry.getKey(), binding, filter.getEqualityValues());
+            }
+         }
+      }
+
+      routingIndex = index;
+   }
+
+   /**
+    * @return the only binding of a routing name, if its filter can be indexed
+    */
+   private static Binding getIndexableBinding(final List<Binding> bindings)
+   {
+      Binding binding = null;
+
+      for (Binding b : bindings)
+      {
+         // more than one binding are load balanced by getNextBinding
+         if (binding != null)
+         {
+            return null;
+         }
+
+         binding = b;
+      }
+
+      if (binding == null)
+      {
+         return null;
+      }
+
+      Filter filter = binding.getFilter();
+
+      if (filter instanceof FilterImpl && ((FilterImpl)filter).getEqualityProperty() != null)
+      {
+         return binding;
+      }
+
+      return null;
+   }
+
    private final int incrementPos(int pos, final int length)
    {
       pos++;
@@ -610,4 +733,58 @@ public final class BindingsImpl implements Bindings
       return pos;
    }
 
+   /**
+    * The bindings by the value of one property, see updateRoutingIndex. It is not modified once
+    * published.
+    */
+   private static final class RoutingIndex
+   {
+      final SimpleString property;
+
+      final Set<SimpleString> routingNames = new HashSet<SimpleString>();
+
+      final Map<SimpleString, List<Binding>> bindingsByValue = new HashMap<SimpleString, List<Binding>>();
+
+      RoutingIndex(final SimpleString property)
+      {
+         this.property = property;
+      }
+
+      void addBinding(final SimpleString routingName, final Binding binding, final Set<SimpleString> values)
+      {
+         routingNames.add(routingName);
+
+         for (SimpleString value : values)
+         {
+            List<Binding> bindings = bindingsByValue.get(value);
+
+            if (bindings == null)
+            {
+               bindings = new ArrayList<Binding>();
+               bindingsByValue.put(value, bindings);
+            }
+
+            bindings.add(binding);
+         }
+      }
+
+      void route(final ServerMessage message, final RoutingContext context) throws Exception
+      {
+         Object value = message.getObjectProperty(property);
+
+         // the filters only match string properties
+         if (value instanceof SimpleString)
+         {
+            List<Binding> bindings = bindingsByValue.get(value);
+
+            if (bindings != null)
+            {
+               for (Binding binding : bindings)
+               {
+                  binding.route(message, context);
+               }
+            }
+         }
+      }
+   }
 }
@@ -779,7 +779,14 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
       if (cache == null)
       {
-         cache = new DuplicateIDCacheImpl(address, idCacheSize, storageManager, persistIDCache);
+         if (addressSettingsRepository.getMatch(address.toString()).isStripedDuplicateIDCache())
+         {
+            cache = new StripedDuplicateIDCache(address, idCacheSize, storageManager, persistIDCache);
+         }
+         else
+         {
+            cache = new DuplicateIDCacheImpl(address, idCacheSize, storageManager, persistIDCache);
+         }
 
          DuplicateIDCache oldCache = duplicateIDCaches.putIfAbsent(address, cache);
 
@@ -0,0 +1,550 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.postoffice.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.hornetq.api.core.Pair;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.persistence.StorageManager;
+import org.hornetq.core.postoffice.DuplicateIDCache;
+import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.transaction.Transaction;
+import org.hornetq.core.transaction.TransactionOperationAbstract;
+
+/**
+ * A fixed size rotating cache of last X duplicate ids, split in stripes.
+ * <p>
+ * Each id goes to a stripe chosen by its hash. A stripe is an open addressing table with its own
+ * lock, so producers sending to the same address only contend when their ids fall on the same
+ * stripe. The journal is written outside of the locks.
+ * <p>
+ * The ids are evicted on the order they were added, as done by {@link DuplicateIDCacheImpl}: every
+ * id takes the next position on a rotating array, without a lock, and evicts the id added X ids
+ * before it from whichever stripe holds it.
+ *
+ * @see DuplicateIDCacheImpl
+ */
+public class StripedDuplicateIDCache implements DuplicateIDCache
+{
+   // not taken from the number of processors, so the cache behaves the same on every machine
+   public static final int DEFAULT_STRIPES = 16;
+
+   private static final long NO_RECORD = -1;
+
+   private final SimpleString address;
+
+   private final int size;
+
+   private final Stripe[] stripes;
+
+   private final int stripeShift;
+
+   private final StorageManager storageManager;
+
+   private final boolean persist;
+
+   // the number of ids added so far, the id n is at the position n % size
+   private final AtomicLong sequence = new AtomicLong(0);
+
+   private final byte[][] orderIDs;
+
+   private final int[] orderHashes;
+
+   // the sequence of the id written on each position, published after the id
+   private final AtomicLongArray orderSequences;
+
+   public StripedDuplicateIDCache(final SimpleString address,
+                                  final int size,
+                                  final StorageManager storageManager,
+                                  final boolean persist)
+   {
+      this(address, size, storageManager, persist, DEFAULT_STRIPES);
+   }
+
+   /**
+    * @param stripes the number of stripes, a power of two
+    */
+   public StripedDuplicateIDCache(final SimpleString address,
+                                  final int size,
+                                  final StorageManager storageManager,
+                                  final boolean persist,
+                                  final int stripes)
+   {
+      if (Integer.bitCount(stripes) != 1)
+      {
+         throw new IllegalArgumentException("stripes must be a power of two: " + stripes);
+      }
+
+      this.address = address;
+
+      this.size = size;
+
+      this.storageManager = storageManager;
+
+      this.persist = persist;
+
+      this.stripes = new Stripe[stripes];
+
+      for (int i = 0; i < stripes; i++)
+      {
+         // the stripes grow if the ids don't spread evenly
+         this.stripes[i] = new Stripe(size / stripes);
+      }
+
+      stripeShift = 32 - Integer.numberOfTrailingZeros(stripes);
+
+      orderIDs = new byte[size][];
+
+      orderHashes = new int[size];
+
+      orderSequences = new AtomicLongArray(size);
+
+      for (int i = 0; i < size; i++)
+      {
+         orderSequences.set(i, -1);
+      }
+   }
+
+   public void load(final List<Pair<byte[], Long>> theIds) throws Exception
+   {
+      int count = 0;
+
+      long txID = -1;
+
+      for (Pair<byte[], Long> id : theIds)
+      {
+         if (count < size)
+         {
+            addToCacheInMemory(id.getA(), id.getB());
+         }
+         else
+         {
+            // cache size has been reduced in config - delete the extra records
+            if (txID == -1)
+            {
+               txID = storageManager.generateUniqueID();
+            }
+
+            storageManager.deleteDuplicateIDTransactional(txID, id.getB());
+         }
+
+         count++;
+      }
+
+      if (txID != -1)
+      {
+         storageManager.commit(txID);
+      }
+   }
+
+   public void deleteFromCache(final byte[] duplicateID) throws Exception
+   {
+      int hash = hash(duplicateID);
+
+      Stripe stripe = stripe(hash);
+
+      long recordID;
+
+      synchronized (stripe)
+      {
+         recordID = stripe.remove(duplicateID, hash, -1);
+      }
+
+      if (recordID != NO_RECORD)
+      {
+         storageManager.deleteDuplicateID(recordID);
+      }
+   }
+
+   public boolean contains(final byte[] duplID)
+   {
+      int hash = hash(duplID);
+
+      Stripe stripe = stripe(hash);
+
+      synchronized (stripe)
+      {
+         return stripe.find(duplID, hash) >= 0;
+      }
+   }
+
+   public void addToCache(final byte[] duplID, final Transaction tx) throws Exception
+   {
+      long recordID = NO_RECORD;
+
+      if (tx == null)
+      {
+         if (persist)
+         {
+            recordID = storageManager.generateUniqueID();
+            storageManager.storeDuplicateID(address, duplID, recordID);
+         }
+
+         addToCacheInMemory(duplID, recordID);
+      }
+      else
+      {
+         if (persist)
+         {
+            recordID = storageManager.generateUniqueID();
+            storageManager.storeDuplicateIDTransactional(tx.getID(), address, duplID, recordID);
+
+            tx.setContainsPersistent();
+         }
+
+         // For a tx, it's important that the entry is not added to the cache until commit
+         // since if the client fails then resends them tx we don't want it to get rejected
+         tx.addOperation(new AddDuplicateIDOperation(duplID, recordID));
+      }
+   }
+
+   public void load(final Transaction tx, final byte[] duplID)
+   {
+      tx.addOperation(new AddDuplicateIDOperation(duplID, tx.getID()));
+   }
+
+   @Override
+   public String toString()
+   {
+      return "StripedDuplicateIDCache(address=" + address + ", stripes=" + stripes.length + ")";
+   }
+
+   // Private -------------------------------------------------------
+
+   private void addToCacheInMemory(final byte[] duplID, final long recordID)
+   {
+      // The recordID could be negative if the duplicateCache is configured to not persist,
+      // -1 would mean null on this case
+      long newRecordID = recordID >= 0 ? recordID : NO_RECORD;
+
+      if (size == 0)
+      {
+         // a cache of size 0 holds no ids, the new one is pushed out right away
+         deleteRecord(newRecordID);
+
+         return;
+      }
+
+      int hash = hash(duplID);
+
+      long idSequence = sequence.getAndIncrement();
+
+      int position = (int)(idSequence % size);
+
+      long evictedRecordID = NO_RECORD;
+
+      long replacedRecordID = NO_RECORD;
+
+      try
+      {
+         if (idSequence >= size)
+         {
+            evictedRecordID = evict(position, idSequence - size);
+         }
+
+         Stripe stripe = stripe(hash);
+
+         synchronized (stripe)
+         {
+            replacedRecordID = stripe.put(duplID, hash, idSequence, newRecordID);
+         }
+      }
+      finally
+      {
+         // published even on failures, or the id evicting this one would wait forever
+         orderIDs[position] = duplID;
+         orderHashes[position] = hash;
+         orderSequences.set(position, idSequence);
+      }
+
+      deleteRecord(evictedRecordID);
+
+      // Record already exists - we delete the old one and add the new one
+      // Note we can't use update since journal update doesn't let older records get
+      // reclaimed
+      deleteRecord(replacedRecordID);
+   }
+
+   /**
+    * Removes the id added on {@code evictedSequence} from its stripe, unless it was deleted or added
+    * again since.
+    * @return the record id of the evicted id, or NO_RECORD
+    */
+   private long evict(final int position, final long evictedSequence)
+   {
+      // the thread adding the evicted id may not have published it yet
+      while (orderSequences.get(position) != evictedSequence)
+      {
+         Thread.yield();
+      }
+
+      byte[] evictedID = orderIDs[position];
+
+      int evictedHash = orderHashes[position];
+
+      Stripe stripe = stripe(evictedHash);
+
+      synchronized (stripe)
+      {
+         return stripe.remove(evictedID, evictedHash, evictedSequence);
+      }
+   }
+
+   private void deleteRecord(final long recordID)
+   {
+      if (recordID != NO_RECORD)
+      {
+         try
+         {
+            storageManager.deleteDuplicateID(recordID);
+         }
+         catch (Exception e)
+         {
+            HornetQServerLogger.LOGGER.errorDeletingDuplicateCache(e);
+         }
+      }
+   }
+
+   private Stripe stripe(final int hash)
+   {
+      return stripes.length == 1 ? stripes[0] : stripes[(hash * 0x9E3779B9) >>> stripeShift];
+   }
+
+   private static int hash(final byte[] bytes)
+   {
+      int h = 0;
+
+      for (byte b : bytes)
+      {
+         h = 31 * h + b;
+      }
+
+      // the table uses the low bits, spread the others on them
+      h ^= h >>> 16;
+      h *= 0x85EBCA6B;
+      h ^= h >>> 13;
+
+      return h;
+   }
+
+   private final class AddDuplicateIDOperation extends TransactionOperationAbstract
+   {
+      final byte[] duplID;
+
+      final long recordID;
+
+      volatile boolean done;
+
+      AddDuplicateIDOperation(final byte[] duplID, final long recordID)
+      {
+         this.duplID = duplID;
+         this.recordID = recordID;
+      }
+
+      private void process()
+      {
+         if (!done)
+         {
+            addToCacheInMemory(duplID, recordID);
+
+            done = true;
+         }
+      }
+
+      @Override
+      public void afterCommit(final Transaction tx)
+      {
+         process();
+      }
+
+      @Override
+      public List<MessageReference> getRelatedMessageReferences()
+      {
+         return null;
+      }
+   }
+
+   /**
+    * An open addressing table of ids, with the sequence they were added on and their record ids.
+    * All the methods must be called holding the stripe lock.
+    */
+   private static final class Stripe
+   {
+      private byte[][] ids;
+
+      private int[] hashes;
+
+      private long[] sequences;
+
+      private long[] recordIDs;
+
+      private int mask;
+
+      private int count;
+
+      Stripe(final int expectedSize)
+      {
+         // keep the table at most half full
+         allocate(Integer.highestOneBit(Math.max(1, expectedSize) * 4 - 1));
+      }
+
+      int find(final byte[] id, final int hash)
+      {
+         for (int i = hash & mask; ids[i] != null; i = (i + 1) & mask)
+         {
+            if (hashes[i] == hash && Arrays.equals(ids[i], id))
+            {
+               return i;
+            }
+         }
+
+         return -1;
+      }
+
+      /**
+       * @return the record id of the id if it was already on the stripe, or NO_RECORD
+       */
+      long put(final byte[] id, final int hash, final long sequence, final long recordID)
+      {
+         int slot = find(id, hash);
+
+         long replacedRecordID = NO_RECORD;
+
+         if (slot >= 0)
+         {
+            replacedRecordID = recordIDs[slot];
+         }
+         else
+         {
+            if ((count + 1) * 2 > ids.length)
+            {
+               grow();
+            }
+
+            slot = hash & mask;
+
+            while (ids[slot] != null)
+            {
+               slot = (slot + 1) & mask;
+            }
+
+            ids[slot] = id;
+            hashes[slot] = hash;
+            count++;
+         }
+
+         sequences[slot] = sequence;
+         recordIDs[slot] = recordID;
+
+         return replacedRecordID;
+      }
+
+      /**
+       * @param sequence the id is only removed if it was added on this sequence, any sequence if
+       *           negative
+       * @return the record id of the removed id, or NO_RECORD
+       */
+      long remove(final byte[] id, final int hash, final long sequence)
+      {
+         int slot = find(id, hash);
+
+         if (slot < 0 || sequence >= 0 && sequences[slot] != sequence)
+         {
+            return NO_RECORD;
+         }
+
+         long recordID = recordIDs[slot];
+
+         count--;
+
+         // Backward shift deletion, so lookups never need tombstones
+         int gap = slot;
+         int i = slot;
+
+         while (true)
+         {
+            i = (i + 1) & mask;
+
+            if (ids[i] == null)
+            {
+               break;
+            }
+
+            int ideal = hashes[i] & mask;
+
+            boolean stays = gap < i ? ideal > gap && ideal <= i : ideal > gap || ideal <= i;
+
+            if (!stays)
+            {
+               move(i, gap);
+               gap = i;
+            }
+         }
+
+         ids[gap] = null;
+
+         return recordID;
+      }
+
+      private void move(final int from, final int to)
+      {
+         ids[to] = ids[from];
+         hashes[to] = hashes[from];
+         sequences[to] = sequences[from];
+         recordIDs[to] = recordIDs[from];
+      }
+
+      private void grow()
+      {
+         byte[][] oldIDs = ids;
+         int[] oldHashes = hashes;
+         long[] oldSequences = sequences;
+         long[] oldRecordIDs = recordIDs;
+
+         allocate(oldIDs.length * 2);
+
+         for (int i = 0; i < oldIDs.length; i++)
+         {
+            if (oldIDs[i] != null)
+            {
+               int slot = oldHashes[i] & mask;
+
+               while (ids[slot] != null)
+               {
+                  slot = (slot + 1) & mask;
+               }
+
+               ids[slot] = oldIDs[i];
+               hashes[slot] = oldHashes[i];
+               sequences[slot] = oldSequences[i];
+               recordIDs[slot] = oldRecordIDs[i];
+            }
+         }
+      }
+
+      private void allocate(final int capacity)
+      {
+         ids = new byte[capacity][];
+         hashes = new int[capacity];
+         sequences = new long[capacity];
+         recordIDs = new long[capacity];
+         mask = capacity - 1;
+      }
+   }
+}
@@ -13,8 +13,9 @@
 package org.hornetq.core.postoffice.impl;
 
 import java.util.Collection;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.hornetq.api.core.SimpleString;
@@ -42,13 +43,21 @@ public class WildcardAddressManager extends SimpleAddressManager
    static final SimpleString ANY_WORDS_SIMPLESTRING = new SimpleString("#");
 
    /**
-    * These are all the addresses, we use this so we can link back from the actual address to its linked wilcard addresses
-    * or vice versa
+    * These are all the addresses, we use this so we can find the actual address and its wildcard
+    * addresses or vice versa
     */
    private final Map<SimpleString, Address> addresses = new ConcurrentHashMap<SimpleString, Address>();
 
    private final Map<SimpleString, Address> wildCardAddresses = new ConcurrentHashMap<SimpleString, Address>();
 
+   /**
+    * The same addresses by their words, so linking an address doesn't need to match it against
+    * every other address. Guarded by this.
+    */
+   private final AddressTrie addressTrie = new AddressTrie();
+
+   private final AddressTrie wildCardAddressTrie = new AddressTrie();
+
    public WildcardAddressManager(final BindingsFactory bindingsFactory)
    {
       super(bindingsFactory);
@@ -65,7 +74,7 @@ public class WildcardAddressManager extends SimpleAddressManager
          Address add = addAndUpdateAddressMap(address);
          if (!add.containsWildCard())
          {
-            for (Address destAdd : add.getLinkedAddresses())
+            for (Address destAdd : getLinkedAddresses(add))
             {
                Bindings b = super.getBindingsForRoutingAddress(destAdd.getAddress());
                if (b != null)
@@ -99,14 +108,14 @@ public class WildcardAddressManager extends SimpleAddressManager
          Address add = addAndUpdateAddressMap(binding.getAddress());
          if (add.containsWildCard())
          {
-            for (Address destAdd : add.getLinkedAddresses())
+            for (Address destAdd : getLinkedAddresses(add))
             {
                super.addMappingInternal(destAdd.getAddress(), binding);
             }
          }
          else
          {
-            for (Address destAdd : add.getLinkedAddresses())
+            for (Address destAdd : getLinkedAddresses(add))
             {
                Bindings bindings = super.getBindingsForRoutingAddress(destAdd.getAddress());
                for (Binding b : bindings.getBindings())
@@ -135,7 +144,7 @@ public class WildcardAddressManager extends SimpleAddressManager
          Address add = getAddress(binding.getAddress());
          if (add.containsWildCard())
          {
-            for (Address theAddress : add.getLinkedAddresses())
+            for (Address theAddress : getLinkedAddresses(add))
             {
                super.removeBindingInternal(theAddress.getAddress(), uniqueName);
             }
@@ -146,11 +155,13 @@ public class WildcardAddressManager extends SimpleAddressManager
    }
 
    @Override
-   public void clear()
+   public synchronized void clear()
    {
       super.clear();
       addresses.clear();
       wildCardAddresses.clear();
+      addressTrie.clear();
+      wildCardAddressTrie.clear();
    }
 
    private Address getAddress(final SimpleString address)
@@ -168,6 +179,25 @@ public class WildcardAddressManager extends SimpleAddressManager
       return actualAddress != null ? actualAddress : add;
    }
 
+   /**
+    * @return the wildcard addresses matching an address, or the addresses matched by a wildcard address
+    */
+   private synchronized Set<Address> getLinkedAddresses(final Address address)
+   {
+      Set<Address> linkedAddresses = new LinkedHashSet<Address>();
+
+      if (address.containsWildCard())
+      {
+         addressTrie.getMatchedAddresses(address, linkedAddresses);
+      }
+      else
+      {
+         wildCardAddressTrie.getMatchingWildcards(address, linkedAddresses);
+      }
+
+      return linkedAddresses;
+   }
+
    private synchronized Address addAndUpdateAddressMap(final SimpleString address)
    {
       Address add = new AddressImpl(address);
@@ -185,29 +215,6 @@ public class WildcardAddressManager extends SimpleAddressManager
          actualAddress = add;
          addAddress(address, actualAddress);
       }
-      if (actualAddress.containsWildCard())
-      {
-         for (Address destAdd : addresses.values())
-         {
-            if (destAdd.matches(actualAddress))
-            {
-               destAdd.addLinkedAddress(actualAddress);
-               actualAddress.addLinkedAddress(destAdd);
-            }
-         }
-      }
-      else
-      {
-         for (Address destAdd : wildCardAddresses.values())
-         {
-            if (actualAddress.matches(destAdd))
-            {
-               destAdd.addLinkedAddress(actualAddress);
-               actualAddress.addLinkedAddress(destAdd);
-
-            }
-         }
-      }
       return actualAddress;
    }
 
@@ -216,10 +223,12 @@ public class WildcardAddressManager extends SimpleAddressManager
       if (actualAddress.containsWildCard())
       {
          wildCardAddresses.put(address, actualAddress);
+         wildCardAddressTrie.add(actualAddress);
       }
       else
       {
          addresses.put(address, actualAddress);
+         addressTrie.add(actualAddress);
       }
    }
 
@@ -229,10 +238,8 @@ public class WildcardAddressManager extends SimpleAddressManager
       Bindings bindings = super.getBindingsForRoutingAddress(address.getAddress());
       if (bindings == null || bindings.getBindings().size() == 0)
       {
-         List<Address> addresses = address.getLinkedAddresses();
-         for (Address address1 : addresses)
+         for (Address address1 : getLinkedAddresses(address))
          {
-            address1.removeLinkedAddress(address);
             Bindings linkedBindings = super.getBindingsForRoutingAddress(address1.getAddress());
             if (linkedBindings == null || linkedBindings.getBindings().size() == 0)
             {
@@ -248,10 +255,12 @@ public class WildcardAddressManager extends SimpleAddressManager
       if (add.containsWildCard())
       {
          wildCardAddresses.remove(add.getAddress());
+         wildCardAddressTrie.remove(add);
       }
       else
       {
          addresses.remove(add.getAddress());
+         addressTrie.remove(add);
       }
    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.protocol.ServerPacketDecoder;
+import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.utils.DataConstants;
+
+/**
+ * Journal records replicated together, and acknowledged by the backup with a single
+ * {@link ReplicationBatchResponseMessage}.
+ * <p>
+ * The records are numbered from {@link #getFirstSequence()} on. Each one is framed the way it would
+ * be sent on its own: its length, then its type, channel ID and body. A record is encoded as soon as
+ * it is added, so its data may change afterwards.
+ */
+public final class ReplicationBatchMessage extends PacketImpl
+{
+   private static final int INITIAL_RECORDS_SIZE = 1500;
+
+   private long firstSequence;
+
+   private int count;
+
+   /** The framed records, on the live */
+   private HornetQBuffer records;
+
+   /** The decoded records, on the backup */
+   private List<Packet> packets;
+
+   public ReplicationBatchMessage()
+   {
+      super(PacketImpl.REPLICATION_BATCH);
+   }
+
+   public ReplicationBatchMessage(final long firstSequence)
+   {
+      this();
+      this.firstSequence = firstSequence;
+      records = HornetQBuffers.dynamicBuffer(INITIAL_RECORDS_SIZE);
+   }
+
+   // Public --------------------------------------------------------
+
+   public void addRecord(final PacketImpl record)
+   {
+      int start = records.writerIndex();
+
+      records.writeInt(0);
+      records.writeByte(record.getType());
+      records.writeLong(record.getChannelID());
+      record.encodeRest(records);
+
+      // The length doesn't include the length itself
+      records.setInt(start, records.writerIndex() - start - DataConstants.SIZE_INT);
+
+      count++;
+   }
+
+   /**
+    * @return the size of the records added so far, in bytes
+    */
+   public int getRecordsSize()
+   {
+      return records.writerIndex();
+   }
+
+   public long getFirstSequence()
+   {
+      return firstSequence;
+   }
+
+   public long getLastSequence()
+   {
+      return firstSequence + count - 1;
+   }
+
+   public int getCount()
+   {
+      return count;
+   }
+
+   /**
+    * @return the records, once decoded
+    */
+   public List<Packet> getRecords()
+   {
+      return packets;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeLong(firstSequence);
+      buffer.writeInt(count);
+      buffer.writeBytes(records, 0, records.writerIndex());
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      firstSequence = buffer.readLong();
+      count = buffer.readInt();
+      packets = new ArrayList<Packet>(count);
+
+      for (int i = 0; i < count; i++)
+      {
+         int length = buffer.readInt();
+         packets.add(ServerPacketDecoder.INSTANCE.decode(buffer.readSlice(length)));
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return getParentString() + ", firstSequence=" + firstSequence + ", count=" + count + "]";
+   }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * Acknowledges the records of a {@link ReplicationBatchMessage}, from the first sequence number to
+ * the last one included.
+ * <p>
+ * The backup stops applying a batch at the first record that fails. Only the records up to the
+ * last applied sequence number are then acknowledged, the others were not stored.
+ */
+public final class ReplicationBatchResponseMessage extends PacketImpl
+{
+   private long firstSequence;
+
+   private long lastSequence;
+
+   private long lastAppliedSequence;
+
+   public ReplicationBatchResponseMessage()
+   {
+      super(PacketImpl.REPLICATION_BATCH_RESPONSE);
+   }
+
+   public ReplicationBatchResponseMessage(final long firstSequence, final long lastSequence)
+   {
+      this(firstSequence, lastSequence, lastSequence);
+   }
+
+   /**
+    * @param lastAppliedSequence the sequence number of the last record applied, {@code
+    *           firstSequence - 1} if none was
+    */
+   public ReplicationBatchResponseMessage(final long firstSequence,
+                                          final long lastSequence,
+                                          final long lastAppliedSequence)
+   {
+      this();
+      this.firstSequence = firstSequence;
+      this.lastSequence = lastSequence;
+      this.lastAppliedSequence = lastAppliedSequence;
+   }
+
+   // Public --------------------------------------------------------
+
+   public long getFirstSequence()
+   {
+      return firstSequence;
+   }
+
+   public long getLastSequence()
+   {
+      return lastSequence;
+   }
+
+   public long getLastAppliedSequence()
+   {
+      return lastAppliedSequence;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeLong(firstSequence);
+      buffer.writeLong(lastSequence);
+      buffer.writeLong(lastAppliedSequence);
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      firstSequence = buffer.readLong();
+      lastSequence = buffer.readLong();
+      lastAppliedSequence = buffer.readLong();
+   }
+
+   @Override
+   public String toString()
+   {
+      return getParentString() + ", firstSequence=" + firstSequence + ", lastSequence=" + lastSequence +
+             ", lastAppliedSequence=" + lastAppliedSequence + "]";
+   }
+}
@@ -138,7 +138,11 @@ public class InVMConnection implements Connection
 
    public void write(final HornetQBuffer buffer, final boolean flush, final boolean batch)
    {
-      final HornetQBuffer copied = buffer.copy(0, buffer.capacity());
+      // The buffer may be made of buffers shared with other connections, and the receiver may write on
+      // the copy (e.g. to send the message again), so it must be a dynamic one
+      final HornetQBuffer copied = HornetQBuffers.dynamicBuffer(buffer.capacity());
+
+      copied.writeBytes(buffer, 0, buffer.capacity());
 
       copied.setIndex(buffer.readerIndex(), buffer.writerIndex());
 
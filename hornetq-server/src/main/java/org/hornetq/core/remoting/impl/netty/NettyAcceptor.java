@@ -169,6 +169,9 @@ public class NettyAcceptor implements Acceptor
 
    private final long batchDelay;
 
+   // null if the buffers are not pooled
+   private final PooledBufferAllocator bufferAllocator;
+
    private final boolean directDeliver;
 
 
@@ -308,6 +311,20 @@ public class NettyAcceptor implements Acceptor
       directDeliver = ConfigurationHelper.getBooleanProperty(TransportConstants.DIRECT_DELIVER,
                                                              TransportConstants.DEFAULT_DIRECT_DELIVER,
                                                              configuration);
+
+      int pooledBuffers = ConfigurationHelper.getIntProperty(TransportConstants.POOLED_BUFFERS,
+                                                             TransportConstants.DEFAULT_POOLED_BUFFERS,
+                                                             configuration);
+
+      // HTTP and in-vm channels may still hold the buffers once their writes are complete
+      if (pooledBuffers > 0 && !httpEnabled && !useInvm)
+      {
+         bufferAllocator = new PooledBufferAllocator(pooledBuffers);
+      }
+      else
+      {
+         bufferAllocator = null;
+      }
    }
 
    public synchronized void start() throws Exception
@@ -671,6 +688,15 @@ public class NettyAcceptor implements Acceptor
       return clusterConnection;
    }
 
+   /**
+    * @return the pool the packets of the connections are encoded on, with its hit and miss counts,
+    *         or null if the buffers are not pooled
+    */
+   public PooledBufferAllocator getBufferAllocator()
+   {
+      return bufferAllocator;
+   }
+
    // Inner classes -----------------------------------------------------------------------------
 
    private final class HornetQServerChannelHandler extends HornetQChannelHandler
@@ -687,7 +713,7 @@ public class NettyAcceptor implements Acceptor
       {
          Listener connectionListener = new Listener();
 
-         NettyConnection nc = new NettyConnection(configuration, e.getChannel(), connectionListener, !httpEnabled && batchDelay > 0, directDeliver);
+         NettyConnection nc = new NettyConnection(configuration, e.getChannel(), connectionListener, !httpEnabled && batchDelay > 0, directDeliver, bufferAllocator);
 
          connectionListener.connectionCreated(NettyAcceptor.this, nc, ProtocolType.CORE);
 
@@ -54,6 +54,8 @@ import org.hornetq.core.protocol.core.impl.wireformat.BackupReplicationStartFail
 import org.hornetq.core.protocol.core.impl.wireformat.HornetQExceptionMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -164,29 +166,13 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
                return;
             }
 
-            if (type == PacketImpl.REPLICATION_APPEND)
+            if (isJournalRecord(type))
             {
-               handleAppendAddRecord((ReplicationAddMessage) packet);
+               handleJournalRecord(packet);
             }
-            else if (type == PacketImpl.REPLICATION_APPEND_TX)
+            else if (type == PacketImpl.REPLICATION_BATCH)
             {
-               handleAppendAddTXRecord((ReplicationAddTXMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_DELETE)
-            {
-               handleAppendDelete((ReplicationDeleteMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_DELETE_TX)
-            {
-               handleAppendDeleteTX((ReplicationDeleteTXMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_PREPARE)
-            {
-               handlePrepare((ReplicationPrepareMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_COMMIT_ROLLBACK)
-            {
-               handleCommitRollback((ReplicationCommitMessage) packet);
+               response = handleBatch((ReplicationBatchMessage)packet);
             }
             else if (type == PacketImpl.REPLICATION_PAGE_WRITE)
             {
@@ -243,6 +229,76 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
       channel.send(response);
    }
 
+   private static boolean isJournalRecord(final byte type)
+   {
+      return type == PacketImpl.REPLICATION_APPEND || type == PacketImpl.REPLICATION_APPEND_TX ||
+             type == PacketImpl.REPLICATION_DELETE ||
+             type == PacketImpl.REPLICATION_DELETE_TX ||
+             type == PacketImpl.REPLICATION_PREPARE ||
+             type == PacketImpl.REPLICATION_COMMIT_ROLLBACK;
+   }
+
+   private void handleJournalRecord(final Packet packet) throws Exception
+   {
+      final byte type = packet.getType();
+
+      if (type == PacketImpl.REPLICATION_APPEND)
+      {
+         handleAppendAddRecord((ReplicationAddMessage)packet);
+      }
+      else if (type == PacketImpl.REPLICATION_APPEND_TX)
+      {
+         handleAppendAddTXRecord((ReplicationAddTXMessage)packet);
+      }
+      else if (type == PacketImpl.REPLICATION_DELETE)
+      {
+         handleAppendDelete((ReplicationDeleteMessage)packet);
+      }
+      else if (type == PacketImpl.REPLICATION_DELETE_TX)
+      {
+         handleAppendDeleteTX((ReplicationDeleteTXMessage)packet);
+      }
+      else if (type == PacketImpl.REPLICATION_PREPARE)
+      {
+         handlePrepare((ReplicationPrepareMessage)packet);
+      }
+      else if (type == PacketImpl.REPLICATION_COMMIT_ROLLBACK)
+      {
+         handleCommitRollback((ReplicationCommitMessage)packet);
+      }
+      else
+      {
+         HornetQServerLogger.LOGGER.invalidPacketForReplication(packet);
+      }
+   }
+
+   /**
+    * Applies the records of the batch in order and acknowledges them at once. The first record
+    * failing is logged and stops the batch: the records after it are not applied, and only the ones
+    * before it are acknowledged.
+    */
+   private PacketImpl handleBatch(final ReplicationBatchMessage batch)
+   {
+      long lastApplied = batch.getFirstSequence() - 1;
+
+      for (Packet record : batch.getRecords())
+      {
+         try
+         {
+            handleJournalRecord(record);
+         }
+         catch (Exception e)
+         {
+            HornetQServerLogger.LOGGER.errorHandlingReplicationPacket(e, record);
+            break;
+         }
+
+         lastApplied++;
+      }
+
+      return new ReplicationBatchResponseMessage(batch.getFirstSequence(), batch.getLastSequence(), lastApplied);
+   }
+
    /**
     * @param packet
     */
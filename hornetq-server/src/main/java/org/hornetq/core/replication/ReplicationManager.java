@@ -25,6 +25,7 @@ import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQException;
@@ -47,6 +48,8 @@ import org.hornetq.core.protocol.core.impl.ChannelImpl.CHANNEL_ID;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -70,6 +73,12 @@ import org.hornetq.utils.ExecutorFactory;
  * use case).
  * <p>
  * Its equivalent in the backup server is {@link ReplicationEndpoint}.
+ * <p>
+ * With a batch size, the journal records are coalesced into a {@link ReplicationBatchMessage}
+ * instead of being sent one by one. A batch is sent once it reaches the batch size, before any
+ * other packet, or as soon as the flush executor gets to it, so that it only grows while the
+ * records come faster than they are sent. The backup acknowledges each batch with the range of
+ * sequence numbers of its records, and a token is still completed for every record.
  * @author <mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  * @see ReplicationEndpoint
  */
@@ -124,14 +133,51 @@ public final class ReplicationManager implements HornetQComponent
 
    private volatile boolean inSync = true;
 
+   /** The maximum size of a batch of records, 0 if the records aren't batched */
+   private final int batchSize;
+
+   private final Executor batchExecutor;
+
+   private final Runnable flushBatch = new Runnable()
+   {
+      public void run()
+      {
+         synchronized (replicationLock)
+         {
+            flushBatch();
+         }
+      }
+   };
+
+   /** Guarded by replicationLock */
+   private ReplicationBatchMessage batch;
+
+   /** The sequence number of the next batched record, guarded by replicationLock */
+   private long nextSequence;
+
+   /** The sequence number of the last batched record acknowledged, only used by the response handler */
+   private long lastAcknowledgedSequence = -1;
+
    /**
     * @param remotingConnection
     */
    public ReplicationManager(CoreRemotingConnection remotingConnection, final ExecutorFactory executorFactory)
+   {
+      this(remotingConnection, executorFactory, 0);
+   }
+
+   /**
+    * @param batchSize the maximum size (in bytes) of a batch of journal records, 0 to send each
+    *           record on its own
+    */
+   public ReplicationManager(CoreRemotingConnection remotingConnection, final ExecutorFactory executorFactory,
+                             final int batchSize)
    {
       this.executorFactory = executorFactory;
       this.replicatingChannel = remotingConnection.getChannel(CHANNEL_ID.REPLICATION.id, -1);
       this.remotingConnection = remotingConnection;
+      this.batchSize = batchSize;
+      this.batchExecutor = batchSize > 0 ? executorFactory.getExecutor() : null;
    }
 
    public void appendUpdateRecord(final byte journalID, final ADD_OPERATION_TYPE operation, final long id,
@@ -140,7 +186,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationAddMessage(journalID, operation, id, recordType, record));
+         sendJournalRecord(new ReplicationAddMessage(journalID, operation, id, recordType, record), true);
       }
    }
 
@@ -148,7 +194,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteMessage(journalID, id));
+         sendJournalRecord(new ReplicationDeleteMessage(journalID, id), true);
       }
    }
 
@@ -161,7 +207,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationAddTXMessage(journalID, operation, txID, id, recordType, record));
+         sendJournalRecord(new ReplicationAddTXMessage(journalID, operation, txID, id, recordType, record), true);
       }
    }
 
@@ -170,7 +216,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationCommitMessage(journalID, false, txID), lineUp);
+         sendJournalRecord(new ReplicationCommitMessage(journalID, false, txID), lineUp);
       }
    }
 
@@ -181,7 +227,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteTXMessage(journalID, txID, id, record));
+         sendJournalRecord(new ReplicationDeleteTXMessage(journalID, txID, id, record), true);
       }
    }
 
@@ -189,7 +235,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteTXMessage(journalID, txID, id, NullEncoding.instance));
+         sendJournalRecord(new ReplicationDeleteTXMessage(journalID, txID, id, NullEncoding.instance), true);
       }
    }
 
@@ -200,7 +246,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationPrepareMessage(journalID, txID, transactionData));
+         sendJournalRecord(new ReplicationPrepareMessage(journalID, txID, transactionData), true);
       }
    }
 
@@ -208,7 +254,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationCommitMessage(journalID, true, txID));
+         sendJournalRecord(new ReplicationCommitMessage(journalID, true, txID), true);
       }
    }
 
@@ -301,6 +347,7 @@ public final class ReplicationManager implements HornetQComponent
          {
             replicatingChannel.close();
          }
+         batch = null;
          clearReplicationTokens();
       }
 
@@ -362,6 +409,16 @@ public final class ReplicationManager implements HornetQComponent
    }
 
    private OperationContext sendReplicatePacket(final Packet packet, boolean lineUp)
+   {
+      return sendReplicatePacket(packet, lineUp, false);
+   }
+
+   private OperationContext sendJournalRecord(final PacketImpl record, boolean lineUp)
+   {
+      return sendReplicatePacket(record, lineUp, batchSize > 0);
+   }
+
+   private OperationContext sendReplicatePacket(final Packet packet, boolean lineUp, final boolean batched)
    {
       if (!enabled)
          return null;
@@ -378,7 +435,16 @@ public final class ReplicationManager implements HornetQComponent
          if (enabled)
          {
             pendingTokens.add(repliToken);
-            replicatingChannel.send(packet);
+            if (batched)
+            {
+               addToBatch((PacketImpl)packet);
+            }
+            else
+            {
+               // the records batched so far go first
+               flushBatch();
+               replicatingChannel.send(packet);
+            }
          }
          else
          {
@@ -397,6 +463,85 @@ public final class ReplicationManager implements HornetQComponent
       return repliToken;
    }
 
+   /**
+    * Must be called holding replicationLock
+    */
+   private void addToBatch(final PacketImpl record)
+   {
+      if (batch == null)
+      {
+         batch = new ReplicationBatchMessage(nextSequence);
+         batchExecutor.execute(flushBatch);
+      }
+
+      batch.addRecord(record);
+
+      nextSequence++;
+
+      if (batch.getRecordsSize() >= batchSize)
+      {
+         flushBatch();
+      }
+   }
+
+   /**
+    * Must be called holding replicationLock
+    */
+   private void flushBatch()
+   {
+      if (batch != null)
+      {
+         ReplicationBatchMessage toSend = batch;
+         batch = null;
+
+         if (enabled)
+         {
+            replicatingChannel.send(toSend);
+         }
+      }
+   }
+
+   /**
+    * Completes the tokens of a batch, one per record applied by the backup. The tokens of the
+    * records it failed to store are failed, so the operations waiting on them get an error instead
+    * of hanging.
+    */
+   private void replicated(final long firstSequence, final long lastSequence, final long lastAppliedSequence)
+   {
+      if (firstSequence != lastAcknowledgedSequence + 1)
+      {
+         throw new IllegalStateException("Replication batch " + firstSequence + "-" + lastSequence +
+                                         " acknowledged after " + lastAcknowledgedSequence);
+      }
+
+      lastAcknowledgedSequence = lastSequence;
+
+      for (long sequence = firstSequence; sequence <= lastAppliedSequence; sequence++)
+      {
+         replicated();
+      }
+
+      if (lastAppliedSequence < lastSequence)
+      {
+         String message = "Replication records " + (lastAppliedSequence + 1) + "-" + lastSequence +
+            " were not stored by the backup";
+
+         HornetQServerLogger.LOGGER.warn(message);
+
+         for (long sequence = lastAppliedSequence + 1; sequence <= lastSequence; sequence++)
+         {
+            OperationContext ctx = pendingTokens.poll();
+
+            if (ctx == null)
+            {
+               throw new IllegalStateException("Missing replication token on the queue.");
+            }
+
+            ctx.onError(HornetQExceptionType.IO_ERROR.getCode(), message);
+         }
+      }
+   }
+
    /**
     * @throws IllegalStateException By default, all replicated packets generate a replicated
     *            response. If your packets are triggering this exception, it may be because the
@@ -453,6 +598,11 @@ public final class ReplicationManager implements HornetQComponent
          {
             replicated();
          }
+         else if (packet.getType() == PacketImpl.REPLICATION_BATCH_RESPONSE)
+         {
+            ReplicationBatchResponseMessage response = (ReplicationBatchResponseMessage)packet;
+            replicated(response.getFirstSequence(), response.getLastSequence(), response.getLastAppliedSequence());
+         }
       }
 
    }
@@ -28,4 +28,15 @@ public interface SecurityStore
    void check(SimpleString address, CheckType checkType, ServerSession session) throws Exception;
 
    void stop();
+
+   /**
+    * @return the number of authentications found in the authentication cache
+    */
+   long getAuthenticationCacheHits();
+
+   /**
+    * @return the number of authentications validated by the security manager while the
+    *         authentication cache is enabled
+    */
+   long getAuthenticationCacheMisses();
 }
@@ -15,9 +15,16 @@ package org.hornetq.core.security.impl;
 
 import static org.hornetq.api.core.management.NotificationType.SECURITY_AUTHENTICATION_VIOLATION;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.management.ManagementHelper;
@@ -38,6 +45,13 @@ import org.hornetq.utils.TypedProperties;
 
 /**
  * The HornetQ SecurityStore implementation
+ * <p>
+ * With an authentication cache size, the successful authentications are kept for the
+ * authentication cache timeout, so that a client reconnecting with the same credentials is not
+ * validated again by the security manager. The credentials are only kept as a hash salted with a
+ * random value chosen when the store is created. Failed authentications are never cached. The cache
+ * is cleared when the security settings change, but a user removed from the security manager is
+ * still authenticated until its cached authentication expires.
  *
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  * @author <a href="ataylor@redhat.com">Andy Taylor</a>
@@ -50,6 +64,10 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
 {
    // Constants -----------------------------------------------------
 
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+
+   private static final int SALT_SIZE = 16;
+
    // Static --------------------------------------------------------
 
    // Attributes ----------------------------------------------------
@@ -74,6 +92,20 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
 
    private final NotificationService notificationService;
 
+   /** The expiration of the successful authentications by salted credentials hash, least recently used first */
+   private final Map<ByteBuffer, Long> authenticationCache;
+
+   private final long authenticationCacheTimeout;
+
+   private final byte[] authenticationCacheSalt;
+
+   /** Incremented whenever the authentication cache is cleared */
+   private long authenticationCacheGeneration;
+
+   private final AtomicLong authenticationCacheHits = new AtomicLong(0);
+
+   private final AtomicLong authenticationCacheMisses = new AtomicLong(0);
+
    // Constructors --------------------------------------------------
 
    /**
@@ -86,6 +118,34 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
                             final String managementClusterUser,
                             final String managementClusterPassword,
                             final NotificationService notificationService)
+   {
+      this(securityRepository,
+           securityManager,
+           invalidationInterval,
+           securityEnabled,
+           managementClusterUser,
+           managementClusterPassword,
+           notificationService,
+           0,
+           0);
+   }
+
+   /**
+    * @param notificationService can be <code>null</code>
+    * @param authenticationCacheSize the maximum number of successful authentications cached, 0 to
+    *           validate every authentication with the security manager
+    * @param authenticationCacheTimeout how long (in milliseconds) a successful authentication is
+    *           cached
+    */
+   public SecurityStoreImpl(final HierarchicalRepository<Set<Role>> securityRepository,
+                            final HornetQSecurityManager securityManager,
+                            final long invalidationInterval,
+                            final boolean securityEnabled,
+                            final String managementClusterUser,
+                            final String managementClusterPassword,
+                            final NotificationService notificationService,
+                            final int authenticationCacheSize,
+                            final long authenticationCacheTimeout)
    {
       this.securityRepository = securityRepository;
       this.securityManager = securityManager;
@@ -94,6 +154,30 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
       this.managementClusterUser = managementClusterUser;
       this.managementClusterPassword = managementClusterPassword;
       this.notificationService = notificationService;
+      this.authenticationCacheTimeout = authenticationCacheTimeout;
+
+      if (authenticationCacheSize > 0)
+      {
+         authenticationCache = new LinkedHashMap<ByteBuffer, Long>(16, 0.75f, true)
+         {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ByteBuffer, Long> eldest)
+            {
+               return size() > authenticationCacheSize;
+            }
+         };
+
+         authenticationCacheSalt = new byte[SALT_SIZE];
+         new SecureRandom().nextBytes(authenticationCacheSalt);
+      }
+      else
+      {
+         authenticationCache = null;
+         authenticationCacheSalt = null;
+      }
+
       this.securityRepository.registerListener(this);
    }
 
@@ -128,6 +212,27 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
             }
          }
 
+         ByteBuffer credentials = null;
+
+         long generation = 0;
+
+         if (authenticationCache != null)
+         {
+            credentials = hashCredentials(user, password);
+
+            synchronized (authenticationCache)
+            {
+               if (isAuthenticationCached(credentials))
+               {
+                  authenticationCacheHits.incrementAndGet();
+                  return;
+               }
+               generation = authenticationCacheGeneration;
+            }
+
+            authenticationCacheMisses.incrementAndGet();
+         }
+
          if (!securityManager.validateUser(user, password))
          {
             if (notificationService != null)
@@ -143,6 +248,18 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
 
             throw HornetQMessageBundle.BUNDLE.unableToValidateUser(user);
          }
+
+         if (credentials != null)
+         {
+            synchronized (authenticationCache)
+            {
+               // the security settings may have changed while the user was validated
+               if (generation == authenticationCacheGeneration)
+               {
+                  authenticationCache.put(credentials, System.currentTimeMillis() + authenticationCacheTimeout);
+               }
+            }
+         }
       }
    }
 
@@ -204,6 +321,17 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
    public void onChange()
    {
       invalidateCache();
+      invalidateAuthenticationCache();
+   }
+
+   public long getAuthenticationCacheHits()
+   {
+      return authenticationCacheHits.get();
+   }
+
+   public long getAuthenticationCacheMisses()
+   {
+      return authenticationCacheMisses.get();
    }
 
    // Public --------------------------------------------------------
@@ -242,6 +370,67 @@ public class SecurityStoreImpl implements SecurityStore, HierarchicalRepositoryC
       return granted;
    }
 
+   private void invalidateAuthenticationCache()
+   {
+      if (authenticationCache != null)
+      {
+         synchronized (authenticationCache)
+         {
+            authenticationCache.clear();
+            authenticationCacheGeneration++;
+         }
+      }
+   }
+
+   /**
+    * Must be called while holding the authentication cache lock
+    */
+   private boolean isAuthenticationCached(final ByteBuffer credentials)
+   {
+      Long expiration = authenticationCache.get(credentials);
+
+      if (expiration == null)
+      {
+         return false;
+      }
+
+      if (System.currentTimeMillis() >= expiration)
+      {
+         authenticationCache.remove(credentials);
+         return false;
+      }
+
+      return true;
+   }
+
+   private ByteBuffer hashCredentials(final String user, final String password) throws Exception
+   {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+      digest.update(authenticationCacheSalt);
+      updateDigest(digest, user);
+      updateDigest(digest, password);
+
+      return ByteBuffer.wrap(digest.digest());
+   }
+
+   /**
+    * Adds the length of the value before its bytes, so that user and password can't be mixed up
+    */
+   private static void updateDigest(final MessageDigest digest, final String value)
+   {
+      if (value == null)
+      {
+         digest.update(ByteBuffer.allocate(4).putInt(-1).array());
+      }
+      else
+      {
+         byte[] bytes = value.getBytes(UTF8);
+         digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+         digest.update(bytes);
+      }
+   }
+
    // Inner class ---------------------------------------------------
 
 }
@@ -145,6 +145,10 @@ public interface HornetQServerLogger extends BasicLogger
    @Message(id = 221013, value = "Using NIO Journal", format = Message.Format.MESSAGE_FORMAT)
    void journalUseNIO();
 
+   @LogMessage(level = Logger.Level.INFO)
+   @Message(id = 221039, value = "Using Mapped Journal", format = Message.Format.MESSAGE_FORMAT)
+   void journalUseMapped();
+
    @LogMessage(level = Logger.Level.INFO)
    @Message(id = 221014, value = "{0}% loaded", format = Message.Format.MESSAGE_FORMAT)
    void percentLoaded(Long percent);
@@ -33,8 +33,16 @@ public final class GroupingHandlerConfiguration implements Serializable
 
    private final long timeout;
 
+   private final int cacheSize;
+
+   private final long cacheTimeout;
+
    public static final int DEFAULT_TIMEOUT = 5000;
 
+   public static final int DEFAULT_CACHE_SIZE = -1;
+
+   public static final long DEFAULT_CACHE_TIMEOUT = -1;
+
    public GroupingHandlerConfiguration(final SimpleString name, final TYPE type, final SimpleString address)
    {
       this(name, type, address, GroupingHandlerConfiguration.DEFAULT_TIMEOUT);
@@ -44,11 +52,29 @@ public final class GroupingHandlerConfiguration implements Serializable
                                        final TYPE type,
                                        final SimpleString address,
                                        final int timeout)
+   {
+      this(name, type, address, timeout, GroupingHandlerConfiguration.DEFAULT_CACHE_SIZE,
+           GroupingHandlerConfiguration.DEFAULT_CACHE_TIMEOUT);
+   }
+
+   /**
+    * @param cacheSize the maximum number of group decisions a REMOTE handler keeps, -1 for no limit
+    * @param cacheTimeout how long (in milliseconds) a REMOTE handler keeps a group decision, -1 to
+    *           keep it until its queue is removed
+    */
+   public GroupingHandlerConfiguration(final SimpleString name,
+                                       final TYPE type,
+                                       final SimpleString address,
+                                       final int timeout,
+                                       final int cacheSize,
+                                       final long cacheTimeout)
    {
       this.type = type;
       this.name = name;
       this.address = address;
       this.timeout = timeout;
+      this.cacheSize = cacheSize;
+      this.cacheTimeout = cacheTimeout;
    }
 
    public SimpleString getName()
@@ -71,6 +97,16 @@ public final class GroupingHandlerConfiguration implements Serializable
       return timeout;
    }
 
+   public int getCacheSize()
+   {
+      return cacheSize;
+   }
+
+   public long getCacheTimeout()
+   {
+      return cacheTimeout;
+   }
+
    public enum TYPE
    {
       LOCAL("LOCAL"), REMOTE("REMOTE");
@@ -96,6 +132,8 @@ public final class GroupingHandlerConfiguration implements Serializable
       result = prime * result + ((address == null) ? 0 : address.hashCode());
       result = prime * result + ((name == null) ? 0 : name.hashCode());
       result = prime * result + (int) (timeout ^ (timeout >>> 32));
+      result = prime * result + cacheSize;
+      result = prime * result + (int) (cacheTimeout ^ (cacheTimeout >>> 32));
       result = prime * result + ((type == null) ? 0 : type.hashCode());
       return result;
    }
@@ -126,6 +164,10 @@ public final class GroupingHandlerConfiguration implements Serializable
          return false;
       if (timeout != other.timeout)
          return false;
+      if (cacheSize != other.cacheSize)
+         return false;
+      if (cacheTimeout != other.cacheTimeout)
+         return false;
       if (type != other.type)
          return false;
       return true;
@@ -12,15 +12,14 @@
  */
 package org.hornetq.core.server.group.impl;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.management.ManagementHelper;
@@ -37,6 +36,13 @@ import org.hornetq.utils.TypedProperties;
  * <p>
  * This will use management notifications to communicate with the node that has the Local Grouping
  * handler to make proposals.
+ * <p>
+ * Any number of proposals can wait for their responses at the same time. The proposals of the same
+ * group share the proposal sent first and its response.
+ * <p>
+ * The responses are kept until the binding they chose is removed, or with a cache size or timeout,
+ * until they are the oldest ones beyond the size or they expire. A group whose response was
+ * forgotten is proposed again, and the Local Grouping handler answers with its earlier choice.
  * @author <a href="mailto:andy.taylor@jboss.org">Andy Taylor</a>
  */
 public final class RemoteGroupingHandler implements GroupingHandler
@@ -47,25 +53,51 @@ public final class RemoteGroupingHandler implements GroupingHandler
 
    private final SimpleString address;
 
-   private final Map<SimpleString, Response> responses = new ConcurrentHashMap<SimpleString, Response>();
+   private final ConcurrentMap<SimpleString, CachedResponse> responses = new ConcurrentHashMap<SimpleString, CachedResponse>();
 
-   private final Lock lock = new ReentrantLock();
-
-   private final Condition sendCondition = lock.newCondition();
+   private final ConcurrentMap<SimpleString, PendingProposal> pendingProposals = new ConcurrentHashMap<SimpleString, PendingProposal>();
 
    private final long timeout;
 
-   private final ConcurrentMap<SimpleString, List<SimpleString>> groupMap = new ConcurrentHashMap<SimpleString, List<SimpleString>>();
+   private final ConcurrentMap<SimpleString, Set<SimpleString>> groupMap = new ConcurrentHashMap<SimpleString, Set<SimpleString>>();
+
+   /** The maximum number of responses kept, -1 for no limit */
+   private final int cacheSize;
+
+   /** How long a response is kept in milliseconds, -1 for ever */
+   private final long cacheTimeout;
+
+   /** The responses in the order they were received, only kept with a cache size or timeout */
+   private final ArrayDeque<CachedResponse> responsesOrder = new ArrayDeque<CachedResponse>();
+
+   private final AtomicInteger responsesCount = new AtomicInteger(0);
 
    public RemoteGroupingHandler(final ManagementService managementService,
                                 final SimpleString name,
                                 final SimpleString address,
                                 final long timeout)
+   {
+      this(managementService,
+           name,
+           address,
+           timeout,
+           GroupingHandlerConfiguration.DEFAULT_CACHE_SIZE,
+           GroupingHandlerConfiguration.DEFAULT_CACHE_TIMEOUT);
+   }
+
+   public RemoteGroupingHandler(final ManagementService managementService,
+                                final SimpleString name,
+                                final SimpleString address,
+                                final long timeout,
+                                final int cacheSize,
+                                final long cacheTimeout)
    {
       this.name = name;
       this.address = address;
       this.managementService = managementService;
       this.timeout = timeout;
+      this.cacheSize = cacheSize;
+      this.cacheTimeout = cacheTimeout;
    }
 
    public SimpleString getName()
@@ -75,85 +107,112 @@ public final class RemoteGroupingHandler implements GroupingHandler
 
    public Response propose(final Proposal proposal) throws Exception
    {
+      SimpleString groupId = proposal.getGroupId();
+
       // sanity check in case it is already selected
-      Response response = responses.get(proposal.getGroupId());
+      Response response = getProposal(groupId);
       if (response != null)
       {
          return response;
       }
 
-      try
-      {
-         lock.lock();
-
-         TypedProperties props = new TypedProperties();
-
-         props.putSimpleStringProperty(ManagementHelper.HDR_PROPOSAL_GROUP_ID, proposal.getGroupId());
-
-         props.putSimpleStringProperty(ManagementHelper.HDR_PROPOSAL_VALUE, proposal.getClusterName());
-
-         props.putIntProperty(ManagementHelper.HDR_BINDING_TYPE, BindingType.LOCAL_QUEUE_INDEX);
+      PendingProposal pending = new PendingProposal();
 
-         props.putSimpleStringProperty(ManagementHelper.HDR_ADDRESS, address);
+      PendingProposal previous = pendingProposals.putIfAbsent(groupId, pending);
 
-         props.putIntProperty(ManagementHelper.HDR_DISTANCE, 0);
-
-         Notification notification = new Notification(null, NotificationType.PROPOSAL, props);
+      if (previous == null)
+      {
+         // the response may have been received since it was looked up
+         response = getProposal(groupId);
+         if (response != null)
+         {
+            pendingProposals.remove(groupId, pending);
+            return response;
+         }
 
-         managementService.sendNotification(notification);
+         sendProposal(proposal, 0);
+      }
+      else
+      {
+         pending = previous;
+      }
 
-         if (!sendCondition.await(timeout, TimeUnit.MILLISECONDS))
-            HornetQServerLogger.LOGGER.groupHandlerSendTimeout();
-         response = responses.get(proposal.getGroupId());
+      response = pending.await(timeout);
 
-      }
-      finally
+      if (response == null)
       {
-         lock.unlock();
+         HornetQServerLogger.LOGGER.groupHandlerSendTimeout();
+         pendingProposals.remove(groupId, pending);
+         response = getProposal(groupId);
       }
+
       if (response == null)
       {
-         throw new IllegalStateException("no response received from group handler for " + proposal.getGroupId());
+         throw new IllegalStateException("no response received from group handler for " + groupId);
       }
       return response;
    }
 
    public Response getProposal(final SimpleString fullID)
    {
-      return responses.get(fullID);
+      CachedResponse cached = responses.get(fullID);
+
+      if (cached == null)
+      {
+         return null;
+      }
+
+      if (cached.isExpired(System.currentTimeMillis()))
+      {
+         remove(cached);
+         return null;
+      }
+
+      return cached.response;
    }
 
    public void proposed(final Response response) throws Exception
    {
-      try
+      SimpleString groupId = response.getGroupId();
+
+      CachedResponse cached = new CachedResponse(response, cacheTimeout == -1 ? Long.MAX_VALUE
+                                                                               : System.currentTimeMillis() +
+                                                                                 cacheTimeout);
+
+      CachedResponse previous = responses.put(groupId, cached);
+
+      if (previous == null)
       {
-         lock.lock();
-         responses.put(response.getGroupId(), response);
-         List<SimpleString> newList = new ArrayList<SimpleString>();
-         List<SimpleString> oldList = groupMap.putIfAbsent(response.getChosenClusterName(), newList);
-         if (oldList != null)
-         {
-            newList = oldList;
-         }
-         newList.add(response.getGroupId());
-         sendCondition.signal();
+         responsesCount.incrementAndGet();
       }
-      finally
+      else
       {
-         lock.unlock();
+         removeFromGroupMap(previous);
+      }
+
+      Set<SimpleString> newSet = Collections.newSetFromMap(new ConcurrentHashMap<SimpleString, Boolean>());
+      Set<SimpleString> oldSet = groupMap.putIfAbsent(response.getChosenClusterName(), newSet);
+      if (oldSet != null)
+      {
+         newSet = oldSet;
+      }
+      newSet.add(groupId);
+
+      if (cacheSize != -1 || cacheTimeout != -1)
+      {
+         evict(cached);
+      }
+
+      PendingProposal pending = pendingProposals.remove(groupId);
+      if (pending != null)
+      {
+         pending.done(response);
       }
    }
 
    public Response receive(final Proposal proposal, final int distance) throws Exception
    {
-      TypedProperties props = new TypedProperties();
-      props.putSimpleStringProperty(ManagementHelper.HDR_PROPOSAL_GROUP_ID, proposal.getGroupId());
-      props.putSimpleStringProperty(ManagementHelper.HDR_PROPOSAL_VALUE, proposal.getClusterName());
-      props.putIntProperty(ManagementHelper.HDR_BINDING_TYPE, BindingType.LOCAL_QUEUE_INDEX);
-      props.putSimpleStringProperty(ManagementHelper.HDR_ADDRESS, address);
-      props.putIntProperty(ManagementHelper.HDR_DISTANCE, distance);
-      Notification notification = new Notification(null, NotificationType.PROPOSAL, props);
-      managementService.sendNotification(notification);
+      sendProposal(proposal, distance);
       return null;
    }
 
@@ -174,18 +233,125 @@ public final class RemoteGroupingHandler implements GroupingHandler
       {
          SimpleString clusterName = notification.getProperties()
                                                 .getSimpleStringProperty(ManagementHelper.HDR_CLUSTER_NAME);
-         List<SimpleString> list = groupMap.remove(clusterName);
-         if (list != null)
+         Set<SimpleString> set = groupMap.remove(clusterName);
+         if (set != null)
          {
-            for (SimpleString val : list)
+            for (SimpleString val : set)
             {
-               if (val != null)
+               if (val != null && responses.remove(val) != null)
                {
-                  responses.remove(val);
+                  responsesCount.decrementAndGet();
                }
             }
          }
 
       }
    }
+
+   // Private -------------------------------------------------------
+
+   private void sendProposal(final Proposal proposal, final int distance) throws Exception
+   {
+      TypedProperties props = new TypedProperties();
+      props.putSimpleStringProperty(ManagementHelper.HDR_PROPOSAL_GROUP_ID, proposal.getGroupId());
+      props.putSimpleStringProperty(ManagementHelper.HDR_PROPOSAL_VALUE, proposal.getClusterName());
+      props.putIntProperty(ManagementHelper.HDR_BINDING_TYPE, BindingType.LOCAL_QUEUE_INDEX);
+      props.putSimpleStringProperty(ManagementHelper.HDR_ADDRESS, address);
+      props.putIntProperty(ManagementHelper.HDR_DISTANCE, distance);
+      Notification notification = new Notification(null, NotificationType.PROPOSAL, props);
+      managementService.sendNotification(notification);
+   }
+
+   /**
+    * Records a new response and forgets the oldest ones beyond the cache size or expired
+    */
+   private void evict(final CachedResponse cached)
+   {
+      long now = System.currentTimeMillis();
+
+      synchronized (responsesOrder)
+      {
+         responsesOrder.add(cached);
+
+         CachedResponse eldest;
+
+         while ((eldest = responsesOrder.peek()) != null)
+         {
+            if (responses.get(eldest.response.getGroupId()) != eldest)
+            {
+               // already removed or replaced
+               responsesOrder.poll();
+            }
+            else if ((cacheSize != -1 && responsesCount.get() > cacheSize) || eldest.isExpired(now))
+            {
+               responsesOrder.poll();
+               remove(eldest);
+            }
+            else
+            {
+               break;
+            }
+         }
+      }
+   }
+
+   private void remove(final CachedResponse cached)
+   {
+      if (responses.remove(cached.response.getGroupId(), cached))
+      {
+         responsesCount.decrementAndGet();
+         removeFromGroupMap(cached);
+      }
+   }
+
+   private void removeFromGroupMap(final CachedResponse cached)
+   {
+      Set<SimpleString> set = groupMap.get(cached.response.getChosenClusterName());
+      if (set != null)
+      {
+         set.remove(cached.response.getGroupId());
+      }
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static final class CachedResponse
+   {
+      private final Response response;
+
+      private final long expiration;
+
+      CachedResponse(final Response response, final long expiration)
+      {
+         this.response = response;
+         this.expiration = expiration;
+      }
+
+      boolean isExpired(final long now)
+      {
+         return now >= expiration;
+      }
+   }
+
+   /**
+    * A proposal waiting for its response
+    */
+   private static final class PendingProposal
+   {
+      private final CountDownLatch latch = new CountDownLatch(1);
+
+      private volatile Response response;
+
+      void done(final Response response)
+      {
+         this.response = response;
+         latch.countDown();
+      }
+
+      Response await(final long timeout) throws InterruptedException
+      {
+         latch.await(timeout, TimeUnit.MILLISECONDS);
+         return response;
+      }
+   }
 }
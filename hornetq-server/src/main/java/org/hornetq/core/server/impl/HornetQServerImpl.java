@@ -997,7 +997,7 @@ public class HornetQServerImpl implements HornetQServer
             context);
    }
 
-   protected SecurityStore getSecurityStore()
+   public SecurityStore getSecurityStore()
    {
       return securityStore;
    }
@@ -1387,7 +1387,8 @@ public class HornetQServerImpl implements HornetQServer
          scheduledPool,
          executorFactory,
          configuration.isJournalSyncNonTransactional(),
-         shutdownOnCriticalIO),
+         shutdownOnCriticalIO,
+         configuration.getJournalType() == JournalType.MAPPED),
       addressSettingsRepository);
    }
 
@@ -1493,7 +1494,9 @@ public class HornetQServerImpl implements HornetQServer
          configuration.isSecurityEnabled(),
          configuration.getClusterUser(),
          configuration.getClusterPassword(),
-         managementService);
+         managementService,
+         configuration.getAuthenticationCacheSize(),
+         configuration.getAuthenticationCacheTimeout());
 
       queueFactory = new QueueFactoryImpl(executorFactory, scheduledPool, addressSettingsRepository, storageManager);
 
@@ -1960,7 +1963,9 @@ public class HornetQServerImpl implements HornetQServer
                      new RemoteGroupingHandler(managementService,
                config.getName(),
                config.getAddress(),
-               config.getTimeout());
+               config.getTimeout(),
+               config.getCacheSize(),
+               config.getCacheTimeout());
          }
 
          this.groupingHandler = groupingHandler1;
@@ -2823,7 +2828,7 @@ public class HornetQServerImpl implements HornetQServer
          ReplicationFailureListener listener = new ReplicationFailureListener();
          rc.addCloseListener(listener);
          rc.addFailureListener(listener);
-         replicationManager = new ReplicationManager(rc, executorFactory);
+         replicationManager = new ReplicationManager(rc, executorFactory, configuration.getReplicationBatchSize());
          replicationManager.start();
          Thread t = new Thread(new Runnable()
          {
@@ -61,6 +61,7 @@ import org.hornetq.core.transaction.impl.BindingsTransactionImpl;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.FutureLatch;
+import org.hornetq.utils.IDSupplier;
 import org.hornetq.utils.LinkedListIterator;
 import org.hornetq.utils.PriorityLinkedList;
 import org.hornetq.utils.PriorityLinkedListImpl;
@@ -97,6 +98,14 @@ public class QueueImpl implements Queue
 
    private static final int FLUSH_TIMEOUT = 10000;
 
+   private static final IDSupplier<MessageReference> MESSAGE_ID_SUPPLIER = new IDSupplier<MessageReference>()
+   {
+      public long getID(final MessageReference ref)
+      {
+         return ref.getMessage().getMessageID();
+      }
+   };
+
    private final long id;
 
    private final SimpleString name;
@@ -123,7 +132,7 @@ public class QueueImpl implements Queue
    private final ConcurrentLinkedQueue<MessageReference> intermediateMessageReferences = new ConcurrentLinkedQueue<MessageReference>();
 
    // This is where messages are stored
-   private final PriorityLinkedList<MessageReference> messageReferences = new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES);
+   private final PriorityLinkedList<MessageReference> messageReferences;
 
    // The quantity of pagedReferences on messageReferences priority list
    private final AtomicInteger pagedReferences = new AtomicInteger(0);
@@ -136,6 +145,10 @@ public class QueueImpl implements Queue
 
    private final List<ConsumerHolder> consumerList = new CopyOnWriteArrayList<ConsumerHolder>();
 
+   // Consumers with the same selector share a sub-queue holding the references matching it.
+   // Null unless selector-delivery-queues is set for the address
+   private final Map<SimpleString, SelectorQueue> selectorQueues;
+
    private final ScheduledDeliveryHandler scheduledDeliveryHandler;
 
    private long messagesAdded;
@@ -310,6 +323,22 @@ public class QueueImpl implements Queue
 
       scheduledDeliveryHandler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
 
+      // The index can't be added or removed once the queue holds messages, so it's only read here
+      boolean messageIDIndex = addressSettingsRepository != null &&
+                               addressSettingsRepository.getMatch(address.toString()).isMessageIDIndex();
+
+      boolean selectorDeliveryQueues = addressSettingsRepository != null &&
+                                       addressSettingsRepository.getMatch(address.toString())
+                                                                .isSelectorDeliveryQueues();
+
+      // references delivered from a selector queue are removed from messageReferences by their id,
+      // which also tells the references still on the queue apart from the stale ones on the selector queues
+      messageReferences = new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES,
+                                                                        MESSAGE_ID_SUPPLIER,
+                                                                        messageIDIndex || selectorDeliveryQueues);
+
+      selectorQueues = selectorDeliveryQueues ? new HashMap<SimpleString, SelectorQueue>() : null;
+
       if (addressSettingsRepository != null)
       {
          expiryAddress = addressSettingsRepository.getMatch(address.toString()).getExpiryAddress();
@@ -662,7 +691,14 @@ public class QueueImpl implements Queue
 
          cancelRedistributor();
 
-         consumerList.add(new ConsumerHolder(consumer));
+         ConsumerHolder holder = new ConsumerHolder(consumer);
+
+         if (selectorQueues != null && consumer.getFilter() != null)
+         {
+            holder.selectorQueue = acquireSelectorQueue(consumer.getFilter());
+         }
+
+         consumerList.add(holder);
 
          consumerSet.add(consumer);
 
@@ -685,6 +721,9 @@ public class QueueImpl implements Queue
                   if (holder.iter != null) {
                       holder.iter.close();
                   }
+                  if (holder.selectorQueue != null) {
+                      releaseSelectorQueue(holder.selectorQueue);
+                  }
                   consumerList.remove(holder);
                   break;
               }
@@ -843,65 +882,24 @@ public class QueueImpl implements Queue
 
    public synchronized MessageReference removeReferenceWithID(final long id1) throws Exception
    {
-      LinkedListIterator<MessageReference> iterator = iterator();
+      MessageReference removed = messageReferences.removeWithID(id1);
 
-      try
+      if (removed != null)
       {
-
-         MessageReference removed = null;
-
-         while (iterator.hasNext())
-         {
-            MessageReference ref = iterator.next();
-
-            if (ref.getMessage().getMessageID() == id1)
-            {
-               iterator.remove();
-               refRemoved(ref);
-
-               removed = ref;
-
-               break;
-            }
-         }
-
-         if (removed == null)
-         {
-            // Look in scheduled deliveries
-            removed = scheduledDeliveryHandler.removeReferenceWithID(id1);
-         }
-
-         return removed;
+         refRemoved(removed);
       }
-      finally
+      else
       {
-         iterator.close();
+         // Look in scheduled deliveries
+         removed = scheduledDeliveryHandler.removeReferenceWithID(id1);
       }
+
+      return removed;
    }
 
    public synchronized MessageReference getReference(final long id1)
    {
-      LinkedListIterator<MessageReference> iterator = iterator();
-
-      try
-      {
-
-         while (iterator.hasNext())
-         {
-            MessageReference ref = iterator.next();
-
-            if (ref.getMessage().getMessageID() == id1)
-            {
-               return ref;
-            }
-         }
-
-         return null;
-      }
-      finally
-      {
-         iterator.close();
-      }
+      return messageReferences.getWithID(id1);
    }
 
    public long getMessageCount()
@@ -1131,7 +1129,7 @@ public class QueueImpl implements Queue
       return deleteMatchingReferences(null);
    }
 
-   public synchronized int deleteMatchingReferences(final Filter filter1) throws Exception
+   public int deleteMatchingReferences(final Filter filter1) throws Exception
    {
       return iterQueue(filter1, new QueueIterateAction()
       {
@@ -1151,115 +1149,231 @@ public class QueueImpl implements Queue
     * Instead of duplicate the feature we created an abstract class where you pass the logic for
     * each message. Too bad there's not such thing as a function pointer in Java (as there is in
     * scala).
+    * <p>
+    * The references on memory, the scheduled references and the paged references are all visited.
+    * If the address has a bulk-operation-batch-size the queue is only locked for that many messages
+    * at a time, and the transaction is committed between the slices. Otherwise the whole queue is
+    * locked during the operation.
     * @param filter1
     * @param messageAction
     * @return
     * @throws Exception
     */
-   private synchronized int iterQueue(final Filter filter1, QueueIterateAction messageAction) throws Exception
+   private int iterQueue(final Filter filter1, final QueueIterateAction messageAction) throws Exception
    {
-      int count = 0;
-      int txCount = 0;
+      final int batchSize = getBulkOperationBatchSize();
 
-      Transaction tx = new TransactionImpl(storageManager);
-
-      LinkedListIterator<MessageReference> iter = iterator();
-      try
+      if (batchSize > 0)
       {
+         return iterQueue(filter1, messageAction, batchSize);
+      }
 
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
+      synchronized (this)
+      {
+         return iterQueue(filter1, messageAction, Integer.MAX_VALUE);
+      }
+   }
 
-            if (ref.isPaged() && queueDestroyed)
-            {
-               // this means the queue is being removed
-               // hence paged references are just going away through
-               // page cleanup
-               continue;
-            }
+   private int iterQueue(final Filter filter1, final QueueIterateAction messageAction, final int sliceSize) throws Exception
+   {
+      int count = iterReferences(filter1, messageAction, sliceSize);
 
-            if (filter1 == null || filter1.match(ref.getMessage()))
-            {
-               messageAction.actMessage(tx, ref);
-               iter.remove();
-               txCount++;
-               count++;
-            }
-         }
+      Transaction tx = new TransactionImpl(storageManager);
 
-         if (txCount > 0)
-         {
-            tx.commit();
+      int txCount = 0;
 
-            tx = new TransactionImpl(storageManager);
+      List<MessageReference> cancelled;
 
-            txCount = 0;
-         }
+      synchronized (this)
+      {
+         cancelled = scheduledDeliveryHandler.cancel(filter1);
+      }
 
-         List<MessageReference> cancelled = scheduledDeliveryHandler.cancel(filter1);
-         for (MessageReference messageReference : cancelled)
+      for (MessageReference messageReference : cancelled)
+      {
+         synchronized (this)
          {
             messageAction.actMessage(tx, messageReference);
-            count++;
-            txCount++;
          }
+         count++;
+         txCount++;
 
-         if (txCount > 0)
+         if (txCount == sliceSize)
          {
             tx.commit();
             tx = new TransactionImpl(storageManager);
             txCount = 0;
          }
+      }
+
+      if (txCount > 0)
+      {
+         tx.commit();
+         tx = new TransactionImpl(storageManager);
+         txCount = 0;
+      }
+
+      if (pageIterator != null && !queueDestroyed)
+      {
+         // When the whole queue is locked we still commit every 500 paged messages
+         final int pageSlice = Math.min(sliceSize, 500);
 
+         boolean hasNext = true;
 
-         if (pageIterator != null && !queueDestroyed)
+         while (hasNext)
          {
-            // System.out.println("QueueMemorySize before depage = " + queueMemorySize.get());
-            while (pageIterator.hasNext())
+            synchronized (this)
             {
-               PagedReference reference = pageIterator.next();
-               pageIterator.remove();
-
-               if (filter1 == null || filter1.match(reference.getMessage()))
-               {
-                  count++;
-                  txCount++;
-                  messageAction.actMessage(tx, reference);
-               }
-               else
+               // System.out.println("QueueMemorySize before depage = " + queueMemorySize.get());
+               while (txCount < pageSlice && (hasNext = pageIterator.hasNext()))
                {
-                  addTail(reference, false);
-               }
+                  PagedReference reference = pageIterator.next();
+                  pageIterator.remove();
 
-               if (txCount > 0 && txCount % 500 == 0)
-               {
-                  tx.commit();
-                  tx = new TransactionImpl(storageManager);
-                  txCount = 0;
+                  if (filter1 == null || filter1.match(reference.getMessage()))
+                  {
+                     count++;
+                     txCount++;
+                     messageAction.actMessage(tx, reference);
+                  }
+                  else
+                  {
+                     addTail(reference, false);
+                  }
                }
             }
-         }
 
-         if (txCount > 0)
-         {
-            tx.commit();
-            tx = null;
+            if (txCount > 0)
+            {
+               tx.commit();
+               tx = new TransactionImpl(storageManager);
+               txCount = 0;
+            }
          }
+      }
+
+      if (filter != null && !queueDestroyed && pageSubscription != null)
+      {
+         scheduleDepage(false);
+      }
+
+      return count;
+   }
+
+   /**
+    * Same as {@link #iterQueue(Filter, QueueIterateAction)}, but only the references on memory are
+    * visited.
+    */
+   private int iterReferences(final Filter filter1, final QueueIterateAction messageAction) throws Exception
+   {
+      final int batchSize = getBulkOperationBatchSize();
+
+      if (batchSize > 0)
+      {
+         return iterReferences(filter1, messageAction, batchSize);
+      }
 
+      synchronized (this)
+      {
+         return iterReferences(filter1, messageAction, Integer.MAX_VALUE);
+      }
+   }
+
+   /**
+    * Visits the references on memory, locking the queue for {@code sliceSize} references at a time
+    * and committing the transaction after each slice.
+    */
+   private int iterReferences(final Filter filter1, final QueueIterateAction messageAction, final int sliceSize) throws Exception
+   {
+      int count = 0;
+
+      int txCount = 0;
+
+      Transaction tx = new TransactionImpl(storageManager);
+
+      LinkedListIterator<MessageReference> iter;
 
+      // References added at the tail while the queue is unlocked would be visited as well, so we
+      // stop at the last reference there was when we started. If that one is consumed in the
+      // meantime the walk goes on to the end. References added back at the head are not visited
+      MessageReference last;
 
-         if (filter != null && !queueDestroyed && pageSubscription != null)
+      synchronized (this)
+      {
+         iter = messageReferences.iterator();
+
+         last = messageReferences.peekLast();
+      }
+
+      try
+      {
+         boolean hasNext = true;
+
+         while (hasNext)
          {
-            scheduleDepage(false);
+            synchronized (this)
+            {
+               int visited = 0;
+
+               while (visited < sliceSize && (hasNext = last != null && iter.hasNext()))
+               {
+                  MessageReference ref = iter.next();
+
+                  visited++;
+
+                  if (ref == last)
+                  {
+                     // this is the last reference to visit, after this slice
+                     last = null;
+                  }
+
+                  if (ref.isPaged() && queueDestroyed)
+                  {
+                     // this means the queue is being removed
+                     // hence paged references are just going away through
+                     // page cleanup
+                     continue;
+                  }
+
+                  if (filter1 == null || filter1.match(ref.getMessage()))
+                  {
+                     messageAction.actMessage(tx, ref);
+                     iter.remove();
+                     txCount++;
+                     count++;
+                  }
+               }
+            }
+
+            if (txCount > 0)
+            {
+               tx.commit();
+
+               tx = new TransactionImpl(storageManager);
+
+               txCount = 0;
+            }
          }
 
          return count;
       }
       finally
       {
-         iter.close();
+         synchronized (this)
+         {
+            iter.close();
+         }
+      }
+   }
+
+   private int getBulkOperationBatchSize()
+   {
+      if (addressSettingsRepository == null)
+      {
+         return AddressSettings.DEFAULT_BULK_OPERATION_BATCH_SIZE;
       }
+
+      return addressSettingsRepository.getMatch(address.toString()).getBulkOperationBatchSize();
    }
 
    public void destroyPaging() throws Exception
@@ -1278,32 +1392,20 @@ public class QueueImpl implements Queue
 
       Transaction tx = new TransactionImpl(storageManager);
 
-      LinkedListIterator<MessageReference> iter = iterator();
-      try
-      {
+      MessageReference ref = messageReferences.getWithID(messageID);
 
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               deliveringCount.incrementAndGet();
-               acknowledge(tx, ref);
-               iter.remove();
-               refRemoved(ref);
-               deleted = true;
-               break;
-            }
-         }
-
-         tx.commit();
-
-         return deleted;
-      }
-      finally
+      if (ref != null)
       {
-         iter.close();
+         deliveringCount.incrementAndGet();
+         acknowledge(tx, ref);
+         messageReferences.removeWithID(messageID);
+         refRemoved(ref);
+         deleted = true;
       }
+
+      tx.commit();
+
+      return deleted;
    }
 
 
@@ -1351,31 +1453,21 @@ public class QueueImpl implements Queue
          return false;
       }
 
-      LinkedListIterator<MessageReference> iter = iterator();
-      try
-      {
+      MessageReference ref = messageReferences.getWithID(messageID);
 
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               deliveringCount.incrementAndGet();
-               expire(ref);
-               iter.remove();
-               refRemoved(ref);
-               return true;
-            }
-         }
-         return false;
-      }
-      finally
+      if (ref == null)
       {
-         iter.close();
+         return false;
       }
+
+      deliveringCount.incrementAndGet();
+      expire(ref);
+      messageReferences.removeWithID(messageID);
+      refRemoved(ref);
+      return true;
    }
 
-   public synchronized int expireReferences(final Filter filter) throws Exception
+   public int expireReferences(final Filter filter) throws Exception
    {
       if (expiryAddress != null && expiryAddress.equals(this.address))
       {
@@ -1385,35 +1477,16 @@ public class QueueImpl implements Queue
          return 0;
       }
 
-      Transaction tx = new TransactionImpl(storageManager);
-
-      int count = 0;
-      LinkedListIterator<MessageReference> iter = iterator();
-
-      try
+      return iterReferences(filter, new QueueIterateAction()
       {
-
-         while (iter.hasNext())
+         @Override
+         public void actMessage(Transaction tx, MessageReference ref) throws Exception
          {
-            MessageReference ref = iter.next();
-            if (filter == null || filter.match(ref.getMessage()))
-            {
-               deliveringCount.incrementAndGet();
-               expire(tx, ref);
-               iter.remove();
-               refRemoved(ref);
-               count++;
-            }
+            deliveringCount.incrementAndGet();
+            expire(tx, ref);
+            refRemoved(ref);
          }
-
-         tx.commit();
-
-         return count;
-      }
-      finally
-      {
-         iter.close();
-      }
+      });
    }
 
    public void expireReferences()
@@ -1497,55 +1570,32 @@ public class QueueImpl implements Queue
 
    public synchronized boolean sendMessageToDeadLetterAddress(final long messageID) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
+      MessageReference ref = messageReferences.getWithID(messageID);
 
-      try
+      if (ref == null)
       {
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               deliveringCount.incrementAndGet();
-               sendToDeadLetterAddress(ref);
-               iter.remove();
-               refRemoved(ref);
-               return true;
-            }
-         }
          return false;
       }
-      finally
-      {
-         iter.close();
-      }
+
+      deliveringCount.incrementAndGet();
+      sendToDeadLetterAddress(ref);
+      messageReferences.removeWithID(messageID);
+      refRemoved(ref);
+      return true;
    }
 
-   public synchronized int sendMessagesToDeadLetterAddress(Filter filter) throws Exception
+   public int sendMessagesToDeadLetterAddress(Filter filter) throws Exception
    {
-      int count = 0;
-      LinkedListIterator<MessageReference> iter = iterator();
-
-      try
+      return iterReferences(filter, new QueueIterateAction()
       {
-         while (iter.hasNext())
+         @Override
+         public void actMessage(Transaction tx, MessageReference ref) throws Exception
          {
-            MessageReference ref = iter.next();
-            if (filter == null || filter.match(ref.getMessage()))
-            {
-               deliveringCount.incrementAndGet();
-               sendToDeadLetterAddress(ref);
-               iter.remove();
-               refRemoved(ref);
-               count++;
-            }
+            deliveringCount.incrementAndGet();
+            sendToDeadLetterAddress(tx, ref);
+            refRemoved(ref);
          }
-         return count;
-      }
-      finally
-      {
-         iter.close();
-      }
+      });
    }
 
    public boolean moveReference(final long messageID, final SimpleString toAddress) throws Exception
@@ -1557,36 +1607,25 @@ public class QueueImpl implements Queue
                                              final SimpleString toAddress,
                                              final boolean rejectDuplicate) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
+      MessageReference ref = messageReferences.removeWithID(messageID);
 
-      try
+      if (ref == null)
       {
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               iter.remove();
-               refRemoved(ref);
-               deliveringCount.incrementAndGet();
-               try
-               {
-                  move(toAddress, ref, false, rejectDuplicate);
-               }
-               catch (Exception e)
-               {
-                  deliveringCount.decrementAndGet();
-                  throw e;
-               }
-               return true;
-            }
-         }
          return false;
       }
-      finally
+
+      refRemoved(ref);
+      deliveringCount.incrementAndGet();
+      try
       {
-         iter.close();
+         move(toAddress, ref, false, rejectDuplicate);
       }
+      catch (Exception e)
+      {
+         deliveringCount.decrementAndGet();
+         throw e;
+      }
+      return true;
    }
 
    public int moveReferences(final Filter filter, final SimpleString toAddress) throws Exception
@@ -1594,7 +1633,7 @@ public class QueueImpl implements Queue
       return moveReferences(filter, toAddress, false);
    }
 
-   public synchronized int moveReferences(final Filter filter,
+   public int moveReferences(final Filter filter,
                                           final SimpleString toAddress,
                                           final boolean rejectDuplicates) throws Exception
    {
@@ -1627,36 +1666,25 @@ public class QueueImpl implements Queue
             {
                move(toAddress, tx, ref, false, rejectDuplicates);
             }
+
+            refRemoved(ref);
          }
       });
    }
 
    public synchronized boolean changeReferencePriority(final long messageID, final byte newPriority) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
+      MessageReference ref = messageReferences.removeWithID(messageID);
 
-      try
+      if (ref == null)
       {
-
-         while (iter.hasNext())
-         {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == messageID)
-            {
-               iter.remove();
-               refRemoved(ref);
-               ref.getMessage().setPriority(newPriority);
-               addTail(ref, false);
-               return true;
-            }
-         }
-
          return false;
       }
-      finally
-      {
-         iter.close();
-      }
+
+      refRemoved(ref);
+      ref.getMessage().setPriority(newPriority);
+      addTail(ref, false);
+      return true;
    }
 
    public synchronized int changeReferencesPriority(final Filter filter, final byte newPriority) throws Exception
@@ -1777,6 +1805,11 @@ public class QueueImpl implements Queue
    {
       refAdded(ref);
       messageReferences.addTail(ref, ref.getMessage().getPriority());
+
+      if (selectorQueues != null)
+      {
+         addToSelectorQueues(ref, false);
+      }
    }
 
    /**
@@ -1790,6 +1823,11 @@ public class QueueImpl implements Queue
       queueMemorySize.addAndGet(ref.getMessageMemoryEstimate());
       refAdded(ref);
       messageReferences.addHead(ref, ref.getMessage().getPriority());
+
+      if (selectorQueues != null)
+      {
+         addToSelectorQueues(ref, true);
+      }
    }
 
    private synchronized void doInternalPoll()
@@ -1900,7 +1938,8 @@ public class QueueImpl implements Queue
 
             if (holder.iter == null)
             {
-               holder.iter = messageReferences.iterator();
+               holder.iter = holder.selectorQueue == null ? messageReferences.iterator()
+                                                          : holder.selectorQueue.references.iterator();
             }
 
             if (holder.iter.hasNext())
@@ -1917,15 +1956,23 @@ public class QueueImpl implements Queue
             }
             else
             {
+               if (holder.selectorQueue != null && !isQueued(ref))
+               {
+                  // taken by another consumer or removed since, the selector queues are purged lazily
+                  holder.iter.remove();
+
+                  handled++;
+
+                  continue;
+               }
+
                if (checkExpired(ref))
                {
                   if (isTrace)
                   {
                      HornetQServerLogger.LOGGER.trace("Reference " + ref + " being expired");
                   }
-                  holder.iter.remove();
-
-                  refRemoved(ref);
+                  removeDelivered(holder, ref);
 
                   handled++;
 
@@ -1962,9 +2009,7 @@ public class QueueImpl implements Queue
 
                   handledconsumer = consumer;
 
-                  holder.iter.remove();
-
-                  refRemoved(ref);
+                  removeDelivered(holder, ref);
 
                   if (groupID != null && groupConsumer == null)
                   {
@@ -2030,6 +2075,21 @@ public class QueueImpl implements Queue
       }
    }
 
+   /**
+    * Removes a reference taken by the iterator of a consumer from the queue
+    */
+   private void removeDelivered(final ConsumerHolder holder, final MessageReference ref)
+   {
+      holder.iter.remove();
+
+      if (holder.selectorQueue != null)
+      {
+         messageReferences.removeWithID(ref.getMessage().getMessageID());
+      }
+
+      refRemoved(ref);
+   }
+
    /**
     * @param ref
     */
@@ -2042,6 +2102,113 @@ public class QueueImpl implements Queue
       }
    }
 
+   /**
+    * @return whether the reference of a selector queue is still on messageReferences
+    */
+   private boolean isQueued(final MessageReference ref)
+   {
+      return messageReferences.getWithID(ref.getMessage().getMessageID()) == ref;
+   }
+
+   /**
+    * Returns the selector queue of the filter, creating it with the matching references already on
+    * the queue if this is its first consumer. Must be called holding the queue lock.
+    */
+   private SelectorQueue acquireSelectorQueue(final Filter consumerFilter)
+   {
+      SelectorQueue selectorQueue = selectorQueues.get(consumerFilter.getFilterString());
+
+      if (selectorQueue == null)
+      {
+         selectorQueue = new SelectorQueue(consumerFilter);
+
+         LinkedListIterator<MessageReference> iter = messageReferences.iterator();
+
+         try
+         {
+            while (iter.hasNext())
+            {
+               MessageReference ref = iter.next();
+
+               if (consumerFilter.match(ref.getMessage()))
+               {
+                  selectorQueue.references.addTail(ref, ref.getMessage().getPriority());
+               }
+            }
+         }
+         finally
+         {
+            iter.close();
+         }
+
+         selectorQueues.put(consumerFilter.getFilterString(), selectorQueue);
+      }
+
+      selectorQueue.consumers++;
+
+      return selectorQueue;
+   }
+
+   private void releaseSelectorQueue(final SelectorQueue selectorQueue)
+   {
+      if (--selectorQueue.consumers == 0)
+      {
+         selectorQueues.remove(selectorQueue.filter.getFilterString());
+      }
+   }
+
+   /**
+    * Each selector is matched once per reference, however many consumers share it
+    */
+   private void addToSelectorQueues(final MessageReference ref, final boolean head)
+   {
+      for (SelectorQueue selectorQueue : selectorQueues.values())
+      {
+         if (selectorQueue.filter.match(ref.getMessage()))
+         {
+            if (head)
+            {
+               selectorQueue.references.addHead(ref, ref.getMessage().getPriority());
+            }
+            else
+            {
+               selectorQueue.references.addTail(ref, ref.getMessage().getPriority());
+            }
+
+            // a selector queue whose consumers don't take its references would otherwise keep the
+            // stale ones. Purging once it holds more than twice the queue keeps the cost constant
+            // per reference
+            if (selectorQueue.references.size() > 2 * messageReferences.size())
+            {
+               purgeSelectorQueue(selectorQueue);
+            }
+         }
+      }
+   }
+
+   /**
+    * Drops the references that left the queue from a selector queue
+    */
+   private void purgeSelectorQueue(final SelectorQueue selectorQueue)
+   {
+      LinkedListIterator<MessageReference> iter = selectorQueue.references.iterator();
+
+      try
+      {
+         while (iter.hasNext())
+         {
+            if (!isQueued(iter.next()))
+            {
+               iter.remove();
+            }
+         }
+      }
+      finally
+      {
+         iter.close();
+      }
+   }
+
    /**
     * @param ref
     */
@@ -2289,6 +2456,22 @@ public class QueueImpl implements Queue
    }
 
    private void sendToDeadLetterAddress(final MessageReference ref, final  SimpleString deadLetterAddress) throws Exception
+   {
+      sendToDeadLetterAddress(null, ref, deadLetterAddress);
+   }
+
+   private void sendToDeadLetterAddress(final Transaction tx, final MessageReference ref) throws Exception
+   {
+      sendToDeadLetterAddress(tx, ref, addressSettingsRepository.getMatch(address.toString()).getDeadLetterAddress());
+   }
+
+   /**
+    * @param tx the transaction the reference is acknowledged in, or <code>null</code> to acknowledge
+    *           it on its own
+    */
+   private void sendToDeadLetterAddress(final Transaction tx,
+                                        final MessageReference ref,
+                                        final SimpleString deadLetterAddress) throws Exception
    {
       if (deadLetterAddress != null)
       {
@@ -2297,19 +2480,40 @@ public class QueueImpl implements Queue
          if (bindingList.getBindings().isEmpty())
          {
             HornetQServerLogger.LOGGER.messageExceededMaxDelivery(ref, deadLetterAddress);
-            acknowledge(ref);
+            if (tx == null)
+            {
+               acknowledge(ref);
+            }
+            else
+            {
+               acknowledge(tx, ref);
+            }
          }
          else
          {
             HornetQServerLogger.LOGGER.messageExceededMaxDeliverySendtoDLA(ref, deadLetterAddress, name);
-            move(deadLetterAddress, ref, false, false);
+            if (tx == null)
+            {
+               move(deadLetterAddress, ref, false, false);
+            }
+            else
+            {
+               move(deadLetterAddress, tx, ref, false, false);
+            }
          }
       }
       else
       {
          HornetQServerLogger.LOGGER.messageExceededMaxDeliveryNoDLA(name);
 
-         acknowledge(ref);
+         if (tx == null)
+         {
+            acknowledge(ref);
+         }
+         else
+         {
+            acknowledge(tx, ref);
+         }
       }
    }
 
@@ -2605,6 +2809,26 @@ public class QueueImpl implements Queue
 
       LinkedListIterator<MessageReference> iter;
 
+      // where the consumer takes its references from, instead of messageReferences
+      SelectorQueue selectorQueue;
+
+   }
+
+   private static final class SelectorQueue
+   {
+      final Filter filter;
+
+      final PriorityLinkedList<MessageReference> references;
+
+      int consumers;
+
+      SelectorQueue(final Filter filter)
+      {
+         this.filter = filter;
+         // a reference taken and added back while a stale entry is left may be here twice, so
+         // the references are not looked up by id
+         this.references = new PriorityLinkedListImpl<MessageReference>(QueueImpl.NUM_PRIORITIES);
+      }
    }
 
    private final class RefsOperation extends TransactionOperationAbstract
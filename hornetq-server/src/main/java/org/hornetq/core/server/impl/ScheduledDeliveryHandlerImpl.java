@@ -14,11 +14,12 @@ package org.hornetq.core.server.impl;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.hornetq.core.filter.Filter;
@@ -26,9 +27,14 @@ import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.Queue;
 import org.hornetq.core.server.ScheduledDeliveryHandler;
+import org.hornetq.core.server.impl.TimingWheel.Timeout;
 
 /**
  * Handles scheduling deliveries to a queue at the correct time.
+ * <p>
+ * The scheduled references are kept on a {@link TimingWheel}, which delivers the references of
+ * each tick of {@value #TICK_DURATION} milliseconds together. There's at most one task on the
+ * executor at any time, for the next tick with references to deliver.
  *
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  * @author <a href="ataylor@redhat.com">Andy Taylor</a>
@@ -39,11 +45,24 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 {
    private static final boolean trace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   // in milliseconds
+   static final long TICK_DURATION = 10;
+
    private final ScheduledExecutorService scheduledExecutor;
 
    private final Object lockDelivery = new Object();
 
-   private final LinkedList<MessageReference> scheduledReferences = new LinkedList<MessageReference>();
+   private final TimingWheel<MessageReference> scheduledReferences =
+      new TimingWheel<MessageReference>(TICK_DURATION, System.currentTimeMillis());
+
+   private final Map<Long, Timeout<MessageReference>> timeoutsByID = new HashMap<Long, Timeout<MessageReference>>();
+
+   // The references with the ID of another scheduled reference, which are not on timeoutsByID
+   private int duplicateIDs;
+
+   private ScheduledDeliveryRunnable nextDelivery;
+
+   private ScheduledFuture<?> nextDeliveryFuture;
 
    public ScheduledDeliveryHandlerImpl(final ScheduledExecutorService scheduledExecutor)
    {
@@ -61,23 +80,27 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
             HornetQServerLogger.LOGGER.trace("Scheduling delivery for " + ref + " to occur at " + deliveryTime);
          }
 
-         ScheduledDeliveryRunnable runnable = new ScheduledDeliveryRunnable(ref.getScheduledDeliveryTime());
-
          synchronized (scheduledReferences)
          {
-            if (tail)
+            // the references scheduled for the tail are delivered after the ones scheduled for the head
+            Timeout<MessageReference> timeout = scheduledReferences.add(ref,
+                                                                        deliveryTime,
+                                                                        !tail,
+                                                                        System.currentTimeMillis());
+
+            Long id = ref.getMessage().getMessageID();
+
+            if (timeoutsByID.containsKey(id))
             {
-               // We do the opposite what the parameter says as the Runnable will always add it to the head
-               scheduledReferences.addFirst(ref);
+               duplicateIDs++;
             }
             else
             {
-               // We do the opposite what the parameter says as the Runnable will always add it to the head
-               scheduledReferences.add(ref);
+               timeoutsByID.put(id, timeout);
             }
-         }
 
-         scheduleDelivery(runnable, deliveryTime);
+            scheduleDelivery();
+         }
 
          return true;
       }
@@ -94,13 +117,10 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
    public List<MessageReference> getScheduledReferences()
    {
-      List<MessageReference> refs = new ArrayList<MessageReference>();
-
       synchronized (scheduledReferences)
       {
-         refs.addAll(scheduledReferences);
+         return scheduledReferences.elements();
       }
-      return refs;
    }
 
    public List<MessageReference> cancel(final Filter filter)
@@ -109,14 +129,13 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
       synchronized (scheduledReferences)
       {
-         Iterator<MessageReference> iter = scheduledReferences.iterator();
-
-         while (iter.hasNext())
+         for (Timeout<MessageReference> timeout : scheduledReferences.timeouts())
          {
-            MessageReference ref = iter.next();
+            MessageReference ref = timeout.getElement();
             if (filter == null || filter.match(ref.getMessage()))
             {
-               iter.remove();
+               scheduledReferences.remove(timeout);
+               removed(timeout);
                refs.add(ref);
             }
          }
@@ -128,33 +147,77 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
    {
       synchronized (scheduledReferences)
       {
-         Iterator<MessageReference> iter = scheduledReferences.iterator();
-         while (iter.hasNext())
+         Timeout<MessageReference> timeout = timeoutsByID.get(id);
+
+         if (timeout == null && duplicateIDs > 0)
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == id)
+            for (Timeout<MessageReference> duplicate : scheduledReferences.timeouts())
             {
-               iter.remove();
-               return ref;
+               if (duplicate.getElement().getMessage().getMessageID() == id)
+               {
+                  timeout = duplicate;
+                  break;
+               }
             }
          }
+
+         if (timeout != null)
+         {
+            scheduledReferences.remove(timeout);
+            removed(timeout);
+            return timeout.getElement();
+         }
       }
 
       return null;
    }
 
-   private void scheduleDelivery(final ScheduledDeliveryRunnable runnable, final long deliveryTime)
+   /**
+    * Must be called with the lock on scheduledReferences
+    */
+   private void removed(final Timeout<MessageReference> timeout)
+   {
+      Long id = timeout.getElement().getMessage().getMessageID();
+
+      if (timeoutsByID.get(id) == timeout)
+      {
+         timeoutsByID.remove(id);
+      }
+      else
+      {
+         duplicateIDs--;
+      }
+   }
+
+   /**
+    * Schedules the delivery of the next tick, unless it's already scheduled. Must be called with
+    * the lock on scheduledReferences.
+    */
+   private void scheduleDelivery()
    {
-      long now = System.currentTimeMillis();
+      long deliveryTime = scheduledReferences.nextExpiration();
 
-      long delay = deliveryTime - now;
+      if (deliveryTime < 0 || nextDelivery != null && nextDelivery.scheduledTime <= deliveryTime)
+      {
+         return;
+      }
+
+      if (nextDeliveryFuture != null)
+      {
+         // the task would find nothing to deliver
+         nextDeliveryFuture.cancel(false);
+      }
+
+      long delay = deliveryTime - System.currentTimeMillis();
 
       if (delay < 0)
       {
          delay = 0;
       }
 
-      scheduledExecutor.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+      nextDelivery = new ScheduledDeliveryRunnable(deliveryTime);
+
+      nextDeliveryFuture = scheduledExecutor.schedule(nextDelivery, delay, TimeUnit.MILLISECONDS);
    }
 
    private class ScheduledDeliveryRunnable implements Runnable
@@ -172,30 +235,54 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 
          synchronized (lockDelivery)
          {
+            List<MessageReference> expired = new ArrayList<MessageReference>();
+
             synchronized (scheduledReferences)
             {
+               if (nextDelivery != this)
+               {
+                  // replaced by an earlier delivery
+                  return;
+               }
 
-               Iterator<MessageReference> iter = scheduledReferences.iterator();
-               while (iter.hasNext())
+               nextDelivery = null;
+               nextDeliveryFuture = null;
+
+               scheduledReferences.expire(System.currentTimeMillis(), expired);
+
+               // The references are added one by one to the head of the queue, so the last one goes first
+               ListIterator<MessageReference> iter = expired.listIterator(expired.size());
+               while (iter.hasPrevious())
                {
-                  MessageReference reference = iter.next();
-                  if (reference.getScheduledDeliveryTime() <= this.scheduledTime)
-                  {
-                     iter.remove();
+                  MessageReference reference = iter.previous();
 
-                     reference.setScheduledDeliveryTime(0);
+                  Long id = reference.getMessage().getMessageID();
+
+                  Timeout<MessageReference> timeout = timeoutsByID.get(id);
+
+                  if (timeout != null && timeout.getElement() == reference)
+                  {
+                     timeoutsByID.remove(id);
+                  }
+                  else
+                  {
+                     duplicateIDs--;
+                  }
 
-                     LinkedList<MessageReference> references = refs.get(reference.getQueue());
+                  reference.setScheduledDeliveryTime(0);
 
-                     if (references == null)
-                     {
-                        references = new LinkedList<MessageReference>();
-                        refs.put(reference.getQueue(), references);
-                     }
+                  LinkedList<MessageReference> references = refs.get(reference.getQueue());
 
-                     references.add(reference);
+                  if (references == null)
+                  {
+                     references = new LinkedList<MessageReference>();
+                     refs.put(reference.getQueue(), references);
                   }
+
+                  references.add(reference);
                }
+
+               scheduleDelivery();
             }
 
             for (Map.Entry<Queue, LinkedList<MessageReference>> entry : refs.entrySet())
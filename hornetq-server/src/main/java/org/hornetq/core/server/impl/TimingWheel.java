@@ -0,0 +1,453 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.server.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel, holding elements until their time comes.
+ * <p>
+ * The time is divided into ticks: an element is kept on the bucket of the first tick at or after
+ * its time, and all the elements of a bucket are expired together. The first wheel has a bucket
+ * per tick for the next {@value #WHEEL_SIZE} ticks, the next wheels each have buckets covering a
+ * whole turn of the wheel below, and the elements further away than the last wheel are kept
+ * aside. Whenever a wheel completes a turn, the elements of the next bucket of the wheel above are
+ * spread into it.
+ * <p>
+ * Adding and removing an element don't depend on the number of elements. This class is not thread
+ * safe.
+ */
+final class TimingWheel<E>
+{
+   private static final int WHEEL_BITS = 8;
+
+   private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+   private static final int UPPER_WHEEL_BITS = 6;
+
+   private static final int UPPER_WHEEL_SIZE = 1 << UPPER_WHEEL_BITS;
+
+   private static final int UPPER_WHEELS = 3;
+
+   // Within a tick, the elements added to the head come first, the last added first
+   private static final Comparator<Timeout<?>> DELIVERY_ORDER = new Comparator<Timeout<?>>()
+   {
+      public int compare(final Timeout<?> timeout1, final Timeout<?> timeout2)
+      {
+         if (timeout1.head != timeout2.head)
+         {
+            return timeout1.head ? -1 : 1;
+         }
+
+         long order = timeout1.head ? timeout2.sequence - timeout1.sequence : timeout1.sequence - timeout2.sequence;
+
+         return order < 0 ? -1 : order > 0 ? 1 : 0;
+      }
+   };
+
+   private static final Comparator<Timeout<?>> EXPIRATION_ORDER = new Comparator<Timeout<?>>()
+   {
+      public int compare(final Timeout<?> timeout1, final Timeout<?> timeout2)
+      {
+         if (timeout1.tick != timeout2.tick)
+         {
+            return timeout1.tick < timeout2.tick ? -1 : 1;
+         }
+
+         return DELIVERY_ORDER.compare(timeout1, timeout2);
+      }
+   };
+
+   private final long tickDuration;
+
+   // The buckets of the first wheel, then of each upper wheel
+   private final Bucket<E>[][] wheels;
+
+   // The elements further away than the last wheel
+   private final Bucket<E> overflow = new Bucket<E>();
+
+   // The next tick to expire
+   private long currentTick;
+
+   private long sequence;
+
+   private int size;
+
+   /**
+    * @param tickDuration the duration of a tick, in milliseconds
+    * @param now the current time, in milliseconds
+    */
+   @SuppressWarnings("unchecked")
+   TimingWheel(final long tickDuration, final long now)
+   {
+      this.tickDuration = tickDuration;
+
+      wheels = new Bucket[UPPER_WHEELS + 1][];
+
+      for (int i = 0; i < wheels.length; i++)
+      {
+         wheels[i] = new Bucket[i == 0 ? WHEEL_SIZE : UPPER_WHEEL_SIZE];
+
+         for (int j = 0; j < wheels[i].length; j++)
+         {
+            wheels[i][j] = new Bucket<E>();
+         }
+      }
+
+      currentTick = now / tickDuration;
+   }
+
+   /**
+    * @param time when the element expires, in milliseconds. It never expires before.
+    * @param head whether the element goes before the ones added earlier for the same tick
+    * @return the handle to remove the element with
+    */
+   Timeout<E> add(final E element, final long time, final boolean head, final long now)
+   {
+      if (size == 0)
+      {
+         // nothing to expire on the way, skip the ticks which went by
+         currentTick = Math.max(currentTick, now / tickDuration);
+      }
+
+      // rounded up so as not to expire early
+      long tick = time / tickDuration + (time % tickDuration == 0 ? 0 : 1);
+
+      Timeout<E> timeout = new Timeout<E>(element, tick, head, sequence++);
+
+      schedule(timeout);
+
+      size++;
+
+      return timeout;
+   }
+
+   /**
+    * @return false if the element was already expired or removed
+    */
+   boolean remove(final Timeout<E> timeout)
+   {
+      if (timeout.bucket == null)
+      {
+         return false;
+      }
+
+      timeout.bucket.remove(timeout);
+
+      size--;
+
+      return true;
+   }
+
+   /**
+    * Removes the elements whose time has come.
+    *
+    * @param expired where the expired elements are added, in the order of their ticks. Within a
+    *           tick, the elements added to the head come first, from the last one added, then the
+    *           other ones from the first one added.
+    */
+   void expire(final long now, final List<E> expired)
+   {
+      long nowTick = now / tickDuration;
+
+      List<Timeout<E>> timeouts = new ArrayList<Timeout<E>>();
+
+      while (currentTick <= nowTick && size > 0)
+      {
+         int index = (int)(currentTick & (WHEEL_SIZE - 1));
+
+         if (index == 0)
+         {
+            cascade();
+         }
+
+         Bucket<E> bucket = wheels[0][index];
+
+         if (bucket.first != null)
+         {
+            timeouts.clear();
+
+            bucket.drainTo(timeouts);
+
+            size -= timeouts.size();
+
+            Collections.sort(timeouts, DELIVERY_ORDER);
+
+            for (Timeout<E> timeout : timeouts)
+            {
+               expired.add(timeout.element);
+            }
+         }
+
+         currentTick++;
+      }
+
+      if (size == 0)
+      {
+         currentTick = Math.max(currentTick, nowTick + 1);
+      }
+   }
+
+   /**
+    * @return the time the next elements may expire, or -1 if there isn't any. It's at the latest
+    *         the next turn of the first wheel, when the upper wheels are spread into it.
+    */
+   long nextExpiration()
+   {
+      if (size == 0)
+      {
+         return -1;
+      }
+
+      long tick = currentTick;
+
+      while ((tick & (WHEEL_SIZE - 1)) != 0 && wheels[0][(int)(tick & (WHEEL_SIZE - 1))].first == null)
+      {
+         tick++;
+      }
+
+      return tick * tickDuration;
+   }
+
+   int size()
+   {
+      return size;
+   }
+
+   /**
+    * @return all the elements, in the order they would expire
+    */
+   List<E> elements()
+   {
+      List<E> elements = new ArrayList<E>(size);
+
+      for (Timeout<E> timeout : timeouts())
+      {
+         elements.add(timeout.element);
+      }
+
+      return elements;
+   }
+
+   /**
+    * @return the handles of all the elements, in the order they would expire
+    */
+   List<Timeout<E>> timeouts()
+   {
+      List<Timeout<E>> timeouts = new ArrayList<Timeout<E>>(size);
+
+      for (Bucket<E>[] wheel : wheels)
+      {
+         for (Bucket<E> bucket : wheel)
+         {
+            bucket.addTo(timeouts);
+         }
+      }
+
+      overflow.addTo(timeouts);
+
+      Collections.sort(timeouts, EXPIRATION_ORDER);
+
+      return timeouts;
+   }
+
+   // Private -------------------------------------------------------
+
+   private void schedule(final Timeout<E> timeout)
+   {
+      long ticks = timeout.tick - currentTick;
+
+      if (ticks < WHEEL_SIZE)
+      {
+         // an element whose time went by expires on the next tick
+         long tick = ticks < 0 ? currentTick : timeout.tick;
+
+         wheels[0][(int)(tick & (WHEEL_SIZE - 1))].add(timeout);
+
+         return;
+      }
+
+      int shift = WHEEL_BITS;
+
+      for (int level = 1; level <= UPPER_WHEELS; level++)
+      {
+         shift += UPPER_WHEEL_BITS;
+
+         if (ticks < (1L << shift))
+         {
+            int index = (int)((timeout.tick >>> (shift - UPPER_WHEEL_BITS)) & (UPPER_WHEEL_SIZE - 1));
+
+            wheels[level][index].add(timeout);
+
+            return;
+         }
+      }
+
+      overflow.add(timeout);
+   }
+
+   /**
+    * Spreads the next bucket of each upper wheel completing a turn into the wheels below
+    */
+   private void cascade()
+   {
+      List<Timeout<E>> timeouts = new ArrayList<Timeout<E>>();
+
+      int shift = WHEEL_BITS;
+
+      for (int level = 1; level <= UPPER_WHEELS; level++)
+      {
+         int index = (int)((currentTick >>> shift) & (UPPER_WHEEL_SIZE - 1));
+
+         wheels[level][index].drainTo(timeouts);
+
+         if (index != 0)
+         {
+            break;
+         }
+
+         if (level == UPPER_WHEELS)
+         {
+            overflow.drainTo(timeouts);
+         }
+
+         shift += UPPER_WHEEL_BITS;
+      }
+
+      for (Timeout<E> timeout : timeouts)
+      {
+         schedule(timeout);
+      }
+   }
+
+   // Inner classes -------------------------------------------------
+
+   /**
+    * The handle of an element on the wheel
+    */
+   static final class Timeout<E>
+   {
+      private final E element;
+
+      private final long tick;
+
+      private final boolean head;
+
+      private final long sequence;
+
+      private Bucket<E> bucket;
+
+      private Timeout<E> previous;
+
+      private Timeout<E> next;
+
+      Timeout(final E element, final long tick, final boolean head, final long sequence)
+      {
+         this.element = element;
+         this.tick = tick;
+         this.head = head;
+         this.sequence = sequence;
+      }
+
+      E getElement()
+      {
+         return element;
+      }
+   }
+
+   /**
+    * A doubly linked list of timeouts
+    */
+   private static final class Bucket<E>
+   {
+      private Timeout<E> first;
+
+      private Timeout<E> last;
+
+      void add(final Timeout<E> timeout)
+      {
+         timeout.bucket = this;
+         timeout.previous = last;
+         timeout.next = null;
+
+         if (last == null)
+         {
+            first = timeout;
+         }
+         else
+         {
+            last.next = timeout;
+         }
+
+         last = timeout;
+      }
+
+      void remove(final Timeout<E> timeout)
+      {
+         if (timeout.previous == null)
+         {
+            first = timeout.next;
+         }
+         else
+         {
+            timeout.previous.next = timeout.next;
+         }
+
+         if (timeout.next == null)
+         {
+            last = timeout.previous;
+         }
+         else
+         {
+            timeout.next.previous = timeout.previous;
+         }
+
+         timeout.bucket = null;
+         timeout.previous = null;
+         timeout.next = null;
+      }
+
+      void drainTo(final List<Timeout<E>> timeouts)
+      {
+         Timeout<E> timeout = first;
+
+         while (timeout != null)
+         {
+            Timeout<E> next = timeout.next;
+
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+
+            timeouts.add(timeout);
+
+            timeout = next;
+         }
+
+         first = null;
+         last = null;
+      }
+
+      void addTo(final List<Timeout<E>> timeouts)
+      {
+         for (Timeout<E> timeout = first; timeout != null; timeout = timeout.next)
+         {
+            timeouts.add(timeout);
+         }
+      }
+   }
+}
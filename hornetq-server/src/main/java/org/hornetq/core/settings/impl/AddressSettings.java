@@ -59,6 +59,24 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    public static final boolean DEFAULT_SEND_TO_DLA_ON_NO_ROUTE = false;
 
+   public static final boolean DEFAULT_MESSAGE_ID_INDEX = false;
+
+   public static final int DEFAULT_BULK_OPERATION_BATCH_SIZE = -1;
+
+   public static final boolean DEFAULT_STRIPED_DUPLICATE_ID_CACHE = false;
+
+   public static final boolean DEFAULT_SELECTOR_DELIVERY_QUEUES = false;
+
+   public static final long DEFAULT_PAGE_MAX_CACHE_BYTES = -1;
+
+   public static final int DEFAULT_PAGE_READ_AHEAD = 0;
+
+   public static final long DEFAULT_PAGE_READ_AHEAD_MAX_BYTES = 10 * 1024 * 1024;
+
+   public static final int DEFAULT_PAGE_WRITE_BUFFER_SIZE = 0;
+
+   public static final boolean DEFAULT_PAGE_COMPRESSION = false;
+
    private AddressFullMessagePolicy addressFullMessagePolicy = null;
 
    private Long maxSizeBytes = null;
@@ -91,6 +109,24 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    private Boolean sendToDLAOnNoRoute = null;
 
+   private Boolean messageIDIndex = null;
+
+   private Integer bulkOperationBatchSize = null;
+
+   private Boolean stripedDuplicateIDCache = null;
+
+   private Boolean selectorDeliveryQueues = null;
+
+   private Long pageCacheMaxBytes = null;
+
+   private Integer pageReadAhead = null;
+
+   private Long pageReadAheadMaxBytes = null;
+
+   private Integer pageWriteBufferSize = null;
+
+   private Boolean pageCompression = null;
+
    public boolean isLastValueQueue()
    {
       return lastValueQueue != null ? lastValueQueue : AddressSettings.DEFAULT_LAST_VALUE_QUEUE;
@@ -233,6 +269,96 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       sendToDLAOnNoRoute = value;
    }
 
+   public boolean isMessageIDIndex()
+   {
+      return messageIDIndex != null ? messageIDIndex : AddressSettings.DEFAULT_MESSAGE_ID_INDEX;
+   }
+
+   public void setMessageIDIndex(final boolean value)
+   {
+      messageIDIndex = value;
+   }
+
+   public int getBulkOperationBatchSize()
+   {
+      return bulkOperationBatchSize != null ? bulkOperationBatchSize : AddressSettings.DEFAULT_BULK_OPERATION_BATCH_SIZE;
+   }
+
+   public void setBulkOperationBatchSize(final int value)
+   {
+      bulkOperationBatchSize = value;
+   }
+
+   public boolean isStripedDuplicateIDCache()
+   {
+      return stripedDuplicateIDCache != null ? stripedDuplicateIDCache : AddressSettings.DEFAULT_STRIPED_DUPLICATE_ID_CACHE;
+   }
+
+   public void setStripedDuplicateIDCache(final boolean value)
+   {
+      stripedDuplicateIDCache = value;
+   }
+
+   public boolean isSelectorDeliveryQueues()
+   {
+      return selectorDeliveryQueues != null ? selectorDeliveryQueues : AddressSettings.DEFAULT_SELECTOR_DELIVERY_QUEUES;
+   }
+
+   public void setSelectorDeliveryQueues(final boolean value)
+   {
+      selectorDeliveryQueues = value;
+   }
+
+   public long getPageCacheMaxBytes()
+   {
+      return pageCacheMaxBytes != null ? pageCacheMaxBytes : AddressSettings.DEFAULT_PAGE_MAX_CACHE_BYTES;
+   }
+
+   public void setPageCacheMaxBytes(final long value)
+   {
+      pageCacheMaxBytes = value;
+   }
+
+   public int getPageReadAhead()
+   {
+      return pageReadAhead != null ? pageReadAhead : AddressSettings.DEFAULT_PAGE_READ_AHEAD;
+   }
+
+   public void setPageReadAhead(final int value)
+   {
+      pageReadAhead = value;
+   }
+
+   public long getPageReadAheadMaxBytes()
+   {
+      return pageReadAheadMaxBytes != null ? pageReadAheadMaxBytes : AddressSettings.DEFAULT_PAGE_READ_AHEAD_MAX_BYTES;
+   }
+
+   public void setPageReadAheadMaxBytes(final long value)
+   {
+      pageReadAheadMaxBytes = value;
+   }
+
+   public int getPageWriteBufferSize()
+   {
+      return pageWriteBufferSize != null ? pageWriteBufferSize : AddressSettings.DEFAULT_PAGE_WRITE_BUFFER_SIZE;
+   }
+
+   public void setPageWriteBufferSize(final int value)
+   {
+      pageWriteBufferSize = value;
+   }
+
+   public boolean isPageCompression()
+   {
+      return pageCompression != null ? pageCompression : AddressSettings.DEFAULT_PAGE_COMPRESSION;
+   }
+
+   public void setPageCompression(final boolean value)
+   {
+      pageCompression = value;
+   }
+
    public long getRedistributionDelay()
    {
       return redistributionDelay != null ? redistributionDelay : AddressSettings.DEFAULT_REDISTRIBUTION_DELAY;
@@ -305,6 +431,42 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       {
          sendToDLAOnNoRoute = merged.sendToDLAOnNoRoute;
       }
+      if (messageIDIndex == null)
+      {
+         messageIDIndex = merged.messageIDIndex;
+      }
+      if (bulkOperationBatchSize == null)
+      {
+         bulkOperationBatchSize = merged.bulkOperationBatchSize;
+      }
+      if (stripedDuplicateIDCache == null)
+      {
+         stripedDuplicateIDCache = merged.stripedDuplicateIDCache;
+      }
+      if (selectorDeliveryQueues == null)
+      {
+         selectorDeliveryQueues = merged.selectorDeliveryQueues;
+      }
+      if (pageCacheMaxBytes == null)
+      {
+         pageCacheMaxBytes = merged.pageCacheMaxBytes;
+      }
+      if (pageReadAhead == null)
+      {
+         pageReadAhead = merged.pageReadAhead;
+      }
+      if (pageReadAheadMaxBytes == null)
+      {
+         pageReadAheadMaxBytes = merged.pageReadAheadMaxBytes;
+      }
+      if (pageWriteBufferSize == null)
+      {
+         pageWriteBufferSize = merged.pageWriteBufferSize;
+      }
+      if (pageCompression == null)
+      {
+         pageCompression = merged.pageCompression;
+      }
       if (addressFullMessagePolicy == null)
       {
          addressFullMessagePolicy = merged.addressFullMessagePolicy;
@@ -354,6 +516,17 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       redistributionDelay = BufferHelper.readNullableLong(buffer);
 
       sendToDLAOnNoRoute = BufferHelper.readNullableBoolean(buffer);
+
+      // Settings persisted by previous versions don't have this field
+      messageIDIndex = buffer.readable() ? BufferHelper.readNullableBoolean(buffer) : null;
+      bulkOperationBatchSize = buffer.readable() ? BufferHelper.readNullableInteger(buffer) : null;
+      stripedDuplicateIDCache = buffer.readable() ? BufferHelper.readNullableBoolean(buffer) : null;
+      selectorDeliveryQueues = buffer.readable() ? BufferHelper.readNullableBoolean(buffer) : null;
+      pageCacheMaxBytes = buffer.readable() ? BufferHelper.readNullableLong(buffer) : null;
+      pageReadAhead = buffer.readable() ? BufferHelper.readNullableInteger(buffer) : null;
+      pageReadAheadMaxBytes = buffer.readable() ? BufferHelper.readNullableLong(buffer) : null;
+      pageWriteBufferSize = buffer.readable() ? BufferHelper.readNullableInteger(buffer) : null;
+      pageCompression = buffer.readable() ? BufferHelper.readNullableBoolean(buffer) : null;
    }
 
    @Override
@@ -375,7 +548,16 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
              BufferHelper.sizeOfNullableLong(expiryDelay) +
              BufferHelper.sizeOfNullableBoolean(lastValueQueue) +
              BufferHelper.sizeOfNullableLong(redistributionDelay) +
-             BufferHelper.sizeOfNullableBoolean(sendToDLAOnNoRoute);
+             BufferHelper.sizeOfNullableBoolean(sendToDLAOnNoRoute) +
+             BufferHelper.sizeOfNullableBoolean(messageIDIndex) +
+             BufferHelper.sizeOfNullableInteger(bulkOperationBatchSize) +
+             BufferHelper.sizeOfNullableBoolean(stripedDuplicateIDCache) +
+             BufferHelper.sizeOfNullableBoolean(selectorDeliveryQueues) +
+             BufferHelper.sizeOfNullableLong(pageCacheMaxBytes) +
+             BufferHelper.sizeOfNullableInteger(pageReadAhead) +
+             BufferHelper.sizeOfNullableLong(pageReadAheadMaxBytes) +
+             BufferHelper.sizeOfNullableInteger(pageWriteBufferSize) +
+             BufferHelper.sizeOfNullableBoolean(pageCompression);
    }
 
    @Override
@@ -413,6 +595,24 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       BufferHelper.writeNullableLong(buffer, redistributionDelay);
 
       BufferHelper.writeNullableBoolean(buffer, sendToDLAOnNoRoute);
+
+      BufferHelper.writeNullableBoolean(buffer, messageIDIndex);
+
+      BufferHelper.writeNullableInteger(buffer, bulkOperationBatchSize);
+
+      BufferHelper.writeNullableBoolean(buffer, stripedDuplicateIDCache);
+
+      BufferHelper.writeNullableBoolean(buffer, selectorDeliveryQueues);
+
+      BufferHelper.writeNullableLong(buffer, pageCacheMaxBytes);
+
+      BufferHelper.writeNullableInteger(buffer, pageReadAhead);
+
+      BufferHelper.writeNullableLong(buffer, pageReadAheadMaxBytes);
+
+      BufferHelper.writeNullableInteger(buffer, pageWriteBufferSize);
+
+      BufferHelper.writeNullableBoolean(buffer, pageCompression);
    }
 
    /* (non-Javadoc)
@@ -440,6 +640,15 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       result = prime * result + ((maxRedeliveryDelay == null) ? 0 : maxRedeliveryDelay.hashCode());
       result = prime * result + ((redistributionDelay == null) ? 0 : redistributionDelay.hashCode());
       result = prime * result + ((sendToDLAOnNoRoute == null) ? 0 : sendToDLAOnNoRoute.hashCode());
+      result = prime * result + ((messageIDIndex == null) ? 0 : messageIDIndex.hashCode());
+      result = prime * result + ((bulkOperationBatchSize == null) ? 0 : bulkOperationBatchSize.hashCode());
+      result = prime * result + ((stripedDuplicateIDCache == null) ? 0 : stripedDuplicateIDCache.hashCode());
+      result = prime * result + ((selectorDeliveryQueues == null) ? 0 : selectorDeliveryQueues.hashCode());
+      result = prime * result + ((pageCacheMaxBytes == null) ? 0 : pageCacheMaxBytes.hashCode());
+      result = prime * result + ((pageReadAhead == null) ? 0 : pageReadAhead.hashCode());
+      result = prime * result + ((pageReadAheadMaxBytes == null) ? 0 : pageReadAheadMaxBytes.hashCode());
+      result = prime * result + ((pageWriteBufferSize == null) ? 0 : pageWriteBufferSize.hashCode());
+      result = prime * result + ((pageCompression == null) ? 0 : pageCompression.hashCode());
       return result;
    }
 
@@ -568,6 +777,69 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       }
       else if (!sendToDLAOnNoRoute.equals(other.sendToDLAOnNoRoute))
          return false;
+      if (messageIDIndex == null)
+      {
+         if (other.messageIDIndex != null)
+            return false;
+      }
+      else if (!messageIDIndex.equals(other.messageIDIndex))
+         return false;
+      if (bulkOperationBatchSize == null)
+      {
+         if (other.bulkOperationBatchSize != null)
+            return false;
+      }
+      else if (!bulkOperationBatchSize.equals(other.bulkOperationBatchSize))
+         return false;
+      if (stripedDuplicateIDCache == null)
+      {
+         if (other.stripedDuplicateIDCache != null)
+            return false;
+      }
+      else if (!stripedDuplicateIDCache.equals(other.stripedDuplicateIDCache))
+         return false;
+      if (selectorDeliveryQueues == null)
+      {
+         if (other.selectorDeliveryQueues != null)
+            return false;
+      }
+      else if (!selectorDeliveryQueues.equals(other.selectorDeliveryQueues))
+         return false;
+      if (pageCacheMaxBytes == null)
+      {
+         if (other.pageCacheMaxBytes != null)
+            return false;
+      }
+      else if (!pageCacheMaxBytes.equals(other.pageCacheMaxBytes))
+         return false;
+      if (pageReadAhead == null)
+      {
+         if (other.pageReadAhead != null)
+            return false;
+      }
+      else if (!pageReadAhead.equals(other.pageReadAhead))
+         return false;
+      if (pageReadAheadMaxBytes == null)
+      {
+         if (other.pageReadAheadMaxBytes != null)
+            return false;
+      }
+      else if (!pageReadAheadMaxBytes.equals(other.pageReadAheadMaxBytes))
+         return false;
+      if (pageWriteBufferSize == null)
+      {
+         if (other.pageWriteBufferSize != null)
+            return false;
+      }
+      else if (!pageWriteBufferSize.equals(other.pageWriteBufferSize))
+         return false;
+      if (pageCompression == null)
+      {
+         if (other.pageCompression != null)
+            return false;
+      }
+      else if (!pageCompression.equals(other.pageCompression))
+         return false;
       return true;
    }
 
@@ -608,6 +880,24 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
              redistributionDelay +
              ", sendToDLAOnNoRoute=" +
              sendToDLAOnNoRoute +
+             ", messageIDIndex=" +
+             messageIDIndex +
+             ", bulkOperationBatchSize=" +
+             bulkOperationBatchSize +
+             ", stripedDuplicateIDCache=" +
+             stripedDuplicateIDCache +
+             ", selectorDeliveryQueues=" +
+             selectorDeliveryQueues +
+             ", pageCacheMaxBytes=" +
+             pageCacheMaxBytes +
+             ", pageReadAhead=" +
+             pageReadAhead +
+             ", pageReadAheadMaxBytes=" +
+             pageReadAheadMaxBytes +
+             ", pageWriteBufferSize=" +
+             pageWriteBufferSize +
+             ", pageCompression=" +
+             pageCompression +
              "]";
    }
 }
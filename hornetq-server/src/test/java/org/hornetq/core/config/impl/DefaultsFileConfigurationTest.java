@@ -49,6 +49,12 @@ public class DefaultsFileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultSecurityInvalidationInterval(),
                           conf.getSecurityInvalidationInterval());
 
+      Assert.assertEquals(HornetQDefaultConfiguration.getDefaultAuthenticationCacheSize(),
+                          conf.getAuthenticationCacheSize());
+
+      Assert.assertEquals(HornetQDefaultConfiguration.getDefaultAuthenticationCacheTimeout(),
+                          conf.getAuthenticationCacheTimeout());
+
       Assert.assertEquals(HornetQDefaultConfiguration.isDefaultSecurityEnabled(), conf.isSecurityEnabled());
 
       Assert.assertEquals(HornetQDefaultConfiguration.isDefaultJmxManagementEnabled(), conf.isJMXManagementEnabled());
@@ -105,6 +111,10 @@ public class DefaultsFileConfigurationTest extends ConfigurationImplTest
 
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalCompactPercentage(), conf.getJournalCompactPercentage());
 
+      Assert.assertEquals(HornetQDefaultConfiguration.isDefaultJournalPackedRecordIndex(), conf.isJournalPackedRecordIndex());
+
+      Assert.assertEquals(HornetQDefaultConfiguration.isDefaultJournalParallelAppend(), conf.isJournalParallelAppend());
+
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalMinFiles(), conf.getJournalMinFiles());
 
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultJournalMaxIoAio(), conf.getJournalMaxIO_AIO());
@@ -119,6 +129,8 @@ public class DefaultsFileConfigurationTest extends ConfigurationImplTest
 
       Assert.assertEquals(JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_NIO, conf.getJournalBufferSize_NIO());
 
+      Assert.assertEquals(HornetQDefaultConfiguration.isDefaultJournalBufferAdaptive(), conf.isJournalBufferAdaptive());
+
       Assert.assertEquals(HornetQDefaultConfiguration.isDefaultCreateBindingsDir(), conf.isCreateBindingsDir());
 
       Assert.assertEquals(HornetQDefaultConfiguration.isDefaultCreateJournalDir(), conf.isCreateJournalDir());
@@ -141,6 +153,7 @@ public class DefaultsFileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(HornetQDefaultConfiguration.getDefaultMessageExpiryThreadPriority(),
                           conf.getMessageExpiryThreadPriority());
       Assert.assertEquals("replication cluster name", null, conf.getReplicationClustername());
+      Assert.assertEquals(HornetQDefaultConfiguration.getDefaultReplicationBatchSize(), conf.getReplicationBatchSize());
    }
 
    // Protected ---------------------------------------------------------------------------------------------
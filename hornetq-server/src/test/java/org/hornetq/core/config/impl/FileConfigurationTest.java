@@ -51,6 +51,8 @@ public class FileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(54321, conf.getThreadPoolMaxSize());
       Assert.assertEquals(false, conf.isSecurityEnabled());
       Assert.assertEquals(5423, conf.getSecurityInvalidationInterval());
+      Assert.assertEquals(500, conf.getAuthenticationCacheSize());
+      Assert.assertEquals(6543, conf.getAuthenticationCacheTimeout());
       Assert.assertEquals(true, conf.isWildcardRoutingEnabled());
       Assert.assertEquals(new SimpleString("Giraffe"), conf.getManagementAddress());
       Assert.assertEquals(new SimpleString("Whatever"), conf.getManagementNotificationAddress());
@@ -81,6 +83,7 @@ public class FileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(JournalType.NIO, conf.getJournalType());
       Assert.assertEquals(10000, conf.getJournalBufferSize_NIO());
       Assert.assertEquals(1000, conf.getJournalBufferTimeout_NIO());
+      Assert.assertEquals(true, conf.isJournalBufferAdaptive());
       Assert.assertEquals(56546, conf.getJournalMaxIO_NIO());
 
       Assert.assertEquals(false, conf.isJournalSyncTransactional());
@@ -89,6 +92,8 @@ public class FileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(100, conf.getJournalMinFiles());
       Assert.assertEquals(123, conf.getJournalCompactMinFiles());
       Assert.assertEquals(33, conf.getJournalCompactPercentage());
+      Assert.assertEquals(true, conf.isJournalPackedRecordIndex());
+      Assert.assertEquals(true, conf.isJournalParallelAppend());
 
       Assert.assertEquals("largemessagesdir", conf.getLargeMessagesDirectory());
       Assert.assertEquals(95, conf.getMemoryWarningThreshold());
@@ -234,6 +239,7 @@ public class FileConfigurationTest extends ConfigurationImplTest
 
       Assert.assertEquals(2, conf.getClusterConfigurations().size());
       Assert.assertEquals("replication cluster name", "cluster-connection1", conf.getReplicationClustername());
+      Assert.assertEquals(65536, conf.getReplicationBatchSize());
 
       for (ClusterConnectionConfiguration ccc : conf.getClusterConfigurations())
       {
@@ -285,6 +291,15 @@ public class FileConfigurationTest extends ConfigurationImplTest
       assertEquals(81738173872337l, conf.getAddressesSettings().get("a1").getPageSizeBytes());
       assertEquals(10, conf.getAddressesSettings().get("a1").getPageCacheMaxSize());
       assertEquals(4, conf.getAddressesSettings().get("a1").getMessageCounterHistoryDayLimit());
+      assertTrue(conf.getAddressesSettings().get("a1").isMessageIDIndex());
+      assertEquals(1000, conf.getAddressesSettings().get("a1").getBulkOperationBatchSize());
+      assertTrue(conf.getAddressesSettings().get("a1").isStripedDuplicateIDCache());
+      assertTrue(conf.getAddressesSettings().get("a1").isSelectorDeliveryQueues());
+      assertEquals(1048576, conf.getAddressesSettings().get("a1").getPageCacheMaxBytes());
+      assertEquals(2, conf.getAddressesSettings().get("a1").getPageReadAhead());
+      assertEquals(2097152, conf.getAddressesSettings().get("a1").getPageReadAheadMaxBytes());
+      assertEquals(65536, conf.getAddressesSettings().get("a1").getPageWriteBufferSize());
+      assertTrue(conf.getAddressesSettings().get("a1").isPageCompression());
 
       assertEquals("a2.1", conf.getAddressesSettings().get("a2").getDeadLetterAddress().toString());
       assertEquals("a2.2", conf.getAddressesSettings().get("a2").getExpiryAddress().toString());
@@ -293,6 +308,15 @@ public class FileConfigurationTest extends ConfigurationImplTest
       assertEquals(7126716262626l, conf.getAddressesSettings().get("a2").getPageSizeBytes());
       assertEquals(20, conf.getAddressesSettings().get("a2").getPageCacheMaxSize());
       assertEquals(8, conf.getAddressesSettings().get("a2").getMessageCounterHistoryDayLimit());
+      assertFalse(conf.getAddressesSettings().get("a2").isMessageIDIndex());
+      assertEquals(-1, conf.getAddressesSettings().get("a2").getBulkOperationBatchSize());
+      assertFalse(conf.getAddressesSettings().get("a2").isStripedDuplicateIDCache());
+      assertFalse(conf.getAddressesSettings().get("a2").isSelectorDeliveryQueues());
+      assertEquals(-1, conf.getAddressesSettings().get("a2").getPageCacheMaxBytes());
+      assertEquals(0, conf.getAddressesSettings().get("a2").getPageReadAhead());
+      assertEquals(10 * 1024 * 1024, conf.getAddressesSettings().get("a2").getPageReadAheadMaxBytes());
+      assertEquals(0, conf.getAddressesSettings().get("a2").getPageWriteBufferSize());
+      assertFalse(conf.getAddressesSettings().get("a2").isPageCompression());
 
 
       assertEquals(2, conf.getQueueConfigurations().size());
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.filter.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.util.SilentTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FilterExpressionTest extends SilentTestCase
+{
+   private static final String[] FILTERS = new String[] { "i = 10",
+                                                         "i <> 10",
+                                                         "i = 10.0",
+                                                         "i > 5 AND l < 100",
+                                                         "i >= 10 OR d <= 2.5",
+                                                         "d >= 2",
+                                                         "d >= 2.5",
+                                                         "f > 1.4 AND f < 1.6",
+                                                         "sh = 3 AND by = 4",
+                                                         "i + l * 2 - sh / by > 20",
+                                                         "i / 4 = 2.5",
+                                                         "i / 4 = 2",
+                                                         "-i < -5",
+                                                         "i / n > 1",
+                                                         "i / 0 > 1",
+                                                         "n = 1",
+                                                         "n <> 1",
+                                                         "n <> 'foo'",
+                                                         "s <> n",
+                                                         "n > 1 OR i = 10",
+                                                         "n > 1 AND i = 10",
+                                                         "n > 1 AND i = 11",
+                                                         "NOT (n > 1)",
+                                                         "NOT (i > 1)",
+                                                         "s = 'hello'",
+                                                         "s <> 'hello'",
+                                                         "s = 1",
+                                                         "s > 1",
+                                                         "i = 'hello'",
+                                                         "i <> s",
+                                                         "b = TRUE",
+                                                         "b <> FALSE",
+                                                         "b = s",
+                                                         "b AND i = 10",
+                                                         "b OR n",
+                                                         "i AND b",
+                                                         "b",
+                                                         "n",
+                                                         "i",
+                                                         "s LIKE 'he%'",
+                                                         "s NOT LIKE 'h_llo'",
+                                                         "s LIKE 'he!%' ESCAPE '!'",
+                                                         "s LIKE 'he%' ESCAPE '!!'",
+                                                         "i LIKE 'he%'",
+                                                         "n LIKE 'he%'",
+                                                         "n NOT LIKE 'he%'",
+                                                         "s IN ('hello', 'world')",
+                                                         "s NOT IN ('hello', 'world')",
+                                                         "n IN ('hello', 'world')",
+                                                         "n NOT IN ('hello', 'world')",
+                                                         "i IN ('hello', 'world')",
+                                                         "n IS NULL",
+                                                         "s IS NOT NULL",
+                                                         "bytes IS NULL",
+                                                         "bytes = 'hello'",
+                                                         "i BETWEEN 5 AND 15",
+                                                         "i BETWEEN 11 AND 15",
+                                                         "i NOT BETWEEN 5 AND 15",
+                                                         "d BETWEEN 2 AND 3",
+                                                         "n BETWEEN 2 AND 3",
+                                                         "s BETWEEN 2 AND 3",
+                                                         "HQPriority > 3",
+                                                         "HQDurable = 'DURABLE'",
+                                                         "HQTimestamp > 0 AND HQExpiration = 0",
+                                                         "HQSize > 10",
+                                                         "HQUserID IS NULL",
+                                                         "HQUnknown = 'x'" };
+
+   @Test
+   public void testSameResultsAsOperators() throws Exception
+   {
+      List<ServerMessage> messages = new ArrayList<ServerMessage>();
+
+      messages.add(new ServerMessageImpl(1, 1000));
+
+      ServerMessage message = new ServerMessageImpl(2, 1000);
+      message.putIntProperty("i", 10);
+      message.putLongProperty("l", 7);
+      message.putDoubleProperty("d", 2.5);
+      message.putFloatProperty("f", 1.5f);
+      message.putShortProperty("sh", (short)3);
+      message.putByteProperty("by", (byte)4);
+      message.putStringProperty("s", "hello");
+      message.putBooleanProperty("b", true);
+      message.putBytesProperty("bytes", new byte[] { 1 });
+      message.putStringProperty("HQUnknown", "x");
+      message.setDurable(true);
+      message.setPriority((byte)5);
+      message.setTimestamp(System.currentTimeMillis());
+      messages.add(message);
+
+      message = new ServerMessageImpl(3, 1000);
+      message.putIntProperty("i", 3);
+      message.putDoubleProperty("d", 2.9);
+      message.putStringProperty("s", "he%");
+      message.putBooleanProperty("b", false);
+      message.putIntProperty("n", 0);
+      messages.add(message);
+
+      for (String filter : FILTERS)
+      {
+         for (ServerMessage msg : messages)
+         {
+            HashMap<SimpleString, Identifier> identifiers = new HashMap<SimpleString, Identifier>();
+
+            Object tree = new FilterParser().parse(new SimpleString(filter), identifiers);
+
+            // the expression must be compiled before the operators are applied, as they keep state
+            FilterExpression expression = FilterExpression.compile(tree);
+
+            String expected = applyOperators(tree, identifiers, msg);
+
+            String actual;
+
+            try
+            {
+               actual = String.valueOf(expression.evaluate(msg));
+            }
+            catch (Exception e)
+            {
+               actual = "exception";
+            }
+
+            Assert.assertEquals(filter + " on " + msg, expected, actual);
+         }
+      }
+   }
+
+   @Test
+   public void testConcurrentMatch() throws Exception
+   {
+      final Filter filter = FilterImpl.createFilter("color = 'RED' AND weight BETWEEN 10 AND 20 AND name LIKE 'a%'");
+
+      final int numberOfThreads = 10;
+
+      final int numberOfMatches = 10000;
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final AtomicInteger errors = new AtomicInteger(0);
+
+      Thread[] threads = new Thread[numberOfThreads];
+
+      for (int i = 0; i < numberOfThreads; i++)
+      {
+         final boolean matching = i % 2 == 0;
+
+         final ServerMessage message = new ServerMessageImpl(i, 1000);
+         message.putStringProperty("color", matching ? "RED" : "BLUE");
+         message.putIntProperty("weight", matching ? 15 : 25);
+         message.putStringProperty("name", matching ? "abc" : "xyz");
+
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+
+                  for (int j = 0; j < numberOfMatches; j++)
+                  {
+                     if (filter.match(message) != matching)
+                     {
+                        errors.incrementAndGet();
+                     }
+                  }
+               }
+               catch (InterruptedException e)
+               {
+                  errors.incrementAndGet();
+               }
+            }
+         };
+
+         threads[i].start();
+      }
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      Assert.assertEquals(0, errors.get());
+   }
+
+   // Private -----------------------------------------------------------------------------------
+
+   /**
+    * Matches the message the way the filters did before they were compiled
+    */
+   private static String applyOperators(final Object tree,
+                                        final HashMap<SimpleString, Identifier> identifiers,
+                                        final ServerMessage message)
+   {
+      for (Identifier id : identifiers.values())
+      {
+         Object value = null;
+
+         SimpleString name = id.getName();
+
+         if (FilterConstants.HORNETQ_USERID.equals(name))
+         {
+            value = new SimpleString("ID:" + message.getUserID());
+         }
+         else if (FilterConstants.HORNETQ_PRIORITY.equals(name))
+         {
+            value = Integer.valueOf(message.getPriority());
+         }
+         else if (FilterConstants.HORNETQ_TIMESTAMP.equals(name))
+         {
+            value = message.getTimestamp();
+         }
+         else if (FilterConstants.HORNETQ_DURABLE.equals(name))
+         {
+            value = message.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
+         }
+         else if (FilterConstants.HORNETQ_EXPIRATION.equals(name))
+         {
+            value = message.getExpiration();
+         }
+         else if (FilterConstants.HORNETQ_SIZE.equals(name))
+         {
+            value = message.getEncodeSize();
+         }
+
+         if (value == null)
+         {
+            value = message.getObjectProperty(name);
+         }
+
+         id.setValue(value);
+      }
+
+      try
+      {
+         if (tree instanceof Operator)
+         {
+            return String.valueOf(((Operator)tree).apply());
+         }
+         else if (tree instanceof Identifier)
+         {
+            return String.valueOf(((Identifier)tree).getValue());
+         }
+         else
+         {
+            return String.valueOf(tree);
+         }
+      }
+      catch (Exception e)
+      {
+         return "exception";
+      }
+   }
+}
@@ -12,6 +12,10 @@
  */
 
 package org.hornetq.core.filter.impl;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
 import org.junit.Before;
 
 import org.junit.Test;
@@ -58,6 +62,25 @@ public class FilterTest extends SilentTestCase
       Assert.assertFalse(filter.match(message));
    }
 
+   @Test
+   public void testEqualityProperty() throws Exception
+   {
+      FilterImpl equal = (FilterImpl)FilterImpl.createFilter("region = 'EU'");
+      Assert.assertEquals(new SimpleString("region"), equal.getEqualityProperty());
+      Assert.assertEquals(Collections.singleton(new SimpleString("EU")), equal.getEqualityValues());
+
+      FilterImpl in = (FilterImpl)FilterImpl.createFilter("region IN ('EU', 'US')");
+      Assert.assertEquals(new SimpleString("region"), in.getEqualityProperty());
+      Assert.assertEquals(new HashSet<SimpleString>(Arrays.asList(new SimpleString("EU"), new SimpleString("US"))),
+                          in.getEqualityValues());
+
+      Assert.assertNull(((FilterImpl)FilterImpl.createFilter("region <> 'EU'")).getEqualityProperty());
+      Assert.assertNull(((FilterImpl)FilterImpl.createFilter("region NOT IN ('EU')")).getEqualityProperty());
+      Assert.assertNull(((FilterImpl)FilterImpl.createFilter("region = 'EU' OR region = 'US'")).getEqualityProperty());
+      Assert.assertNull(((FilterImpl)FilterImpl.createFilter("size = 3")).getEqualityProperty());
+      Assert.assertNull(((FilterImpl)FilterImpl.createFilter("HQDurable = 'DURABLE'")).getEqualityProperty());
+   }
+
    @Test
    public void testInvalidString() throws Exception
    {
@@ -20,6 +20,7 @@ import org.junit.Test;
 import org.junit.Assert;
 
 
+import org.hornetq.utils.IDSupplier;
 import org.hornetq.utils.LinkedListIterator;
 import org.hornetq.utils.PriorityLinkedListImpl;
 
@@ -187,6 +188,42 @@ public final class PriorityLinkedListTest extends Assert
 
    }
 
+   @Test
+   public void testPeekLast() throws Exception
+   {
+      Assert.assertNull(list.peekLast());
+
+      list.addTail(a, 5);
+      list.addTail(b, 5);
+      Assert.assertEquals(b, list.peekLast());
+
+      // the lowest priority is iterated last
+      list.addTail(c, 2);
+      list.addHead(d, 2);
+      list.addTail(e, 7);
+      Assert.assertEquals(c, list.peekLast());
+
+      LinkedListIterator<Wibble> iter = list.iterator();
+      Wibble last = null;
+      while (iter.hasNext())
+      {
+         last = iter.next();
+      }
+      iter.close();
+      Assert.assertEquals(last, list.peekLast());
+
+      iter = list.iterator();
+      while (iter.hasNext())
+      {
+         if (iter.next() == c)
+         {
+            iter.remove();
+         }
+      }
+      iter.close();
+      Assert.assertEquals(d, list.peekLast());
+   }
+
    @Test
    public void testAddLastAndFirst() throws Exception
    {
@@ -896,6 +933,85 @@ public final class PriorityLinkedListTest extends Assert
       iter.remove();
    }
 
+   @Test
+   public void testRemoveWithID()
+   {
+      testRemoveWithID(false);
+   }
+
+   @Test
+   public void testRemoveWithIDIndexed()
+   {
+      testRemoveWithID(true);
+   }
+
+   private void testRemoveWithID(final boolean indexed)
+   {
+      list = new PriorityLinkedListImpl<Wibble>(10, WIBBLE_ID_SUPPLIER, indexed);
+
+      list.addTail(a, 0);
+      list.addTail(b, 4);
+      list.addTail(c, 4);
+      list.addTail(d, 9);
+      list.addHead(e, 0);
+
+      LinkedListIterator<Wibble> iter = list.iterator();
+
+      assertTrue(iter.hasNext());
+      assertEquals(d, iter.next());
+
+      assertEquals(c, list.getWithID('c'));
+      assertNull(list.getWithID('z'));
+
+      assertEquals(d, list.removeWithID('d'));
+      assertEquals(b, list.removeWithID('b'));
+      assertNull(list.removeWithID('b'));
+      assertNull(list.getWithID('b'));
+
+      assertEquals(3, list.size());
+
+      // The iterator has to skip the removed elements
+      assertTrue(iter.hasNext());
+      assertEquals(c, iter.next());
+      iter.remove();
+
+      assertNull(list.getWithID('c'));
+
+      assertTrue(iter.hasNext());
+      assertEquals(e, iter.next());
+
+      iter.close();
+
+      // A removed element may be added again, on a different priority
+      list.addTail(b, 2);
+
+      assertEquals(b, list.getWithID('b'));
+
+      assertEquals(b, list.poll());
+      assertEquals(e, list.poll());
+      assertEquals(a, list.removeWithID('a'));
+      assertNull(list.poll());
+
+      assertEquals(0, list.size());
+      assertTrue(list.isEmpty());
+   }
+
+   @Test(expected = UnsupportedOperationException.class)
+   public void testRemoveWithIDWithoutSupplier()
+   {
+      list.addTail(a, 0);
+
+      list.removeWithID('a');
+   }
+
+   private static final IDSupplier<Wibble> WIBBLE_ID_SUPPLIER = new IDSupplier<Wibble>()
+   {
+      public long getID(final Wibble element)
+      {
+         return element.s1.charAt(0);
+      }
+   };
+
    static class Wibble
    {
       String s1;
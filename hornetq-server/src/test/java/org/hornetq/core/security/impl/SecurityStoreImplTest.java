@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.security.impl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.core.security.Role;
+import org.hornetq.core.settings.HierarchicalRepository;
+import org.hornetq.core.settings.impl.HierarchicalObjectRepository;
+import org.hornetq.spi.core.security.HornetQSecurityManagerImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SecurityStoreImplTest extends Assert
+{
+   private HierarchicalRepository<Set<Role>> securityRepository;
+
+   private CountingSecurityManager securityManager;
+
+   @Before
+   public void setUp() throws Exception
+   {
+      securityRepository = new HierarchicalObjectRepository<Set<Role>>();
+
+      securityManager = new CountingSecurityManager();
+      securityManager.addUser("guest", "guest");
+      securityManager.addUser("admin", "secret");
+   }
+
+   @Test
+   public void testCacheDisabled() throws Exception
+   {
+      SecurityStoreImpl store = createStore(0, 10000);
+
+      store.authenticate("guest", "guest");
+      store.authenticate("guest", "guest");
+
+      Assert.assertEquals(2, securityManager.validations);
+      Assert.assertEquals(0, store.getAuthenticationCacheHits());
+      Assert.assertEquals(0, store.getAuthenticationCacheMisses());
+   }
+
+   @Test
+   public void testCachedAuthentication() throws Exception
+   {
+      SecurityStoreImpl store = createStore(10, 10000);
+
+      store.authenticate("guest", "guest");
+      store.authenticate("guest", "guest");
+      store.authenticate("guest", "guest");
+
+      Assert.assertEquals(1, securityManager.validations);
+      Assert.assertEquals(2, store.getAuthenticationCacheHits());
+      Assert.assertEquals(1, store.getAuthenticationCacheMisses());
+   }
+
+   @Test
+   public void testFailedAuthenticationNotCached() throws Exception
+   {
+      SecurityStoreImpl store = createStore(10, 10000);
+
+      store.authenticate("guest", "guest");
+
+      for (int i = 0; i < 2; i++)
+      {
+         try
+         {
+            store.authenticate("guest", "wrong");
+            Assert.fail("the password is wrong");
+         }
+         catch (HornetQException e)
+         {
+            // expected
+         }
+      }
+
+      // user and password can't be swapped either
+      try
+      {
+         store.authenticate("guestg", "uest");
+         Assert.fail("the user is unknown");
+      }
+      catch (HornetQException e)
+      {
+         // expected
+      }
+
+      Assert.assertEquals(4, securityManager.validations);
+      Assert.assertEquals(0, store.getAuthenticationCacheHits());
+   }
+
+   @Test
+   public void testCacheSize() throws Exception
+   {
+      SecurityStoreImpl store = createStore(1, 10000);
+
+      store.authenticate("guest", "guest");
+      store.authenticate("admin", "secret");
+      store.authenticate("guest", "guest");
+
+      Assert.assertEquals(3, securityManager.validations);
+
+      store.authenticate("guest", "guest");
+
+      Assert.assertEquals(3, securityManager.validations);
+   }
+
+   @Test
+   public void testCacheTimeout() throws Exception
+   {
+      SecurityStoreImpl store = createStore(10, 100);
+
+      store.authenticate("guest", "guest");
+      store.authenticate("guest", "guest");
+
+      Assert.assertEquals(1, securityManager.validations);
+
+      Thread.sleep(200);
+
+      store.authenticate("guest", "guest");
+
+      Assert.assertEquals(2, securityManager.validations);
+   }
+
+   @Test
+   public void testInvalidatedOnChange() throws Exception
+   {
+      SecurityStoreImpl store = createStore(10, 10000);
+
+      store.authenticate("guest", "guest");
+
+      Set<Role> roles = new HashSet<Role>();
+      roles.add(new Role("guest", true, true, true, true, true, true, true));
+      securityRepository.addMatch("#", roles);
+
+      store.authenticate("guest", "guest");
+
+      Assert.assertEquals(2, securityManager.validations);
+   }
+
+   // Private -----------------------------------------------------------------------------------
+
+   private SecurityStoreImpl createStore(final int cacheSize, final long cacheTimeout)
+   {
+      return new SecurityStoreImpl(securityRepository,
+                                   securityManager,
+                                   10000,
+                                   true,
+                                   "cluster",
+                                   "cluster-password",
+                                   null,
+                                   cacheSize,
+                                   cacheTimeout);
+   }
+
+   private static final class CountingSecurityManager extends HornetQSecurityManagerImpl
+   {
+      private int validations;
+
+      @Override
+      public boolean validateUser(final String user, final String password)
+      {
+         validations++;
+         return super.validateUser(user, password);
+      }
+   }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.server.group.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.management.ManagementHelper;
+import org.hornetq.api.core.management.NotificationType;
+import org.hornetq.core.server.management.ManagementService;
+import org.hornetq.core.server.management.Notification;
+import org.hornetq.utils.TypedProperties;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RemoteGroupingHandlerTest extends Assert
+{
+   private static final SimpleString NODE1 = new SimpleString("node1");
+
+   private static final SimpleString NODE2 = new SimpleString("node2");
+
+   private final BlockingQueue<SimpleString> proposals = new LinkedBlockingQueue<SimpleString>();
+
+   @Test
+   public void testProposalsInFlightTogether() throws Exception
+   {
+      final int numberOfGroups = 10;
+
+      final RemoteGroupingHandler handler = createHandler(-1, -1);
+
+      final CountDownLatch done = new CountDownLatch(numberOfGroups);
+
+      final AtomicInteger errors = new AtomicInteger(0);
+
+      for (int i = 0; i < numberOfGroups; i++)
+      {
+         final SimpleString groupId = new SimpleString("group" + i);
+
+         new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  Response response = handler.propose(new Proposal(groupId, NODE1));
+
+                  if (!groupId.equals(response.getGroupId()) || !NODE2.equals(response.getChosenClusterName()))
+                  {
+                     errors.incrementAndGet();
+                  }
+               }
+               catch (Exception e)
+               {
+                  errors.incrementAndGet();
+               }
+               done.countDown();
+            }
+         }.start();
+      }
+
+      // all the proposals are sent before any response
+      List<SimpleString> sent = new ArrayList<SimpleString>();
+
+      for (int i = 0; i < numberOfGroups; i++)
+      {
+         SimpleString groupId = proposals.poll(5, TimeUnit.SECONDS);
+         Assert.assertNotNull(groupId);
+         sent.add(groupId);
+      }
+
+      for (SimpleString groupId : sent)
+      {
+         handler.proposed(new Response(groupId, NODE1, NODE2));
+      }
+
+      Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(0, errors.get());
+      Assert.assertTrue(proposals.isEmpty());
+   }
+
+   @Test
+   public void testSameGroupSharesProposal() throws Exception
+   {
+      final RemoteGroupingHandler handler = createHandler(-1, -1);
+
+      final SimpleString groupId = new SimpleString("group");
+
+      final List<Response> responses = new ArrayList<Response>();
+
+      Thread[] threads = new Thread[5];
+
+      for (int i = 0; i < threads.length; i++)
+      {
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  Response response = handler.propose(new Proposal(groupId, NODE1));
+                  synchronized (responses)
+                  {
+                     responses.add(response);
+                  }
+               }
+               catch (Exception e)
+               {
+                  // the response is missing
+               }
+            }
+         };
+         threads[i].start();
+      }
+
+      Assert.assertEquals(groupId, proposals.poll(5, TimeUnit.SECONDS));
+
+      // give the other threads the time to wait for the same proposal
+      Thread.sleep(100);
+
+      handler.proposed(new Response(groupId, NODE1));
+
+      for (Thread thread : threads)
+      {
+         thread.join(5000);
+      }
+
+      Assert.assertEquals(threads.length, responses.size());
+      Assert.assertTrue("a single proposal should be sent, not " + proposals, proposals.isEmpty());
+
+      for (Response response : responses)
+      {
+         Assert.assertEquals(NODE1, response.getChosenClusterName());
+      }
+   }
+
+   @Test
+   public void testCacheSize() throws Exception
+   {
+      RemoteGroupingHandler handler = createHandler(2, -1);
+
+      for (int i = 0; i < 3; i++)
+      {
+         handler.proposed(new Response(new SimpleString("group" + i), NODE1));
+      }
+
+      Assert.assertNull(handler.getProposal(new SimpleString("group0")));
+      Assert.assertNotNull(handler.getProposal(new SimpleString("group1")));
+      Assert.assertNotNull(handler.getProposal(new SimpleString("group2")));
+   }
+
+   @Test
+   public void testCacheTimeout() throws Exception
+   {
+      RemoteGroupingHandler handler = createHandler(-1, 100);
+
+      SimpleString groupId = new SimpleString("group");
+
+      handler.proposed(new Response(groupId, NODE1));
+
+      Assert.assertNotNull(handler.getProposal(groupId));
+
+      Thread.sleep(200);
+
+      Assert.assertNull(handler.getProposal(groupId));
+   }
+
+   @Test
+   public void testBindingRemoved() throws Exception
+   {
+      RemoteGroupingHandler handler = createHandler(-1, -1);
+
+      SimpleString group1 = new SimpleString("group1");
+      SimpleString group2 = new SimpleString("group2");
+
+      handler.proposed(new Response(group1, NODE1));
+      handler.proposed(new Response(group2, NODE2));
+
+      TypedProperties props = new TypedProperties();
+      props.putSimpleStringProperty(ManagementHelper.HDR_CLUSTER_NAME, NODE1);
+      handler.onNotification(new Notification(null, NotificationType.BINDING_REMOVED, props));
+
+      Assert.assertNull(handler.getProposal(group1));
+      Assert.assertNotNull(handler.getProposal(group2));
+   }
+
+   // Private -----------------------------------------------------------------------------------
+
+   private RemoteGroupingHandler createHandler(final int cacheSize, final long cacheTimeout)
+   {
+      ManagementService managementService =
+               (ManagementService)Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                         new Class[] { ManagementService.class },
+                                                         new ProposalRecorder());
+
+      return new RemoteGroupingHandler(managementService,
+                                       new SimpleString("handler"),
+                                       new SimpleString("queues"),
+                                       5000,
+                                       cacheSize,
+                                       cacheTimeout);
+   }
+
+   /**
+    * Records the group id of the proposals sent
+    */
+   private final class ProposalRecorder implements InvocationHandler
+   {
+      public Object invoke(final Object proxy, final Method method, final Object[] args)
+      {
+         if (method.getName().equals("sendNotification"))
+         {
+            TypedProperties props = ((Notification)args[0]).getProperties();
+            proposals.add(props.getSimpleStringProperty(ManagementHelper.HDR_PROPOSAL_GROUP_ID));
+         }
+         return null;
+      }
+   }
+}
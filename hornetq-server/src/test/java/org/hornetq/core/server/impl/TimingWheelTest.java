@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.server.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.hornetq.core.server.impl.TimingWheel.Timeout;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimingWheelTest extends Assert
+{
+   private static final long TICK = 10;
+
+   @Test
+   public void testExpire() throws Exception
+   {
+      TimingWheel<String> wheel = new TimingWheel<String>(TICK, 1000);
+
+      wheel.add("b", 1025, false, 1000);
+      wheel.add("a", 1010, false, 1000);
+      wheel.add("c", 1030, false, 1000);
+
+      Assert.assertEquals(3, wheel.size());
+      Assert.assertEquals(1010, wheel.nextExpiration());
+
+      List<String> expired = new ArrayList<String>();
+
+      wheel.expire(1009, expired);
+      Assert.assertTrue(expired.isEmpty());
+
+      wheel.expire(1010, expired);
+      Assert.assertEquals(Arrays.asList("a"), expired);
+
+      // b is due at 1025, so it isn't expired before the tick of 1030
+      wheel.expire(1029, expired);
+      Assert.assertEquals(Arrays.asList("a"), expired);
+
+      wheel.expire(1030, expired);
+      Assert.assertEquals(Arrays.asList("a", "b", "c"), expired);
+
+      Assert.assertEquals(0, wheel.size());
+      Assert.assertEquals(-1, wheel.nextExpiration());
+   }
+
+   @Test
+   public void testExpiredAlready() throws Exception
+   {
+      TimingWheel<String> wheel = new TimingWheel<String>(TICK, 1000);
+
+      wheel.add("a", 500, false, 1000);
+
+      List<String> expired = new ArrayList<String>();
+
+      wheel.expire(1000, expired);
+      Assert.assertEquals(Arrays.asList("a"), expired);
+   }
+
+   @Test
+   public void testOrderWithinTick() throws Exception
+   {
+      TimingWheel<String> wheel = new TimingWheel<String>(TICK, 0);
+
+      wheel.add("tail1", 100, false, 0);
+      wheel.add("head1", 100, true, 0);
+      wheel.add("tail2", 95, false, 0);
+      wheel.add("head2", 95, true, 0);
+
+      Assert.assertEquals(Arrays.asList("head2", "head1", "tail1", "tail2"), wheel.elements());
+
+      List<String> expired = new ArrayList<String>();
+
+      wheel.expire(100, expired);
+      Assert.assertEquals(Arrays.asList("head2", "head1", "tail1", "tail2"), expired);
+   }
+
+   @Test
+   public void testRemove() throws Exception
+   {
+      TimingWheel<String> wheel = new TimingWheel<String>(TICK, 0);
+
+      Timeout<String> a = wheel.add("a", 100, false, 0);
+      Timeout<String> b = wheel.add("b", 100, false, 0);
+      Timeout<String> far = wheel.add("far", 100000000, false, 0);
+
+      Assert.assertTrue(wheel.remove(a));
+      Assert.assertFalse(wheel.remove(a));
+      Assert.assertTrue(wheel.remove(far));
+      Assert.assertEquals(1, wheel.size());
+
+      List<String> expired = new ArrayList<String>();
+
+      wheel.expire(100, expired);
+      Assert.assertEquals(Arrays.asList("b"), expired);
+      Assert.assertFalse(wheel.remove(b));
+   }
+
+   @Test
+   public void testNextExpirationOnUpperWheel() throws Exception
+   {
+      TimingWheel<String> wheel = new TimingWheel<String>(TICK, 100);
+
+      wheel.add("a", 100000, false, 100);
+
+      // the first turn of the wheel is over on tick 256, when the upper wheel is spread into it
+      Assert.assertEquals(2560, wheel.nextExpiration());
+
+      List<String> expired = new ArrayList<String>();
+
+      long now = 0;
+
+      while (expired.isEmpty())
+      {
+         now = wheel.nextExpiration();
+         wheel.expire(now, expired);
+      }
+
+      Assert.assertEquals(100000, now);
+   }
+
+   @Test
+   public void testOverflow() throws Exception
+   {
+      TimingWheel<String> wheel = new TimingWheel<String>(TICK, 0);
+
+      // further than the last wheel
+      long time = TICK * ((1L << 26) + 1000);
+
+      wheel.add("a", time, false, 0);
+
+      List<String> expired = new ArrayList<String>();
+
+      long now = 0;
+
+      while (expired.isEmpty())
+      {
+         now = wheel.nextExpiration();
+         wheel.expire(now, expired);
+      }
+
+      Assert.assertEquals(time, now);
+   }
+
+   @Test
+   public void testRandomTimes() throws Exception
+   {
+      Random random = new Random(42);
+
+      long now = random.nextInt(100000);
+
+      TimingWheel<Long> wheel = new TimingWheel<Long>(TICK, now);
+
+      List<Long> pending = new ArrayList<Long>();
+
+      for (int i = 0; i < 10000; i++)
+      {
+         // up to the last wheel, from 2^20 ticks away
+         long time = now + (long)(Math.pow(random.nextDouble(), 4) * TICK * (1L << 22));
+
+         wheel.add(time, time, false, now);
+
+         pending.add(time);
+      }
+
+      Collections.sort(pending);
+
+      List<Long> expired = new ArrayList<Long>();
+
+      while (wheel.size() > 0)
+      {
+         long next = wheel.nextExpiration();
+
+         Assert.assertTrue(next >= now);
+
+         // the wheel must not be woken later than the next element
+         Assert.assertTrue(next <= pending.get(0) + TICK);
+
+         now = next + random.nextInt((int)TICK * 3);
+
+         expired.clear();
+
+         wheel.expire(now, expired);
+
+         Collections.sort(expired);
+
+         for (Long time : expired)
+         {
+            Assert.assertTrue(time <= now);
+            Assert.assertEquals(pending.remove(0), time);
+         }
+
+         Assert.assertTrue(pending.isEmpty() || pending.get(0) > now - now % TICK);
+      }
+
+      Assert.assertTrue(pending.isEmpty());
+   }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.integration.client;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.HornetQExceptionType;
+import org.hornetq.api.core.Interceptor;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.CompletionHandler;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.Queue;
+import org.hornetq.spi.core.protocol.RemotingConnection;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncCommitTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("address");
+
+   private static final SimpleString QUEUE = new SimpleString("queue");
+
+   private HornetQServer server;
+
+   private ClientSessionFactory sf;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      server = createServer(true);
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      locator.setBlockOnDurableSend(false);
+      sf = createSessionFactory(locator);
+   }
+
+   @Test
+   public void testSendAsync() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, QUEUE, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      final int numMessages = 1000;
+
+      OrderedHandler handler = new OrderedHandler(numMessages);
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         producer.sendAsync(session.createMessage(true), handler.next());
+      }
+
+      handler.await();
+
+      Assert.assertEquals(numMessages, getQueue().getMessageCount());
+   }
+
+   @Test
+   public void testCommitAsync() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, false, false));
+      session.createQueue(ADDRESS, QUEUE, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      final int numTransactions = 100;
+
+      final int messagesPerTransaction = 10;
+
+      OrderedHandler handler = new OrderedHandler(numTransactions);
+
+      for (int i = 0; i < numTransactions; i++)
+      {
+         for (int j = 0; j < messagesPerTransaction; j++)
+         {
+            producer.send(session.createMessage(true));
+         }
+
+         session.commitAsync(handler.next());
+      }
+
+      handler.await();
+
+      Assert.assertEquals(numTransactions * messagesPerTransaction, getQueue().getMessageCount());
+
+      ClientConsumer consumer = session.createConsumer(QUEUE);
+
+      session.start();
+
+      for (int i = 0; i < numTransactions * messagesPerTransaction; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         Assert.assertNotNull(message);
+         message.acknowledge();
+         session.commit();
+      }
+   }
+
+   @Test
+   public void testBlockingCallAfterAsync() throws Exception
+   {
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, QUEUE, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      final int numMessages = 500;
+
+      OrderedHandler handler = new OrderedHandler(numMessages);
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         producer.sendAsync(session.createMessage(true), handler.next());
+      }
+
+      // answered after all the sends in flight
+      Assert.assertEquals(numMessages, session.queueQuery(QUEUE).getMessageCount());
+
+      handler.await();
+   }
+
+   @Test
+   public void testLateResponseAfterTimeout() throws Exception
+   {
+      server.getRemotingService().addIncomingInterceptor(new Interceptor()
+      {
+         public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+         {
+            if (packet.getType() == PacketImpl.CREATE_QUEUE)
+            {
+               // answered after the call timed out
+               try
+               {
+                  Thread.sleep(1000);
+               }
+               catch (InterruptedException e)
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }
+
+            // the send is never answered
+            return packet.getType() != PacketImpl.SESS_SEND;
+         }
+      });
+
+      ServerLocator locator = createInVMNonHALocator();
+      locator.setCallTimeout(500);
+      // so the send doesn't wait for credits, answered after the late response
+      locator.setProducerWindowSize(-1);
+      ClientSessionFactory timeoutSF = createSessionFactory(locator);
+
+      ClientSession session = addClientSession(timeoutSF.createSession(false, true, true));
+
+      try
+      {
+         session.createQueue(ADDRESS, QUEUE, true);
+         Assert.fail("the call should time out");
+      }
+      catch (HornetQException e)
+      {
+         Assert.assertEquals(HornetQExceptionType.CONNECTION_TIMEDOUT, e.getType());
+      }
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      final CountDownLatch completed = new CountDownLatch(1);
+
+      producer.sendAsync(session.createMessage(true), new CompletionHandler()
+      {
+         public void onCompletion()
+         {
+            completed.countDown();
+         }
+
+         public void onException(final HornetQException exception)
+         {
+            completed.countDown();
+         }
+      });
+
+      // the late response to the create queue must not complete the send
+      Assert.assertFalse(completed.await(2, TimeUnit.SECONDS));
+
+      Assert.assertNotNull(server.getPostOffice().getBinding(QUEUE));
+   }
+
+   @Test
+   public void testBlockingCallAfterLostResponse() throws Exception
+   {
+      final AtomicInteger createQueues = new AtomicInteger(0);
+
+      server.getRemotingService().addIncomingInterceptor(new Interceptor()
+      {
+         public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+         {
+            // the first create queue is never answered
+            return packet.getType() != PacketImpl.CREATE_QUEUE || createQueues.getAndIncrement() > 0;
+         }
+      });
+
+      ServerLocator locator = createInVMNonHALocator();
+      locator.setCallTimeout(500);
+      ClientSessionFactory timeoutSF = createSessionFactory(locator);
+
+      ClientSession session = addClientSession(timeoutSF.createSession(false, true, true));
+
+      try
+      {
+         session.createQueue(ADDRESS, new SimpleString("lost"), true);
+         Assert.fail("the call should time out");
+      }
+      catch (HornetQException e)
+      {
+         Assert.assertEquals(HornetQExceptionType.CONNECTION_TIMEDOUT, e.getType());
+      }
+
+      // the lost response doesn't hold up the calls after it
+      session.createQueue(ADDRESS, QUEUE, true);
+
+      Assert.assertNotNull(server.getPostOffice().getBinding(QUEUE));
+   }
+
+   private Queue getQueue()
+   {
+      return (Queue)server.getPostOffice().getBinding(QUEUE).getBindable();
+   }
+
+   /**
+    * Hands out handlers checking they complete in the order they were handed out
+    */
+   private static final class OrderedHandler
+   {
+      private final CountDownLatch latch;
+
+      private final AtomicInteger handedOut = new AtomicInteger(0);
+
+      private final AtomicInteger completed = new AtomicInteger(0);
+
+      private final AtomicReference<String> error = new AtomicReference<String>();
+
+      OrderedHandler(final int count)
+      {
+         latch = new CountDownLatch(count);
+      }
+
+      CompletionHandler next()
+      {
+         final int index = handedOut.getAndIncrement();
+
+         return new CompletionHandler()
+         {
+            public void onCompletion()
+            {
+               if (completed.getAndIncrement() != index)
+               {
+                  error.compareAndSet(null, "completed out of order: " + index);
+               }
+
+               latch.countDown();
+            }
+
+            public void onException(final HornetQException exception)
+            {
+               error.compareAndSet(null, exception.toString());
+
+               latch.countDown();
+            }
+         };
+      }
+
+      void await() throws Exception
+      {
+         Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+         Assert.assertNull(error.get(), error.get());
+      }
+   }
+}
@@ -4109,6 +4109,210 @@ public class PagingTest extends ServiceTestBase
       session.close();
    }
 
+   @Test
+   public void testReadAhead() throws Exception
+   {
+      Configuration configuration = createDefaultConfig();
+
+      Map<String, AddressSettings> addresses = new HashMap<String, AddressSettings>();
+
+      addresses.put("#", new AddressSettings());
+
+      AddressSettings pagedDestination = new AddressSettings();
+      pagedDestination.setPageSizeBytes(10 * 1024);
+      pagedDestination.setMaxSizeBytes(20 * 1024);
+      pagedDestination.setPageReadAhead(2);
+
+      addresses.put(ADDRESS.toString(), pagedDestination);
+
+      server = createServer(true, configuration, -1, -1, addresses);
+
+      server.start();
+
+      sf = createSessionFactory(locator);
+
+      ClientSession session = sf.createSession(false, true, true);
+
+      session.createQueue(ADDRESS, ADDRESS, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      int NUMBER_OF_MESSAGES = 500;
+
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage msg = session.createMessage(true);
+         msg.getBodyBuffer().writeBytes(new byte[512]);
+         msg.putIntProperty("id", i);
+
+         producer.send(msg);
+      }
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS);
+
+      Assert.assertTrue(store.isPaging());
+      Assert.assertTrue(store.getNumberOfPages() > 5);
+
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage msg = consumer.receive(5000);
+         Assert.assertNotNull(msg);
+         Assert.assertEquals(i, msg.getIntProperty("id").intValue());
+         msg.acknowledge();
+      }
+
+      Assert.assertNull(consumer.receiveImmediate());
+
+      session.close();
+
+      Assert.assertTrue(store.getCursorProvider().getReadAheadPages() > 0);
+   }
+
+   @Test
+   public void testPageWriteBuffer() throws Exception
+   {
+      Configuration configuration = createDefaultConfig();
+
+      Map<String, AddressSettings> addresses = new HashMap<String, AddressSettings>();
+
+      addresses.put("#", new AddressSettings());
+
+      AddressSettings pagedDestination = new AddressSettings();
+      pagedDestination.setPageSizeBytes(10 * 1024);
+      pagedDestination.setMaxSizeBytes(20 * 1024);
+      pagedDestination.setPageWriteBufferSize(4 * 1024);
+
+      addresses.put(ADDRESS.toString(), pagedDestination);
+
+      server = createServer(true, configuration, -1, -1, addresses);
+
+      server.start();
+
+      sf = createSessionFactory(locator);
+
+      ClientSession session = sf.createSession(false, true, true);
+
+      session.createQueue(ADDRESS, ADDRESS, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      final int NUMBER_OF_MESSAGES = 500;
+
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage msg = session.createMessage(true);
+         msg.getBodyBuffer().writeBytes(new byte[512]);
+         msg.putIntProperty("id", i);
+
+         producer.send(msg);
+      }
+
+      Assert.assertTrue(server.getPagingManager().getPageStore(ADDRESS).isPaging());
+
+      session.close();
+      sf.close();
+
+      // the pending batches are written when the pages are closed
+      server.stop();
+      server.start();
+
+      sf = createSessionFactory(locator);
+
+      session = sf.createSession(false, true, true);
+
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage msg = consumer.receive(5000);
+         Assert.assertNotNull(msg);
+         Assert.assertEquals(i, msg.getIntProperty("id").intValue());
+         msg.acknowledge();
+      }
+
+      Assert.assertNull(consumer.receiveImmediate());
+
+      session.close();
+   }
+
+   @Test
+   public void testPageCompression() throws Exception
+   {
+      Configuration configuration = createDefaultConfig();
+
+      Map<String, AddressSettings> addresses = new HashMap<String, AddressSettings>();
+
+      addresses.put("#", new AddressSettings());
+
+      AddressSettings pagedDestination = new AddressSettings();
+      pagedDestination.setPageSizeBytes(10 * 1024);
+      pagedDestination.setMaxSizeBytes(20 * 1024);
+      pagedDestination.setPageCompression(true);
+
+      addresses.put(ADDRESS.toString(), pagedDestination);
+
+      server = createServer(true, configuration, -1, -1, addresses);
+
+      server.start();
+
+      sf = createSessionFactory(locator);
+
+      ClientSession session = sf.createSession(false, true, true);
+
+      session.createQueue(ADDRESS, ADDRESS, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      final int NUMBER_OF_MESSAGES = 500;
+
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage msg = session.createMessage(true);
+         msg.getBodyBuffer().writeBytes(new byte[512]);
+         msg.putIntProperty("id", i);
+
+         producer.send(msg);
+      }
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS);
+
+      Assert.assertTrue(store.isPaging());
+      Assert.assertTrue(store.getPageCompressor().getUncompressedBytes() > store.getPageCompressor()
+                                                                                 .getCompressedBytes());
+
+      session.close();
+      sf.close();
+
+      server.stop();
+      server.start();
+
+      sf = createSessionFactory(locator);
+
+      session = sf.createSession(false, true, true);
+
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage msg = consumer.receive(5000);
+         Assert.assertNotNull(msg);
+         Assert.assertEquals(i, msg.getIntProperty("id").intValue());
+         msg.acknowledge();
+      }
+
+      Assert.assertNull(consumer.receiveImmediate());
+
+      session.close();
+   }
+
    @Test
    public void testPagingDifferentSizes() throws Exception
    {
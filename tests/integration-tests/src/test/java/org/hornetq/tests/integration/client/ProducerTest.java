@@ -17,6 +17,7 @@ import org.junit.Test;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Assert;
 
@@ -162,4 +163,76 @@ public class ProducerTest extends ServiceTestBase
       }
    }
 
+   @Test
+   public void testProducersSharingSessionWithConfirmations() throws Exception
+   {
+      ServerLocator locator = createInVMNonHALocator();
+      locator.setConfirmationWindowSize(1024);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      final ClientSession session = addClientSession(cf.createSession(false, true, true));
+      session.createQueue(QUEUE, QUEUE, null, false);
+
+      final int numThreads = 10;
+      final int numMessages = 500;
+      final CountDownLatch done = new CountDownLatch(numThreads);
+      final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+      // the session's default address is set by its first message, which isn't thread safe
+      session.createProducer(QUEUE).send(session.createMessage(false));
+
+      for (int t = 0; t < numThreads; t++)
+      {
+         final int thread = t;
+
+         new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  ClientProducer producer = session.createProducer(QUEUE);
+
+                  for (int i = 0; i < numMessages; i++)
+                  {
+                     ClientMessage message = session.createMessage(false);
+                     message.putIntProperty("thread", thread);
+                     message.putIntProperty("count", i);
+                     producer.send(message);
+                  }
+               }
+               catch (Exception e)
+               {
+                  error.set(e);
+               }
+               finally
+               {
+                  done.countDown();
+               }
+            }
+         }.start();
+      }
+
+      Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+      Assert.assertNull(error.get());
+
+      ClientConsumer consumer = session.createConsumer(QUEUE);
+      session.start();
+
+      Assert.assertNotNull(consumer.receive(5000));
+
+      // the messages of each thread come in the order they were sent
+      int[] expected = new int[numThreads];
+
+      for (int i = 0; i < numThreads * numMessages; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         Assert.assertNotNull(message);
+         int thread = message.getIntProperty("thread");
+         Assert.assertEquals(expected[thread]++, message.getIntProperty("count").intValue());
+         message.acknowledge();
+      }
+
+      Assert.assertNull(consumer.receiveImmediate());
+   }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.integration.journal;
+
+import java.nio.ByteBuffer;
+
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.JournalConstants;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
+import org.hornetq.tests.unit.core.journal.impl.SequentialFileFactoryTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappedSequentialFileFactoryTest extends SequentialFileFactoryTestBase
+{
+   // small regions, so the tests cross them
+   private static final int REGION_SIZE = 512;
+
+   @Override
+   protected SequentialFileFactory createFactory()
+   {
+      return new MappedSequentialFileFactory(getTestDir(),
+                                             true,
+                                             JournalConstants.DEFAULT_JOURNAL_BUFFER_SIZE_NIO,
+                                             JournalConstants.DEFAULT_JOURNAL_BUFFER_TIMEOUT_NIO,
+                                             false,
+                                             null,
+                                             REGION_SIZE);
+   }
+
+   /**
+    * Writes inside the filled part go to the mapped regions, the ones after it grow the file
+    */
+   @Test
+   public void testWriteInsideAndPastEnd() throws Exception
+   {
+      SequentialFile sf = factory.createSequentialFile("mapped.hq", 1);
+
+      sf.open();
+
+      sf.fill(0, 2 * REGION_SIZE + 100, (byte)0);
+
+      sf.position(REGION_SIZE - 50);
+
+      // crosses the first two regions and then the end of the file
+      byte[] bytes = new byte[2 * REGION_SIZE];
+
+      for (int i = 0; i < bytes.length; i++)
+      {
+         bytes[i] = (byte)i;
+      }
+
+      sf.writeDirect(ByteBuffer.wrap(bytes), true);
+
+      Assert.assertEquals(3 * REGION_SIZE - 50, sf.size());
+
+      // and again over the grown part, which is mapped now
+      sf.position(2 * REGION_SIZE + 200);
+
+      sf.writeDirect(ByteBuffer.wrap(new byte[]{1, 2, 3}), true);
+
+      sf.close();
+
+      sf.open();
+
+      sf.position(REGION_SIZE - 50);
+
+      ByteBuffer read = factory.newBuffer(bytes.length);
+
+      Assert.assertEquals(bytes.length, sf.read(read));
+
+      for (int i = 0; i < bytes.length; i++)
+      {
+         byte expected = i == REGION_SIZE + 250 ? 1 : i == REGION_SIZE + 251 ? 2 : i == REGION_SIZE + 252 ? 3 : bytes[i];
+
+         Assert.assertEquals(expected, read.get(i));
+      }
+
+      Assert.assertEquals(-1, sf.read(factory.newBuffer(10)));
+
+      sf.close();
+   }
+}
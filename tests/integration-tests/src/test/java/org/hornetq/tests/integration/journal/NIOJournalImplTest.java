@@ -14,11 +14,21 @@
 package org.hornetq.tests.integration.journal;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.hornetq.core.journal.PreparedTransactionInfo;
+import org.hornetq.core.journal.RecordInfo;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.JournalImpl;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.tests.integration.IntegrationTestLogger;
 import org.hornetq.tests.unit.core.journal.impl.JournalImplTestUnit;
+import org.junit.Assert;
+import org.junit.Test;
 
 /**
  *
@@ -51,4 +61,121 @@ public class NIOJournalImplTest extends JournalImplTestUnit
       return 1;
    }
 
+   /**
+    * Concurrent appenders reserve their space on the buffer and encode the records outside of the
+    * append lock. Every appender's records must reload in the order it appended them.
+    */
+   @Test
+   public void testParallelAppend() throws Exception
+   {
+      final int numThreads = 10;
+
+      final int numRecords = 500;
+
+      setup(2, 10 * 1024, false);
+      createJournal();
+      ((JournalImpl)journal).setParallelAppend(true);
+      startJournal();
+      load();
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+      Thread[] threads = new Thread[numThreads];
+
+      for (int i = 0; i < numThreads; i++)
+      {
+         final int thread = i;
+
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+
+                  for (int j = 0; j < numRecords; j++)
+                  {
+                     long id = thread * numRecords + j;
+
+                     journal.appendAddRecord(id, (byte)0, recordFor(id), false);
+
+                     if (j % 2 == 0)
+                     {
+                        journal.appendUpdateRecord(id, (byte)1, recordFor(id + 1), false);
+                     }
+                  }
+               }
+               catch (Throwable e)
+               {
+                  error.compareAndSet(null, e);
+               }
+            }
+         };
+
+         threads[i].start();
+      }
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      Assert.assertNull(error.get());
+
+      stopJournal();
+      createJournal();
+      startJournal();
+
+      List<RecordInfo> committedRecords = new ArrayList<RecordInfo>();
+
+      journal.load(committedRecords, new ArrayList<PreparedTransactionInfo>(), null);
+
+      // the last record added by each thread
+      long[] lastAdded = new long[numThreads];
+
+      Arrays.fill(lastAdded, -1);
+
+      int updates = 0;
+
+      for (RecordInfo info : committedRecords)
+      {
+         int thread = (int)(info.id / numRecords);
+
+         long sequence = info.id % numRecords;
+
+         if (info.isUpdate)
+         {
+            // an update follows the add of its record
+            Assert.assertEquals(lastAdded[thread], sequence);
+            assertEqualsByteArrays(recordFor(info.id + 1), info.data);
+            updates++;
+         }
+         else
+         {
+            Assert.assertEquals(lastAdded[thread] + 1, sequence);
+            assertEqualsByteArrays(recordFor(info.id), info.data);
+            lastAdded[thread] = sequence;
+         }
+      }
+
+      Assert.assertEquals(numThreads * numRecords * 3 / 2, committedRecords.size());
+      Assert.assertEquals(numThreads * numRecords / 2, updates);
+   }
+
+   private static byte[] recordFor(final long value)
+   {
+      // the sizes differ, so the reservations don't line up with the file size
+      byte[] record = new byte[1 + (int)(value % 100)];
+
+      Arrays.fill(record, (byte)value);
+
+      return record;
+   }
+
 }
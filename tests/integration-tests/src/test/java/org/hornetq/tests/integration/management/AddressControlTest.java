@@ -296,6 +296,50 @@ public class AddressControlTest extends ManagementTestBase
          Assert.assertEquals(1024, addressControl.getNumberOfBytesPerPage());
    }
 
+   @Test
+   public void testGetPageCompressionRatio() throws Exception
+   {
+      session.close();
+      server.stop();
+      server.getConfiguration().setPersistenceEnabled(true);
+
+      SimpleString address = RandomUtil.randomSimpleString();
+
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setPageSizeBytes(1024);
+      addressSettings.setMaxSizeBytes(10 * 1024);
+      addressSettings.setPageCompression(true);
+
+      server.getAddressSettingsRepository().addMatch(address.toString(), addressSettings);
+      server.start();
+      ServerLocator locator2 =
+               HornetQClient.createServerLocatorWithoutHA(new TransportConfiguration(
+                                                                                     UnitTestCase.INVM_CONNECTOR_FACTORY));
+      addServerLocator(locator2);
+      ClientSessionFactory sf2 = createSessionFactory(locator2);
+
+      session = sf2.createSession(false, true, false);
+      session.start();
+      session.createQueue(address, address, true);
+
+      AddressControl addressControl = createManagementControl(address);
+      Assert.assertEquals(0, addressControl.getPageCompressionRatio(), 0);
+
+      ClientProducer producer = session.createProducer(address);
+
+      for (int i = 0; i < 50; i++)
+      {
+         ClientMessage msg = session.createMessage(true);
+         msg.getBodyBuffer().writeBytes(new byte[512]);
+         producer.send(msg);
+      }
+      session.commit();
+
+      Assert.assertTrue(addressControl.isPaging());
+      Assert.assertTrue(addressControl.getPageCompressionRatio() > 1);
+      Assert.assertTrue(addressControl.getPageCompressionTime() >= 0);
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
@@ -113,6 +113,8 @@ public class HornetQServerControlTest extends ManagementTestBase
       Assert.assertEquals(conf.getThreadPoolMaxSize(), serverControl.getThreadPoolMaxSize());
       Assert.assertEquals(conf.getSecurityInvalidationInterval(), serverControl.getSecurityInvalidationInterval());
       Assert.assertEquals(conf.isSecurityEnabled(), serverControl.isSecurityEnabled());
+      Assert.assertEquals(0, serverControl.getAuthenticationCacheHits());
+      Assert.assertEquals(0, serverControl.getAuthenticationCacheMisses());
       Assert.assertEquals(conf.isAsyncConnectionExecutionEnabled(), serverControl.isAsyncConnectionExecutionEnabled());
       Assert.assertEquals(conf.getIncomingInterceptorClassNames().size(), serverControl.getIncomingInterceptorClassNames().length);
       Assert.assertEquals(conf.getIncomingInterceptorClassNames().size(), serverControl.getIncomingInterceptorClassNames().length);
@@ -137,6 +139,7 @@ public class HornetQServerControlTest extends ManagementTestBase
          Assert.assertEquals(conf.getJournalBufferSize_AIO(), serverControl.getJournalBufferSize());
          Assert.assertEquals(conf.getJournalBufferTimeout_AIO(), serverControl.getJournalBufferTimeout());
       }
+      Assert.assertEquals(conf.isJournalBufferAdaptive(), serverControl.isJournalBufferAdaptive());
       Assert.assertEquals(conf.isCreateBindingsDir(), serverControl.isCreateBindingsDir());
       Assert.assertEquals(conf.isCreateJournalDir(), serverControl.isCreateJournalDir());
       Assert.assertEquals(conf.getPagingDirectory(), serverControl.getPagingDirectory());
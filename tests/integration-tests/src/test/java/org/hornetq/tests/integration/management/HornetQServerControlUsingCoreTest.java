@@ -294,6 +294,16 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Long)proxy.retrieveAttributeValue("securityInvalidationInterval", Long.class);
          }
 
+         public long getAuthenticationCacheHits()
+         {
+            return (Long)proxy.retrieveAttributeValue("authenticationCacheHits", Long.class);
+         }
+
+         public long getAuthenticationCacheMisses()
+         {
+            return (Long)proxy.retrieveAttributeValue("authenticationCacheMisses", Long.class);
+         }
+
          public long getTransactionTimeout()
          {
             return (Long)proxy.retrieveAttributeValue("transactionTimeout", Long.class);
@@ -469,6 +479,26 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Integer)proxy.retrieveAttributeValue("JournalBufferTimeout");
          }
 
+         public boolean isJournalBufferAdaptive()
+         {
+            return (Boolean)proxy.retrieveAttributeValue("journalBufferAdaptive");
+         }
+
+         public long getJournalBufferCurrentTimeout()
+         {
+            return (Long)proxy.retrieveAttributeValue("journalBufferCurrentTimeout", Long.class);
+         }
+
+         public long getJournalSyncLatency()
+         {
+            return (Long)proxy.retrieveAttributeValue("journalSyncLatency", Long.class);
+         }
+
+         public String getJournalBatchSizeHistogramAsJSON() throws Exception
+         {
+            return (String)proxy.retrieveAttributeValue("journalBatchSizeHistogramAsJSON");
+         }
+
          public int getJournalCompactMinFiles()
          {
             return (Integer)proxy.retrieveAttributeValue("JournalCompactMinFiles");
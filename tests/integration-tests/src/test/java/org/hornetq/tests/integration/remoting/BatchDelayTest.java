@@ -98,6 +98,42 @@ public class BatchDelayTest extends ServiceTestBase
       receiveMessages(cons, 0, N, true);
    }
 
+   @Test
+   public void testSendReceiveManyMixedSizes() throws Exception
+   {
+      ClientSessionFactory sf = createSessionFactory();
+
+      ClientSession session = sf.createSession();
+
+      final String foo = "foo";
+
+      session.createQueue(foo, foo);
+
+      ClientProducer prod = session.createProducer(foo);
+
+      ClientConsumer cons = session.createConsumer(foo);
+
+      session.start();
+
+      // the small packets are copied on the batches, the bigger ones written from their own buffers
+      for (int i = 0; i < N; i++)
+      {
+         ClientMessage msg = session.createMessage(false);
+         msg.putIntProperty("id", i);
+         msg.getBodyBuffer().writeBytes(new byte[(i % 10) * 200]);
+         prod.send(msg);
+      }
+
+      for (int i = 0; i < N; i++)
+      {
+         ClientMessage msg = cons.receive(10000);
+         assertNotNull(msg);
+         assertEquals(i, msg.getIntProperty("id").intValue());
+         assertEquals((i % 10) * 200, msg.getBodySize());
+         msg.acknowledge();
+      }
+   }
+
    @Test
    public void testSendReceiveOne() throws Exception
    {
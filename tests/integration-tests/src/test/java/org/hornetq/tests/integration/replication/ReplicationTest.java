@@ -70,6 +70,8 @@ import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager;
 import org.hornetq.core.persistence.impl.journal.OperationContextImpl;
 import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
 import org.hornetq.core.replication.ReplicatedJournal;
 import org.hornetq.core.replication.ReplicationManager;
 import org.hornetq.core.server.HornetQComponent;
@@ -105,6 +107,8 @@ public final class ReplicationTest extends ServiceTestBase
    private ServerLocator locator;
 
    private ReplicationManager manager;
+   private int replicationBatchSize;
+   private String liveOutgoingInterceptor;
    private static final SimpleString ADDRESS = new SimpleString("foobar123");
 
 
@@ -119,6 +123,11 @@ public final class ReplicationTest extends ServiceTestBase
       Configuration liveConfig = createDefaultConfig();
 
       backupConfig.setBackup(backup);
+      liveConfig.setReplicationBatchSize(replicationBatchSize);
+      if (liveOutgoingInterceptor != null)
+      {
+         liveConfig.setOutgoingInterceptorClassNames(Arrays.asList(liveOutgoingInterceptor));
+      }
 
       final String suffix = "_backup";
       backupConfig.setBindingsDirectory(backupConfig.getBindingsDirectory() + suffix);
@@ -280,6 +289,112 @@ public final class ReplicationTest extends ServiceTestBase
       Assert.assertEquals(0, store.getNumberOfPages());
    }
 
+   @Test
+   public void testSendPacketsBatched() throws Exception
+   {
+      final int numberOfRecords = 1000;
+
+      replicationBatchSize = 1024;
+      liveOutgoingInterceptor = BatchCountingInterceptor.class.getName();
+      BatchCountingInterceptor.batches.set(0);
+      BatchCountingInterceptor.records.set(0);
+
+      setupServer(true);
+
+      StorageManager storage = getStorage();
+
+      manager = liveServer.getReplicationManager();
+      waitForComponent(manager);
+
+      Journal replicatedJournal = new ReplicatedJournal((byte)1, new FakeJournal(), manager);
+
+      for (int i = 0; i < numberOfRecords; i++)
+      {
+         replicatedJournal.appendAddRecordTransactional(i, i, (byte)1, new FakeData());
+         replicatedJournal.appendCommitRecord(i, false);
+      }
+
+      // a page write goes after the records batched before it
+      ServerMessage msg = new ServerMessageImpl(1, 1024);
+      msg.setAddress(new SimpleString("dummy"));
+      manager.pageWrite(new PagedMessageImpl(msg, new long[0]), 1);
+
+      replicatedJournal.appendDeleteRecord(1, false);
+
+      blockOnReplication(storage, manager);
+
+      Assert.assertTrue("Expecting no active tokens:" + manager.getActiveTokens(), manager.getActiveTokens().isEmpty());
+
+      Assert.assertEquals(2 * numberOfRecords + 1, BatchCountingInterceptor.records.get());
+      Assert.assertTrue("records should be sent in batches", BatchCountingInterceptor.batches.get() > 1);
+      Assert.assertTrue("records should be sent in batches",
+                        BatchCountingInterceptor.batches.get() < numberOfRecords);
+   }
+
+   @Test
+   public void testSendPacketsBatchedWithFailure() throws Exception
+   {
+      replicationBatchSize = 1024 * 1024;
+
+      setupServer(true);
+
+      manager = liveServer.getReplicationManager();
+      waitForComponent(manager);
+
+      Journal replicatedJournal = new ReplicatedJournal((byte)1, new FakeJournal(), manager);
+
+      OperationContext applied = new OperationContextImpl(executor);
+      OperationContext failed = new OperationContextImpl(executor);
+      OperationContext after = new OperationContextImpl(executor);
+
+      try
+      {
+         OperationContextImpl.setContext(applied);
+         replicatedJournal.appendAddRecord(1, (byte)1, new FakeData(), false);
+
+         // the backup has no record 1000 to delete, so the record after it is not applied either
+         OperationContextImpl.setContext(failed);
+         replicatedJournal.appendDeleteRecord(1000, false);
+         replicatedJournal.appendAddRecord(2, (byte)1, new FakeData(), false);
+
+         // the page write is sent after the batch, the record after it in a new batch
+         OperationContextImpl.setContext(after);
+         ServerMessage msg = new ServerMessageImpl(1, 1024);
+         msg.setAddress(new SimpleString("dummy"));
+         manager.pageWrite(new PagedMessageImpl(msg, new long[0]), 1);
+         replicatedJournal.appendAddRecord(3, (byte)1, new FakeData(), false);
+      }
+      finally
+      {
+         OperationContextImpl.clearContext();
+      }
+
+      Assert.assertTrue(after.waitCompletion(5000));
+      Assert.assertTrue(applied.waitCompletion(5000));
+
+      final CountDownLatch failedLatch = new CountDownLatch(1);
+      final AtomicInteger failedCode = new AtomicInteger(-1);
+
+      failed.executeOnCompletion(new IOAsyncTask()
+      {
+         public void done()
+         {
+         }
+
+         public void onError(final int errorCode, final String errorMessage)
+         {
+            failedCode.set(errorCode);
+            failedLatch.countDown();
+         }
+      });
+
+      // the records the backup didn't store fail instead of completing
+      Assert.assertTrue(failedLatch.await(5, TimeUnit.SECONDS));
+      Assert.assertEquals(HornetQExceptionType.IO_ERROR.getCode(), failedCode.get());
+
+      Assert.assertTrue("Expecting no active tokens:" + manager.getActiveTokens(), manager.getActiveTokens().isEmpty());
+   }
+
    @Test
    public void testSendPacketsWithFailure() throws Exception
    {
@@ -618,6 +733,23 @@ public final class ReplicationTest extends ServiceTestBase
 
    };
 
+   public static final class BatchCountingInterceptor implements Interceptor
+   {
+      static final AtomicInteger batches = new AtomicInteger(0);
+
+      static final AtomicInteger records = new AtomicInteger(0);
+
+      public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+      {
+         if (packet.getType() == PacketImpl.REPLICATION_BATCH)
+         {
+            batches.incrementAndGet();
+            records.addAndGet(((ReplicationBatchMessage)packet).getCount());
+         }
+         return true;
+      }
+   }
+
    static final class FakeJournal implements Journal
    {
 
@@ -41,6 +41,7 @@ import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.CompletionHandler;
 import org.hornetq.api.core.client.FailoverEventListener;
 import org.hornetq.api.core.client.SendAcknowledgementHandler;
 import org.hornetq.api.core.client.SessionFailureListener;
@@ -1245,6 +1246,10 @@ public class MessageHeaderTest extends MessageHeaderTestBase
       {
       }
 
+      public void commitAsync(final CompletionHandler handler) throws HornetQException
+      {
+      }
+
       public boolean isRollbackOnly()
       {
 
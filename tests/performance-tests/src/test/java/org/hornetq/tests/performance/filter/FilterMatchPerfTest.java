@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.filter;
+
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.filter.impl.FilterParser;
+import org.hornetq.core.filter.impl.Identifier;
+import org.hornetq.core.filter.impl.Operator;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Test;
+
+/**
+ * Measures the rate filters are matched at, compiled and as applying the parsed {@link Operator}s
+ * under a lock the way the filters used to.
+ */
+public class FilterMatchPerfTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final String FILTER = "color = 'RED' AND weight BETWEEN 10 AND 20 AND name LIKE 'a%'";
+
+   private static final int NUMBER_OF_MATCHES = 2000000;
+
+   private static final int NUMBER_OF_THREADS = 8;
+
+   @Test
+   public void testMatchRate() throws Exception
+   {
+      ServerMessage message = createMessage();
+
+      Filter compiled = FilterImpl.createFilter(FILTER);
+
+      Filter operators = new OperatorFilter(FILTER);
+
+      // warm up
+      measure(compiled, message, 1);
+      measure(operators, message, 1);
+
+      for (int threads = 1; threads <= NUMBER_OF_THREADS; threads *= 2)
+      {
+         FilterMatchPerfTest.log.info(threads + " thread(s): " +
+                                      measure(operators, message, threads) +
+                                      " matches/sec with the operators, " +
+                                      measure(compiled, message, threads) +
+                                      " matches/sec compiled");
+      }
+   }
+
+   // Private -------------------------------------------------------
+
+   private static ServerMessage createMessage()
+   {
+      ServerMessage message = new ServerMessageImpl(1, 1000);
+      message.putStringProperty("color", "RED");
+      message.putIntProperty("weight", 15);
+      message.putStringProperty("name", "abc");
+      return message;
+   }
+
+   private static long measure(final Filter filter, final ServerMessage message, final int numberOfThreads) throws Exception
+   {
+      final CountDownLatch start = new CountDownLatch(1);
+
+      Thread[] threads = new Thread[numberOfThreads];
+
+      for (int i = 0; i < numberOfThreads; i++)
+      {
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+
+               for (int j = 0; j < NUMBER_OF_MATCHES; j++)
+               {
+                  if (!filter.match(message))
+                  {
+                     throw new IllegalStateException("the message should match");
+                  }
+               }
+            }
+         };
+
+         threads[i].start();
+      }
+
+      long begin = System.nanoTime();
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      long elapsed = System.nanoTime() - begin;
+
+      return (long)(1000000000d * NUMBER_OF_MATCHES * numberOfThreads / elapsed);
+   }
+
+   /**
+    * Sets the identifiers and applies the operators the filters are parsed to, one thread at a time
+    */
+   private static final class OperatorFilter implements Filter
+   {
+      private final SimpleString filterString;
+
+      private final HashMap<SimpleString, Identifier> identifiers = new HashMap<SimpleString, Identifier>();
+
+      private final Operator operator;
+
+      OperatorFilter(final String filter) throws Exception
+      {
+         filterString = new SimpleString(filter);
+         operator = (Operator)new FilterParser().parse(filterString, identifiers);
+      }
+
+      public synchronized boolean match(final ServerMessage message)
+      {
+         try
+         {
+            for (Identifier id : identifiers.values())
+            {
+               id.setValue(message.getObjectProperty(id.getName()));
+            }
+
+            return Boolean.TRUE.equals(operator.apply());
+         }
+         catch (Exception e)
+         {
+            return false;
+         }
+      }
+
+      public SimpleString getFilterString()
+      {
+         return filterString;
+      }
+   }
+}
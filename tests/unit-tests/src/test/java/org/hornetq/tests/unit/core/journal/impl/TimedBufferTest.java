@@ -19,6 +19,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -29,6 +30,7 @@ import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.core.journal.IOAsyncTask;
 import org.hornetq.core.journal.impl.TimedBuffer;
 import org.hornetq.core.journal.impl.TimedBufferObserver;
+import org.hornetq.core.journal.impl.dataformat.ByteArrayEncoding;
 import org.hornetq.tests.util.UnitTestCase;
 
 /**
@@ -403,4 +405,334 @@ public class TimedBufferTest extends UnitTestCase
          timedBuffer.stop();
       }
    }
+
+   @Test
+   public void testReservedBytes() throws Exception
+   {
+      final ArrayList<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+      class TestObserver implements TimedBufferObserver
+      {
+         public synchronized void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            buffers.add(buffer);
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      final TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS, false);
+
+      timedBuffer.start();
+
+      try
+      {
+         final TestObserver observer = new TestObserver();
+
+         timedBuffer.setObserver(observer);
+
+         final int[] positions = new int[10];
+
+         for (int i = 0; i < 10; i++)
+         {
+            timedBuffer.checkSize(10);
+            positions[i] = timedBuffer.reserve(10, false, dummyCallback);
+         }
+
+         // The bytes are supplied in the reverse order of the reservations
+         for (int i = 9; i > 0; i--)
+         {
+            timedBuffer.writeReserved(positions[i], new ByteArrayEncoding(getSampleBytes(i * 10)));
+         }
+
+         Thread flusher = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               timedBuffer.flush();
+            }
+         };
+
+         flusher.start();
+
+         // The flush has to wait the pending reservation
+         flusher.join(200);
+
+         assertTrue(flusher.isAlive());
+
+         synchronized (observer)
+         {
+            assertEquals(0, buffers.size());
+         }
+
+         timedBuffer.writeReserved(positions[0], new ByteArrayEncoding(getSampleBytes(0)));
+
+         flusher.join(5000);
+
+         assertFalse(flusher.isAlive());
+
+         ByteBuffer flushedBuffer;
+
+         synchronized (observer)
+         {
+            assertEquals(1, buffers.size());
+            flushedBuffer = buffers.get(0);
+         }
+
+         assertEquals(100, flushedBuffer.limit());
+
+         flushedBuffer.rewind();
+
+         for (int i = 0; i < 100; i++)
+         {
+            assertEquals(UnitTestCase.getSamplebyte(i), flushedBuffer.get());
+         }
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
+
+   @Test
+   public void testTryReserve() throws Exception
+   {
+      final List<List<IOAsyncTask>> flushedCallbacks = new ArrayList<List<IOAsyncTask>>();
+
+      class TestObserver implements TimedBufferObserver
+      {
+         public synchronized void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            flushedCallbacks.add(callbacks);
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      class PositionCallback implements IOAsyncTask
+      {
+         volatile int position;
+
+         public void done()
+         {
+         }
+
+         public void onError(final int errorCode, final String errorMessage)
+         {
+         }
+      }
+
+      final TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS, false);
+
+      timedBuffer.start();
+
+      try
+      {
+         final TestObserver observer = new TestObserver();
+
+         timedBuffer.setObserver(observer);
+
+         // Nothing is reserved without the lock before the buffer knows its limit on the file
+         assertEquals(-1, timedBuffer.tryReserve(observer, 10, false, dummyCallback));
+
+         timedBuffer.flush();
+
+         assertEquals(-1, timedBuffer.tryReserve(new TestObserver(), 10, false, dummyCallback));
+
+         final CountDownLatch start = new CountDownLatch(1);
+
+         final AtomicInteger errors = new AtomicInteger(0);
+
+         Thread[] threads = new Thread[10];
+
+         for (int i = 0; i < threads.length; i++)
+         {
+            threads[i] = new Thread()
+            {
+               @Override
+               public void run()
+               {
+                  try
+                  {
+                     start.await();
+
+                     PositionCallback callback = new PositionCallback();
+
+                     callback.position = timedBuffer.tryReserve(observer, 10, false, callback);
+
+                     timedBuffer.writeReserved(callback.position, new ByteArrayEncoding(new byte[10]));
+                  }
+                  catch (Throwable e)
+                  {
+                     e.printStackTrace();
+                     errors.incrementAndGet();
+                  }
+               }
+            };
+
+            threads[i].start();
+         }
+
+         start.countDown();
+
+         for (Thread thread : threads)
+         {
+            thread.join(5000);
+         }
+
+         assertEquals(0, errors.get());
+
+         // The buffer is full, it is flushed by the next reservation
+         assertEquals(0, timedBuffer.tryReserve(observer, 10, false, dummyCallback));
+
+         timedBuffer.writeReserved(0, new ByteArrayEncoding(new byte[10]));
+
+         List<IOAsyncTask> callbacks;
+
+         synchronized (observer)
+         {
+            assertEquals(1, flushedCallbacks.size());
+            callbacks = flushedCallbacks.get(0);
+         }
+
+         // The callbacks are on the order of the reservations
+         assertEquals(10, callbacks.size());
+
+         for (int i = 0; i < callbacks.size(); i++)
+         {
+            assertEquals(i * 10, ((PositionCallback)callbacks.get(i)).position);
+         }
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
+
+   @Test
+   public void testAdaptiveTimeout() throws Exception
+   {
+      final Semaphore flushes = new Semaphore(0);
+
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            // the sync completes later, as it would on a disk
+            new Thread()
+            {
+               @Override
+               public void run()
+               {
+                  try
+                  {
+                     Thread.sleep(20);
+                  }
+                  catch (InterruptedException e)
+                  {
+                     return;
+                  }
+
+                  for (IOAsyncTask callback : callbacks)
+                  {
+                     callback.done();
+                  }
+               }
+            }.start();
+
+            flushes.release();
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      TimedBuffer timedBuffer = new TimedBuffer(100 * 1024, TimedBufferTest.ONE_SECOND_IN_NANOS, false);
+
+      timedBuffer.setAdaptive(true);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         // nothing else is expected, the sync doesn't wait for the timeout
+         timedBuffer.checkSize(10);
+         timedBuffer.addBytes(new ByteArrayEncoding(getSampleBytes(0)), true, dummyCallback);
+
+         assertTrue(flushes.tryAcquire(500, TimeUnit.MILLISECONDS));
+         assertEquals(0, timedBuffer.getCurrentTimeout());
+
+         long timeLimit = System.currentTimeMillis() + 5000;
+         while (timedBuffer.getSyncLatency() == 0 && System.currentTimeMillis() < timeLimit)
+         {
+            Thread.sleep(10);
+         }
+
+         long syncLatency = timedBuffer.getSyncLatency();
+
+         assertTrue(syncLatency > 0);
+
+         // records arrive much faster than a sync, now the sync waits for others
+         for (int i = 0; i < 200; i++)
+         {
+            timedBuffer.checkSize(10);
+            timedBuffer.addBytes(new ByteArrayEncoding(getSampleBytes(i)), false, dummyCallback);
+         }
+
+         timedBuffer.checkSize(10);
+         timedBuffer.addBytes(new ByteArrayEncoding(getSampleBytes(0)), true, dummyCallback);
+
+         assertEquals(syncLatency, timedBuffer.getCurrentTimeout());
+
+         assertTrue(flushes.tryAcquire(500, TimeUnit.MILLISECONDS));
+
+         long[] histogram = timedBuffer.getBatchSizeHistogram();
+
+         assertEquals(TimedBuffer.BATCH_SIZE_BUCKETS, histogram.length);
+         assertEquals(1, histogram[0]);
+         // 201 records
+         assertEquals(1, histogram[7]);
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
+
+   private static byte[] getSampleBytes(final int start)
+   {
+      byte[] bytes = new byte[10];
+
+      for (int j = 0; j < 10; j++)
+      {
+         bytes[j] = UnitTestCase.getSamplebyte(start + j);
+      }
+
+      return bytes;
+   }
 }
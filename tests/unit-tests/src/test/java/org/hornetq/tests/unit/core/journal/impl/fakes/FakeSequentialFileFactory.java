@@ -641,6 +641,22 @@ public class FakeSequentialFileFactory implements SequentialFileFactory
          write(outbuffer, sync);
       }
 
+      public int reserve(final int size, final boolean sync, final IOAsyncTask callback)
+      {
+         // There is no buffer to reserve space on
+         return -1;
+      }
+
+      public int tryReserve(final int size, final boolean sync, final IOAsyncTask callback)
+      {
+         return -1;
+      }
+
+      public void writeReserved(final int position, final EncodingSupport bytes)
+      {
+         throw new IllegalStateException("FakeSequentialFile doesn't support reservations");
+      }
+
       /* (non-Javadoc)
        * @see org.hornetq.core.journal.SequentialFile#exists()
        */
@@ -711,6 +727,12 @@ public class FakeSequentialFileFactory implements SequentialFileFactory
    {
    }
 
+   @Override
+   public TimedBuffer getTimedBuffer()
+   {
+      return null;
+   }
+
    @Override
    public void onIOError(Exception exception, String message, SequentialFile file)
    {
@@ -19,11 +19,17 @@ import java.util.Set;
 
 import org.junit.Assert;
 
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.client.impl.ClientMessageImpl;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
 import org.hornetq.tests.util.RandomUtil;
 import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.DataConstants;
 
 /**
  *
@@ -225,6 +231,56 @@ public class MessageImplTest extends UnitTestCase
       }
    }
 
+   /**
+    * Every delivery of a message encodes its own headers around the same read only encoding
+    */
+   @Test
+   public void testSharedEncodedBuffer() throws Exception
+   {
+      ServerMessageImpl message = new ServerMessageImpl(1, 1024);
+      message.setAddress(new SimpleString("topic"));
+      message.putStringProperty("prop", "one");
+      byte[] body = RandomUtil.randomBytes(2000);
+      message.getBodyBuffer().writeBytes(body);
+
+      HornetQBuffer shared = message.getSharedEncodedBuffer();
+      HornetQBuffer before = shared.copy(0, shared.capacity());
+
+      for (int consumerID = 0; consumerID < 3; consumerID++)
+      {
+         SessionReceiveMessage decoded = decode(new SessionReceiveMessage(consumerID, message, consumerID + 1));
+
+         Assert.assertEquals(consumerID, decoded.getConsumerID());
+         Assert.assertEquals(consumerID + 1, decoded.getDeliveryCount());
+
+         Message received = decoded.getMessage();
+         Assert.assertEquals(message.getAddress(), received.getAddress());
+         Assert.assertEquals(new SimpleString("one"), received.getSimpleStringProperty("prop"));
+
+         byte[] receivedBody = new byte[body.length];
+         received.getBodyBuffer().readBytes(receivedBody);
+         UnitTestCase.assertEqualsByteArrays(body, receivedBody);
+      }
+
+      try
+      {
+         shared.setByte(0, (byte)0);
+         Assert.fail("the shared encoding must be read only");
+      }
+      catch (UnsupportedOperationException expected)
+      {
+      }
+
+      // a change on the message encodes it again on a copy
+      message.putStringProperty("prop", "a longer value");
+
+      Assert.assertEquals(before.channelBuffer(), shared.channelBuffer());
+
+      SessionReceiveMessage decoded = decode(new SessionReceiveMessage(1, message, 1));
+
+      Assert.assertEquals(new SimpleString("a longer value"), decoded.getMessage().getSimpleStringProperty("prop"));
+   }
+
    // Protected -------------------------------------------------------------------------------
 
    protected void assertMessagesEquivalent(final Message msg1, final Message msg2)
@@ -263,4 +319,22 @@ public class MessageImplTest extends UnitTestCase
 
    // Private ----------------------------------------------------------------------------------
 
+   private static SessionReceiveMessage decode(final SessionReceiveMessage packet)
+   {
+      HornetQBuffer encoded = packet.encode(null);
+
+      Assert.assertEquals(packet.getPacketSize(), encoded.readableBytes());
+
+      // the transport reads the length and the type
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(encoded.readableBytes());
+      buffer.writeBytes(encoded, 0, encoded.readableBytes());
+      Assert.assertEquals(encoded.readableBytes() - DataConstants.SIZE_INT, buffer.readInt());
+      Assert.assertEquals(PacketImpl.SESS_RECEIVE_MSG, buffer.readByte());
+
+      SessionReceiveMessage decoded = new SessionReceiveMessage(new ClientMessageImpl());
+      decoded.decode(buffer);
+
+      return decoded;
+   }
+
 }
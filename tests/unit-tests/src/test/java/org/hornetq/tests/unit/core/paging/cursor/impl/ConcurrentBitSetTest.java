@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.paging.cursor.impl;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.hornetq.core.paging.cursor.impl.ConcurrentBitSet;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentBitSetTest extends UnitTestCase
+{
+   @Test
+   public void testSetAndGet()
+   {
+      ConcurrentBitSet bits = new ConcurrentBitSet(100);
+
+      Assert.assertFalse(bits.get(0));
+      Assert.assertTrue(bits.set(0));
+      Assert.assertFalse(bits.set(0));
+      Assert.assertTrue(bits.get(0));
+
+      Assert.assertTrue(bits.set(63));
+      Assert.assertTrue(bits.set(64));
+      Assert.assertFalse(bits.get(62));
+      Assert.assertFalse(bits.get(65));
+
+      Assert.assertEquals(3, bits.cardinality());
+   }
+
+   @Test
+   public void testGrow()
+   {
+      ConcurrentBitSet bits = new ConcurrentBitSet();
+
+      Assert.assertFalse(bits.get(1000000));
+
+      for (int i = 0; i < 100000; i += 7)
+      {
+         Assert.assertTrue(bits.set(i));
+      }
+
+      for (int i = 0; i < 100000; i++)
+      {
+         Assert.assertEquals(i % 7 == 0, bits.get(i));
+      }
+
+      Assert.assertEquals((100000 + 6) / 7, bits.cardinality());
+   }
+
+   @Test
+   public void testNegativeIndex()
+   {
+      ConcurrentBitSet bits = new ConcurrentBitSet();
+
+      try
+      {
+         bits.set(-1);
+         Assert.fail("Exception expected");
+      }
+      catch (IndexOutOfBoundsException expected)
+      {
+      }
+   }
+
+   @Test
+   public void testConcurrentSet() throws Exception
+   {
+      final ConcurrentBitSet bits = new ConcurrentBitSet();
+
+      final int numberOfThreads = 8;
+
+      final int numberOfBits = 50000;
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      Thread[] threads = new Thread[numberOfThreads];
+
+      for (int t = 0; t < numberOfThreads; t++)
+      {
+         final int offset = t;
+
+         threads[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+
+               // every bit is set by two threads, on chunks being created by the others
+               for (int i = offset % (numberOfThreads / 2); i < numberOfBits; i += numberOfThreads / 2)
+               {
+                  bits.set(i);
+               }
+            }
+         };
+
+         threads[t].start();
+      }
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      Assert.assertEquals(numberOfBits, bits.cardinality());
+
+      for (int i = 0; i < numberOfBits; i++)
+      {
+         Assert.assertTrue(bits.get(i));
+      }
+   }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.paging.cursor.impl;
+
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.cursor.impl.PageCacheMap;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PageCacheMapTest extends UnitTestCase
+{
+   @Test
+   public void testBoundedByElements()
+   {
+      PageCacheMap map = new PageCacheMap(2, -1);
+
+      map.put(new FakePageCache(1, 100));
+      map.put(new FakePageCache(2, 100));
+      map.put(new FakePageCache(3, 100));
+
+      Assert.assertEquals(2, map.size());
+      Assert.assertEquals(1, map.getEvictions());
+      Assert.assertNull(map.peek(1));
+      Assert.assertNotNull(map.peek(2));
+      Assert.assertNotNull(map.peek(3));
+   }
+
+   @Test
+   public void testBoundedByBytes()
+   {
+      PageCacheMap map = new PageCacheMap(-1, 250);
+
+      map.put(new FakePageCache(1, 100));
+      map.put(new FakePageCache(2, 100));
+      Assert.assertEquals(200, map.getBytes());
+
+      map.put(new FakePageCache(3, 100));
+
+      Assert.assertEquals(2, map.size());
+      Assert.assertEquals(200, map.getBytes());
+      Assert.assertNull(map.peek(1));
+   }
+
+   @Test
+   public void testSizedOnceRead()
+   {
+      PageCacheMap map = new PageCacheMap(-1, 250);
+
+      FakePageCache cache1 = new FakePageCache(1, 0);
+      FakePageCache cache2 = new FakePageCache(2, 0);
+
+      map.put(cache1);
+      map.put(cache2);
+      Assert.assertEquals(0, map.getBytes());
+
+      cache1.memoryEstimate = 200;
+      cache2.memoryEstimate = 200;
+      map.updated();
+
+      Assert.assertEquals(1, map.size());
+      Assert.assertEquals(200, map.getBytes());
+   }
+
+   @Test
+   public void testRecentlyUsedGetSecondChance()
+   {
+      PageCacheMap map = new PageCacheMap(2, -1);
+
+      map.put(new FakePageCache(1, 100));
+      map.put(new FakePageCache(2, 100));
+
+      // the clock goes around once evicting 1, so 2 and 3 are not referenced anymore
+      map.put(new FakePageCache(3, 100));
+      Assert.assertNull(map.peek(1));
+
+      Assert.assertNotNull(map.get(2));
+
+      map.put(new FakePageCache(4, 100));
+
+      Assert.assertNotNull(map.peek(2));
+      Assert.assertNull(map.peek(3));
+      Assert.assertNotNull(map.peek(4));
+   }
+
+   @Test
+   public void testLiveNeverEvicted()
+   {
+      PageCacheMap map = new PageCacheMap(1, -1);
+
+      FakePageCache live = new FakePageCache(1, 100);
+      live.live = true;
+
+      map.put(live);
+      map.put(new FakePageCache(2, 100));
+      map.put(new FakePageCache(3, 100));
+
+      Assert.assertSame(live, map.peek(1));
+      Assert.assertEquals(2, map.getEvictions());
+   }
+
+   @Test
+   public void testHitsAndMisses()
+   {
+      PageCacheMap map = new PageCacheMap(10, -1);
+
+      map.put(new FakePageCache(1, 100));
+
+      Assert.assertNotNull(map.get(1));
+      Assert.assertNotNull(map.get(1));
+      Assert.assertNull(map.get(2));
+      Assert.assertNotNull(map.peek(1));
+
+      Assert.assertEquals(2, map.getHits());
+      Assert.assertEquals(1, map.getMisses());
+   }
+
+   @Test
+   public void testRemoveAndClear()
+   {
+      PageCacheMap map = new PageCacheMap(10, -1);
+
+      map.put(new FakePageCache(1, 100));
+      map.put(new FakePageCache(2, 100));
+
+      Assert.assertNotNull(map.remove(1));
+      Assert.assertNull(map.remove(1));
+      Assert.assertEquals(100, map.getBytes());
+
+      map.clear();
+
+      Assert.assertEquals(0, map.size());
+      Assert.assertEquals(0, map.getBytes());
+      Assert.assertEquals(0, map.getEvictions());
+   }
+
+   private static final class FakePageCache implements PageCache
+   {
+      private final long pageId;
+
+      volatile long memoryEstimate;
+
+      volatile boolean live;
+
+      FakePageCache(final long pageId, final long memoryEstimate)
+      {
+         this.pageId = pageId;
+         this.memoryEstimate = memoryEstimate;
+      }
+
+      public long getPageId()
+      {
+         return pageId;
+      }
+
+      public int getNumberOfMessages()
+      {
+         return 0;
+      }
+
+      public void setMessages(final PagedMessage[] messages)
+      {
+      }
+
+      public PagedMessage[] getMessages()
+      {
+         return new PagedMessage[0];
+      }
+
+      public long getMemoryEstimate()
+      {
+         return memoryEstimate;
+      }
+
+      public boolean isLive()
+      {
+         return live;
+      }
+
+      public PagedMessage getMessage(final int messageNumber)
+      {
+         return null;
+      }
+
+      public void lock()
+      {
+      }
+
+      public void unlock()
+      {
+      }
+
+      public void close()
+      {
+      }
+   }
+}
@@ -28,12 +28,14 @@ import org.hornetq.core.journal.SequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.impl.Page;
+import org.hornetq.core.paging.impl.PageCompressor;
 import org.hornetq.core.paging.impl.PagedMessageImpl;
 import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.ServerMessageImpl;
 import org.hornetq.tests.unit.core.journal.impl.fakes.FakeSequentialFileFactory;
 import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.DataConstants;
 
 /**
  *
@@ -72,6 +74,157 @@ public class PageTest extends UnitTestCase
       testAdd(new FakeSequentialFileFactory(1, false), 10);
    }
 
+   @Test
+   public void testPageWithWriteBuffer() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.setWriteBufferSize(10 * 1024);
+
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+
+      ArrayList<HornetQBuffer> buffers = addPageElements(simpleDestination, impl, 10);
+
+      // nothing reaches the file until the batch is full, or the page is flushed
+      Assert.assertEquals(0, file.size());
+
+      impl.sync();
+
+      long syncedSize = file.size();
+
+      Assert.assertTrue(syncedSize > 0);
+
+      buffers.addAll(addPageElements(simpleDestination, impl, 10));
+
+      Assert.assertEquals(syncedSize, file.size());
+
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+
+      Assert.assertEquals(20, msgs.size());
+
+      for (int i = 0; i < msgs.size(); i++)
+      {
+         UnitTestCase.assertEqualsByteArrays(buffers.get(i).toByteBuffer().array(), msgs.get(i)
+                                                                                        .getMessage()
+                                                                                        .getBodyBuffer()
+                                                                                        .toByteBuffer()
+                                                                                        .array());
+      }
+
+      impl.close();
+   }
+
+   @Test
+   public void testPageWriteBufferFull() throws Exception
+   {
+      SequentialFileFactory factory = new FakeSequentialFileFactory(1, false);
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      impl.setWriteBufferSize(1024);
+
+      impl.open();
+
+      ServerMessage msg = new ServerMessageImpl(1, 100);
+      msg.setAddress(new SimpleString("Test"));
+      msg.getBodyBuffer().writeBytes(new byte[300]);
+
+      Assert.assertFalse(impl.write(new PagedMessageImpl(msg, new long[0])));
+      Assert.assertFalse(impl.write(new PagedMessageImpl(msg, new long[0])));
+      Assert.assertTrue(impl.write(new PagedMessageImpl(msg, new long[0])));
+
+      impl.flush();
+
+      Assert.assertEquals(3, impl.getNumberOfMessages());
+      Assert.assertEquals(impl.getSize(), file.size());
+
+      impl.close();
+   }
+
+   @Test
+   public void testCompressedPage() throws Exception
+   {
+      testCompressedPage(0);
+   }
+
+   @Test
+   public void testCompressedPageWithWriteBuffer() throws Exception
+   {
+      testCompressedPage(1024);
+   }
+
+   @Test
+   public void testDamagedBlockSize() throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      PageCompressor compressor = new PageCompressor();
+
+      impl.setCompressor(compressor);
+      impl.setPageSize(10 * 1024);
+
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+
+      addPageElements(simpleDestination, impl, 10);
+
+      impl.sync();
+
+      long blockPosition = file.size();
+
+      compressor.setEnabled(true);
+
+      addPageElements(simpleDestination, impl, 10);
+
+      impl.sync();
+
+      // the uncompressed size of the first block
+      ByteBuffer buffer = factory.newBuffer(DataConstants.SIZE_INT);
+      buffer.putInt(Integer.MAX_VALUE - 8);
+      buffer.rewind();
+      file.position(blockPosition + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT);
+      file.writeDirect(buffer, true);
+
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.setCompressor(compressor);
+      impl.setPageSize(10 * 1024);
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+
+      Assert.assertEquals(10, msgs.size());
+
+      impl.delete(null);
+
+      Assert.assertEquals(1, factory.listFiles("invalidPage").size());
+   }
+
    /** Validate if everything we add is recovered */
    @Test
    public void testDamagedPage() throws Exception
@@ -201,6 +354,70 @@ public class PageTest extends UnitTestCase
 
    }
 
+   /**
+    * Writes plain records, then compressed ones, and reads them all back
+    */
+   protected void testCompressedPage(final int writeBufferSize) throws Exception
+   {
+      recreateDirectory(getTestDir());
+
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      PageCompressor compressor = new PageCompressor();
+
+      impl.setCompressor(compressor);
+      impl.setWriteBufferSize(writeBufferSize);
+
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+
+      ArrayList<HornetQBuffer> buffers = addPageElements(simpleDestination, impl, 10);
+
+      impl.sync();
+
+      long plainSize = file.size();
+
+      Assert.assertEquals(0, compressor.getUncompressedBytes());
+
+      compressor.setEnabled(true);
+
+      buffers.addAll(addPageElements(simpleDestination, impl, 100));
+
+      impl.sync();
+
+      Assert.assertTrue(compressor.getUncompressedBytes() > compressor.getCompressedBytes());
+      Assert.assertTrue(file.size() - plainSize < impl.getSize() - plainSize);
+
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.setCompressor(compressor);
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+
+      Assert.assertEquals(110, msgs.size());
+
+      for (int i = 0; i < msgs.size(); i++)
+      {
+         UnitTestCase.assertEqualsByteArrays(buffers.get(i).toByteBuffer().array(), msgs.get(i)
+                                                                                        .getMessage()
+                                                                                        .getBodyBuffer()
+                                                                                        .toByteBuffer()
+                                                                                        .array());
+      }
+
+      Assert.assertTrue(compressor.getDecompressionTime() > 0);
+
+      impl.close();
+   }
+
    /**
     * @param simpleDestination
     * @param page
@@ -298,4 +298,16 @@ public class AddressImplTest extends UnitTestCase
       Assert.assertFalse(a1.matches(w));
    }
 
+   @Test
+   public void testAnyWordsBeforeWords()
+   {
+      Address a1 = new AddressImpl(new SimpleString("a"));
+      Address a2 = new AddressImpl(new SimpleString("a.a.stock"));
+      Address a3 = new AddressImpl(new SimpleString("a.x.b.x.c"));
+      Assert.assertTrue(a1.matches(new AddressImpl(new SimpleString("#.a"))));
+      Assert.assertFalse(a2.matches(new AddressImpl(new SimpleString("#.stock.b.#"))));
+      Assert.assertTrue(a2.matches(new AddressImpl(new SimpleString("#.stock.#"))));
+      Assert.assertTrue(a3.matches(new AddressImpl(new SimpleString("#.x.c"))));
+      Assert.assertTrue(a3.matches(new AddressImpl(new SimpleString("a.#.x.*"))));
+   }
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.unit.core.postoffice.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.postoffice.Address;
+import org.hornetq.core.postoffice.impl.AddressImpl;
+import org.hornetq.core.postoffice.impl.AddressTrie;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AddressTrieTest extends UnitTestCase
+{
+   private static final String[] WORDS = {"a", "b", "c", "stock", "nyse"};
+
+   @Test
+   public void testMatchingWildcards()
+   {
+      AddressTrie trie = new AddressTrie();
+
+      Address any = address("stock.#");
+      Address nyse = address("stock.*.nyse");
+      Address all = address("#");
+      Address other = address("stock.*");
+
+      trie.add(any);
+      trie.add(nyse);
+      trie.add(all);
+      trie.add(other);
+
+      assertMatchingWildcards(trie, "stock.ibm.nyse", any, nyse, all);
+      assertMatchingWildcards(trie, "stock.ibm", any, all, other);
+      assertMatchingWildcards(trie, "stock", any, all);
+      assertMatchingWildcards(trie, "bond.ibm", all);
+
+      Assert.assertTrue(trie.remove(all));
+      Assert.assertFalse(trie.remove(all));
+      Assert.assertEquals(3, trie.size());
+
+      assertMatchingWildcards(trie, "bond.ibm");
+   }
+
+   @Test
+   public void testMatchedAddresses()
+   {
+      AddressTrie trie = new AddressTrie();
+
+      Address ibm = address("stock.ibm.nyse");
+      Address rht = address("stock.rht.nyse");
+      Address stock = address("stock");
+      Address bond = address("bond.ibm.nyse");
+
+      trie.add(ibm);
+      trie.add(rht);
+      trie.add(stock);
+      trie.add(bond);
+
+      assertMatchedAddresses(trie, "stock.*.nyse", ibm, rht);
+      assertMatchedAddresses(trie, "stock.#", ibm, rht, stock);
+      assertMatchedAddresses(trie, "*.ibm.*", ibm, bond);
+      assertMatchedAddresses(trie, "stock.*");
+
+      Assert.assertTrue(trie.remove(ibm));
+      Assert.assertNull(trie.get(ibm.getAddressParts()));
+      Assert.assertSame(rht, trie.get(rht.getAddressParts()));
+
+      assertMatchedAddresses(trie, "stock.*.nyse", rht);
+   }
+
+   /**
+    * The trie must find exactly the same addresses as matching them one by one
+    */
+   @Test
+   public void testSameAsMatches()
+   {
+      Random random = new Random(4321);
+
+      List<Address> addresses = new ArrayList<Address>();
+      List<Address> wildcards = new ArrayList<Address>();
+
+      AddressTrie addressTrie = new AddressTrie();
+      AddressTrie wildcardTrie = new AddressTrie();
+
+      for (int i = 0; i < 300; i++)
+      {
+         Address address = address(randomAddress(random, false));
+         addresses.add(address);
+         addressTrie.add(address);
+
+         Address wildcard = address(randomAddress(random, true));
+         wildcards.add(wildcard);
+         wildcardTrie.add(wildcard);
+      }
+
+      for (Address address : addresses)
+      {
+         Set<Address> expected = new HashSet<Address>();
+         for (Address wildcard : wildcards)
+         {
+            if (address.matches(wildcard))
+            {
+               expected.add(wildcard);
+            }
+         }
+
+         Set<Address> result = new HashSet<Address>();
+         wildcardTrie.getMatchingWildcards(address, result);
+
+         Assert.assertEquals(address.getAddress().toString(), expected, result);
+      }
+
+      for (Address wildcard : wildcards)
+      {
+         Set<Address> expected = new HashSet<Address>();
+         for (Address address : addresses)
+         {
+            if (address.matches(wildcard))
+            {
+               expected.add(address);
+            }
+         }
+
+         Set<Address> result = new HashSet<Address>();
+         addressTrie.getMatchedAddresses(wildcard, result);
+
+         Assert.assertEquals(wildcard.getAddress().toString(), expected, result);
+      }
+   }
+
+   private static String randomAddress(final Random random, final boolean wildcard)
+   {
+      StringBuilder builder = new StringBuilder();
+
+      int words = 1 + random.nextInt(5);
+
+      for (int i = 0; i < words; i++)
+      {
+         if (i > 0)
+         {
+            builder.append('.');
+         }
+
+         int word = random.nextInt(wildcard ? WORDS.length + 2 : WORDS.length);
+
+         if (word == WORDS.length)
+         {
+            builder.append('*');
+         }
+         else if (word == WORDS.length + 1)
+         {
+            builder.append('#');
+         }
+         else
+         {
+            builder.append(WORDS[word]);
+         }
+      }
+
+      return builder.toString();
+   }
+
+   private static Address address(final String address)
+   {
+      return new AddressImpl(new SimpleString(address));
+   }
+
+   private static void assertMatchingWildcards(final AddressTrie trie, final String address, final Address... expected)
+   {
+      Set<Address> result = new HashSet<Address>();
+      trie.getMatchingWildcards(address(address), result);
+      Assert.assertEquals(new HashSet<Address>(Arrays.asList(expected)), result);
+   }
+
+   private static void assertMatchedAddresses(final AddressTrie trie, final String wildcard, final Address... expected)
+   {
+      Set<Address> result = new HashSet<Address>();
+      trie.getMatchedAddresses(address(wildcard), result);
+      Assert.assertEquals(new HashSet<Address>(Arrays.asList(expected)), result);
+   }
+}
@@ -24,6 +24,7 @@ import javax.transaction.xa.Xid;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
 import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.BindingType;
 import org.hornetq.core.postoffice.Bindings;
@@ -79,6 +80,75 @@ public class BindingsImplTest extends UnitTestCase
       }
    }
 
+   @Test
+   public void testRouteWithIndexedFilters() throws Exception
+   {
+      FakeBinding eu = new FakeBinding(new SimpleString("eu"), FilterImpl.createFilter("region = 'EU'"));
+      FakeBinding euOrUs = new FakeBinding(new SimpleString("euOrUs"), FilterImpl.createFilter("region IN ('EU', 'US')"));
+      FakeBinding us = new FakeBinding(new SimpleString("us"), FilterImpl.createFilter("'US' = region"));
+      FakeBinding red = new FakeBinding(new SimpleString("red"), FilterImpl.createFilter("color = 'red'"));
+      FakeBinding euAndRed = new FakeBinding(new SimpleString("euAndRed"),
+                                             FilterImpl.createFilter("region = 'EU' AND color = 'red'"));
+      FakeBinding all = new FakeBinding(new SimpleString("all"), null);
+
+      Bindings bind = new BindingsImpl(null, null, null);
+      bind.addBinding(eu);
+      bind.addBinding(euOrUs);
+      bind.addBinding(us);
+      bind.addBinding(red);
+      bind.addBinding(euAndRed);
+      bind.addBinding(all);
+
+      ServerMessage message = new ServerMessageImpl(1, 100);
+      message.putStringProperty("region", "EU");
+      message.putStringProperty("color", "red");
+      bind.route(message, new RoutingContextImpl(new FakeTransaction()));
+
+      assertRouted(new int[]{1, 1, 0, 1, 1, 1}, eu, euOrUs, us, red, euAndRed, all);
+
+      message = new ServerMessageImpl(2, 100);
+      message.putStringProperty("region", "US");
+      bind.route(message, new RoutingContextImpl(new FakeTransaction()));
+
+      assertRouted(new int[]{1, 2, 1, 1, 1, 2}, eu, euOrUs, us, red, euAndRed, all);
+
+      // the filters don't match values of other types
+      message = new ServerMessageImpl(3, 100);
+      message.putIntProperty("region", 1);
+      bind.route(message, new RoutingContextImpl(new FakeTransaction()));
+
+      assertRouted(new int[]{1, 2, 1, 1, 1, 3}, eu, euOrUs, us, red, euAndRed, all);
+
+      bind.removeBinding(euOrUs);
+
+      message = new ServerMessageImpl(4, 100);
+      message.putStringProperty("region", "EU");
+      bind.route(message, new RoutingContextImpl(new FakeTransaction()));
+
+      assertRouted(new int[]{2, 2, 1, 1, 1, 4}, eu, euOrUs, us, red, euAndRed, all);
+
+      // a second binding with the same routing name is load balanced, so its filter is not indexed
+      FakeBinding eu2 = new FakeBinding(new SimpleString("eu"), FilterImpl.createFilter("region = 'EU'"));
+      bind.addBinding(eu2);
+
+      for (int i = 0; i < 2; i++)
+      {
+         message = new ServerMessageImpl(5 + i, 100);
+         message.putStringProperty("region", "EU");
+         bind.route(message, new RoutingContextImpl(new FakeTransaction()));
+      }
+
+      assertEquals(4, eu.routed + eu2.routed);
+   }
+
+   private static void assertRouted(final int[] expected, final FakeBinding... bindings)
+   {
+      for (int i = 0; i < expected.length; i++)
+      {
+         assertEquals(bindings[i].name.toString(), expected[i], bindings[i].routed);
+      }
+   }
+
    private void internalTest(final boolean route) throws Exception
    {
       final FakeBinding fake = new FakeBinding(new SimpleString("a"));
@@ -288,9 +358,19 @@ public class BindingsImplTest extends UnitTestCase
 
       final SimpleString name;
 
+      final Filter filter;
+
+      int routed;
+
       FakeBinding(final SimpleString name)
+      {
+         this(name, new FakeFilter());
+      }
+
+      FakeBinding(final SimpleString name, final Filter filter)
       {
          this.name = name;
+         this.filter = filter;
       }
 
       public SimpleString getAddress()
@@ -329,7 +409,7 @@ public class BindingsImplTest extends UnitTestCase
        */
       public Filter getFilter()
       {
-         return new FakeFilter();
+         return filter;
       }
 
       public long getID()
@@ -374,7 +454,7 @@ public class BindingsImplTest extends UnitTestCase
 
       public void route(final ServerMessage message, final RoutingContext context) throws Exception
       {
-
+         routed++;
       }
 
       /* (non-Javadoc)
@@ -33,9 +33,14 @@ import org.hornetq.core.config.Configuration;
 import org.hornetq.core.persistence.GroupingInfo;
 import org.hornetq.core.persistence.QueueBindingInfo;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager;
+import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
+import org.hornetq.core.postoffice.DuplicateIDCache;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.postoffice.impl.DuplicateIDCacheImpl;
+import org.hornetq.core.postoffice.impl.StripedDuplicateIDCache;
 import org.hornetq.core.server.Queue;
+import org.hornetq.core.transaction.Transaction;
+import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.core.transaction.impl.ResourceManagerImpl;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakePostOffice;
 import org.hornetq.tests.unit.util.FakePagingManager;
@@ -86,6 +91,95 @@ public class DuplicateDetectionUnitTest extends ServiceTestBase
 
    @Test
    public void testReloadDuplication() throws Exception
+   {
+      testReloadDuplication(false);
+   }
+
+   @Test
+   public void testReloadDuplicationStriped() throws Exception
+   {
+      testReloadDuplication(true);
+   }
+
+   @Test
+   public void testStripedCache() throws Exception
+   {
+      DuplicateIDCache cache = new StripedDuplicateIDCache(new SimpleString("address"), 100, new NullStorageManager(), false, 4);
+
+      List<byte[]> ids = new ArrayList<byte[]>();
+
+      for (int i = 0; i < 1000; i++)
+      {
+         byte[] id = RandomUtil.randomBytes();
+         ids.add(id);
+         cache.addToCache(id, null);
+         Assert.assertTrue(cache.contains(id.clone()));
+      }
+
+      // the last 100 ids are kept, whatever stripes they fall on
+      for (int i = 0; i < ids.size(); i++)
+      {
+         Assert.assertEquals(i >= 900, cache.contains(ids.get(i)));
+      }
+
+      byte[] last = ids.get(ids.size() - 1);
+      cache.deleteFromCache(last);
+      Assert.assertFalse(cache.contains(last));
+
+      byte[] txID = RandomUtil.randomBytes();
+      Transaction tx = new TransactionImpl(new NullStorageManager());
+      cache.addToCache(txID, tx);
+      Assert.assertFalse(cache.contains(txID));
+      tx.commit();
+      Assert.assertTrue(cache.contains(txID));
+   }
+
+   @Test
+   public void testStripedCacheLoad() throws Exception
+   {
+      DuplicateIDCache cache = new StripedDuplicateIDCache(new SimpleString("address"), 100, new NullStorageManager(), true, 4);
+
+      List<Pair<byte[], Long>> ids = new ArrayList<Pair<byte[], Long>>();
+
+      for (int i = 0; i < 100; i++)
+      {
+         ids.add(new Pair<byte[], Long>(RandomUtil.randomBytes(), (long)i));
+      }
+
+      cache.load(ids);
+
+      // the ids don't spread evenly on the stripes, none is dropped while they fit on the cache
+      for (Pair<byte[], Long> id : ids)
+      {
+         Assert.assertTrue(cache.contains(id.getA()));
+      }
+
+      byte[] newID = RandomUtil.randomBytes();
+      cache.addToCache(newID, null);
+
+      Assert.assertTrue(cache.contains(newID));
+      Assert.assertFalse(cache.contains(ids.get(0).getA()));
+      Assert.assertTrue(cache.contains(ids.get(1).getA()));
+   }
+
+   @Test
+   public void testStripedCacheSizeZero() throws Exception
+   {
+      DuplicateIDCache cache = new StripedDuplicateIDCache(new SimpleString("address"), 0, new NullStorageManager(), true);
+
+      byte[] id = RandomUtil.randomBytes();
+      cache.addToCache(id, null);
+      Assert.assertFalse(cache.contains(id));
+
+      Transaction tx = new TransactionImpl(new NullStorageManager());
+      cache.addToCache(id, tx);
+      tx.commit();
+      Assert.assertFalse(cache.contains(id));
+
+      cache.deleteFromCache(id);
+   }
+
+   private void testReloadDuplication(final boolean striped) throws Exception
    {
 
       JournalStorageManager journal = null;
@@ -119,7 +213,7 @@ public class DuplicateDetectionUnitTest extends ServiceTestBase
 
          Assert.assertEquals(0, mapDups.size());
 
-         DuplicateIDCacheImpl cacheID = new DuplicateIDCacheImpl(ADDRESS, 10, journal, true);
+         DuplicateIDCache cacheID = createCache(ADDRESS, journal, striped);
 
          for (int i = 0; i < 100; i++)
          {
@@ -146,7 +240,7 @@ public class DuplicateDetectionUnitTest extends ServiceTestBase
 
          Assert.assertEquals(10, values.size());
 
-         cacheID = new DuplicateIDCacheImpl(ADDRESS, 10, journal, true);
+         cacheID = createCache(ADDRESS, journal, striped);
          cacheID.load(values);
 
          for (int i = 0; i < 100; i++)
@@ -191,4 +285,15 @@ public class DuplicateDetectionUnitTest extends ServiceTestBase
       }
 
    }
+
+   private static DuplicateIDCache createCache(final SimpleString address,
+                                               final JournalStorageManager journal,
+                                               final boolean striped)
+   {
+      if (striped)
+      {
+         return new StripedDuplicateIDCache(address, 10, journal, true, 2);
+      }
+      return new DuplicateIDCacheImpl(address, 10, journal, true);
+   }
 }
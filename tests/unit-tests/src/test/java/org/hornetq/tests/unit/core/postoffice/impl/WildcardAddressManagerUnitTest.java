@@ -76,6 +76,30 @@ public class WildcardAddressManagerUnitTest extends UnitTestCase
       assertEquals("Exception happened during the process", 0, errors);
    }
 
+   @Test
+   public void testWildcardRouting() throws Exception
+   {
+      WildcardAddressManager ad = new WildcardAddressManager(new BindingFactoryFake());
+      ad.addBinding(new BindingFake("stock.ibm.nyse", "ibm"));
+      ad.addBinding(new BindingFake("stock.#", "all"));
+      ad.addBinding(new BindingFake("stock.*.nyse", "nyse"));
+      ad.addBinding(new BindingFake("bond.#", "bond"));
+
+      assertEquals(3, ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("stock.ibm.nyse")).getBindings().size());
+      assertEquals(2, ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("stock.rht.nyse")).getBindings().size());
+      assertEquals(1, ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("stock")).getBindings().size());
+
+      ad.removeBinding(SimpleString.toSimpleString("nyse"), null);
+
+      assertEquals(2, ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("stock.ibm.nyse")).getBindings().size());
+      assertEquals(1, ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("stock.rht.nyse")).getBindings().size());
+
+      ad.addBinding(new BindingFake("stock.*.nyse", "nyse2"));
+
+      assertEquals(3, ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("stock.ibm.nyse")).getBindings().size());
+      assertEquals(2, ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("stock.rht.nyse")).getBindings().size());
+   }
+
    class BindingFactoryFake implements BindingsFactory
    {
       public Bindings createBindings(SimpleString address) throws Exception
@@ -16,6 +16,7 @@ import org.junit.Test;
 
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -27,17 +28,21 @@ import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.core.remoting.impl.netty.NettyConnection;
+import org.hornetq.core.remoting.impl.netty.PooledBufferAllocator;
+import org.hornetq.core.remoting.impl.netty.PooledBufferAllocator.PooledBuffer;
 import org.hornetq.core.server.HornetQComponent;
 import org.hornetq.spi.core.protocol.ProtocolType;
 import org.hornetq.spi.core.remoting.Connection;
 import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
 import org.hornetq.tests.util.RandomUtil;
 import org.hornetq.tests.util.UnitTestCase;
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelConfig;
 import org.jboss.netty.channel.ChannelFactory;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.Channels;
 
 /**
  *
@@ -73,6 +78,165 @@ public class NettyConnectionTest extends UnitTestCase
       Assert.assertEquals(1, channel.getWritten().size());
    }
 
+   @Test
+   public void testWriteBatched() throws Exception
+   {
+      SimpleChannel channel = new SimpleChannel(RandomUtil.randomInt());
+
+      NettyConnection conn = new NettyConnection(emptyMap, channel, new MyListener(), true, false);
+
+      for (int i = 0; i < 10; i++)
+      {
+         conn.write(createPacket(100, (byte)i), false, true);
+      }
+
+      Assert.assertEquals(0, channel.getWritten().size());
+
+      conn.checkFlushBatchBuffer();
+
+      Assert.assertEquals(1, channel.getWritten().size());
+
+      ChannelBuffer written = (ChannelBuffer)channel.getWritten().get(0);
+
+      Assert.assertEquals(1000, written.readableBytes());
+
+      for (int i = 0; i < 1000; i++)
+      {
+         Assert.assertEquals(i / 100, written.getByte(i));
+      }
+   }
+
+   @Test
+   public void testWriteBatchedWithoutCopy() throws Exception
+   {
+      SimpleChannel channel = new SimpleChannel(RandomUtil.randomInt());
+
+      NettyConnection conn = new NettyConnection(emptyMap, channel, new MyListener(), true, false);
+
+      List<HornetQBuffer> packets = new ArrayList<HornetQBuffer>();
+
+      // the batch is written once it gets to 8k
+      for (int i = 0; i < 9; i++)
+      {
+         Assert.assertEquals(0, channel.getWritten().size());
+
+         HornetQBuffer packet = createPacket(1000, (byte)i);
+
+         packets.add(packet);
+
+         conn.write(packet, false, true);
+      }
+
+      Assert.assertEquals(1, channel.getWritten().size());
+
+      ChannelBuffer written = (ChannelBuffer)channel.getWritten().get(0);
+
+      Assert.assertEquals(9000, written.readableBytes());
+
+      // the packets are written from their own buffers
+      packets.get(3).setByte(10, (byte)100);
+
+      Assert.assertEquals(100, written.getByte(3010));
+      Assert.assertEquals(3, written.getByte(3011));
+   }
+
+   @Test
+   public void testWriteFlushesBatch() throws Exception
+   {
+      SimpleChannel channel = new SimpleChannel(RandomUtil.randomInt());
+
+      NettyConnection conn = new NettyConnection(emptyMap, channel, new MyListener(), true, false);
+
+      conn.write(createPacket(100, (byte)1), false, true);
+      conn.write(createPacket(1000, (byte)2), false, true);
+      conn.write(createPacket(100, (byte)3), false, true);
+
+      Assert.assertEquals(0, channel.getWritten().size());
+
+      conn.write(createPacket(100, (byte)4), false, false);
+
+      Assert.assertEquals(1, channel.getWritten().size());
+
+      ChannelBuffer written = (ChannelBuffer)channel.getWritten().get(0);
+
+      Assert.assertEquals(1300, written.readableBytes());
+      Assert.assertEquals(1, written.getByte(99));
+      Assert.assertEquals(2, written.getByte(100));
+      Assert.assertEquals(2, written.getByte(1099));
+      Assert.assertEquals(3, written.getByte(1100));
+      Assert.assertEquals(4, written.getByte(1299));
+
+      // not batched, written as it is
+      conn.write(createPacket(100, (byte)5), false, false);
+
+      Assert.assertEquals(2, channel.getWritten().size());
+   }
+
+   @Test
+   public void testWritePooledBuffer() throws Exception
+   {
+      SimpleChannel channel = new SimpleChannel(RandomUtil.randomInt());
+
+      PooledBufferAllocator allocator = new PooledBufferAllocator(10);
+
+      NettyConnection conn = new NettyConnection(emptyMap, channel, new MyListener(), false, false, allocator);
+
+      PooledBuffer buffer = (PooledBuffer)conn.createBuffer(100);
+
+      buffer.writeBytes(new byte[100]);
+
+      conn.write(buffer);
+
+      Assert.assertEquals(1, channel.getWritten().size());
+
+      // the buffer is released once Netty is done with it
+      Assert.assertEquals(1, buffer.refCount());
+
+      channel.completeWrites();
+
+      Assert.assertEquals(0, buffer.refCount());
+      Assert.assertEquals(1, allocator.getPoolSize());
+
+      conn.createBuffer(100);
+
+      Assert.assertEquals(1, allocator.getHits());
+   }
+
+   @Test
+   public void testWriteBatchedPooledBuffers() throws Exception
+   {
+      SimpleChannel channel = new SimpleChannel(RandomUtil.randomInt());
+
+      PooledBufferAllocator allocator = new PooledBufferAllocator(10);
+
+      NettyConnection conn = new NettyConnection(emptyMap, channel, new MyListener(), true, false, allocator);
+
+      PooledBuffer small = (PooledBuffer)conn.createBuffer(100);
+      small.writeBytes(new byte[100]);
+
+      PooledBuffer big = (PooledBuffer)conn.createBuffer(1000);
+      big.writeBytes(new byte[1000]);
+
+      conn.write(small, false, true);
+
+      // copied on the batch
+      Assert.assertEquals(0, small.refCount());
+
+      conn.write(big, false, true);
+
+      Assert.assertEquals(1, big.refCount());
+
+      conn.checkFlushBatchBuffer();
+
+      Assert.assertEquals(1, channel.getWritten().size());
+      Assert.assertEquals(1, big.refCount());
+
+      channel.completeWrites();
+
+      Assert.assertEquals(0, big.refCount());
+      Assert.assertEquals(2, allocator.getPoolSize());
+   }
+
    @Test
    public void testCreateBuffer() throws Exception
    {
@@ -87,12 +251,26 @@ public class NettyConnectionTest extends UnitTestCase
 
    }
 
+   private static HornetQBuffer createPacket(final int size, final byte value)
+   {
+      HornetQBuffer packet = HornetQBuffers.fixedBuffer(size);
+
+      for (int i = 0; i < size; i++)
+      {
+         packet.writeByte(value);
+      }
+
+      return packet;
+   }
+
    private final class SimpleChannel implements Channel
    {
       private final int id;
 
       private final List<Object> written = new LinkedList<Object>();
 
+      private final List<ChannelFuture> futures = new LinkedList<ChannelFuture>();
+
       private SimpleChannel(final int id)
       {
          this.id = id;
@@ -103,6 +281,16 @@ public class NettyConnectionTest extends UnitTestCase
          return written;
       }
 
+      public void completeWrites()
+      {
+         for (ChannelFuture future : futures)
+         {
+            future.setSuccess();
+         }
+
+         futures.clear();
+      }
+
       public int compareTo(final Channel arg0)
       {
          return 0;
@@ -111,13 +299,17 @@ public class NettyConnectionTest extends UnitTestCase
       public ChannelFuture write(final Object arg0, final SocketAddress arg1)
       {
          written.add(arg0);
-         return null;
+         ChannelFuture future = Channels.future(this);
+         futures.add(future);
+         return future;
       }
 
       public ChannelFuture write(final Object arg0)
       {
          written.add(arg0);
-         return null;
+         ChannelFuture future = Channels.future(this);
+         futures.add(future);
+         return future;
       }
 
       public ChannelFuture unbind()
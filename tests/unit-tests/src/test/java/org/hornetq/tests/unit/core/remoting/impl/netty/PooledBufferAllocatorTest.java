@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.remoting.impl.netty;
+
+import org.hornetq.core.remoting.impl.netty.PooledBufferAllocator;
+import org.hornetq.core.remoting.impl.netty.PooledBufferAllocator.PooledBuffer;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PooledBufferAllocatorTest extends UnitTestCase
+{
+   @Test
+   public void testRecycle() throws Exception
+   {
+      PooledBufferAllocator allocator = new PooledBufferAllocator(10);
+
+      PooledBuffer buffer = allocator.allocate(100);
+
+      Assert.assertEquals(0, allocator.getHits());
+      Assert.assertEquals(1, allocator.getMisses());
+
+      buffer.writeLong(1);
+
+      Assert.assertTrue(buffer.release());
+      Assert.assertEquals(1, allocator.getPoolSize());
+
+      PooledBuffer recycled = allocator.allocate(100);
+
+      Assert.assertEquals(1, allocator.getHits());
+      Assert.assertEquals(1, allocator.getMisses());
+      Assert.assertEquals(0, allocator.getPoolSize());
+
+      // the buffer comes back empty
+      Assert.assertEquals(0, recycled.writerIndex());
+      Assert.assertEquals(0, recycled.readerIndex());
+      Assert.assertSame(buffer.channelBuffer(), recycled.channelBuffer());
+   }
+
+   @Test
+   public void testReferenceCount() throws Exception
+   {
+      PooledBufferAllocator allocator = new PooledBufferAllocator(10);
+
+      PooledBuffer buffer = allocator.allocate(100);
+
+      buffer.retain();
+
+      Assert.assertEquals(2, buffer.refCount());
+
+      Assert.assertFalse(buffer.release());
+      Assert.assertEquals(0, allocator.getPoolSize());
+
+      Assert.assertTrue(buffer.release());
+      Assert.assertEquals(1, allocator.getPoolSize());
+
+      try
+      {
+         buffer.release();
+         Assert.fail("exception expected");
+      }
+      catch (IllegalStateException expected)
+      {
+      }
+
+      try
+      {
+         buffer.retain();
+         Assert.fail("exception expected");
+      }
+      catch (IllegalStateException expected)
+      {
+      }
+
+      // the buffer is only given back once
+      Assert.assertEquals(1, allocator.getPoolSize());
+   }
+
+   @Test
+   public void testBounds() throws Exception
+   {
+      PooledBufferAllocator allocator = new PooledBufferAllocator(2);
+
+      PooledBuffer[] buffers = new PooledBuffer[3];
+
+      for (int i = 0; i < buffers.length; i++)
+      {
+         buffers[i] = allocator.allocate(100);
+      }
+
+      for (PooledBuffer buffer : buffers)
+      {
+         buffer.release();
+      }
+
+      Assert.assertEquals(2, allocator.getPoolSize());
+
+      allocator.allocate(100);
+      allocator.allocate(100);
+
+      // a buffer grown over the pooled capacity is left to the GC
+      PooledBuffer big = allocator.allocate(100);
+      big.writeBytes(new byte[PooledBufferAllocator.MAX_POOLED_CAPACITY + 1]);
+      big.release();
+
+      Assert.assertEquals(0, allocator.getPoolSize());
+      Assert.assertEquals(2, allocator.getHits());
+      Assert.assertEquals(4, allocator.getMisses());
+   }
+}
@@ -25,17 +25,22 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
 import org.hornetq.core.server.Consumer;
 import org.hornetq.core.server.HandleStatus;
 import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.core.settings.HierarchicalRepository;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.core.settings.impl.HierarchicalObjectRepository;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakeConsumer;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakeFilter;
 import org.hornetq.tests.unit.core.server.impl.fakes.FakePostOffice;
@@ -869,6 +874,363 @@ public class QueueImplTest extends UnitTestCase
       assertRefListsIdenticalRefs(refs, list);
    }
 
+   @Test
+   public void testReferencesWithIDIndexed() throws Exception
+   {
+      testReferencesWithID(true);
+   }
+
+   @Test
+   public void testReferencesWithIDNotIndexed() throws Exception
+   {
+      testReferencesWithID(false);
+   }
+
+   private void testReferencesWithID(final boolean indexed) throws Exception
+   {
+      HierarchicalRepository<AddressSettings> repository = new HierarchicalObjectRepository<AddressSettings>();
+      AddressSettings settings = new AddressSettings();
+      settings.setMessageIDIndex(indexed);
+      repository.addMatch(QueueImplTest.address1.toString(), settings);
+
+      QueueImpl queue = new QueueImpl(1,
+                                      QueueImplTest.address1,
+                                      QueueImplTest.queue1,
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      repository,
+                                      executor);
+
+      final int numMessages = 20;
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+
+         queue.addTail(ref);
+
+         refs.add(ref);
+      }
+
+      Assert.assertEquals(numMessages, queue.getMessageCount());
+
+      Assert.assertSame(refs.get(5), queue.getReference(5));
+      Assert.assertNull(queue.getReference(numMessages));
+
+      Assert.assertSame(refs.get(5), queue.removeReferenceWithID(5));
+      Assert.assertNull(queue.getReference(5));
+      Assert.assertNull(queue.removeReferenceWithID(5));
+
+      Assert.assertTrue(queue.changeReferencePriority(10, (byte)9));
+      Assert.assertFalse(queue.changeReferencePriority(5, (byte)9));
+
+      Assert.assertEquals(numMessages - 1, queue.getMessageCount());
+
+      MessageReference changed = refs.get(10);
+      refs.remove(changed);
+      refs.remove(5);
+      // the message with a higher priority goes first
+      refs.add(0, changed);
+
+      Iterator<MessageReference> iterator = queue.iterator();
+      List<MessageReference> list = new ArrayList<MessageReference>();
+      while (iterator.hasNext())
+      {
+         list.add(iterator.next());
+      }
+      assertRefListsIdenticalRefs(refs, list);
+   }
+
+   @Test
+   public void testDeleteMatchingReferencesInSlices() throws Exception
+   {
+      HierarchicalRepository<AddressSettings> repository = new HierarchicalObjectRepository<AddressSettings>();
+      AddressSettings settings = new AddressSettings();
+      settings.setBulkOperationBatchSize(3);
+      repository.addMatch(QueueImplTest.address1.toString(), settings);
+
+      QueueImpl queue = new QueueImpl(1,
+                                      QueueImplTest.address1,
+                                      QueueImplTest.queue1,
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      null,
+                                      new NullStorageManager(),
+                                      repository,
+                                      executor);
+
+      final int numMessages = 20;
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.getMessage().putStringProperty("color", i % 2 == 0 ? "green" : "red");
+
+         queue.addTail(ref);
+
+         if (i % 2 != 0)
+         {
+            refs.add(ref);
+         }
+      }
+
+      // move the references added to the queue itself
+      queue.deliverNow();
+
+      Assert.assertEquals(numMessages / 2, queue.deleteMatchingReferences(FilterImpl.createFilter("color = 'green'")));
+
+      Assert.assertEquals(numMessages / 2, queue.getMessageCount());
+      Assert.assertEquals(0, queue.getDeliveringCount());
+
+      Iterator<MessageReference> iterator = queue.iterator();
+      List<MessageReference> list = new ArrayList<MessageReference>();
+      while (iterator.hasNext())
+      {
+         list.add(iterator.next());
+      }
+      assertRefListsIdenticalRefs(refs, list);
+
+      Assert.assertEquals(numMessages / 2, queue.deleteAllReferences());
+      Assert.assertEquals(0, queue.getMessageCount());
+   }
+
+   @Test
+   public void testSelectorDeliveryQueues() throws Exception
+   {
+      HierarchicalRepository<AddressSettings> repository = new HierarchicalObjectRepository<AddressSettings>();
+      AddressSettings settings = new AddressSettings();
+      settings.setSelectorDeliveryQueues(true);
+      repository.addMatch(QueueImplTest.address1.toString(), settings);
+
+      QueueImpl queue = new QueueImpl(1,
+                                      QueueImplTest.address1,
+                                      QueueImplTest.queue1,
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      repository,
+                                      executor);
+
+      final int numMessages = 10;
+
+      List<MessageReference> greenRefs = new ArrayList<MessageReference>();
+      List<MessageReference> redRefs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         if (i % 2 == 0)
+         {
+            ref.getMessage().putStringProperty("color", "green");
+            greenRefs.add(ref);
+         }
+         else
+         {
+            ref.getMessage().putStringProperty("color", "red");
+            redRefs.add(ref);
+         }
+
+         queue.addTail(ref);
+      }
+
+      final AtomicInteger noMatches = new AtomicInteger();
+
+      final Filter green = FilterImpl.createFilter("color = 'green'");
+
+      Filter countingGreen = new Filter()
+      {
+         public boolean match(final ServerMessage message)
+         {
+            boolean match = green.match(message);
+            if (!match)
+            {
+               noMatches.incrementAndGet();
+            }
+            return match;
+         }
+
+         public SimpleString getFilterString()
+         {
+            return green.getFilterString();
+         }
+      };
+
+      FakeConsumer green1 = new FakeConsumer(countingGreen);
+      FakeConsumer green2 = new FakeConsumer(countingGreen);
+      FakeConsumer green3 = new FakeConsumer(countingGreen);
+      FakeConsumer red = new FakeConsumer(FilterImpl.createFilter("color = 'red'"));
+      red.setStatusImmediate(HandleStatus.BUSY);
+
+      queue.addConsumer(green1);
+      queue.addConsumer(green2);
+      queue.addConsumer(green3);
+      queue.addConsumer(red);
+
+      queue.deliverNow();
+
+      Assert.assertEquals(numMessages / 2,
+                          green1.getReferences().size() + green2.getReferences().size() +
+                                   green3.getReferences().size());
+      Assert.assertEquals(0, red.getReferences().size());
+      Assert.assertEquals(numMessages, queue.getMessageCount());
+      Assert.assertEquals(numMessages / 2, queue.getDeliveringCount());
+
+      // the consumers sharing the selector don't rescan the messages it doesn't match
+      Assert.assertEquals(redRefs.size(), noMatches.get());
+
+      // the messages left are still on the queue for the other consumers
+      queue.removeConsumer(red);
+
+      FakeConsumer all = new FakeConsumer();
+      queue.addConsumer(all);
+
+      queue.deliverNow();
+
+      assertRefListsIdenticalRefs(redRefs, all.getReferences());
+      Assert.assertEquals(numMessages, queue.getDeliveringCount());
+
+      queue.removeConsumer(all);
+
+      // a selector queue is created with the matching messages already on the queue
+      MessageReference ref = generateReference(queue, numMessages);
+      ref.getMessage().putStringProperty("color", "red");
+      queue.addTail(ref);
+
+      red = new FakeConsumer(FilterImpl.createFilter("color = 'red'"));
+      queue.addConsumer(red);
+
+      queue.deliverNow();
+
+      Assert.assertEquals(1, red.getReferences().size());
+      Assert.assertSame(ref, red.getReferences().get(0));
+      Assert.assertEquals(numMessages + 1, queue.getDeliveringCount());
+   }
+
+   @Test
+   public void testSelectorDeliveryQueuesMoveReferences() throws Exception
+   {
+      HierarchicalRepository<AddressSettings> repository = new HierarchicalObjectRepository<AddressSettings>();
+      AddressSettings settings = new AddressSettings();
+      settings.setSelectorDeliveryQueues(true);
+      repository.addMatch(QueueImplTest.address1.toString(), settings);
+
+      QueueImpl queue = new QueueImpl(1,
+                                      QueueImplTest.address1,
+                                      QueueImplTest.queue1,
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      new FakePostOffice(),
+                                      new NullStorageManager(),
+                                      repository,
+                                      executor);
+
+      FakeConsumer green = new FakeConsumer(FilterImpl.createFilter("color = 'green'"));
+      green.setStatusImmediate(HandleStatus.BUSY);
+      queue.addConsumer(green);
+
+      final int numMessages = 10;
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.getMessage().putStringProperty("color", "green");
+         ref.getMessage().putBooleanProperty("moved", true);
+         queue.addTail(ref);
+      }
+
+      MessageReference kept = generateReference(queue, numMessages);
+      kept.getMessage().putStringProperty("color", "green");
+      kept.getMessage().putBooleanProperty("moved", false);
+      queue.addTail(kept);
+
+      queue.deliverNow();
+
+      Assert.assertEquals(numMessages,
+                          queue.moveReferences(FilterImpl.createFilter("moved = true"), new SimpleString("elsewhere")));
+
+      green.setStatusImmediate(HandleStatus.HANDLED);
+
+      queue.deliverNow();
+
+      // the moved messages are gone from the selector queue as well
+      Assert.assertEquals(1, green.getReferences().size());
+      Assert.assertSame(kept, green.getReferences().get(0));
+      Assert.assertEquals(1, queue.getMessageCount());
+   }
+
+   @Test
+   public void testSelectorDeliveryQueuesSkipReferencesTakenElsewhere() throws Exception
+   {
+      HierarchicalRepository<AddressSettings> repository = new HierarchicalObjectRepository<AddressSettings>();
+      AddressSettings settings = new AddressSettings();
+      settings.setSelectorDeliveryQueues(true);
+      repository.addMatch(QueueImplTest.address1.toString(), settings);
+
+      QueueImpl queue = new QueueImpl(1,
+                                      QueueImplTest.address1,
+                                      QueueImplTest.queue1,
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      new FakePostOffice(),
+                                      new NullStorageManager(),
+                                      repository,
+                                      executor);
+
+      FakeConsumer green = new FakeConsumer(FilterImpl.createFilter("color = 'green'"));
+      green.setStatusImmediate(HandleStatus.BUSY);
+      queue.addConsumer(green);
+
+      FakeConsumer all = new FakeConsumer();
+      queue.addConsumer(all);
+
+      final int numMessages = 10;
+
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         MessageReference ref = generateReference(queue, i);
+         ref.getMessage().putStringProperty("color", "green");
+         refs.add(ref);
+         queue.addTail(ref);
+      }
+
+      queue.deliverNow();
+
+      assertRefListsIdenticalRefs(refs, all.getReferences());
+
+      queue.removeConsumer(all);
+
+      // one of them is cancelled back to the queue
+      queue.cancel(refs.get(3), System.currentTimeMillis());
+
+      green.setStatusImmediate(HandleStatus.HANDLED);
+
+      queue.deliverNow();
+
+      // the selector queue only delivers what is still on the queue, once
+      Assert.assertEquals(1, green.getReferences().size());
+      Assert.assertSame(refs.get(3), green.getReferences().get(0));
+      Assert.assertEquals(0, queue.getMessageCount() - queue.getDeliveringCount());
+   }
+
    private void awaitExecution()
    {
       FutureLatch future = new FutureLatch();
@@ -42,6 +42,15 @@ public class AddressSettingsTest extends UnitTestCase
       Assert.assertEquals(AddressSettings.DEFAULT_REDELIVER_MULTIPLIER,
  addressSettings.getRedeliveryMultiplier(),
                           0.000001);
+      Assert.assertEquals(AddressSettings.DEFAULT_MESSAGE_ID_INDEX, addressSettings.isMessageIDIndex());
+      Assert.assertEquals(AddressSettings.DEFAULT_BULK_OPERATION_BATCH_SIZE, addressSettings.getBulkOperationBatchSize());
+      Assert.assertEquals(AddressSettings.DEFAULT_STRIPED_DUPLICATE_ID_CACHE, addressSettings.isStripedDuplicateIDCache());
+      Assert.assertEquals(AddressSettings.DEFAULT_SELECTOR_DELIVERY_QUEUES, addressSettings.isSelectorDeliveryQueues());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_MAX_CACHE_BYTES, addressSettings.getPageCacheMaxBytes());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_READ_AHEAD, addressSettings.getPageReadAhead());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_READ_AHEAD_MAX_BYTES, addressSettings.getPageReadAheadMaxBytes());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_WRITE_BUFFER_SIZE, addressSettings.getPageWriteBufferSize());
+      Assert.assertEquals(AddressSettings.DEFAULT_PAGE_COMPRESSION, addressSettings.isPageCompression());
 
    }
 